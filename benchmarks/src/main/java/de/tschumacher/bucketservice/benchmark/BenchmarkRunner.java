@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public final class BenchmarkRunner {
+  private static final int[] DEFAULT_THREADS = {1, 4, 16};
+
+  private BenchmarkRunner() {
+    super();
+  }
+
+  public static void main(final String[] args)
+      throws CommandLineOptionException, RunnerException, IOException {
+    final CommandLineOptions commandLine = new CommandLineOptions(args);
+    if (commandLine.shouldHelp()) {
+      commandLine.showHelp();
+    } else if (commandLine.shouldList()) {
+      new Runner(commandLine).list();
+    } else if (commandLine.getThreads().hasValue()) {
+      new Runner(commandLine).run();
+    } else {
+      for (final int threads : DEFAULT_THREADS) {
+        new Runner(new OptionsBuilder().parent(commandLine).threads(threads).build()).run();
+      }
+    }
+  }
+}
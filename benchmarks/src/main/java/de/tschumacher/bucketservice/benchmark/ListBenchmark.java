@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.benchmark;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import de.tschumacher.bucketservice.domain.S3File;
+
+public class ListBenchmark extends LocalS3Benchmark {
+  private static final String PREFIX = "list/";
+  private static final int DIRECTORIES = 10;
+
+  @Param({"100", "10000"})
+  public int objectCount;
+
+  @Setup(Level.Trial)
+  public void createObjects() {
+    for (int i = 0; i < this.objectCount; i++) {
+      this.amazonS3.putObject(BUCKET, PREFIX + "file-" + i, "x");
+      this.amazonS3.putObject(BUCKET, PREFIX + "dir-" + i % DIRECTORIES + "/file-" + i, "x");
+    }
+  }
+
+  @Benchmark
+  public List<S3File> listFiles() {
+    return this.s3Service.informationService().listFiles(PREFIX);
+  }
+
+  @Benchmark
+  public List<String> listDirectories() {
+    return this.s3Service.informationService().listDirectories(PREFIX);
+  }
+
+  @Benchmark
+  public long streamFilesRecursively() {
+    return this.s3Service.informationService().streamFilesRecursively(PREFIX).count();
+  }
+}
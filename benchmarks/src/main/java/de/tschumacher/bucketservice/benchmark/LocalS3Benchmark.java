@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.s3.AmazonS3;
+
+import de.tschumacher.bucketservice.service.DefaultS3Service;
+import de.tschumacher.bucketservice.service.S3Service;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+import de.tschumacher.bucketservice.testing.InMemoryAmazonS3;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class LocalS3Benchmark {
+  protected static final String BUCKET = "benchmark";
+  private static final String BACKEND_PROPERTY = "benchmark.backend";
+  private static final String MEMORY_BACKEND = "memory";
+  private static final int MAX_CONNECTIONS = 64;
+
+  protected LocalS3Server server;
+  protected AmazonS3 amazonS3;
+  protected S3Service s3Service;
+
+  @Setup(Level.Trial)
+  public void startServer() throws IOException {
+    if (MEMORY_BACKEND.equals(System.getProperty(BACKEND_PROPERTY))) {
+      this.amazonS3 = new InMemoryAmazonS3(BUCKET);
+    } else {
+      this.server = new LocalS3Server().start();
+      this.amazonS3 = this.server.createClient(MAX_CONNECTIONS);
+      this.amazonS3.createBucket(BUCKET);
+    }
+    this.s3Service = new DefaultS3Service(this.amazonS3, BUCKET,
+        configure(S3ServiceConfig.newBuilder().withMaxConnections(MAX_CONNECTIONS)).build());
+  }
+
+  protected S3ServiceConfig.Builder configure(final S3ServiceConfig.Builder builder) {
+    return builder;
+  }
+
+  @TearDown(Level.Trial)
+  public void stopServer() {
+    this.amazonS3.shutdown();
+    if (this.server != null) {
+      this.server.close();
+    }
+  }
+}
@@ -0,0 +1,635 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class LocalS3Server implements Closeable {
+  private static final String REGION = "us-east-1";
+  private static final String USER_METADATA_PREFIX = "x-amz-meta-";
+  private static final int DEFAULT_MAX_KEYS = 1000;
+  private static final DateTimeFormatter HTTP_DATE =
+      DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+  private static final DateTimeFormatter ISO_DATE =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+  private static final Pattern KEY = Pattern.compile("<Key>(.*?)</Key>", Pattern.DOTALL);
+  private static final Pattern PART_NUMBER = Pattern.compile("<PartNumber>(\\d+)</PartNumber>");
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Map<String, NavigableMap<String, StoredObject>> buckets =
+      new ConcurrentHashMap<String, NavigableMap<String, StoredObject>>();
+  private final Map<String, PendingUpload> uploads = new ConcurrentHashMap<String, PendingUpload>();
+  private final AtomicLong uploadIds = new AtomicLong();
+
+  public LocalS3Server() throws IOException {
+    this(0);
+  }
+
+  public LocalS3Server(final int port) throws IOException {
+    super();
+    this.server =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    this.executor = Executors.newCachedThreadPool(runnable -> {
+      final Thread thread = new Thread(runnable, "local-s3");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.server.setExecutor(this.executor);
+    this.server.createContext("/", this::handle);
+  }
+
+  public LocalS3Server start() {
+    this.server.start();
+    return this;
+  }
+
+  public String getEndpoint() {
+    return "http://" + this.server.getAddress().getHostString() + ":"
+        + this.server.getAddress().getPort();
+  }
+
+  public AmazonS3 createClient(final int maxConnections) {
+    return AmazonS3ClientBuilder.standard()
+        .withEndpointConfiguration(new EndpointConfiguration(getEndpoint(), REGION))
+        .withPathStyleAccessEnabled(true).withChunkedEncodingDisabled(true)
+        .withCredentials(
+            new AWSStaticCredentialsProvider(new BasicAWSCredentials("local", "local")))
+        .withClientConfiguration(new ClientConfiguration().withMaxConnections(maxConnections))
+        .build();
+  }
+
+  @Override
+  public void close() {
+    this.server.stop(0);
+    this.executor.shutdownNow();
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    try {
+      final String path = decode(exchange.getRequestURI().getRawPath()).substring(1);
+      final int slash = path.indexOf('/');
+      final String bucket = slash < 0 ? path : path.substring(0, slash);
+      final String key = slash < 0 ? "" : path.substring(slash + 1);
+      final Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+      if (key.isEmpty()) {
+        handleBucket(exchange, bucket, query);
+      } else {
+        handleObject(exchange, bucket, key, query);
+      }
+    } catch (final RuntimeException e) {
+      sendError(exchange, 500, "InternalError", String.valueOf(e.getMessage()));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void handleBucket(final HttpExchange exchange, final String bucket,
+      final Map<String, String> query) throws IOException {
+    final String method = exchange.getRequestMethod();
+    if ("PUT".equals(method)) {
+      this.buckets.putIfAbsent(bucket, new ConcurrentSkipListMap<String, StoredObject>());
+      send(exchange, 200, new byte[0]);
+      return;
+    }
+    final NavigableMap<String, StoredObject> objects = this.buckets.get(bucket);
+    if (objects == null) {
+      sendError(exchange, 404, "NoSuchBucket", bucket);
+    } else if ("HEAD".equals(method)) {
+      send(exchange, 200, new byte[0]);
+    } else if ("DELETE".equals(method)) {
+      this.buckets.remove(bucket);
+      send(exchange, 204, new byte[0]);
+    } else if ("POST".equals(method) && query.containsKey("delete")) {
+      deleteObjects(exchange, objects);
+    } else if ("GET".equals(method) && "2".equals(query.get("list-type"))) {
+      listObjects(exchange, bucket, objects, query);
+    } else {
+      sendError(exchange, 501, "NotImplemented", method + " " + query.keySet());
+    }
+  }
+
+  private void handleObject(final HttpExchange exchange, final String bucket, final String key,
+      final Map<String, String> query) throws IOException {
+    final NavigableMap<String, StoredObject> objects = this.buckets.get(bucket);
+    if (objects == null) {
+      sendError(exchange, 404, "NoSuchBucket", bucket);
+      return;
+    }
+    final String method = exchange.getRequestMethod();
+    final String uploadId = query.get("uploadId");
+    if ("GET".equals(method) || "HEAD".equals(method)) {
+      getObject(exchange, objects.get(key), key);
+    } else if ("PUT".equals(method) && uploadId != null) {
+      uploadPart(exchange, uploadId, Integer.parseInt(query.get("partNumber")));
+    } else if ("PUT".equals(method)
+        && exchange.getRequestHeaders().getFirst("x-amz-copy-source") != null) {
+      copyObject(exchange, objects, key);
+    } else if ("PUT".equals(method)) {
+      final StoredObject object = new StoredObject(readBody(exchange),
+          contentType(exchange.getRequestHeaders()), userMetadata(exchange.getRequestHeaders()));
+      objects.put(key, object);
+      exchange.getResponseHeaders().set("ETag", quote(object.eTag));
+      send(exchange, 200, new byte[0]);
+    } else if ("POST".equals(method) && query.containsKey("uploads")) {
+      initiateUpload(exchange, bucket, key);
+    } else if ("POST".equals(method) && uploadId != null) {
+      completeUpload(exchange, objects, bucket, key, uploadId);
+    } else if ("DELETE".equals(method) && uploadId != null) {
+      this.uploads.remove(uploadId);
+      send(exchange, 204, new byte[0]);
+    } else if ("DELETE".equals(method)) {
+      objects.remove(key);
+      send(exchange, 204, new byte[0]);
+    } else {
+      sendError(exchange, 501, "NotImplemented", method + " " + query.keySet());
+    }
+  }
+
+  private void getObject(final HttpExchange exchange, final StoredObject object,
+      final String key) throws IOException {
+    if (object == null) {
+      sendError(exchange, 404, "NoSuchKey", key);
+      return;
+    }
+    final Headers requestHeaders = exchange.getRequestHeaders();
+    final String ifMatch = requestHeaders.getFirst("If-Match");
+    if (ifMatch != null && !unquote(ifMatch).equals(object.eTag)) {
+      sendError(exchange, 412, "PreconditionFailed", key);
+      return;
+    }
+    final Headers responseHeaders = exchange.getResponseHeaders();
+    responseHeaders.set("ETag", quote(object.eTag));
+    responseHeaders.set("Last-Modified", HTTP_DATE.format(object.lastModified));
+    final String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+    if (ifNoneMatch != null && unquote(ifNoneMatch).equals(object.eTag)) {
+      send(exchange, 304, new byte[0]);
+      return;
+    }
+    responseHeaders.set("Content-Type", object.contentType);
+    responseHeaders.set("Accept-Ranges", "bytes");
+    for (final Map.Entry<String, String> entry : object.userMetadata.entrySet()) {
+      responseHeaders.set(USER_METADATA_PREFIX + entry.getKey(), entry.getValue());
+    }
+    final int length = object.content.length;
+    int from = 0;
+    int to = length - 1;
+    int status = 200;
+    final String range = requestHeaders.getFirst("Range");
+    if (range != null) {
+      final Matcher matcher = RANGE.matcher(range);
+      if (matcher.matches()) {
+        if (matcher.group(1).isEmpty()) {
+          from = Math.max(0, length - Integer.parseInt(matcher.group(2)));
+        } else {
+          from = (int) Math.min(Integer.MAX_VALUE, Long.parseLong(matcher.group(1)));
+          if (!matcher.group(2).isEmpty()) {
+            to = (int) Math.min(to, Long.parseLong(matcher.group(2)));
+          }
+        }
+        if (from >= length) {
+          responseHeaders.set("Content-Range", "bytes */" + length);
+          sendError(exchange, 416, "InvalidRange", key);
+          return;
+        }
+        responseHeaders.set("Content-Range", "bytes " + from + "-" + to + "/" + length);
+        status = 206;
+      }
+    }
+    final int contentLength = to - from + 1;
+    if ("HEAD".equals(exchange.getRequestMethod())) {
+      responseHeaders.set("Content-Length", Integer.toString(contentLength));
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+    exchange.sendResponseHeaders(status, contentLength == 0 ? -1 : contentLength);
+    if (contentLength > 0) {
+      try (OutputStream outputStream = exchange.getResponseBody()) {
+        outputStream.write(object.content, from, contentLength);
+      }
+    }
+  }
+
+  private void copyObject(final HttpExchange exchange,
+      final NavigableMap<String, StoredObject> objects, final String key) throws IOException {
+    final Headers requestHeaders = exchange.getRequestHeaders();
+    String source = decode(requestHeaders.getFirst("x-amz-copy-source"));
+    if (source.startsWith("/")) {
+      source = source.substring(1);
+    }
+    final int slash = source.indexOf('/');
+    final NavigableMap<String, StoredObject> sourceObjects =
+        slash < 0 ? null : this.buckets.get(source.substring(0, slash));
+    final StoredObject sourceObject =
+        sourceObjects == null ? null : sourceObjects.get(source.substring(slash + 1));
+    if (sourceObject == null) {
+      sendError(exchange, 404, "NoSuchKey", source);
+      return;
+    }
+    final boolean replace =
+        "REPLACE".equalsIgnoreCase(requestHeaders.getFirst("x-amz-metadata-directive"));
+    final StoredObject object = replace
+        ? new StoredObject(sourceObject.content, contentType(requestHeaders),
+            userMetadata(requestHeaders))
+        : new StoredObject(sourceObject.content, sourceObject.contentType,
+            sourceObject.userMetadata);
+    objects.put(key, object);
+    sendXml(exchange, 200,
+        "<CopyObjectResult><LastModified>" + ISO_DATE.format(object.lastModified)
+            + "</LastModified><ETag>" + escape(quote(object.eTag))
+            + "</ETag></CopyObjectResult>");
+  }
+
+  private void initiateUpload(final HttpExchange exchange, final String bucket,
+      final String key) throws IOException {
+    final String uploadId = Long.toString(this.uploadIds.incrementAndGet());
+    this.uploads.put(uploadId, new PendingUpload(contentType(exchange.getRequestHeaders()),
+        userMetadata(exchange.getRequestHeaders())));
+    sendXml(exchange, 200,
+        "<InitiateMultipartUploadResult><Bucket>" + escape(bucket) + "</Bucket><Key>"
+            + escape(key) + "</Key><UploadId>" + uploadId
+            + "</UploadId></InitiateMultipartUploadResult>");
+  }
+
+  private void uploadPart(final HttpExchange exchange, final String uploadId,
+      final int partNumber) throws IOException {
+    final PendingUpload upload = this.uploads.get(uploadId);
+    if (upload == null) {
+      sendError(exchange, 404, "NoSuchUpload", uploadId);
+      return;
+    }
+    final byte[] part = readBody(exchange);
+    upload.parts.put(partNumber, part);
+    exchange.getResponseHeaders().set("ETag",
+        quote(BinaryUtils.toHex(Md5Utils.computeMD5Hash(part))));
+    send(exchange, 200, new byte[0]);
+  }
+
+  private void completeUpload(final HttpExchange exchange,
+      final NavigableMap<String, StoredObject> objects, final String bucket, final String key,
+      final String uploadId) throws IOException {
+    final PendingUpload upload = this.uploads.remove(uploadId);
+    if (upload == null) {
+      sendError(exchange, 404, "NoSuchUpload", uploadId);
+      return;
+    }
+    final Matcher matcher =
+        PART_NUMBER.matcher(new String(readBody(exchange), StandardCharsets.UTF_8));
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    final ByteArrayOutputStream digests = new ByteArrayOutputStream();
+    int parts = 0;
+    while (matcher.find()) {
+      final byte[] part = upload.parts.get(Integer.parseInt(matcher.group(1)));
+      if (part == null) {
+        sendError(exchange, 400, "InvalidPart", matcher.group(1));
+        return;
+      }
+      content.write(part);
+      digests.write(Md5Utils.computeMD5Hash(part));
+      parts++;
+    }
+    final String eTag = BinaryUtils.toHex(Md5Utils.computeMD5Hash(digests.toByteArray()))
+        + "-" + parts;
+    final StoredObject object =
+        new StoredObject(content.toByteArray(), eTag, upload.contentType, upload.userMetadata);
+    objects.put(key, object);
+    sendXml(exchange, 200,
+        "<CompleteMultipartUploadResult><Location>" + escape(getEndpoint() + "/" + bucket + "/"
+            + key) + "</Location><Bucket>" + escape(bucket) + "</Bucket><Key>" + escape(key)
+            + "</Key><ETag>" + escape(quote(eTag)) + "</ETag></CompleteMultipartUploadResult>");
+  }
+
+  private void deleteObjects(final HttpExchange exchange,
+      final NavigableMap<String, StoredObject> objects) throws IOException {
+    final String body = new String(readBody(exchange), StandardCharsets.UTF_8);
+    final boolean quiet = body.contains("<Quiet>true</Quiet>");
+    final StringBuilder result = new StringBuilder("<DeleteResult>");
+    final Matcher matcher = KEY.matcher(body);
+    while (matcher.find()) {
+      final String key = unescape(matcher.group(1));
+      objects.remove(key);
+      if (!quiet) {
+        result.append("<Deleted><Key>").append(escape(key)).append("</Key></Deleted>");
+      }
+    }
+    sendXml(exchange, 200, result.append("</DeleteResult>").toString());
+  }
+
+  private void listObjects(final HttpExchange exchange, final String bucket,
+      final NavigableMap<String, StoredObject> objects, final Map<String, String> query)
+      throws IOException {
+    final String prefix = query.getOrDefault("prefix", "");
+    final String delimiter = emptyToNull(query.get("delimiter"));
+    final String startAfter = emptyToNull(query.get("start-after"));
+    final String continuationToken = emptyToNull(query.get("continuation-token"));
+    final boolean urlEncoding = "url".equals(query.get("encoding-type"));
+    final int maxKeys = query.containsKey("max-keys")
+        ? Integer.parseInt(query.get("max-keys")) : DEFAULT_MAX_KEYS;
+
+    String after = continuationToken != null ? decodeToken(continuationToken) : startAfter;
+    if (after == null || after.compareTo(prefix) < 0) {
+      after = prefix;
+    }
+    final List<Map.Entry<String, StoredObject>> contents =
+        new ArrayList<Map.Entry<String, StoredObject>>();
+    final Set<String> commonPrefixes = new LinkedHashSet<String>();
+    boolean truncated = false;
+    String last = null;
+    for (final Map.Entry<String, StoredObject> entry : objects
+        .tailMap(after, !after.equals(startAfter) && continuationToken == null).entrySet()) {
+      final String key = entry.getKey();
+      if (!key.startsWith(prefix)) {
+        break;
+      }
+      final int index = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+      final String commonPrefix =
+          index < 0 ? null : key.substring(0, index + delimiter.length());
+      if (commonPrefix != null && commonPrefixes.contains(commonPrefix)) {
+        continue;
+      }
+      if (contents.size() + commonPrefixes.size() >= maxKeys) {
+        truncated = true;
+        break;
+      }
+      if (commonPrefix == null) {
+        contents.add(entry);
+        last = key;
+      } else {
+        commonPrefixes.add(commonPrefix);
+        last = commonPrefix + Character.MAX_VALUE;
+      }
+    }
+
+    final StringBuilder result = new StringBuilder("<ListBucketResult>");
+    result.append("<Name>").append(escape(bucket)).append("</Name>");
+    result.append("<Prefix>").append(escape(encode(prefix, urlEncoding))).append("</Prefix>");
+    result.append("<MaxKeys>").append(maxKeys).append("</MaxKeys>");
+    result.append("<KeyCount>").append(contents.size() + commonPrefixes.size())
+        .append("</KeyCount>");
+    if (delimiter != null) {
+      result.append("<Delimiter>").append(escape(encode(delimiter, urlEncoding)))
+          .append("</Delimiter>");
+    }
+    if (urlEncoding) {
+      result.append("<EncodingType>url</EncodingType>");
+    }
+    if (startAfter != null) {
+      result.append("<StartAfter>").append(escape(encode(startAfter, urlEncoding)))
+          .append("</StartAfter>");
+    }
+    if (continuationToken != null) {
+      result.append("<ContinuationToken>").append(escape(continuationToken))
+          .append("</ContinuationToken>");
+    }
+    result.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+    if (truncated) {
+      result.append("<NextContinuationToken>").append(encodeToken(last))
+          .append("</NextContinuationToken>");
+    }
+    for (final Map.Entry<String, StoredObject> entry : contents) {
+      final StoredObject object = entry.getValue();
+      result.append("<Contents><Key>").append(escape(encode(entry.getKey(), urlEncoding)))
+          .append("</Key><LastModified>").append(ISO_DATE.format(object.lastModified))
+          .append("</LastModified><ETag>").append(escape(quote(object.eTag)))
+          .append("</ETag><Size>").append(object.content.length)
+          .append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+    }
+    for (final String commonPrefix : commonPrefixes) {
+      result.append("<CommonPrefixes><Prefix>").append(escape(encode(commonPrefix, urlEncoding)))
+          .append("</Prefix></CommonPrefixes>");
+    }
+    sendXml(exchange, 200, result.append("</ListBucketResult>").toString());
+  }
+
+  private static byte[] readBody(final HttpExchange exchange) throws IOException {
+    final Headers headers = exchange.getRequestHeaders();
+    final String contentSha256 = headers.getFirst("x-amz-content-sha256");
+    final byte[] body = readFully(exchange.getRequestBody());
+    if (contentSha256 == null || !contentSha256.startsWith("STREAMING-")) {
+      return body;
+    }
+    final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+    int position = 0;
+    while (position < body.length) {
+      int lineEnd = position;
+      while (body[lineEnd] != '\r') {
+        lineEnd++;
+      }
+      final String header = new String(body, position, lineEnd - position, StandardCharsets.UTF_8);
+      final int size = Integer.parseInt(header.split(";", 2)[0], 16);
+      if (size == 0) {
+        break;
+      }
+      decoded.write(body, lineEnd + 2, size);
+      position = lineEnd + 2 + size + 2;
+    }
+    return decoded.toByteArray();
+  }
+
+  private static byte[] readFully(final InputStream inputStream) throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[64 * 1024];
+    int read;
+    while ((read = inputStream.read(buffer)) >= 0) {
+      outputStream.write(buffer, 0, read);
+    }
+    return outputStream.toByteArray();
+  }
+
+  private static String contentType(final Headers headers) {
+    final String contentType = headers.getFirst("Content-Type");
+    return contentType == null ? "application/octet-stream" : contentType;
+  }
+
+  private static Map<String, String> userMetadata(final Headers headers) {
+    final Map<String, String> userMetadata = new TreeMap<String, String>();
+    for (final Map.Entry<String, List<String>> entry : headers.entrySet()) {
+      final String name = entry.getKey().toLowerCase();
+      if (name.startsWith(USER_METADATA_PREFIX)) {
+        userMetadata.put(name.substring(USER_METADATA_PREFIX.length()), entry.getValue().get(0));
+      }
+    }
+    return userMetadata;
+  }
+
+  private static void sendXml(final HttpExchange exchange, final int status, final String xml)
+      throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/xml");
+    send(exchange, status, ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml)
+        .getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void sendError(final HttpExchange exchange, final int status, final String code,
+      final String resource) throws IOException {
+    if ("HEAD".equals(exchange.getRequestMethod())) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+    sendXml(exchange, status, "<Error><Code>" + code + "</Code><Message>" + code
+        + "</Message><Resource>" + escape(resource) + "</Resource><RequestId>local</RequestId>"
+        + "</Error>");
+  }
+
+  private static void send(final HttpExchange exchange, final int status, final byte[] body)
+      throws IOException {
+    if (body.length == 0 || "HEAD".equals(exchange.getRequestMethod())) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream outputStream = exchange.getResponseBody()) {
+      outputStream.write(body);
+    }
+  }
+
+  private static Map<String, String> parseQuery(final String rawQuery) {
+    final Map<String, String> query = new HashMap<String, String>();
+    if (rawQuery == null) {
+      return query;
+    }
+    for (final String parameter : rawQuery.split("&")) {
+      final int equals = parameter.indexOf('=');
+      if (equals < 0) {
+        query.put(decode(parameter), "");
+      } else {
+        query.put(decode(parameter.substring(0, equals)), decode(parameter.substring(equals + 1)));
+      }
+    }
+    return query;
+  }
+
+  private static String decode(final String value) {
+    try {
+      return URLDecoder.decode(value, "UTF-8");
+    } catch (final UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String encode(final String value, final boolean urlEncoding) {
+    if (!urlEncoding) {
+      return value;
+    }
+    try {
+      return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+    } catch (final UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String encodeToken(final String key) {
+    return Base64.getUrlEncoder().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String decodeToken(final String token) {
+    return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+  }
+
+  private static String emptyToNull(final String value) {
+    return value == null || value.isEmpty() ? null : value;
+  }
+
+  private static String quote(final String eTag) {
+    return "\"" + eTag + "\"";
+  }
+
+  private static String unquote(final String eTag) {
+    return eTag.replace("\"", "");
+  }
+
+  private static String escape(final String value) {
+    return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+        .replace("\"", "&quot;").replace("'", "&apos;");
+  }
+
+  private static String unescape(final String value) {
+    return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+        .replace("&apos;", "'").replace("&amp;", "&");
+  }
+
+  private static class StoredObject {
+    private final byte[] content;
+    private final String eTag;
+    private final String contentType;
+    private final Map<String, String> userMetadata;
+    private final Instant lastModified = Instant.now();
+
+    StoredObject(final byte[] content, final String contentType,
+        final Map<String, String> userMetadata) {
+      this(content, BinaryUtils.toHex(Md5Utils.computeMD5Hash(content)), contentType,
+          userMetadata);
+    }
+
+    StoredObject(final byte[] content, final String eTag, final String contentType,
+        final Map<String, String> userMetadata) {
+      this.content = content;
+      this.eTag = eTag;
+      this.contentType = contentType;
+      this.userMetadata = userMetadata;
+    }
+  }
+
+  private static class PendingUpload {
+    private final Map<Integer, byte[]> parts = new ConcurrentHashMap<Integer, byte[]>();
+    private final String contentType;
+    private final Map<String, String> userMetadata;
+
+    PendingUpload(final String contentType, final Map<String, String> userMetadata) {
+      this.contentType = contentType;
+      this.userMetadata = userMetadata;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+public class ObjectOperationBenchmark extends LocalS3Benchmark {
+  private static final String EXISTING_KEY = "exists/present";
+  private static final String MISSING_KEY = "exists/missing";
+
+  @Setup(Level.Trial)
+  public void createObjects() {
+    this.amazonS3.putObject(BUCKET, EXISTING_KEY, "x");
+  }
+
+  @Benchmark
+  public boolean existsPresent() {
+    return this.s3Service.informationService().fileExists(EXISTING_KEY);
+  }
+
+  @Benchmark
+  public boolean existsMissing() {
+    return this.s3Service.informationService().fileExists(MISSING_KEY);
+  }
+
+  @Benchmark
+  public void move(final ThreadKeys keys) {
+    this.s3Service.modificationService().moveFile(keys.source, keys.destination);
+    keys.swap();
+  }
+
+  @Benchmark
+  public void delete(final ThreadKeys keys) {
+    this.s3Service.modificationService().deleteFile(keys.deleted);
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadKeys {
+    private String source;
+    private String destination;
+    private String deleted;
+
+    @Setup(Level.Trial)
+    public void setUp(final ObjectOperationBenchmark benchmark) {
+      final String id = Long.toString(Thread.currentThread().getId());
+      this.source = "move/" + id + "/a";
+      this.destination = "move/" + id + "/b";
+      this.deleted = "delete/" + id;
+      benchmark.amazonS3.putObject(BUCKET, this.source, "x");
+    }
+
+    @Setup(Level.Invocation)
+    public void createDeleted(final ObjectOperationBenchmark benchmark) {
+      benchmark.amazonS3.putObject(BUCKET, this.deleted, "x");
+    }
+
+    void swap() {
+      final String previousSource = this.source;
+      this.source = this.destination;
+      this.destination = previousSource;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+public class TransferBenchmark extends LocalS3Benchmark {
+  private static final String DOWNLOAD_KEY = "download/object";
+
+  @Param({"1024", "1048576", "16777216"})
+  public int objectSize;
+
+  private File sourceFile;
+
+  @Setup(Level.Trial)
+  public void createObject() throws IOException {
+    final byte[] content = new byte[this.objectSize];
+    new Random(this.objectSize).nextBytes(content);
+    this.sourceFile = File.createTempFile("benchmark", ".bin");
+    Files.write(this.sourceFile.toPath(), content);
+    this.s3Service.uploadService().uploadFile(this.sourceFile, DOWNLOAD_KEY);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteObject() throws IOException {
+    Files.deleteIfExists(this.sourceFile.toPath());
+  }
+
+  @Benchmark
+  public void upload(final ThreadFiles threadFiles) {
+    this.s3Service.uploadService().uploadFile(this.sourceFile, threadFiles.key);
+  }
+
+  @Benchmark
+  public long downloadToStream() throws IOException {
+    return this.s3Service.downloadService().downloadTo(DOWNLOAD_KEY, new DiscardingOutputStream());
+  }
+
+  @Benchmark
+  public File downloadFile(final ThreadFiles threadFiles) throws IOException {
+    return this.s3Service.downloadService().downloadFile(DOWNLOAD_KEY, threadFiles.file);
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadFiles {
+    private String key;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      this.file = File.createTempFile("benchmark", ".download");
+      this.key = "upload/" + this.file.getName();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      Files.deleteIfExists(this.file.toPath());
+    }
+  }
+
+  private static class DiscardingOutputStream extends OutputStream {
+    @Override
+    public void write(final int b) {
+      // discard
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+      // discard
+    }
+  }
+}
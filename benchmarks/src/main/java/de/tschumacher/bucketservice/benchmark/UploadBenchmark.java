@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+public class UploadBenchmark extends LocalS3Benchmark {
+  @Param({"16777216", "67108864"})
+  public int objectSize;
+
+  @Param({"false", "true"})
+  public boolean multipart;
+
+  @Param({"false", "true"})
+  public boolean memoryMapped;
+
+  private File sourceFile;
+
+  @Override
+  protected S3ServiceConfig.Builder configure(final S3ServiceConfig.Builder builder) {
+    return builder.withMemoryMappedUpload(this.memoryMapped).withMultipartUpload(this.multipart)
+        .withMultipartThreshold(S3ServiceConfig.MIN_PART_SIZE)
+        .withPartSize(S3ServiceConfig.MIN_PART_SIZE);
+  }
+
+  @Setup(Level.Trial)
+  public void createFile() throws IOException {
+    final byte[] content = new byte[this.objectSize];
+    new Random(this.objectSize).nextBytes(content);
+    this.sourceFile = File.createTempFile("benchmark", ".bin");
+    Files.write(this.sourceFile.toPath(), content);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(this.sourceFile.toPath());
+  }
+
+  @Benchmark
+  public void uploadFile(final ThreadKey threadKey) {
+    this.s3Service.uploadService().uploadFile(this.sourceFile, threadKey.key);
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadKey {
+    private String key;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      this.key = "upload/" + Thread.currentThread().getId();
+    }
+  }
+}
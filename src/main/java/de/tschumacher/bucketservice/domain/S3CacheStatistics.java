@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.domain;
+
+public class S3CacheStatistics {
+  private final long hits;
+  private final long misses;
+  private final int entries;
+
+
+  public long getHits() {
+    return this.hits;
+  }
+
+  public long getMisses() {
+    return this.misses;
+  }
+
+  public int getEntries() {
+    return this.entries;
+  }
+
+  private S3CacheStatistics(Builder builder) {
+    this.hits = builder.hits;
+    this.misses = builder.misses;
+    this.entries = builder.entries;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private long hits;
+    private long misses;
+    private int entries;
+
+    public Builder withHits(long hits) {
+      this.hits = hits;
+      return this;
+    }
+
+    public Builder withMisses(long misses) {
+      this.misses = misses;
+      return this;
+    }
+
+    public Builder withEntries(int entries) {
+      this.entries = entries;
+      return this;
+    }
+
+    public S3CacheStatistics build() {
+      return new S3CacheStatistics(this);
+    }
+  }
+
+
+}
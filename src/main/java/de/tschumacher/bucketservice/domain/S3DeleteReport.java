@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class S3DeleteReport {
+  private final List<String> deletedKeys;
+  private final Map<String, String> failedKeys;
+
+
+  public List<String> getDeletedKeys() {
+    return this.deletedKeys;
+  }
+
+  public Map<String, String> getFailedKeys() {
+    return this.failedKeys;
+  }
+
+  public boolean isSuccessful() {
+    return this.failedKeys.isEmpty();
+  }
+
+  private S3DeleteReport(Builder builder) {
+    this.deletedKeys = Collections.unmodifiableList(builder.deletedKeys);
+    this.failedKeys = Collections.unmodifiableMap(builder.failedKeys);
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private final List<String> deletedKeys = new ArrayList<String>();
+    private final Map<String, String> failedKeys = new LinkedHashMap<String, String>();
+
+    public Builder withDeletedKey(String key) {
+      this.deletedKeys.add(key);
+      return this;
+    }
+
+    public Builder withFailedKey(String key, String reason) {
+      this.failedKeys.put(key, reason);
+      return this;
+    }
+
+    public Builder withReport(S3DeleteReport report) {
+      this.deletedKeys.addAll(report.getDeletedKeys());
+      this.failedKeys.putAll(report.getFailedKeys());
+      return this;
+    }
+
+    public S3DeleteReport build() {
+      return new S3DeleteReport(this);
+    }
+  }
+
+
+}
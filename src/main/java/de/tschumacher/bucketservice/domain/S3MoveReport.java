@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.domain;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class S3MoveReport {
+  private final Map<String, String> movedKeys;
+  private final Map<String, String> failedKeys;
+
+
+  public Map<String, String> getMovedKeys() {
+    return this.movedKeys;
+  }
+
+  public Map<String, String> getFailedKeys() {
+    return this.failedKeys;
+  }
+
+  public boolean isSuccessful() {
+    return this.failedKeys.isEmpty();
+  }
+
+  private S3MoveReport(Builder builder) {
+    this.movedKeys = Collections.unmodifiableMap(builder.movedKeys);
+    this.failedKeys = Collections.unmodifiableMap(builder.failedKeys);
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private final Map<String, String> movedKeys = new LinkedHashMap<String, String>();
+    private final Map<String, String> failedKeys = new LinkedHashMap<String, String>();
+
+    public Builder withMovedKey(String sourceKey, String destinationKey) {
+      this.movedKeys.put(sourceKey, destinationKey);
+      return this;
+    }
+
+    public Builder withFailedKey(String sourceKey, String reason) {
+      this.failedKeys.put(sourceKey, reason);
+      return this;
+    }
+
+    public S3MoveReport build() {
+      return new S3MoveReport(this);
+    }
+  }
+
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.domain;
+
+import java.time.Duration;
+
+public class S3OperationStatistics {
+  private final long count;
+  private final long errors;
+  private final long bytes;
+  private final Duration p50;
+  private final Duration p90;
+  private final Duration p99;
+  private final Duration max;
+
+
+  public long getCount() {
+    return this.count;
+  }
+
+  public long getErrors() {
+    return this.errors;
+  }
+
+  public long getBytes() {
+    return this.bytes;
+  }
+
+  public Duration getP50() {
+    return this.p50;
+  }
+
+  public Duration getP90() {
+    return this.p90;
+  }
+
+  public Duration getP99() {
+    return this.p99;
+  }
+
+  public Duration getMax() {
+    return this.max;
+  }
+
+  private S3OperationStatistics(Builder builder) {
+    this.count = builder.count;
+    this.errors = builder.errors;
+    this.bytes = builder.bytes;
+    this.p50 = builder.p50;
+    this.p90 = builder.p90;
+    this.p99 = builder.p99;
+    this.max = builder.max;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private long count;
+    private long errors;
+    private long bytes;
+    private Duration p50 = Duration.ZERO;
+    private Duration p90 = Duration.ZERO;
+    private Duration p99 = Duration.ZERO;
+    private Duration max = Duration.ZERO;
+
+    public Builder withCount(long count) {
+      this.count = count;
+      return this;
+    }
+
+    public Builder withErrors(long errors) {
+      this.errors = errors;
+      return this;
+    }
+
+    public Builder withBytes(long bytes) {
+      this.bytes = bytes;
+      return this;
+    }
+
+    public Builder withP50(Duration p50) {
+      this.p50 = p50;
+      return this;
+    }
+
+    public Builder withP90(Duration p90) {
+      this.p90 = p90;
+      return this;
+    }
+
+    public Builder withP99(Duration p99) {
+      this.p99 = p99;
+      return this;
+    }
+
+    public Builder withMax(Duration max) {
+      this.max = max;
+      return this;
+    }
+
+    public S3OperationStatistics build() {
+      return new S3OperationStatistics(this);
+    }
+  }
+
+
+}
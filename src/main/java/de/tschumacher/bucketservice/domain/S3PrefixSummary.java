@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.domain;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class S3PrefixSummary {
+  private final String prefix;
+  private final long totalSize;
+  private final long objectCount;
+  private final Date oldestModified;
+  private final Date newestModified;
+  private final Map<String, S3PrefixSummary> children;
+
+
+  public String getPrefix() {
+    return this.prefix;
+  }
+
+  public long getTotalSize() {
+    return this.totalSize;
+  }
+
+  public long getObjectCount() {
+    return this.objectCount;
+  }
+
+  public Date getOldestModified() {
+    return this.oldestModified;
+  }
+
+  public Date getNewestModified() {
+    return this.newestModified;
+  }
+
+  public Map<String, S3PrefixSummary> getChildren() {
+    return this.children;
+  }
+
+  private S3PrefixSummary(Builder builder) {
+    this.prefix = builder.prefix;
+    this.totalSize = builder.totalSize;
+    this.objectCount = builder.objectCount;
+    this.oldestModified = builder.oldestModified;
+    this.newestModified = builder.newestModified;
+    this.children = Collections.unmodifiableMap(builder.children);
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private String prefix;
+    private long totalSize;
+    private long objectCount;
+    private Date oldestModified;
+    private Date newestModified;
+    private final Map<String, S3PrefixSummary> children =
+        new LinkedHashMap<String, S3PrefixSummary>();
+
+    public Builder withPrefix(String prefix) {
+      this.prefix = prefix;
+      return this;
+    }
+
+    public Builder withTotalSize(long totalSize) {
+      this.totalSize = totalSize;
+      return this;
+    }
+
+    public Builder withObjectCount(long objectCount) {
+      this.objectCount = objectCount;
+      return this;
+    }
+
+    public Builder withOldestModified(Date oldestModified) {
+      this.oldestModified = oldestModified;
+      return this;
+    }
+
+    public Builder withNewestModified(Date newestModified) {
+      this.newestModified = newestModified;
+      return this;
+    }
+
+    public Builder withChild(S3PrefixSummary child) {
+      this.children.put(child.getPrefix(), child);
+      return this;
+    }
+
+    public S3PrefixSummary build() {
+      return new S3PrefixSummary(this);
+    }
+  }
+
+
+}
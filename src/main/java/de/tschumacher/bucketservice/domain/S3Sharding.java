@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.domain;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class S3Sharding {
+  public static final String DEFAULT_DELIMITER = "/";
+  private static final int MAX_HEX_DIGITS = 4;
+
+  private final String delimiter;
+  private final int depth;
+  private final List<String> splitPoints;
+  private final boolean ordered;
+
+
+  public String getDelimiter() {
+    return this.delimiter;
+  }
+
+  public int getDepth() {
+    return this.depth;
+  }
+
+  public List<String> getSplitPoints() {
+    return this.splitPoints;
+  }
+
+  public boolean isOrdered() {
+    return this.ordered;
+  }
+
+  private S3Sharding(Builder builder) {
+    this.delimiter = builder.delimiter;
+    this.depth = builder.depth;
+    this.splitPoints = Collections.unmodifiableList(new ArrayList<String>(builder.splitPoints));
+    this.ordered = builder.ordered;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private String delimiter = DEFAULT_DELIMITER;
+    private int depth = 1;
+    private final List<String> splitPoints = new ArrayList<String>();
+    private boolean ordered;
+
+    public Builder withDelimiter(String delimiter) {
+      this.delimiter = delimiter;
+      return this;
+    }
+
+    public Builder withDepth(int depth) {
+      this.depth = depth;
+      return this;
+    }
+
+    public Builder withSplitPoints(Collection<String> splitPoints) {
+      this.splitPoints.addAll(splitPoints);
+      return this;
+    }
+
+    public Builder withHexShards(int digits) {
+      if (digits < 1 || digits > MAX_HEX_DIGITS) {
+        throw new IllegalArgumentException("hex digits must be between 1 and " + MAX_HEX_DIGITS);
+      }
+      final int shards = 1 << (4 * digits);
+      for (int i = 1; i < shards; i++) {
+        this.splitPoints.add(String.format("%0" + digits + "x", i));
+      }
+      return this;
+    }
+
+    public Builder withDateShards(LocalDate from, LocalDate to, Period step,
+        DateTimeFormatter format) {
+      if (step.isZero() || step.isNegative()) {
+        throw new IllegalArgumentException("date shard step must be positive");
+      }
+      for (LocalDate date = from; !date.isAfter(to); date = date.plus(step)) {
+        this.splitPoints.add(format.format(date));
+      }
+      return this;
+    }
+
+    public Builder withOrdered(boolean ordered) {
+      this.ordered = ordered;
+      return this;
+    }
+
+    public S3Sharding build() {
+      if (this.splitPoints.isEmpty() && (this.delimiter == null || this.delimiter.isEmpty())) {
+        throw new IllegalArgumentException("sharding needs split points or a delimiter");
+      }
+      if (this.depth < 1) {
+        throw new IllegalArgumentException("depth must be at least 1");
+      }
+      return new S3Sharding(this);
+    }
+  }
+
+
+}
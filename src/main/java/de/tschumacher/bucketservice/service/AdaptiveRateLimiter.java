@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import java.util.function.LongSupplier;
+
+class AdaptiveRateLimiter {
+  private static final double NANOS_PER_SECOND = 1e9;
+  private static final long MEASURE_INTERVAL = 500000000L;
+  private static final double MIN_RATE = 1;
+  private static final double DECREASE_FACTOR = 0.7;
+  private static final double RECOVERY_FRACTION = 0.1;
+
+  private final LongSupplier nanoClock;
+  private boolean limited;
+  private double rate;
+  private double recoveryPerSecond;
+  private long nextPermit;
+  private long lastIncrease;
+  private long windowStart;
+  private long windowCount;
+  private double measuredRate;
+
+  AdaptiveRateLimiter() {
+    this(System::nanoTime);
+  }
+
+  AdaptiveRateLimiter(final LongSupplier nanoClock) {
+    super();
+    this.nanoClock = nanoClock;
+    this.windowStart = nanoClock.getAsLong();
+  }
+
+  void acquire() {
+    RetryBackoff.sleep(reserve());
+  }
+
+  synchronized long reserve() {
+    final long now = this.nanoClock.getAsLong();
+    measure(now);
+    if (!this.limited) {
+      return 0;
+    }
+    final long permit = Math.max(this.nextPermit, now);
+    this.nextPermit = permit + (long) (NANOS_PER_SECOND / this.rate);
+    return permit - now;
+  }
+
+  synchronized void onThrottle() {
+    final long now = this.nanoClock.getAsLong();
+    final double current = this.limited ? this.rate : Math.max(this.measuredRate, windowRate(now));
+    this.rate = Math.max(MIN_RATE, current * DECREASE_FACTOR);
+    this.recoveryPerSecond = Math.max(MIN_RATE, this.rate * RECOVERY_FRACTION);
+    this.lastIncrease = now;
+    this.limited = true;
+  }
+
+  synchronized void onSuccess() {
+    if (!this.limited) {
+      return;
+    }
+    final long now = this.nanoClock.getAsLong();
+    this.rate += this.recoveryPerSecond * (now - this.lastIncrease) / NANOS_PER_SECOND;
+    this.lastIncrease = now;
+    if (this.measuredRate > 0 && this.rate >= 2 * this.measuredRate) {
+      this.limited = false;
+    }
+  }
+
+  synchronized boolean isLimited() {
+    return this.limited;
+  }
+
+  synchronized double getRate() {
+    return this.limited ? this.rate : Double.POSITIVE_INFINITY;
+  }
+
+  private void measure(final long now) {
+    this.windowCount++;
+    if (now - this.windowStart >= MEASURE_INTERVAL) {
+      this.measuredRate = windowRate(now);
+      this.windowStart = now;
+      this.windowCount = 0;
+    }
+  }
+
+  private double windowRate(final long now) {
+    final long elapsed = Math.max(1, now - this.windowStart);
+    return this.windowCount * NANOS_PER_SECOND / elapsed;
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import de.tschumacher.bucketservice.service.download.AsyncS3DownloadService;
+import de.tschumacher.bucketservice.service.information.AsyncS3InformationService;
+import de.tschumacher.bucketservice.service.modification.AsyncS3ModificationService;
+import de.tschumacher.bucketservice.service.sync.AsyncS3SyncService;
+import de.tschumacher.bucketservice.service.upload.AsyncS3UploadService;
+
+public interface AsyncS3Service {
+
+  AsyncS3UploadService uploadService();
+
+  AsyncS3DownloadService downloadService();
+
+  AsyncS3InformationService informationService();
+
+  AsyncS3ModificationService modificationService();
+
+  AsyncS3SyncService syncService();
+}
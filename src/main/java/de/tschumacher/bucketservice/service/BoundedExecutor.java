@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+class BoundedExecutor {
+  private final Executor delegate;
+  private final int limit;
+  private final Queue<Task> queue = new ArrayDeque<Task>();
+  private int running;
+
+  BoundedExecutor(Executor delegate, int limit) {
+    this.delegate = delegate;
+    this.limit = limit;
+  }
+
+  void execute(final Task task) {
+    synchronized (this) {
+      if (this.running >= this.limit) {
+        this.queue.add(task);
+        return;
+      }
+      this.running++;
+    }
+    dispatch(task);
+  }
+
+  private void dispatch(final Task task) {
+    try {
+      this.delegate.execute(() -> {
+        try {
+          task.run();
+        } finally {
+          next();
+        }
+      });
+    } catch (final RejectedExecutionException e) {
+      // nothing queued behind a rejected task would ever be dispatched
+      final List<Task> rejected;
+      synchronized (this) {
+        rejected = new ArrayList<Task>(this.queue);
+        this.queue.clear();
+        this.running--;
+      }
+      task.reject(e);
+      for (final Task queued : rejected) {
+        queued.reject(e);
+      }
+    }
+  }
+
+  private void next() {
+    final Task task;
+    synchronized (this) {
+      task = this.queue.poll();
+      if (task == null) {
+        this.running--;
+        return;
+      }
+    }
+    dispatch(task);
+  }
+
+  interface Task extends Runnable {
+    void reject(RejectedExecutionException e);
+  }
+}
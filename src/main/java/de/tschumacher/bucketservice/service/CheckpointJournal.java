@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.amazonaws.util.BinaryUtils;
+
+public final class CheckpointJournal implements Closeable {
+  private static final String SUFFIX = ".journal";
+  private static final char SEPARATOR = '\n';
+
+  private final Path path;
+  private final FileChannel channel;
+  private List<String> records;
+  private long length;
+
+  private CheckpointJournal(final Path path, final FileChannel channel,
+      final List<String> records, final long length) {
+    this.path = path;
+    this.channel = channel;
+    this.records = records;
+    this.length = length;
+  }
+
+  public static CheckpointJournal open(final File directory, final String... identity)
+      throws IOException {
+    Files.createDirectories(directory.toPath());
+    final Path path = directory.toPath().resolve(name(identity) + SUFFIX);
+    final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      final byte[] content = Files.readAllBytes(path);
+      int end = content.length;
+      while (end > 0 && content[end - 1] != SEPARATOR) {
+        end--;
+      }
+      final List<String> records = new ArrayList<String>();
+      if (end > 0) {
+        records.addAll(Arrays.asList(
+            new String(content, 0, end - 1, StandardCharsets.UTF_8).split("\n", -1)));
+      }
+      // drops a record that was torn by a crash while it was appended
+      channel.truncate(end);
+      return new CheckpointJournal(path, channel, records, end);
+    } catch (final IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public synchronized List<String> getRecords() {
+    return Collections.unmodifiableList(new ArrayList<String>(this.records));
+  }
+
+  public synchronized void append(final String record) throws IOException {
+    if (record.indexOf(SEPARATOR) >= 0) {
+      throw new IllegalArgumentException("record must be a single line");
+    }
+    final ByteBuffer buffer =
+        ByteBuffer.wrap((record + SEPARATOR).getBytes(StandardCharsets.UTF_8));
+    while (buffer.hasRemaining()) {
+      this.length += this.channel.write(buffer, this.length);
+    }
+    this.channel.force(false);
+    this.records.add(record);
+  }
+
+  public synchronized void reset() throws IOException {
+    this.channel.truncate(0);
+    this.channel.force(false);
+    this.length = 0;
+    this.records = new ArrayList<String>();
+  }
+
+  public synchronized void delete() throws IOException {
+    close();
+    Files.deleteIfExists(this.path);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    this.channel.close();
+  }
+
+  private static String name(final String... identity) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (final String part : identity) {
+        digest.update(part.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+      }
+      return BinaryUtils.toHex(digest.digest());
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import com.amazonaws.services.s3.AmazonS3;
+
+import de.tschumacher.bucketservice.service.download.AsyncS3DownloadService;
+import de.tschumacher.bucketservice.service.download.DefaultAsyncS3DownloadService;
+import de.tschumacher.bucketservice.service.information.AsyncS3InformationService;
+import de.tschumacher.bucketservice.service.information.DefaultAsyncS3InformationService;
+import de.tschumacher.bucketservice.service.modification.AsyncS3ModificationService;
+import de.tschumacher.bucketservice.service.modification.DefaultAsyncS3ModificationService;
+import de.tschumacher.bucketservice.service.sync.AsyncS3SyncService;
+import de.tschumacher.bucketservice.service.sync.DefaultAsyncS3SyncService;
+import de.tschumacher.bucketservice.service.upload.AsyncS3UploadService;
+import de.tschumacher.bucketservice.service.upload.DefaultAsyncS3UploadService;
+
+public class DefaultAsyncS3Service implements AsyncS3Service {
+
+  private final AsyncS3UploadService asyncUploadService;
+  private final AsyncS3DownloadService asyncDownloadService;
+  private final AsyncS3InformationService asyncInformationService;
+  private final AsyncS3ModificationService asyncModificationService;
+  private final AsyncS3SyncService asyncSyncService;
+
+  public DefaultAsyncS3Service(final AmazonS3 amazonS3, final String bucket,
+      final S3ServiceConfig config) {
+    this(new DefaultS3Service(amazonS3, bucket, config), config);
+  }
+
+  public DefaultAsyncS3Service(final S3Service s3Service, final S3ServiceConfig config) {
+    this(s3Service, new S3AsyncExecutor(config));
+  }
+
+  public DefaultAsyncS3Service(final S3Service s3Service, final S3AsyncExecutor executor) {
+    super();
+    this.asyncUploadService =
+        new DefaultAsyncS3UploadService(s3Service.uploadService(), executor);
+    this.asyncDownloadService =
+        new DefaultAsyncS3DownloadService(s3Service.downloadService(), executor);
+    this.asyncInformationService =
+        new DefaultAsyncS3InformationService(s3Service.informationService(), executor);
+    this.asyncModificationService =
+        new DefaultAsyncS3ModificationService(s3Service.modificationService(), executor);
+    this.asyncSyncService = new DefaultAsyncS3SyncService(s3Service.syncService(), executor);
+  }
+
+
+  @Override
+  public AsyncS3UploadService uploadService() {
+    return this.asyncUploadService;
+  }
+
+
+  @Override
+  public AsyncS3DownloadService downloadService() {
+    return this.asyncDownloadService;
+  }
+
+
+  @Override
+  public AsyncS3InformationService informationService() {
+    return this.asyncInformationService;
+  }
+
+
+  @Override
+  public AsyncS3ModificationService modificationService() {
+    return this.asyncModificationService;
+  }
+
+
+  @Override
+  public AsyncS3SyncService syncService() {
+    return this.asyncSyncService;
+  }
+}
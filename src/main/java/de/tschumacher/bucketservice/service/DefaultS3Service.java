@@ -13,10 +13,16 @@
  */
 package de.tschumacher.bucketservice.service;
 
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
@@ -25,31 +31,85 @@ import de.tschumacher.bucketservice.service.download.DefaultS3DownloadService;
 import de.tschumacher.bucketservice.service.download.S3DownloadService;
 import de.tschumacher.bucketservice.service.information.DefaultS3InformationService;
 import de.tschumacher.bucketservice.service.information.S3InformationService;
+import de.tschumacher.bucketservice.service.metrics.MeteredS3DownloadService;
+import de.tschumacher.bucketservice.service.metrics.MeteredS3InformationService;
+import de.tschumacher.bucketservice.service.metrics.MeteredS3ModificationService;
+import de.tschumacher.bucketservice.service.metrics.MeteredS3SyncService;
+import de.tschumacher.bucketservice.service.metrics.MeteredS3UploadService;
+import de.tschumacher.bucketservice.service.metrics.S3Metrics;
 import de.tschumacher.bucketservice.service.modification.DefaultS3ModificationService;
 import de.tschumacher.bucketservice.service.modification.S3ModificationService;
+import de.tschumacher.bucketservice.service.sync.DefaultS3SyncService;
+import de.tschumacher.bucketservice.service.sync.S3SyncService;
 import de.tschumacher.bucketservice.service.upload.DefaultS3UploadService;
 import de.tschumacher.bucketservice.service.upload.S3UploadService;
 
-public class DefaultS3Service implements S3Service {
+public class DefaultS3Service implements S3Service, Closeable {
   private static final Regions DEFAULT_REGION = Regions.EU_CENTRAL_1;
 
   private final S3UploadService s3UploadService;
   private final S3ModificationService s3ModificationService;
   private final S3InformationService s3InformationService;
   private final S3DownloadService s3DownloadService;
+  private final S3SyncService s3SyncService;
+  private final ExecutorService executor;
 
   public DefaultS3Service(final AmazonS3 amazonS3, final String bucket) {
+    this(amazonS3, bucket, S3ServiceConfig.defaults());
+  }
+
+  public DefaultS3Service(final AmazonS3 s3Client, final String bucket,
+      final S3ServiceConfig config) {
     super();
-    this.s3UploadService = new DefaultS3UploadService(amazonS3, bucket);
-    this.s3DownloadService = new DefaultS3DownloadService(amazonS3, bucket);
-    this.s3InformationService = new DefaultS3InformationService(amazonS3, bucket);
-    this.s3ModificationService = new DefaultS3ModificationService(amazonS3, bucket);
+    final AmazonS3 amazonS3 = ResilientAmazonS3.wrap(s3Client, config);
+    final ExecutorService executor = S3Executors.newTransferExecutor(config.getParallelism());
+    this.executor = executor;
+    final DefaultS3InformationService informationService =
+        new DefaultS3InformationService(amazonS3, bucket, config, executor);
+    final DefaultS3UploadService uploadService =
+        new DefaultS3UploadService(amazonS3, bucket, config, executor);
+    final DefaultS3ModificationService modificationService =
+        new DefaultS3ModificationService(amazonS3, bucket, config, executor);
+    uploadService.addChangeListener(informationService);
+    modificationService.addChangeListener(informationService);
+    modificationService.addChangeListener(uploadService);
+    final DefaultS3DownloadService downloadService =
+        new DefaultS3DownloadService(amazonS3, bucket, config, executor);
+    final S3Metrics metrics = config.getMetrics();
+    if (metrics == null) {
+      this.s3UploadService = uploadService;
+      this.s3DownloadService = downloadService;
+      this.s3InformationService = informationService;
+      this.s3ModificationService = modificationService;
+      this.s3SyncService = new DefaultS3SyncService(uploadService, downloadService,
+          informationService, modificationService, config);
+    } else {
+      this.s3UploadService = new MeteredS3UploadService(uploadService, metrics);
+      this.s3DownloadService = new MeteredS3DownloadService(downloadService, metrics);
+      this.s3InformationService = new MeteredS3InformationService(informationService, metrics);
+      this.s3ModificationService = new MeteredS3ModificationService(modificationService, metrics);
+      this.s3SyncService = new MeteredS3SyncService(new DefaultS3SyncService(uploadService,
+          downloadService, informationService, modificationService, config), metrics);
+    }
+  }
+
+
+  public DefaultS3Service(final String bucket, final String accessKey, final String secretKey,
+      Regions region, final S3ServiceConfig config) {
+    this(bucket, createCredentialsProvider(accessKey, secretKey), region, config);
+  }
+
+
+  public DefaultS3Service(final String bucket,
+      final AWSCredentialsProvider credentialsProvider, Regions region,
+      final S3ServiceConfig config) {
+    this(createAmazonS3Service(credentialsProvider, region, config), bucket, config);
   }
 
 
   public DefaultS3Service(final String bucket, final String accessKey, final String secretKey,
       Regions region) {
-    this(createAmazonS3Service(accessKey, secretKey, region), bucket);
+    this(bucket, accessKey, secretKey, region, S3ServiceConfig.defaults());
   }
 
 
@@ -57,18 +117,66 @@ public class DefaultS3Service implements S3Service {
     this(bucket, accessKey, secretKey, DEFAULT_REGION);
   }
 
-  private static AmazonS3 createAmazonS3Service(final String accessKey, final String secretKey,
-      Regions region) {
+  private static AWSCredentialsProvider createCredentialsProvider(final String accessKey,
+      final String secretKey) {
     final AWSCredentials credentials = new BasicAWSCredentials(accessKey, secretKey);
-    final AWSCredentialsProvider credentialsProvider =
-        new AWSStaticCredentialsProvider(credentials);
-    final AmazonS3 amazonS3 =
-        AmazonS3ClientBuilder.standard().withCredentials(credentialsProvider).withRegion(region)
-            .build();
-    return amazonS3;
+    return new AWSStaticCredentialsProvider(credentials);
+  }
+
+  private static AmazonS3 createAmazonS3Service(
+      final AWSCredentialsProvider credentialsProvider, Regions region,
+      final S3ServiceConfig config) {
+    final AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+        .withCredentials(credentialsProvider)
+        .withClientConfiguration(createClientConfiguration(config))
+        .withPathStyleAccessEnabled(config.isPathStyleAccess());
+    if (config.getEndpoint() != null) {
+      builder.withEndpointConfiguration(
+          new EndpointConfiguration(config.getEndpoint(), region.getName()));
+    } else {
+      builder.withRegion(region);
+    }
+    return builder.build();
+  }
+
+  static ClientConfiguration createClientConfiguration(final S3ServiceConfig config) {
+    final ClientConfiguration clientConfiguration = new ClientConfiguration()
+        .withMaxConnections(config.getMaxConnections())
+        .withTcpKeepAlive(config.isTcpKeepAlive()).withGzip(config.isGzip());
+    if (config.getConnectionTtl() != null) {
+      clientConfiguration.setConnectionTTL(config.getConnectionTtl().toMillis());
+    }
+    if (config.getConnectionTimeout() != null) {
+      clientConfiguration.setConnectionTimeout(toMillis(config.getConnectionTimeout()));
+    }
+    if (config.getSocketTimeout() != null) {
+      clientConfiguration.setSocketTimeout(toMillis(config.getSocketTimeout()));
+    }
+    if (config.getRequestTimeout() != null) {
+      clientConfiguration.setRequestTimeout(toMillis(config.getRequestTimeout()));
+    }
+    if (config.getRetryPolicy() != null) {
+      clientConfiguration.setRetryPolicy(config.getRetryPolicy());
+    }
+    if (config.getBackoffRetries() > 0) {
+      // the resilient client already retries with backoff, client retries would multiply them
+      clientConfiguration.setMaxErrorRetry(0);
+    } else if (config.getMaxErrorRetry() >= 0) {
+      clientConfiguration.setMaxErrorRetry(config.getMaxErrorRetry());
+    }
+    return clientConfiguration;
   }
 
+  private static int toMillis(final Duration duration) {
+    return (int) Math.min(Integer.MAX_VALUE, duration.toMillis());
+  }
+
+
 
+  @Override
+  public void close() {
+    this.executor.shutdown();
+  }
 
   @Override
   public S3UploadService uploadService() {
@@ -94,5 +202,11 @@ public class DefaultS3Service implements S3Service {
   }
 
 
+  @Override
+  public S3SyncService syncService() {
+    return this.s3SyncService;
+  }
+
+
 
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.amazonaws.HttpMethod;
+
+class PresignedUrlCache {
+  private final Map<String, CacheEntry> entries;
+  private final double minLifetimeRatio;
+
+  PresignedUrlCache(final int maxEntries, final double minLifetimeRatio) {
+    this.minLifetimeRatio = minLifetimeRatio;
+    this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  synchronized URL get(final HttpMethod method, final String key, final long now,
+      final long lifetime) {
+    final CacheEntry entry = this.entries.get(createCacheKey(method, key));
+    if (entry == null) {
+      return null;
+    }
+    final long remaining = entry.expiration - now;
+    if (remaining > lifetime || remaining < lifetime * this.minLifetimeRatio) {
+      return null;
+    }
+    return entry.url;
+  }
+
+  synchronized void put(final HttpMethod method, final String key, final URL url,
+      final long expiration) {
+    this.entries.put(createCacheKey(method, key), new CacheEntry(url, expiration));
+  }
+
+  private String createCacheKey(final HttpMethod method, final String key) {
+    return method.name() + ' ' + key;
+  }
+
+  private static class CacheEntry {
+    private final URL url;
+    private final long expiration;
+
+    CacheEntry(URL url, long expiration) {
+      this.url = url;
+      this.expiration = expiration;
+    }
+  }
+}
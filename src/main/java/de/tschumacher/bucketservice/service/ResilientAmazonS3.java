@@ -0,0 +1,319 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+import de.tschumacher.bucketservice.service.metrics.LatencyHistogram;
+
+final class ResilientAmazonS3 implements InvocationHandler {
+  static final int MIN_HEDGE_SAMPLES = 20;
+  private static final int SERVICE_UNAVAILABLE = 503;
+  private static final long HEDGE_COST = 1000;
+  private static final long HEDGE_CREDIT = 100;
+  private static final long MAX_HEDGE_BUDGET = 10 * HEDGE_COST;
+  private static final Set<String> LOCAL_METHODS = new HashSet<String>(Arrays.asList(
+      "generatePresignedUrl", "shutdown", "getUrl", "getRegion", "getRegionName",
+      "getCachedResponseMetadata", "waiters", "setEndpoint", "setRegion", "setS3ClientOptions"));
+  private static final Set<String> RETRYABLE_METHODS = new HashSet<String>(Arrays.asList(
+      "getObject", "getObjectMetadata", "getObjectAsString", "doesObjectExist",
+      "doesBucketExistV2", "listObjects", "listObjectsV2", "listNextBatchOfObjects",
+      "listParts", "listMultipartUploads", "putObject", "uploadPart", "copyObject", "copyPart",
+      "deleteObject", "deleteObjects", "abortMultipartUpload"));
+  private static final Set<String> HEDGED_METHODS = new HashSet<String>(
+      Arrays.asList("getObjectMetadata", "doesObjectExist", "listObjectsV2", "getObject"));
+
+  private final AmazonS3 amazonS3;
+  private final int maxRetries;
+  private final RetryBackoff backoff;
+  private final AdaptiveRateLimiter rateLimiter;
+  private final boolean hedgedReads;
+  private final double hedgePercentile;
+  private final long hedgeMaxSize;
+  private final ExecutorService hedgeExecutor;
+  private final Map<String, LatencyHistogram> latencies =
+      new ConcurrentHashMap<String, LatencyHistogram>();
+  private final AtomicLong hedgeBudget = new AtomicLong();
+
+  private ResilientAmazonS3(final AmazonS3 amazonS3, final S3ServiceConfig config) {
+    super();
+    this.amazonS3 = amazonS3;
+    this.maxRetries = config.getBackoffRetries();
+    this.backoff = new RetryBackoff(config.getBackoffBaseDelay(), config.getBackoffMaxDelay());
+    this.rateLimiter = config.isAdaptiveRateLimit() ? new AdaptiveRateLimiter() : null;
+    this.hedgedReads = config.isHedgedReads();
+    this.hedgePercentile = config.getHedgePercentile();
+    this.hedgeMaxSize = config.getHedgeMaxSize();
+    this.hedgeExecutor = this.hedgedReads ? S3Executors.newHedgeExecutor() : null;
+  }
+
+  static AmazonS3 wrap(final AmazonS3 amazonS3, final S3ServiceConfig config) {
+    if (config.getBackoffRetries() == 0 && !config.isAdaptiveRateLimit()
+        && !config.isHedgedReads()) {
+      return amazonS3;
+    }
+    return (AmazonS3) Proxy.newProxyInstance(AmazonS3.class.getClassLoader(),
+        new Class<?>[] {AmazonS3.class}, new ResilientAmazonS3(amazonS3, config));
+  }
+
+  @Override
+  public Object invoke(final Object proxy, final Method method, final Object[] args)
+      throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      return invokeObjectMethod(proxy, method, args);
+    }
+    if (LOCAL_METHODS.contains(method.getName())) {
+      return invokeDirect(method, args);
+    }
+    final List<InputStream> bodies = getBodies(args);
+    final boolean replayable =
+        RETRYABLE_METHODS.contains(method.getName()) && isReplayable(bodies);
+    if (replayable) {
+      for (final InputStream body : bodies) {
+        body.mark(Integer.MAX_VALUE);
+      }
+    }
+    int attempt = 0;
+    while (true) {
+      if (this.rateLimiter != null) {
+        this.rateLimiter.acquire();
+      }
+      try {
+        final Object result =
+            isHedgeable(method, args) ? invokeHedged(method, args) : invokeDirect(method, args);
+        if (this.rateLimiter != null) {
+          this.rateLimiter.onSuccess();
+        }
+        return result;
+      } catch (final AmazonClientException e) {
+        if (this.rateLimiter != null && isThrottled(e)) {
+          this.rateLimiter.onThrottle();
+        }
+        if (!replayable || attempt >= this.maxRetries || !S3Retries.isRetryable(e)
+            || !reset(bodies)) {
+          throw e;
+        }
+        RetryBackoff.sleep(this.backoff.delayNanos(attempt++));
+      }
+    }
+  }
+
+  private Object invokeHedged(final Method method, final Object[] args) throws Throwable {
+    final LatencyHistogram histogram =
+        this.latencies.computeIfAbsent(method.getName(), name -> new LatencyHistogram());
+    this.hedgeBudget.accumulateAndGet(HEDGE_CREDIT,
+        (budget, credit) -> Math.min(MAX_HEDGE_BUDGET, budget + credit));
+    final long hedgeDelay = hedgeDelayNanos(histogram);
+    if (hedgeDelay < 0) {
+      final long start = System.nanoTime();
+      final Object result = invokeDirect(method, args);
+      histogram.record(System.nanoTime() - start);
+      return result;
+    }
+    final CompletableFuture<Object> result = new CompletableFuture<Object>();
+    final AtomicInteger pending = new AtomicInteger(1);
+    submit(method, args, result, pending, histogram);
+    try {
+      return result.get(hedgeDelay, TimeUnit.NANOSECONDS);
+    } catch (final TimeoutException e) {
+      if (consumeHedgeBudget()) {
+        pending.incrementAndGet();
+        submit(method, args, result, pending, null);
+      }
+      return await(result);
+    } catch (final ExecutionException e) {
+      throw e.getCause();
+    } catch (final InterruptedException e) {
+      abandon(result);
+      Thread.currentThread().interrupt();
+      throw new AbortedException("interrupted while waiting for " + method.getName(), e);
+    }
+  }
+
+  private void submit(final Method method, final Object[] args,
+      final CompletableFuture<Object> result, final AtomicInteger pending,
+      final LatencyHistogram histogram) {
+    this.hedgeExecutor.execute(() -> {
+      final long start = System.nanoTime();
+      try {
+        final Object value = invokeDirect(method, args);
+        if (histogram != null) {
+          histogram.record(System.nanoTime() - start);
+        }
+        if (!result.complete(value)) {
+          discard(value);
+        }
+      } catch (final Throwable e) {
+        if (pending.decrementAndGet() == 0) {
+          result.completeExceptionally(e);
+        }
+      }
+    });
+  }
+
+  private long hedgeDelayNanos(final LatencyHistogram histogram) {
+    if (histogram.count() < MIN_HEDGE_SAMPLES) {
+      return -1;
+    }
+    return histogram.percentile(this.hedgePercentile);
+  }
+
+  private boolean consumeHedgeBudget() {
+    while (true) {
+      final long budget = this.hedgeBudget.get();
+      if (budget < HEDGE_COST) {
+        return false;
+      }
+      if (this.hedgeBudget.compareAndSet(budget, budget - HEDGE_COST)) {
+        return true;
+      }
+    }
+  }
+
+  private boolean isHedgeable(final Method method, final Object[] args) {
+    if (!this.hedgedReads || !HEDGED_METHODS.contains(method.getName())
+        || (this.rateLimiter != null && this.rateLimiter.isLimited())) {
+      return false;
+    }
+    if (!"getObject".equals(method.getName())) {
+      return true;
+    }
+    if (args == null || args.length != 1 || !(args[0] instanceof GetObjectRequest)) {
+      return false;
+    }
+    final long[] range = ((GetObjectRequest) args[0]).getRange();
+    return range != null && range[1] - range[0] < this.hedgeMaxSize;
+  }
+
+  private Object invokeDirect(final Method method, final Object[] args) throws Throwable {
+    try {
+      return method.invoke(this.amazonS3, args);
+    } catch (final InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private Object invokeObjectMethod(final Object proxy, final Method method,
+      final Object[] args) {
+    switch (method.getName()) {
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      default:
+        return getClass().getSimpleName() + "[" + this.amazonS3 + "]";
+    }
+  }
+
+  private static Object await(final CompletableFuture<Object> result) throws Throwable {
+    try {
+      return result.get();
+    } catch (final ExecutionException e) {
+      throw e.getCause();
+    } catch (final InterruptedException e) {
+      abandon(result);
+      Thread.currentThread().interrupt();
+      throw new AbortedException("interrupted while waiting for hedged request", e);
+    }
+  }
+
+  private static void abandon(final CompletableFuture<Object> result) {
+    // nobody is left to read the winning response, so release it once it arrives
+    result.thenAccept(ResilientAmazonS3::discard);
+  }
+
+  private static void discard(final Object value) {
+    if (value instanceof S3Object) {
+      ((S3Object) value).getObjectContent().abort();
+    }
+  }
+
+  private static List<InputStream> getBodies(final Object[] args) {
+    if (args == null) {
+      return Collections.emptyList();
+    }
+    final List<InputStream> bodies = new ArrayList<InputStream>();
+    for (final Object arg : args) {
+      if (arg instanceof InputStream) {
+        bodies.add((InputStream) arg);
+      } else if (arg instanceof PutObjectRequest
+          && ((PutObjectRequest) arg).getInputStream() != null) {
+        bodies.add(((PutObjectRequest) arg).getInputStream());
+      } else if (arg instanceof UploadPartRequest
+          && ((UploadPartRequest) arg).getInputStream() != null) {
+        bodies.add(((UploadPartRequest) arg).getInputStream());
+      }
+    }
+    return bodies;
+  }
+
+  private static boolean isReplayable(final List<InputStream> bodies) {
+    for (final InputStream body : bodies) {
+      if (!body.markSupported()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean reset(final List<InputStream> bodies) {
+    try {
+      for (final InputStream body : bodies) {
+        body.reset();
+      }
+      return true;
+    } catch (final IOException | RuntimeException e) {
+      return false;
+    }
+  }
+
+  private static boolean isThrottled(final AmazonClientException e) {
+    if (!(e instanceof AmazonServiceException)) {
+      return false;
+    }
+    final AmazonServiceException serviceException = (AmazonServiceException) e;
+    return serviceException.getStatusCode() == SERVICE_UNAVAILABLE
+        || RetryUtils.isThrottlingException(serviceException);
+  }
+}
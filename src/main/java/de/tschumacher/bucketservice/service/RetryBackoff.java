@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.AbortedException;
+
+class RetryBackoff {
+  private final long baseDelayNanos;
+  private final long maxDelayNanos;
+
+  RetryBackoff(final Duration baseDelay, final Duration maxDelay) {
+    super();
+    this.baseDelayNanos = baseDelay.toNanos();
+    this.maxDelayNanos = maxDelay.toNanos();
+  }
+
+  long delayNanos(final int attempt) {
+    final long ceiling;
+    if (this.baseDelayNanos == 0) {
+      ceiling = 0;
+    } else if (attempt >= Long.numberOfLeadingZeros(this.baseDelayNanos) - 1) {
+      ceiling = this.maxDelayNanos;
+    } else {
+      ceiling = Math.min(this.maxDelayNanos, this.baseDelayNanos << attempt);
+    }
+    return ThreadLocalRandom.current().nextLong(ceiling + 1);
+  }
+
+  static void sleep(final long nanos) {
+    if (nanos <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AbortedException("interrupted while backing off", e);
+    }
+  }
+}
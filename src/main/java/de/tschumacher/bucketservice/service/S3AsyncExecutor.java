@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+public class S3AsyncExecutor {
+  private final ExecutorService ownedExecutor;
+  private final Map<S3OperationType, BoundedExecutor> operationExecutors =
+      new EnumMap<S3OperationType, BoundedExecutor>(S3OperationType.class);
+
+  public S3AsyncExecutor(S3ServiceConfig config) {
+    this(config.getAsyncExecutor() != null ? config.getAsyncExecutor() : createExecutor(config),
+        config, config.getAsyncExecutor() == null);
+  }
+
+  public S3AsyncExecutor(ExecutorService executor, S3ServiceConfig config) {
+    this(executor, config, false);
+  }
+
+  private S3AsyncExecutor(ExecutorService executor, S3ServiceConfig config,
+      boolean ownsExecutor) {
+    this.ownedExecutor = ownsExecutor ? executor : null;
+    for (final S3OperationType type : S3OperationType.values()) {
+      this.operationExecutors.put(type,
+          new BoundedExecutor(executor, config.getConcurrencyLimit(type)));
+    }
+  }
+
+  public <T> CompletableFuture<T> supply(final S3OperationType type, final Callable<T> call) {
+    final CompletableFuture<T> future = new CompletableFuture<T>();
+    this.operationExecutors.get(type).execute(new BoundedExecutor.Task() {
+      @Override
+      public void run() {
+        try {
+          future.complete(call.call());
+        } catch (final Throwable e) {
+          future.completeExceptionally(e);
+        }
+      }
+
+      @Override
+      public void reject(final RejectedExecutionException e) {
+        future.completeExceptionally(e);
+      }
+    });
+    return future;
+  }
+
+  public CompletableFuture<Void> run(final S3OperationType type, final Runnable call) {
+    return supply(type, () -> {
+      call.run();
+      return null;
+    });
+  }
+
+  public void shutdown() {
+    // an executor passed in by the caller is left for the caller to shut down
+    if (this.ownedExecutor != null) {
+      this.ownedExecutor.shutdown();
+    }
+  }
+
+  private static ExecutorService createExecutor(final S3ServiceConfig config) {
+    if (config.isVirtualThreads()) {
+      final ExecutorService virtualThreadExecutor = S3Executors.newVirtualThreadExecutor();
+      if (virtualThreadExecutor != null) {
+        return virtualThreadExecutor;
+      }
+    }
+    return S3Executors.newAsyncExecutor();
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class S3ChangeListeners implements S3ChangeListener {
+  private final List<S3ChangeListener> listeners = new CopyOnWriteArrayList<S3ChangeListener>();
+
+  public void add(final S3ChangeListener listener) {
+    this.listeners.add(listener);
+  }
+
+  @Override
+  public void objectChanged(final String key) {
+    for (final S3ChangeListener listener : this.listeners) {
+      listener.objectChanged(key);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AmazonClientException;
+
+public final class S3Executors {
+  private static final String THREAD_NAME_PREFIX = "bucketservice-transfer-";
+  private static final String ASYNC_THREAD_NAME_PREFIX = "bucketservice-async-";
+  private static final String HEDGE_THREAD_NAME_PREFIX = "bucketservice-hedge-";
+  private static final String LISTING_THREAD_NAME_PREFIX = "bucketservice-listing-";
+  private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+  private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+  private S3Executors() {
+    super();
+  }
+
+  public static ExecutorService newTransferExecutor(final int parallelism) {
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism,
+        IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        createThreadFactory(THREAD_NAME_PREFIX));
+    // pools of services that are never closed don't keep their threads around
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  public static ExecutorService newAsyncExecutor() {
+    return Executors.newCachedThreadPool(createThreadFactory(ASYNC_THREAD_NAME_PREFIX));
+  }
+
+  public static ExecutorService newListingExecutor(final int parallelism) {
+    return Executors.newFixedThreadPool(parallelism,
+        createThreadFactory(LISTING_THREAD_NAME_PREFIX));
+  }
+
+  public static ExecutorService newHedgeExecutor() {
+    return Executors.newCachedThreadPool(createThreadFactory(HEDGE_THREAD_NAME_PREFIX));
+  }
+
+  public static ExecutorService newVirtualThreadExecutor() {
+    try {
+      final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (final ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  public static <T> T await(final Future<T> future) {
+    try {
+      return future.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmazonClientException("interrupted while waiting for transfer", e);
+    } catch (final ExecutionException e) {
+      throw unwrap(e);
+    }
+  }
+
+  public static <T> List<T> awaitAll(final List<Future<T>> futures) {
+    final List<T> results = new ArrayList<T>(futures.size());
+    try {
+      for (final Future<T> future : futures) {
+        results.add(await(future));
+      }
+      return results;
+    } finally {
+      cancelAll(futures);
+    }
+  }
+
+  private static void cancelAll(final List<? extends Future<?>> futures) {
+    for (final Future<?> future : futures) {
+      future.cancel(true);
+    }
+  }
+
+  private static RuntimeException unwrap(final ExecutionException e) {
+    final Throwable cause = e.getCause();
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new AmazonClientException(cause);
+  }
+
+  private static ThreadFactory createThreadFactory(final String namePrefix) {
+    return runnable -> {
+      final Thread thread = new Thread(runnable, namePrefix + THREAD_COUNTER.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+public final class S3Multipart {
+  public static final int MAX_PARTS = 10000;
+
+  private S3Multipart() {
+    super();
+  }
+
+  public static long partSize(final long length, final long configuredPartSize) {
+    final long minPartSize = (length + MAX_PARTS - 1) / MAX_PARTS;
+    return Math.max(configuredPartSize, minPartSize);
+  }
+}
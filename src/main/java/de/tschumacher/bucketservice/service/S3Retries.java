@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryUtils;
+
+public final class S3Retries {
+
+  private S3Retries() {
+    super();
+  }
+
+  public static <T> T call(final Supplier<T> call, final S3ServiceConfig config) {
+    final RetryBackoff backoff =
+        new RetryBackoff(config.getBackoffBaseDelay(), config.getBackoffMaxDelay());
+    int attempt = 0;
+    while (true) {
+      try {
+        return call.get();
+      } catch (final AmazonClientException e) {
+        if (!isUnhandledByClient(e, config) || attempt >= config.getMaxPartRetries()) {
+          throw e;
+        }
+        RetryBackoff.sleep(backoff.delayNanos(attempt++));
+      }
+    }
+  }
+
+  public static SdkClientException readFailure(final String message, final IOException cause) {
+    return new ReadFailure(message, cause);
+  }
+
+  public static boolean isRetryable(final AmazonClientException e) {
+    if (e instanceof AmazonServiceException) {
+      final AmazonServiceException serviceException = (AmazonServiceException) e;
+      return serviceException.getStatusCode() >= 500
+          || RetryUtils.isRetryableServiceException(serviceException)
+          || RetryUtils.isThrottlingException(serviceException);
+    }
+    return e.isRetryable();
+  }
+
+  private static boolean isUnhandledByClient(final AmazonClientException e,
+      final S3ServiceConfig config) {
+    // the client already retried whatever its retry policy covers, so only failures it never
+    // saw, like reading a response body, are retried here
+    if (e instanceof ReadFailure) {
+      return true;
+    }
+    return config.getBackoffRetries() == 0 && isRetryable(e)
+        && !PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION.shouldRetry(null, e, 0);
+  }
+
+  private static final class ReadFailure extends SdkClientException {
+    private static final long serialVersionUID = 1L;
+
+    ReadFailure(final String message, final IOException cause) {
+      super(message, cause);
+    }
+  }
+}
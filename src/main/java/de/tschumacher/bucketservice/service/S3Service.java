@@ -16,6 +16,7 @@ package de.tschumacher.bucketservice.service;
 import de.tschumacher.bucketservice.service.download.S3DownloadService;
 import de.tschumacher.bucketservice.service.information.S3InformationService;
 import de.tschumacher.bucketservice.service.modification.S3ModificationService;
+import de.tschumacher.bucketservice.service.sync.S3SyncService;
 import de.tschumacher.bucketservice.service.upload.S3UploadService;
 
 public interface S3Service {
@@ -27,4 +28,6 @@ public interface S3Service {
   S3InformationService informationService();
 
   S3ModificationService modificationService();
+
+  S3SyncService syncService();
 }
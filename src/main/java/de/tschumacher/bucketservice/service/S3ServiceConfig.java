@@ -0,0 +1,917 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import com.amazonaws.retry.RetryPolicy;
+
+import de.tschumacher.bucketservice.service.compression.CompressionCodec;
+import de.tschumacher.bucketservice.service.metrics.S3Metrics;
+import de.tschumacher.bucketservice.service.upload.DeduplicationMode;
+import de.tschumacher.bucketservice.service.upload.PublicAclMode;
+
+public class S3ServiceConfig {
+  public static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+  public static final long DEFAULT_MULTIPART_THRESHOLD = 64L * 1024 * 1024;
+  public static final long DEFAULT_PART_SIZE = 16L * 1024 * 1024;
+  public static final int DEFAULT_PARALLELISM = 8;
+  public static final int DEFAULT_MAX_PART_RETRIES = 3;
+  public static final long DEFAULT_RANGE_SIZE = 16L * 1024 * 1024;
+  public static final long MAX_SINGLE_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+  public static final long DEFAULT_MULTIPART_COPY_THRESHOLD = 1024L * 1024 * 1024;
+  public static final long DEFAULT_COPY_PART_SIZE = 128L * 1024 * 1024;
+  public static final int DEFAULT_MAX_CONNECTIONS = 128;
+  public static final int DEFAULT_CONCURRENCY_LIMIT = 64;
+  public static final Duration DEFAULT_ACL_REFRESH_INTERVAL = Duration.ofMinutes(5);
+  public static final int DEFAULT_EXISTENCE_CACHE_SIZE = 10000;
+  public static final Duration DEFAULT_EXISTENCE_CACHE_TTL = Duration.ofMinutes(1);
+  public static final long DEFAULT_DISK_CACHE_SIZE = 1024L * 1024 * 1024;
+  public static final int DEFAULT_LISTING_CACHE_SIZE = 1000;
+  public static final Duration DEFAULT_LISTING_CACHE_TTL = Duration.ofSeconds(30);
+  public static final int DEFAULT_PRESIGNED_URL_CACHE_SIZE = 10000;
+  public static final double DEFAULT_PRESIGNED_URL_MIN_LIFETIME_RATIO = 0.5;
+  public static final int DEFAULT_BACKOFF_RETRIES = 0;
+  public static final Duration DEFAULT_BACKOFF_BASE_DELAY = Duration.ofMillis(50);
+  public static final Duration DEFAULT_BACKOFF_MAX_DELAY = Duration.ofSeconds(5);
+  public static final double DEFAULT_HEDGE_PERCENTILE = 95;
+  public static final long DEFAULT_HEDGE_MAX_SIZE = 1024L * 1024;
+  public static final int DEFAULT_SUMMARY_CACHE_SIZE = 100;
+  public static final Duration DEFAULT_SUMMARY_CACHE_TTL = Duration.ofMinutes(10);
+  public static final String DEFAULT_CONTENT_PREFIX = ".content/sha256/";
+  public static final int DEFAULT_CONTENT_INDEX_SIZE = 10000;
+  public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+  public static final int DEFAULT_COMPRESSION_FRAME_SIZE = 1024 * 1024;
+  public static final int DEFAULT_DOWNLOAD_BUFFER_SIZE = 1024 * 1024;
+
+  private final boolean multipartUpload;
+  private final long multipartThreshold;
+  private final long partSize;
+  private final int parallelism;
+  private final int maxPartRetries;
+  private final PublicAclMode publicAclMode;
+  private final Duration aclRefreshInterval;
+  private final boolean rangedDownload;
+  private final long rangeSize;
+  private final int maxConnections;
+  private final Duration connectionTtl;
+  private final Duration connectionTimeout;
+  private final Duration socketTimeout;
+  private final Duration requestTimeout;
+  private final RetryPolicy retryPolicy;
+  private final int maxErrorRetry;
+  private final boolean tcpKeepAlive;
+  private final boolean gzip;
+  private final String endpoint;
+  private final boolean pathStyleAccess;
+  private final ExecutorService asyncExecutor;
+  private final boolean virtualThreads;
+  private final Map<S3OperationType, Integer> concurrencyLimits;
+  private final long multipartCopyThreshold;
+  private final long copyPartSize;
+  private final boolean existenceCache;
+  private final int existenceCacheSize;
+  private final Duration existenceCacheTtl;
+  private final int syncParallelism;
+  private final boolean syncDelete;
+  private final boolean syncChecksum;
+  private final File diskCacheDirectory;
+  private final long diskCacheSize;
+  private final boolean listingCache;
+  private final int listingCacheSize;
+  private final Duration listingCacheTtl;
+  private final boolean presignedUrlCache;
+  private final int presignedUrlCacheSize;
+  private final double presignedUrlMinLifetimeRatio;
+  private final S3Metrics metrics;
+  private final int backoffRetries;
+  private final Duration backoffBaseDelay;
+  private final Duration backoffMaxDelay;
+  private final boolean adaptiveRateLimit;
+  private final boolean hedgedReads;
+  private final double hedgePercentile;
+  private final long hedgeMaxSize;
+  private final int listingParallelism;
+  private final boolean summaryCache;
+  private final int summaryCacheSize;
+  private final Duration summaryCacheTtl;
+  private final DeduplicationMode deduplicationMode;
+  private final String contentPrefix;
+  private final int contentIndexSize;
+  private final CompressionCodec compressionCodec;
+  private final int compressionLevel;
+  private final int compressionFrameSize;
+  private final int downloadBufferSize;
+  private final int downloadBufferCount;
+  private final boolean memoryMappedUpload;
+  private final File checkpointDirectory;
+
+
+  public boolean isMultipartUpload() {
+    return this.multipartUpload;
+  }
+
+  public long getMultipartThreshold() {
+    return this.multipartThreshold;
+  }
+
+  public long getPartSize() {
+    return this.partSize;
+  }
+
+  public int getParallelism() {
+    return this.parallelism;
+  }
+
+  public int getMaxPartRetries() {
+    return this.maxPartRetries;
+  }
+
+  public PublicAclMode getPublicAclMode() {
+    return this.publicAclMode;
+  }
+
+  public Duration getAclRefreshInterval() {
+    return this.aclRefreshInterval;
+  }
+
+  public boolean isRangedDownload() {
+    return this.rangedDownload;
+  }
+
+  public long getRangeSize() {
+    return this.rangeSize;
+  }
+
+  public int getMaxConnections() {
+    return this.maxConnections;
+  }
+
+  public Duration getConnectionTtl() {
+    return this.connectionTtl;
+  }
+
+  public Duration getConnectionTimeout() {
+    return this.connectionTimeout;
+  }
+
+  public Duration getSocketTimeout() {
+    return this.socketTimeout;
+  }
+
+  public Duration getRequestTimeout() {
+    return this.requestTimeout;
+  }
+
+  public RetryPolicy getRetryPolicy() {
+    return this.retryPolicy;
+  }
+
+  public int getMaxErrorRetry() {
+    return this.maxErrorRetry;
+  }
+
+  public boolean isTcpKeepAlive() {
+    return this.tcpKeepAlive;
+  }
+
+  public boolean isGzip() {
+    return this.gzip;
+  }
+
+  public String getEndpoint() {
+    return this.endpoint;
+  }
+
+  public boolean isPathStyleAccess() {
+    return this.pathStyleAccess;
+  }
+
+  public ExecutorService getAsyncExecutor() {
+    return this.asyncExecutor;
+  }
+
+  public boolean isVirtualThreads() {
+    return this.virtualThreads;
+  }
+
+  public int getConcurrencyLimit(S3OperationType type) {
+    final Integer limit = this.concurrencyLimits.get(type);
+    return limit != null ? limit : DEFAULT_CONCURRENCY_LIMIT;
+  }
+
+  public long getMultipartCopyThreshold() {
+    return this.multipartCopyThreshold;
+  }
+
+  public long getCopyPartSize() {
+    return this.copyPartSize;
+  }
+
+  public boolean isExistenceCache() {
+    return this.existenceCache;
+  }
+
+  public int getExistenceCacheSize() {
+    return this.existenceCacheSize;
+  }
+
+  public Duration getExistenceCacheTtl() {
+    return this.existenceCacheTtl;
+  }
+
+  public int getSyncParallelism() {
+    return this.syncParallelism;
+  }
+
+  public boolean isSyncDelete() {
+    return this.syncDelete;
+  }
+
+  public boolean isSyncChecksum() {
+    return this.syncChecksum;
+  }
+
+  public File getDiskCacheDirectory() {
+    return this.diskCacheDirectory;
+  }
+
+  public long getDiskCacheSize() {
+    return this.diskCacheSize;
+  }
+
+  public boolean isListingCache() {
+    return this.listingCache;
+  }
+
+  public int getListingCacheSize() {
+    return this.listingCacheSize;
+  }
+
+  public Duration getListingCacheTtl() {
+    return this.listingCacheTtl;
+  }
+
+  public boolean isPresignedUrlCache() {
+    return this.presignedUrlCache;
+  }
+
+  public int getPresignedUrlCacheSize() {
+    return this.presignedUrlCacheSize;
+  }
+
+  public double getPresignedUrlMinLifetimeRatio() {
+    return this.presignedUrlMinLifetimeRatio;
+  }
+
+  public S3Metrics getMetrics() {
+    return this.metrics;
+  }
+
+  public int getBackoffRetries() {
+    return this.backoffRetries;
+  }
+
+  public Duration getBackoffBaseDelay() {
+    return this.backoffBaseDelay;
+  }
+
+  public Duration getBackoffMaxDelay() {
+    return this.backoffMaxDelay;
+  }
+
+  public boolean isAdaptiveRateLimit() {
+    return this.adaptiveRateLimit;
+  }
+
+  public boolean isHedgedReads() {
+    return this.hedgedReads;
+  }
+
+  public double getHedgePercentile() {
+    return this.hedgePercentile;
+  }
+
+  public long getHedgeMaxSize() {
+    return this.hedgeMaxSize;
+  }
+
+  public int getListingParallelism() {
+    return this.listingParallelism;
+  }
+
+  public boolean isSummaryCache() {
+    return this.summaryCache;
+  }
+
+  public int getSummaryCacheSize() {
+    return this.summaryCacheSize;
+  }
+
+  public Duration getSummaryCacheTtl() {
+    return this.summaryCacheTtl;
+  }
+
+  public DeduplicationMode getDeduplicationMode() {
+    return this.deduplicationMode;
+  }
+
+  public String getContentPrefix() {
+    return this.contentPrefix;
+  }
+
+  public int getContentIndexSize() {
+    return this.contentIndexSize;
+  }
+
+  public CompressionCodec getCompressionCodec() {
+    return this.compressionCodec;
+  }
+
+  public int getCompressionLevel() {
+    return this.compressionLevel;
+  }
+
+  public int getCompressionFrameSize() {
+    return this.compressionFrameSize;
+  }
+
+  public int getDownloadBufferSize() {
+    return this.downloadBufferSize;
+  }
+
+  public int getDownloadBufferCount() {
+    return this.downloadBufferCount;
+  }
+
+  public boolean isMemoryMappedUpload() {
+    return this.memoryMappedUpload;
+  }
+
+  public File getCheckpointDirectory() {
+    return this.checkpointDirectory;
+  }
+
+  private S3ServiceConfig(Builder builder) {
+    this.multipartUpload = builder.multipartUpload;
+    this.multipartThreshold = builder.multipartThreshold;
+    this.partSize = builder.partSize;
+    this.parallelism = builder.parallelism;
+    this.maxPartRetries = builder.maxPartRetries;
+    this.publicAclMode = builder.publicAclMode;
+    this.aclRefreshInterval = builder.aclRefreshInterval;
+    this.rangedDownload = builder.rangedDownload;
+    this.rangeSize = builder.rangeSize;
+    this.maxConnections = builder.maxConnections;
+    this.connectionTtl = builder.connectionTtl;
+    this.connectionTimeout = builder.connectionTimeout;
+    this.socketTimeout = builder.socketTimeout;
+    this.requestTimeout = builder.requestTimeout;
+    this.retryPolicy = builder.retryPolicy;
+    this.maxErrorRetry = builder.maxErrorRetry;
+    this.tcpKeepAlive = builder.tcpKeepAlive;
+    this.gzip = builder.gzip;
+    this.endpoint = builder.endpoint;
+    this.pathStyleAccess = builder.pathStyleAccess;
+    this.asyncExecutor = builder.asyncExecutor;
+    this.virtualThreads = builder.virtualThreads;
+    this.concurrencyLimits =
+        new EnumMap<S3OperationType, Integer>(builder.concurrencyLimits);
+    this.multipartCopyThreshold = builder.multipartCopyThreshold;
+    this.copyPartSize = builder.copyPartSize;
+    this.existenceCache = builder.existenceCache;
+    this.existenceCacheSize = builder.existenceCacheSize;
+    this.existenceCacheTtl = builder.existenceCacheTtl;
+    this.syncParallelism = builder.syncParallelism;
+    this.syncDelete = builder.syncDelete;
+    this.syncChecksum = builder.syncChecksum;
+    this.diskCacheDirectory = builder.diskCacheDirectory;
+    this.diskCacheSize = builder.diskCacheSize;
+    this.listingCache = builder.listingCache;
+    this.listingCacheSize = builder.listingCacheSize;
+    this.listingCacheTtl = builder.listingCacheTtl;
+    this.presignedUrlCache = builder.presignedUrlCache;
+    this.presignedUrlCacheSize = builder.presignedUrlCacheSize;
+    this.presignedUrlMinLifetimeRatio = builder.presignedUrlMinLifetimeRatio;
+    this.metrics = builder.metrics;
+    this.backoffRetries = builder.backoffRetries;
+    this.backoffBaseDelay = builder.backoffBaseDelay;
+    this.backoffMaxDelay = builder.backoffMaxDelay;
+    this.adaptiveRateLimit = builder.adaptiveRateLimit;
+    this.hedgedReads = builder.hedgedReads;
+    this.hedgePercentile = builder.hedgePercentile;
+    this.hedgeMaxSize = builder.hedgeMaxSize;
+    this.listingParallelism = builder.listingParallelism;
+    this.summaryCache = builder.summaryCache;
+    this.summaryCacheSize = builder.summaryCacheSize;
+    this.summaryCacheTtl = builder.summaryCacheTtl;
+    this.deduplicationMode = builder.deduplicationMode;
+    this.contentPrefix = builder.contentPrefix;
+    this.contentIndexSize = builder.contentIndexSize;
+    this.compressionCodec = builder.compressionCodec;
+    this.compressionLevel = builder.compressionLevel;
+    this.compressionFrameSize = builder.compressionFrameSize;
+    this.downloadBufferSize = builder.downloadBufferSize;
+    this.downloadBufferCount = builder.downloadBufferCount;
+    this.memoryMappedUpload = builder.memoryMappedUpload;
+    this.checkpointDirectory = builder.checkpointDirectory;
+  }
+
+  public static S3ServiceConfig defaults() {
+    return newBuilder().build();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    private boolean multipartUpload;
+    private long multipartThreshold = DEFAULT_MULTIPART_THRESHOLD;
+    private long partSize = DEFAULT_PART_SIZE;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int maxPartRetries = DEFAULT_MAX_PART_RETRIES;
+    private PublicAclMode publicAclMode = PublicAclMode.CACHED_BUCKET_ACL;
+    private Duration aclRefreshInterval = DEFAULT_ACL_REFRESH_INTERVAL;
+    private boolean rangedDownload;
+    private long rangeSize = DEFAULT_RANGE_SIZE;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private Duration connectionTtl;
+    private Duration connectionTimeout;
+    private Duration socketTimeout;
+    private Duration requestTimeout;
+    private RetryPolicy retryPolicy;
+    private int maxErrorRetry = -1;
+    private boolean tcpKeepAlive = true;
+    private boolean gzip;
+    private String endpoint;
+    private boolean pathStyleAccess;
+    private ExecutorService asyncExecutor;
+    private boolean virtualThreads;
+    private final Map<S3OperationType, Integer> concurrencyLimits =
+        new EnumMap<S3OperationType, Integer>(S3OperationType.class);
+    private long multipartCopyThreshold = DEFAULT_MULTIPART_COPY_THRESHOLD;
+    private long copyPartSize = DEFAULT_COPY_PART_SIZE;
+    private boolean existenceCache;
+    private int existenceCacheSize = DEFAULT_EXISTENCE_CACHE_SIZE;
+    private Duration existenceCacheTtl = DEFAULT_EXISTENCE_CACHE_TTL;
+    private int syncParallelism = DEFAULT_PARALLELISM;
+    private boolean syncDelete;
+    private boolean syncChecksum = true;
+    private File diskCacheDirectory;
+    private long diskCacheSize = DEFAULT_DISK_CACHE_SIZE;
+    private boolean listingCache;
+    private int listingCacheSize = DEFAULT_LISTING_CACHE_SIZE;
+    private Duration listingCacheTtl = DEFAULT_LISTING_CACHE_TTL;
+    private boolean presignedUrlCache;
+    private int presignedUrlCacheSize = DEFAULT_PRESIGNED_URL_CACHE_SIZE;
+    private double presignedUrlMinLifetimeRatio = DEFAULT_PRESIGNED_URL_MIN_LIFETIME_RATIO;
+    private S3Metrics metrics;
+    private int backoffRetries = DEFAULT_BACKOFF_RETRIES;
+    private Duration backoffBaseDelay = DEFAULT_BACKOFF_BASE_DELAY;
+    private Duration backoffMaxDelay = DEFAULT_BACKOFF_MAX_DELAY;
+    private boolean adaptiveRateLimit;
+    private boolean hedgedReads;
+    private double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+    private long hedgeMaxSize = DEFAULT_HEDGE_MAX_SIZE;
+    private int listingParallelism = DEFAULT_PARALLELISM;
+    private boolean summaryCache;
+    private int summaryCacheSize = DEFAULT_SUMMARY_CACHE_SIZE;
+    private Duration summaryCacheTtl = DEFAULT_SUMMARY_CACHE_TTL;
+    private DeduplicationMode deduplicationMode = DeduplicationMode.OFF;
+    private String contentPrefix = DEFAULT_CONTENT_PREFIX;
+    private int contentIndexSize = DEFAULT_CONTENT_INDEX_SIZE;
+    private CompressionCodec compressionCodec = CompressionCodec.NONE;
+    private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+    private int compressionFrameSize = DEFAULT_COMPRESSION_FRAME_SIZE;
+    private int downloadBufferSize = DEFAULT_DOWNLOAD_BUFFER_SIZE;
+    private int downloadBufferCount = DEFAULT_PARALLELISM;
+    private boolean memoryMappedUpload;
+    private File checkpointDirectory;
+
+    public Builder withMultipartUpload(boolean multipartUpload) {
+      this.multipartUpload = multipartUpload;
+      return this;
+    }
+
+    public Builder withMultipartThreshold(long multipartThreshold) {
+      this.multipartThreshold = multipartThreshold;
+      return this;
+    }
+
+    public Builder withPartSize(long partSize) {
+      this.partSize = partSize;
+      return this;
+    }
+
+    public Builder withParallelism(int parallelism) {
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    public Builder withMaxPartRetries(int maxPartRetries) {
+      this.maxPartRetries = maxPartRetries;
+      return this;
+    }
+
+    public Builder withPublicAclMode(PublicAclMode publicAclMode) {
+      this.publicAclMode = publicAclMode;
+      return this;
+    }
+
+    public Builder withAclRefreshInterval(Duration aclRefreshInterval) {
+      this.aclRefreshInterval = aclRefreshInterval;
+      return this;
+    }
+
+    public Builder withRangedDownload(boolean rangedDownload) {
+      this.rangedDownload = rangedDownload;
+      return this;
+    }
+
+    public Builder withRangeSize(long rangeSize) {
+      this.rangeSize = rangeSize;
+      return this;
+    }
+
+    public Builder withMaxConnections(int maxConnections) {
+      this.maxConnections = maxConnections;
+      return this;
+    }
+
+    public Builder withConnectionTtl(Duration connectionTtl) {
+      this.connectionTtl = connectionTtl;
+      return this;
+    }
+
+    public Builder withConnectionTimeout(Duration connectionTimeout) {
+      this.connectionTimeout = connectionTimeout;
+      return this;
+    }
+
+    public Builder withSocketTimeout(Duration socketTimeout) {
+      this.socketTimeout = socketTimeout;
+      return this;
+    }
+
+    public Builder withRequestTimeout(Duration requestTimeout) {
+      this.requestTimeout = requestTimeout;
+      return this;
+    }
+
+    public Builder withRetryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    public Builder withMaxErrorRetry(int maxErrorRetry) {
+      this.maxErrorRetry = maxErrorRetry;
+      return this;
+    }
+
+    public Builder withTcpKeepAlive(boolean tcpKeepAlive) {
+      this.tcpKeepAlive = tcpKeepAlive;
+      return this;
+    }
+
+    public Builder withGzip(boolean gzip) {
+      this.gzip = gzip;
+      return this;
+    }
+
+    public Builder withEndpoint(String endpoint) {
+      this.endpoint = endpoint;
+      return this;
+    }
+
+    public Builder withPathStyleAccess(boolean pathStyleAccess) {
+      this.pathStyleAccess = pathStyleAccess;
+      return this;
+    }
+
+    public Builder withAsyncExecutor(ExecutorService asyncExecutor) {
+      this.asyncExecutor = asyncExecutor;
+      return this;
+    }
+
+    public Builder withVirtualThreads(boolean virtualThreads) {
+      this.virtualThreads = virtualThreads;
+      return this;
+    }
+
+    public Builder withConcurrencyLimit(S3OperationType type, int limit) {
+      if (limit < 1) {
+        throw new IllegalArgumentException("concurrency limit must be at least 1");
+      }
+      this.concurrencyLimits.put(type, limit);
+      return this;
+    }
+
+    public Builder withMultipartCopyThreshold(long multipartCopyThreshold) {
+      this.multipartCopyThreshold = multipartCopyThreshold;
+      return this;
+    }
+
+    public Builder withCopyPartSize(long copyPartSize) {
+      this.copyPartSize = copyPartSize;
+      return this;
+    }
+
+    public Builder withExistenceCache(boolean existenceCache) {
+      this.existenceCache = existenceCache;
+      return this;
+    }
+
+    public Builder withExistenceCacheSize(int existenceCacheSize) {
+      this.existenceCacheSize = existenceCacheSize;
+      return this;
+    }
+
+    public Builder withExistenceCacheTtl(Duration existenceCacheTtl) {
+      this.existenceCacheTtl = existenceCacheTtl;
+      return this;
+    }
+
+    public Builder withSyncParallelism(int syncParallelism) {
+      this.syncParallelism = syncParallelism;
+      return this;
+    }
+
+    public Builder withSyncDelete(boolean syncDelete) {
+      this.syncDelete = syncDelete;
+      return this;
+    }
+
+    public Builder withSyncChecksum(boolean syncChecksum) {
+      this.syncChecksum = syncChecksum;
+      return this;
+    }
+
+    public Builder withDiskCacheDirectory(File diskCacheDirectory) {
+      this.diskCacheDirectory = diskCacheDirectory;
+      return this;
+    }
+
+    public Builder withDiskCacheSize(long diskCacheSize) {
+      this.diskCacheSize = diskCacheSize;
+      return this;
+    }
+
+    public Builder withListingCache(boolean listingCache) {
+      this.listingCache = listingCache;
+      return this;
+    }
+
+    public Builder withListingCacheSize(int listingCacheSize) {
+      this.listingCacheSize = listingCacheSize;
+      return this;
+    }
+
+    public Builder withListingCacheTtl(Duration listingCacheTtl) {
+      this.listingCacheTtl = listingCacheTtl;
+      return this;
+    }
+
+    public Builder withPresignedUrlCache(boolean presignedUrlCache) {
+      this.presignedUrlCache = presignedUrlCache;
+      return this;
+    }
+
+    public Builder withPresignedUrlCacheSize(int presignedUrlCacheSize) {
+      this.presignedUrlCacheSize = presignedUrlCacheSize;
+      return this;
+    }
+
+    public Builder withPresignedUrlMinLifetimeRatio(double presignedUrlMinLifetimeRatio) {
+      this.presignedUrlMinLifetimeRatio = presignedUrlMinLifetimeRatio;
+      return this;
+    }
+
+    public Builder withMetrics(S3Metrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    public Builder withBackoffRetries(int backoffRetries) {
+      this.backoffRetries = backoffRetries;
+      return this;
+    }
+
+    public Builder withBackoffBaseDelay(Duration backoffBaseDelay) {
+      this.backoffBaseDelay = backoffBaseDelay;
+      return this;
+    }
+
+    public Builder withBackoffMaxDelay(Duration backoffMaxDelay) {
+      this.backoffMaxDelay = backoffMaxDelay;
+      return this;
+    }
+
+    public Builder withAdaptiveRateLimit(boolean adaptiveRateLimit) {
+      this.adaptiveRateLimit = adaptiveRateLimit;
+      return this;
+    }
+
+    public Builder withHedgedReads(boolean hedgedReads) {
+      this.hedgedReads = hedgedReads;
+      return this;
+    }
+
+    public Builder withHedgePercentile(double hedgePercentile) {
+      this.hedgePercentile = hedgePercentile;
+      return this;
+    }
+
+    public Builder withHedgeMaxSize(long hedgeMaxSize) {
+      this.hedgeMaxSize = hedgeMaxSize;
+      return this;
+    }
+
+    public Builder withListingParallelism(int listingParallelism) {
+      this.listingParallelism = listingParallelism;
+      return this;
+    }
+
+    public Builder withSummaryCache(boolean summaryCache) {
+      this.summaryCache = summaryCache;
+      return this;
+    }
+
+    public Builder withSummaryCacheSize(int summaryCacheSize) {
+      this.summaryCacheSize = summaryCacheSize;
+      return this;
+    }
+
+    public Builder withSummaryCacheTtl(Duration summaryCacheTtl) {
+      this.summaryCacheTtl = summaryCacheTtl;
+      return this;
+    }
+
+    public Builder withDeduplicationMode(DeduplicationMode deduplicationMode) {
+      this.deduplicationMode = deduplicationMode;
+      return this;
+    }
+
+    public Builder withContentPrefix(String contentPrefix) {
+      this.contentPrefix = contentPrefix;
+      return this;
+    }
+
+    public Builder withContentIndexSize(int contentIndexSize) {
+      this.contentIndexSize = contentIndexSize;
+      return this;
+    }
+
+    public Builder withCompressionCodec(CompressionCodec compressionCodec) {
+      this.compressionCodec = compressionCodec;
+      return this;
+    }
+
+    public Builder withCompressionLevel(int compressionLevel) {
+      this.compressionLevel = compressionLevel;
+      return this;
+    }
+
+    public Builder withCompressionFrameSize(int compressionFrameSize) {
+      this.compressionFrameSize = compressionFrameSize;
+      return this;
+    }
+
+    public Builder withDownloadBufferSize(int downloadBufferSize) {
+      this.downloadBufferSize = downloadBufferSize;
+      return this;
+    }
+
+    public Builder withDownloadBufferCount(int downloadBufferCount) {
+      this.downloadBufferCount = downloadBufferCount;
+      return this;
+    }
+
+    public Builder withMemoryMappedUpload(boolean memoryMappedUpload) {
+      this.memoryMappedUpload = memoryMappedUpload;
+      return this;
+    }
+
+    public Builder withCheckpointDirectory(File checkpointDirectory) {
+      this.checkpointDirectory = checkpointDirectory;
+      return this;
+    }
+
+    public S3ServiceConfig build() {
+      if (this.partSize < MIN_PART_SIZE) {
+        throw new IllegalArgumentException("part size must be at least " + MIN_PART_SIZE);
+      }
+      if (this.maxConnections < 1) {
+        throw new IllegalArgumentException("max connections must be at least 1");
+      }
+      if (this.multipartCopyThreshold > MAX_SINGLE_COPY_SIZE) {
+        throw new IllegalArgumentException(
+            "multipart copy threshold must not exceed " + MAX_SINGLE_COPY_SIZE);
+      }
+      if (this.copyPartSize < MIN_PART_SIZE || this.copyPartSize > MAX_SINGLE_COPY_SIZE) {
+        throw new IllegalArgumentException("copy part size must be between " + MIN_PART_SIZE
+            + " and " + MAX_SINGLE_COPY_SIZE);
+      }
+      if (this.rangeSize < 1) {
+        throw new IllegalArgumentException("range size must be at least 1");
+      }
+      if (this.parallelism < 1) {
+        throw new IllegalArgumentException("parallelism must be at least 1");
+      }
+      if (this.maxPartRetries < 0) {
+        throw new IllegalArgumentException("max part retries must not be negative");
+      }
+      if (this.publicAclMode == null) {
+        throw new IllegalArgumentException("public acl mode must not be null");
+      }
+      if (this.aclRefreshInterval == null || this.aclRefreshInterval.isNegative()) {
+        throw new IllegalArgumentException("acl refresh interval must not be negative");
+      }
+      if (this.existenceCacheSize < 1) {
+        throw new IllegalArgumentException("existence cache size must be at least 1");
+      }
+      if (this.existenceCacheTtl == null || this.existenceCacheTtl.isNegative()) {
+        throw new IllegalArgumentException("existence cache ttl must not be negative");
+      }
+      if (this.syncParallelism < 1) {
+        throw new IllegalArgumentException("sync parallelism must be at least 1");
+      }
+      if (this.diskCacheSize < 1) {
+        throw new IllegalArgumentException("disk cache size must be at least 1");
+      }
+      if (this.listingCacheSize < 1) {
+        throw new IllegalArgumentException("listing cache size must be at least 1");
+      }
+      if (this.listingCacheTtl == null || this.listingCacheTtl.isNegative()) {
+        throw new IllegalArgumentException("listing cache ttl must not be negative");
+      }
+      if (this.presignedUrlCacheSize < 1) {
+        throw new IllegalArgumentException("presigned url cache size must be at least 1");
+      }
+      if (this.presignedUrlMinLifetimeRatio <= 0 || this.presignedUrlMinLifetimeRatio > 1) {
+        throw new IllegalArgumentException("presigned url min lifetime ratio must be in (0, 1]");
+      }
+      if (this.backoffRetries < 0) {
+        throw new IllegalArgumentException("backoff retries must not be negative");
+      }
+      if (this.backoffBaseDelay.compareTo(this.backoffMaxDelay) > 0) {
+        throw new IllegalArgumentException("backoff base delay must not exceed the max delay");
+      }
+      if (this.hedgePercentile <= 0 || this.hedgePercentile >= 100) {
+        throw new IllegalArgumentException("hedge percentile must be between 0 and 100");
+      }
+      if (this.listingParallelism < 1) {
+        throw new IllegalArgumentException("listing parallelism must be at least 1");
+      }
+      if (this.summaryCacheSize < 1) {
+        throw new IllegalArgumentException("summary cache size must be at least 1");
+      }
+      if (this.summaryCacheTtl == null || this.summaryCacheTtl.isNegative()) {
+        throw new IllegalArgumentException("summary cache ttl must not be negative");
+      }
+      if (this.deduplicationMode == null) {
+        throw new IllegalArgumentException("deduplication mode must not be null");
+      }
+      if (this.contentPrefix == null || this.contentPrefix.isEmpty()) {
+        throw new IllegalArgumentException("content prefix must not be empty");
+      }
+      if (this.contentIndexSize < 1) {
+        throw new IllegalArgumentException("content index size must be at least 1");
+      }
+      if (this.compressionCodec == null) {
+        throw new IllegalArgumentException("compression codec must not be null");
+      }
+      if (this.compressionLevel < 1 || this.compressionLevel > 9) {
+        throw new IllegalArgumentException("compression level must be between 1 and 9");
+      }
+      if (this.compressionFrameSize < 1024) {
+        throw new IllegalArgumentException("compression frame size must be at least 1024");
+      }
+      if (this.downloadBufferSize < 4096) {
+        throw new IllegalArgumentException("download buffer size must be at least 4096");
+      }
+      if (this.downloadBufferCount < 1) {
+        throw new IllegalArgumentException("download buffer count must be at least 1");
+      }
+      return new S3ServiceConfig(this);
+    }
+  }
+
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
+
+public class S3UrlSigner {
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final PresignedUrlCache cache;
+
+  public S3UrlSigner(AmazonS3 amazonS3, String bucket, S3ServiceConfig config) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.cache = config.isPresignedUrlCache() ? new PresignedUrlCache(
+        config.getPresignedUrlCacheSize(), config.getPresignedUrlMinLifetimeRatio()) : null;
+  }
+
+  public URL sign(final String key, final HttpMethod method, final Duration lifetime) {
+    final long now = System.currentTimeMillis();
+    final long lifetimeMillis = lifetime.toMillis();
+    if (this.cache != null) {
+      final URL cached = this.cache.get(method, key, now, lifetimeMillis);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    final long expiration = now + lifetimeMillis;
+    final URL url = this.amazonS3.generatePresignedUrl(
+        new GeneratePresignedUrlRequest(this.bucket, key, method)
+            .withExpiration(new Date(expiration)));
+    if (this.cache != null) {
+      this.cache.put(method, key, url, expiration);
+    }
+    return url;
+  }
+
+  public Map<String, URL> signAll(final Collection<String> keys, final HttpMethod method,
+      final Duration lifetime) {
+    return keys.parallelStream().distinct().collect(Collectors.toMap(Function.identity(),
+        key -> sign(key, method, lifetime), (first, second) -> first, LinkedHashMap::new));
+  }
+}
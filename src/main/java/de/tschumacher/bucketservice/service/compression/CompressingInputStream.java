@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class CompressingInputStream extends InputStream {
+  private static final byte[] MEMBER_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+  private final InputStream source;
+  private final byte[] frame;
+  private final byte[] deflated = new byte[64 * 1024];
+  private final Deflater deflater;
+  private final CRC32 crc = new CRC32();
+  private final MemberBuffer output = new MemberBuffer();
+  private final int[] frameLengths = new int[SeekTable.MAX_FRAMES];
+  private int frameCount;
+  private long uncompressedLength;
+  private int position;
+  private boolean finished;
+
+  public CompressingInputStream(InputStream source, int frameSize, int level) {
+    this.source = source;
+    this.frame = new byte[frameSize];
+    this.deflater = new Deflater(level, true);
+  }
+
+  @Override
+  public int read() throws IOException {
+    final byte[] single = new byte[1];
+    return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    while (this.position == this.output.size()) {
+      if (this.finished) {
+        return -1;
+      }
+      fillOutput();
+    }
+    final int read = Math.min(length, this.output.size() - this.position);
+    System.arraycopy(this.output.buffer(), this.position, buffer, offset, read);
+    this.position += read;
+    return read;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.deflater.end();
+    this.source.close();
+  }
+
+  private void fillOutput() throws IOException {
+    this.output.reset();
+    this.position = 0;
+    final int length = readFrame();
+    if (length > 0) {
+      writeMember(length);
+      return;
+    }
+    this.finished = true;
+    if (this.frameCount <= SeekTable.MAX_FRAMES) {
+      SeekTable.writeMember(this.output, this.frameLengths, this.frameCount, this.frame.length,
+          this.uncompressedLength);
+    }
+  }
+
+  private int readFrame() throws IOException {
+    int length = 0;
+    int read;
+    while (length < this.frame.length
+        && (read = this.source.read(this.frame, length, this.frame.length - length)) != -1) {
+      length += read;
+    }
+    return length;
+  }
+
+  private void writeMember(final int length) {
+    this.output.write(MEMBER_HEADER, 0, MEMBER_HEADER.length);
+    this.deflater.reset();
+    this.deflater.setInput(this.frame, 0, length);
+    this.deflater.finish();
+    while (!this.deflater.finished()) {
+      this.output.write(this.deflated, 0, this.deflater.deflate(this.deflated));
+    }
+    this.crc.reset();
+    this.crc.update(this.frame, 0, length);
+    writeInt((int) this.crc.getValue());
+    writeInt(length);
+    if (this.frameCount < SeekTable.MAX_FRAMES) {
+      this.frameLengths[this.frameCount] = this.output.size();
+    }
+    this.frameCount++;
+    this.uncompressedLength += length;
+  }
+
+  private void writeInt(final int value) {
+    for (int shift = 0; shift < 32; shift += 8) {
+      this.output.write(value >>> shift);
+    }
+  }
+
+  private static class MemberBuffer extends ByteArrayOutputStream {
+
+    byte[] buffer() {
+      return this.buf;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.compression;
+
+import java.util.Map;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+public enum CompressionCodec {
+  NONE(null), GZIP("gzip");
+
+  public static final String METADATA_KEY = "bucketservice-codec";
+  public static final String LENGTH_METADATA_KEY = "bucketservice-length";
+  public static final String HASH_METADATA_KEY = "content-sha256";
+
+  private final String name;
+
+  CompressionCodec(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public void applyTo(final ObjectMetadata metadata) {
+    if (this.name != null) {
+      metadata.addUserMetadata(METADATA_KEY, this.name);
+    }
+  }
+
+  public static CompressionCodec of(final ObjectMetadata metadata) {
+    return named(metadata == null ? null : metadata.getUserMetaDataOf(METADATA_KEY));
+  }
+
+  public static CompressionCodec of(final Map<String, String> userMetadata) {
+    return named(userMetadata == null ? null : userMetadata.get(METADATA_KEY));
+  }
+
+  private static CompressionCodec named(final String name) {
+    for (final CompressionCodec codec : values()) {
+      if (codec.name != null && codec.name.equals(name)) {
+        return codec;
+      }
+    }
+    return NONE;
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+public class GzipFramesInputStream extends InputStream {
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+  private static final int FHCRC = 2;
+
+  private final PushbackInputStream in;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private final Inflater inflater = new Inflater(true);
+  private final CRC32 crc = new CRC32();
+  private int bufferLength;
+  private long memberLength;
+  private boolean inMember;
+  private boolean eof;
+
+  public GzipFramesInputStream(InputStream in) {
+    this.in = new PushbackInputStream(in, BUFFER_SIZE);
+  }
+
+  @Override
+  public int read() throws IOException {
+    final byte[] single = new byte[1];
+    return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(final byte[] target, final int offset, final int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    while (!this.eof) {
+      if (!this.inMember) {
+        this.inMember = readHeader();
+        this.eof = !this.inMember;
+        continue;
+      }
+      final int read = inflate(target, offset, length);
+      if (read > 0) {
+        this.crc.update(target, offset, read);
+        this.memberLength += read;
+        return read;
+      }
+      if (this.inflater.finished()) {
+        final int remaining = this.inflater.getRemaining();
+        this.in.unread(this.buffer, this.bufferLength - remaining, remaining);
+        readTrailer();
+        this.inMember = false;
+      } else if (this.inflater.needsInput()) {
+        this.bufferLength = this.in.read(this.buffer);
+        if (this.bufferLength == -1) {
+          throw new EOFException("unexpected end of gzip stream");
+        }
+        this.inflater.setInput(this.buffer, 0, this.bufferLength);
+      } else {
+        throw new ZipException("gzip member needs a preset dictionary");
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.inflater.end();
+    this.in.close();
+  }
+
+  private int inflate(final byte[] target, final int offset, final int length)
+      throws ZipException {
+    try {
+      return this.inflater.inflate(target, offset, length);
+    } catch (final DataFormatException e) {
+      throw new ZipException(e.getMessage());
+    }
+  }
+
+  private boolean readHeader() throws IOException {
+    final int first = this.in.read();
+    if (first == -1) {
+      return false;
+    }
+    if (first != 0x1f || readByte() != 0x8b || readByte() != 8) {
+      throw new ZipException("not in gzip format");
+    }
+    final int flags = readByte();
+    skipFully(6);
+    if ((flags & FEXTRA) != 0) {
+      skipFully(readByte() | readByte() << 8);
+    }
+    if ((flags & FNAME) != 0) {
+      skipString();
+    }
+    if ((flags & FCOMMENT) != 0) {
+      skipString();
+    }
+    if ((flags & FHCRC) != 0) {
+      skipFully(2);
+    }
+    this.inflater.reset();
+    this.crc.reset();
+    this.memberLength = 0;
+    return true;
+  }
+
+  private void readTrailer() throws IOException {
+    final long crc = readInt();
+    final long length = readInt();
+    if (crc != this.crc.getValue() || length != (this.memberLength & 0xffffffffL)) {
+      throw new ZipException("corrupt gzip member");
+    }
+  }
+
+  private long readInt() throws IOException {
+    return readByte() | readByte() << 8 | readByte() << 16 | (long) readByte() << 24;
+  }
+
+  private void skipString() throws IOException {
+    while (readByte() != 0) {
+      continue;
+    }
+  }
+
+  private void skipFully(final int count) throws IOException {
+    for (int i = 0; i < count; i++) {
+      readByte();
+    }
+  }
+
+  private int readByte() throws IOException {
+    final int value = this.in.read();
+    if (value == -1) {
+      throw new EOFException("unexpected end of gzip stream");
+    }
+    return value;
+  }
+}
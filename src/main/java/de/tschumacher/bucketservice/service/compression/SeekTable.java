@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class SeekTable {
+  public static final int MAX_MEMBER_LENGTH = 10 + 2 + 0xffff + 2 + 8;
+  static final int MAX_FRAMES = (0xffff - 4 - 20) / 4;
+
+  private static final int FOOTER_LENGTH = 20;
+  private static final int MAGIC = 0x54535342;
+  private static final byte[] EMPTY_DEFLATE_AND_TRAILER = {3, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+  private final long[] offsets;
+  private final int frameSize;
+  private final long uncompressedLength;
+
+  private SeekTable(long[] offsets, int frameSize, long uncompressedLength) {
+    this.offsets = offsets;
+    this.frameSize = frameSize;
+    this.uncompressedLength = uncompressedLength;
+  }
+
+  public int getFrameSize() {
+    return this.frameSize;
+  }
+
+  public long getUncompressedLength() {
+    return this.uncompressedLength;
+  }
+
+  public int getFrameCount() {
+    return this.offsets.length;
+  }
+
+  public long getCompressedOffset(final int frame) {
+    return this.offsets[frame];
+  }
+
+  static void writeMember(final ByteArrayOutputStream output, final int[] frameLengths,
+      final int frameCount, final int frameSize, final long uncompressedLength) {
+    final int dataLength = frameCount * 4 + FOOTER_LENGTH;
+    final ByteBuffer member = ByteBuffer.allocate(10 + 2 + 4 + dataLength)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    member.put(new byte[] {0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff});
+    member.putShort((short) (4 + dataLength));
+    member.put((byte) 'B').put((byte) 'S').putShort((short) dataLength);
+    for (int i = 0; i < frameCount; i++) {
+      member.putInt(frameLengths[i]);
+    }
+    member.putInt(frameSize).putLong(uncompressedLength).putInt(frameCount).putInt(MAGIC);
+    output.write(member.array(), 0, member.position());
+    output.write(EMPTY_DEFLATE_AND_TRAILER, 0, EMPTY_DEFLATE_AND_TRAILER.length);
+  }
+
+  public static SeekTable parse(final byte[] tail) {
+    final int end = tail.length - EMPTY_DEFLATE_AND_TRAILER.length;
+    if (end - FOOTER_LENGTH < 0) {
+      return null;
+    }
+    for (int i = 0; i < EMPTY_DEFLATE_AND_TRAILER.length; i++) {
+      if (tail[end + i] != EMPTY_DEFLATE_AND_TRAILER[i]) {
+        return null;
+      }
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+    final int footer = end - FOOTER_LENGTH;
+    if (buffer.getInt(footer + 16) != MAGIC) {
+      return null;
+    }
+    final int frameSize = buffer.getInt(footer);
+    final long uncompressedLength = buffer.getLong(footer + 4);
+    final int frameCount = buffer.getInt(footer + 12);
+    final int entries = footer - frameCount * 4;
+    if (frameCount < 0 || frameCount > MAX_FRAMES || entries - 16 < 0
+        || tail[entries - 16] != 0x1f || tail[entries - 15] != (byte) 0x8b
+        || buffer.getShort(entries - 2) != (short) (frameCount * 4 + FOOTER_LENGTH)) {
+      return null;
+    }
+    final long[] offsets = new long[frameCount];
+    long offset = 0;
+    for (int i = 0; i < frameCount; i++) {
+      offsets[i] = offset;
+      offset += buffer.getInt(entries + i * 4) & 0xffffffffL;
+    }
+    return new SeekTable(offsets, frameSize, uncompressedLength);
+  }
+}
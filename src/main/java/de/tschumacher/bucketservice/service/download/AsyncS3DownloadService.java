@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.download;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncS3DownloadService {
+
+  CompletableFuture<File> downloadFile(String key, String localPath);
+
+  CompletableFuture<File> downloadFile(String key);
+
+  CompletableFuture<File> downloadFile(String key, File file);
+
+  CompletableFuture<Long> downloadTo(String key, OutputStream outputStream);
+
+  CompletableFuture<Long> downloadTo(String key, WritableByteChannel channel);
+
+  CompletableFuture<URL> createPresignedUrl(String key, int minutes);
+
+  CompletableFuture<URL> createPresignedUrl(String key, Duration expiration);
+
+  CompletableFuture<Map<String, URL>> createPresignedUrls(Collection<String> keys,
+      Duration expiration);
+}
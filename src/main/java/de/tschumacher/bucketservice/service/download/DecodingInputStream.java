@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+import de.tschumacher.bucketservice.service.compression.CompressionCodec;
+
+class DecodingInputStream extends InputStream {
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final String key;
+  private final S3ServiceConfig config;
+  private InputStream content;
+  private long pendingSkip;
+  private boolean closed;
+
+  DecodingInputStream(AmazonS3 amazonS3, String bucket, String key, S3ServiceConfig config) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.key = key;
+    this.config = config;
+  }
+
+  @Override
+  public int read() throws IOException {
+    return open().read();
+  }
+
+  @Override
+  public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+    return open().read(buffer, offset, length);
+  }
+
+  @Override
+  public long skip(final long n) throws IOException {
+    if (this.content == null && !this.closed) {
+      // like RangedInputStream, skipping ahead of the first read doesn't fetch anything
+      this.pendingSkip += Math.max(0, n);
+      return Math.max(0, n);
+    }
+    return open().skip(n);
+  }
+
+  @Override
+  public int available() throws IOException {
+    return this.content == null ? 0 : this.content.available();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.closed = true;
+    if (this.content != null) {
+      this.content.close();
+    }
+  }
+
+  private InputStream open() throws IOException {
+    if (this.closed) {
+      throw new IOException("stream of " + this.key + " is closed");
+    }
+    if (this.content == null) {
+      this.content = detect(this.pendingSkip);
+      if (this.content == null) {
+        this.content = detect(0);
+        this.content.skip(this.pendingSkip);
+      }
+    }
+    return this.content;
+  }
+
+  private InputStream detect(final long position) throws IOException {
+    // the first range read tells whether the object was stored compressed
+    final RangedInputStream ranges =
+        new RangedInputStream(this.amazonS3, this.bucket, this.key, this.config);
+    ranges.skip(position);
+    final ObjectMetadata metadata = ranges.getObjectMetadata();
+    if (metadata == null && position > 0) {
+      // skipped past the stored bytes, which a compressed object may still cover
+      return null;
+    }
+    if (metadata == null || CompressionCodec.of(metadata) == CompressionCodec.NONE) {
+      return ranges;
+    }
+    if (position == 0) {
+      return new DecompressingInputStream(this.amazonS3, this.bucket, this.key, this.config,
+          ranges, metadata.getInstanceLength());
+    }
+    ranges.close();
+    return null;
+  }
+}
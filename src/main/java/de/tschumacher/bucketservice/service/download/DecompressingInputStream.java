@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.IOUtils;
+
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+import de.tschumacher.bucketservice.service.compression.GzipFramesInputStream;
+import de.tschumacher.bucketservice.service.compression.SeekTable;
+
+class DecompressingInputStream extends InputStream {
+  private static final int SKIP_BUFFER_SIZE = 64 * 1024;
+
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final String key;
+  private final S3ServiceConfig config;
+  private final long compressedLength;
+  private InputStream content;
+  private long position;
+  private SeekTable seekTable;
+  private boolean seekTableLoaded;
+
+  DecompressingInputStream(AmazonS3 amazonS3, String bucket, String key, S3ServiceConfig config,
+      RangedInputStream frames, long compressedLength) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.key = key;
+    this.config = config;
+    this.content = new GzipFramesInputStream(frames);
+    this.compressedLength = compressedLength;
+  }
+
+  @Override
+  public int read() throws IOException {
+    final byte[] single = new byte[1];
+    return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+    final int read = this.content.read(buffer, offset, length);
+    if (read > 0) {
+      this.position += read;
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(final long n) throws IOException {
+    if (n <= 0) {
+      return 0;
+    }
+    final long start = this.position;
+    final long target = start + n;
+    final SeekTable table = loadSeekTable();
+    if (table != null && table.getFrameCount() > 0) {
+      final long frame = Math.min(target / table.getFrameSize(), table.getFrameCount() - 1L);
+      if (frame > this.position / table.getFrameSize()) {
+        close();
+        this.content = openFrames(table.getCompressedOffset((int) frame));
+        this.position = frame * table.getFrameSize();
+      }
+    }
+    final byte[] discard = new byte[(int) Math.min(SKIP_BUFFER_SIZE, target - this.position)];
+    while (this.position < target) {
+      if (read(discard, 0, (int) Math.min(discard.length, target - this.position)) == -1) {
+        break;
+      }
+    }
+    return this.position - start;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.content != null) {
+      this.content.close();
+    }
+  }
+
+  private InputStream openFrames(final long compressedOffset) throws IOException {
+    final RangedInputStream frames =
+        new RangedInputStream(this.amazonS3, this.bucket, this.key, this.config);
+    frames.skip(compressedOffset);
+    return new GzipFramesInputStream(frames);
+  }
+
+  private SeekTable loadSeekTable() throws IOException {
+    if (!this.seekTableLoaded) {
+      this.seekTableLoaded = true;
+      final long tailLength = Math.min(this.compressedLength, SeekTable.MAX_MEMBER_LENGTH);
+      if (tailLength > 0) {
+        try (S3Object tail = this.amazonS3.getObject(new GetObjectRequest(this.bucket, this.key)
+            .withRange(this.compressedLength - tailLength, this.compressedLength - 1))) {
+          this.seekTable = SeekTable.parse(IOUtils.toByteArray(tail.getObjectContent()));
+        }
+      }
+    }
+    return this.seekTable;
+  }
+}
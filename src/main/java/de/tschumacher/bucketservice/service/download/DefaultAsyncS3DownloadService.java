@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.download;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import de.tschumacher.bucketservice.service.S3AsyncExecutor;
+import de.tschumacher.bucketservice.service.S3OperationType;
+
+public class DefaultAsyncS3DownloadService implements AsyncS3DownloadService {
+  private final S3DownloadService downloadService;
+  private final S3AsyncExecutor executor;
+
+  public DefaultAsyncS3DownloadService(S3DownloadService downloadService,
+      S3AsyncExecutor executor) {
+    this.downloadService = downloadService;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletableFuture<File> downloadFile(final String key, final String localPath) {
+    return this.executor.supply(S3OperationType.DOWNLOAD,
+        () -> this.downloadService.downloadFile(key, localPath));
+  }
+
+  @Override
+  public CompletableFuture<File> downloadFile(final String key) {
+    return this.executor.supply(S3OperationType.DOWNLOAD,
+        () -> this.downloadService.downloadFile(key));
+  }
+
+  @Override
+  public CompletableFuture<File> downloadFile(final String key, final File file) {
+    return this.executor.supply(S3OperationType.DOWNLOAD,
+        () -> this.downloadService.downloadFile(key, file));
+  }
+
+  @Override
+  public CompletableFuture<Long> downloadTo(final String key, final OutputStream outputStream) {
+    return this.executor.supply(S3OperationType.DOWNLOAD,
+        () -> this.downloadService.downloadTo(key, outputStream));
+  }
+
+  @Override
+  public CompletableFuture<Long> downloadTo(final String key,
+      final WritableByteChannel channel) {
+    return this.executor.supply(S3OperationType.DOWNLOAD,
+        () -> this.downloadService.downloadTo(key, channel));
+  }
+
+  @Override
+  public CompletableFuture<URL> createPresignedUrl(final String key, final int minutes) {
+    return this.executor.supply(S3OperationType.PRESIGN,
+        () -> this.downloadService.createPresignedUrl(key, minutes));
+  }
+
+  @Override
+  public CompletableFuture<URL> createPresignedUrl(final String key, final Duration expiration) {
+    return this.executor.supply(S3OperationType.PRESIGN,
+        () -> this.downloadService.createPresignedUrl(key, expiration));
+  }
+
+  @Override
+  public CompletableFuture<Map<String, URL>> createPresignedUrls(final Collection<String> keys,
+      final Duration expiration) {
+    return this.executor.supply(S3OperationType.PRESIGN,
+        () -> this.downloadService.createPresignedUrls(keys, expiration));
+  }
+}
@@ -13,28 +13,86 @@
  */
 package de.tschumacher.bucketservice.service.download;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
-
-import org.apache.commons.io.IOUtils;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 
+import de.tschumacher.bucketservice.service.CheckpointJournal;
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+import de.tschumacher.bucketservice.service.S3UrlSigner;
+import de.tschumacher.bucketservice.service.compression.CompressionCodec;
+import de.tschumacher.bucketservice.service.compression.GzipFramesInputStream;
 import de.tschumacher.utils.FilePathUtils;
 
-public class DefaultS3DownloadService implements S3DownloadService {
+public class DefaultS3DownloadService implements S3DownloadService, Closeable {
+  private static final String TEMP_SUFFIX = ".part";
+
   private final AmazonS3 amazonS3;
   private final String bucket;
+  private final ExecutorService ownedExecutor;
+  private final S3ServiceConfig config;
+  private final RangedFileDownload rangedFileDownload;
+  private final DiskCache diskCache;
+  private final S3UrlSigner urlSigner;
+  private final DirectBufferPool bufferPool;
 
   public DefaultS3DownloadService(AmazonS3 amazonS3, String bucket) {
+    this(amazonS3, bucket, S3ServiceConfig.defaults());
+  }
+
+  public DefaultS3DownloadService(AmazonS3 amazonS3, String bucket, S3ServiceConfig config) {
+    this(amazonS3, bucket, config, S3Executors.newTransferExecutor(config.getParallelism()),
+        true);
+  }
+
+  public DefaultS3DownloadService(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor) {
+    this(amazonS3, bucket, config, executor, false);
+  }
+
+  private DefaultS3DownloadService(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor, boolean ownsExecutor) {
+    this.ownedExecutor = ownsExecutor ? executor : null;
     this.amazonS3 = amazonS3;
     this.bucket = bucket;
+    this.config = config;
+    this.bufferPool =
+        new DirectBufferPool(config.getDownloadBufferSize(), config.getDownloadBufferCount());
+    this.rangedFileDownload =
+        new RangedFileDownload(amazonS3, bucket, config, executor, this.bufferPool);
+    this.diskCache = createDiskCache(amazonS3, bucket, config);
+    this.urlSigner = new S3UrlSigner(amazonS3, bucket, config);
+  }
+
+  @Override
+  public void close() {
+    if (this.ownedExecutor != null) {
+      this.ownedExecutor.shutdown();
+    }
   }
 
   @Override
@@ -44,43 +102,150 @@ public class DefaultS3DownloadService implements S3DownloadService {
 
   @Override
   public File downloadFile(String key, String localPath) throws FileNotFoundException, IOException {
-    final S3Object object = getObject(key);
-    final File file = createFile(key, localPath);
-    FileOutputStream fileOutputStream = new FileOutputStream(file);
-    IOUtils.copy(object.getObjectContent(), fileOutputStream);
-    fileOutputStream.close();
-    object.close();
+    return downloadFile(key, createFile(key, localPath));
+  }
+
+  @Override
+  public File downloadFile(final String key, final File file)
+      throws FileNotFoundException, IOException {
+    createMissingDirs(file);
+    if (this.diskCache != null) {
+      this.diskCache.download(key, file);
+      return file;
+    }
+    if (this.config.isRangedDownload()) {
+      final ObjectMetadata metadata = this.amazonS3.getObjectMetadata(this.bucket, key);
+      if (CompressionCodec.of(metadata) == CompressionCodec.NONE) {
+        downloadRanges(key, metadata, file);
+        return file;
+      }
+    }
+    writeAtomically(file, temp -> downloadToFile(key, temp));
     return file;
   }
 
+  private void downloadRanges(final String key, final ObjectMetadata metadata, final File file)
+      throws IOException {
+    if (this.config.getCheckpointDirectory() != null) {
+      downloadResumably(key, metadata, file);
+    } else {
+      writeAtomically(file, temp -> this.rangedFileDownload.download(key, metadata, temp));
+    }
+  }
+
+  private void downloadToFile(final String key, final File file) throws IOException {
+    try (S3Object object = getObject(key)) {
+      writeObject(object, file);
+    }
+  }
+
+  private void writeObject(final S3Object object, final File file) throws IOException {
+    try (InputStream content = decode(object);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      this.bufferPool.copy(content, channel);
+    }
+  }
+
+  private void downloadResumably(final String key, final ObjectMetadata metadata,
+      final File file) throws IOException {
+    final Path target = file.toPath();
+    final Path temp = target.resolveSibling("." + file.getName() + TEMP_SUFFIX);
+    try (CheckpointJournal journal = CheckpointJournal.open(this.config.getCheckpointDirectory(),
+        "download", this.bucket, key, file.getAbsolutePath())) {
+      this.rangedFileDownload.download(key, metadata, temp.toFile(), journal);
+      move(temp, target);
+      journal.delete();
+    }
+  }
+
+  private void writeAtomically(final File file, final TempFileWriter writer)
+      throws IOException {
+    final Path target = file.toPath();
+    final Path temp = createTempFile(target.toAbsolutePath());
+    try {
+      writer.write(temp.toFile());
+      move(temp, target);
+    } catch (final IOException | RuntimeException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+  }
+
+  private static Path createTempFile(final Path target) throws IOException {
+    // unlike Files.createTempFile this keeps the umask permissions the target would get
+    while (true) {
+      final Path temp = target.resolveSibling("." + target.getFileName() + "."
+          + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + TEMP_SUFFIX);
+      try {
+        return Files.createFile(temp);
+      } catch (final FileAlreadyExistsException e) {
+        // try the next name
+      }
+    }
+  }
+
+  private static void move(final Path source, final Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (final AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private DiskCache createDiskCache(final AmazonS3 amazonS3, final String bucket,
+      final S3ServiceConfig config) {
+    if (config.getDiskCacheDirectory() == null) {
+      return null;
+    }
+    return new DiskCache(amazonS3, bucket, config.getDiskCacheDirectory(),
+        config.getDiskCacheSize(), this::writeObject);
+  }
+
+  @Override
+  public InputStream openStream(final String key) {
+    return new DecodingInputStream(this.amazonS3, this.bucket, key, this.config);
+  }
+
+  @Override
+  public long downloadTo(final String key, final OutputStream outputStream) throws IOException {
+    return downloadTo(key, Channels.newChannel(outputStream));
+  }
+
+  @Override
+  public long downloadTo(final String key, final WritableByteChannel channel)
+      throws IOException {
+    try (S3Object object = getObject(key); InputStream content = decode(object)) {
+      return this.bufferPool.copy(content, channel);
+    }
+  }
+
   private S3Object getObject(String key) {
     return this.amazonS3.getObject(this.bucket, key);
   }
 
+  private InputStream decode(final S3Object object) {
+    if (CompressionCodec.of(object.getObjectMetadata()) != CompressionCodec.NONE) {
+      return new GzipFramesInputStream(object.getObjectContent());
+    }
+    return object.getObjectContent();
+  }
+
   @Override
   public URL createPresignedUrl(final String key, final int minutes) {
-    final java.util.Date expiration = computeExpiration(minutes);
-
-    final GeneratePresignedUrlRequest generatePresignedUrlRequest =
-        createPresignedRequest(key, expiration);
-
-    return this.amazonS3.generatePresignedUrl(generatePresignedUrlRequest);
+    return createPresignedUrl(key, Duration.ofMinutes(minutes));
   }
 
-  private GeneratePresignedUrlRequest createPresignedRequest(final String key,
-      final java.util.Date expiration) {
-    final GeneratePresignedUrlRequest presignedUrlRequest =
-        new GeneratePresignedUrlRequest(this.bucket, key, HttpMethod.GET);
-    presignedUrlRequest.setExpiration(expiration);
-    return presignedUrlRequest;
+  @Override
+  public URL createPresignedUrl(final String key, final Duration expiration) {
+    return this.urlSigner.sign(key, HttpMethod.GET, expiration);
   }
 
-  private java.util.Date computeExpiration(final int minutes) {
-    final java.util.Date expiration = new java.util.Date();
-    long msec = expiration.getTime();
-    msec += 1000 * 60 * minutes;
-    expiration.setTime(msec);
-    return expiration;
+  @Override
+  public Map<String, URL> createPresignedUrls(final Collection<String> keys,
+      final Duration expiration) {
+    return this.urlSigner.signAll(keys, HttpMethod.GET, expiration);
   }
 
 
@@ -96,5 +261,10 @@ public class DefaultS3DownloadService implements S3DownloadService {
     }
   }
 
+  private interface TempFileWriter {
+
+    void write(File temp) throws IOException;
+  }
+
 
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class DirectBufferPool {
+  private static final int MAX_STAGING_SIZE = 64 * 1024;
+
+  private final int bufferSize;
+  private final int maxDirectBuffers;
+  private final AtomicInteger directBuffers = new AtomicInteger();
+  private final BlockingQueue<TransferBuffer> freeBuffers;
+
+  DirectBufferPool(int bufferSize, int maxDirectBuffers) {
+    this.bufferSize = bufferSize;
+    this.maxDirectBuffers = maxDirectBuffers;
+    this.freeBuffers = new ArrayBlockingQueue<TransferBuffer>(maxDirectBuffers);
+  }
+
+  long copy(final InputStream inputStream, final WritableByteChannel channel)
+      throws IOException {
+    final TransferBuffer transferBuffer = acquire();
+    try {
+      final ByteBuffer buffer = transferBuffer.buffer;
+      final byte[] staging = transferBuffer.staging;
+      long transferred = 0;
+      int read;
+      while ((read = inputStream.read(staging)) != -1) {
+        if (read > buffer.remaining()) {
+          flush(buffer, channel);
+        }
+        buffer.put(staging, 0, read);
+        transferred += read;
+      }
+      flush(buffer, channel);
+      return transferred;
+    } finally {
+      release(transferBuffer);
+    }
+  }
+
+  private void flush(final ByteBuffer buffer, final WritableByteChannel channel)
+      throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private TransferBuffer acquire() {
+    final TransferBuffer buffer = this.freeBuffers.poll();
+    if (buffer != null) {
+      return buffer;
+    }
+    if (this.directBuffers.incrementAndGet() <= this.maxDirectBuffers) {
+      return new TransferBuffer(ByteBuffer.allocateDirect(this.bufferSize));
+    }
+    this.directBuffers.decrementAndGet();
+    // direct memory is capped, copies beyond the pooled buffers fall back to the heap
+    return new TransferBuffer(ByteBuffer.allocate(this.bufferSize));
+  }
+
+  private void release(final TransferBuffer buffer) {
+    if (buffer.buffer.isDirect()) {
+      buffer.buffer.clear();
+      this.freeBuffers.offer(buffer);
+    }
+  }
+
+  int getDirectBufferCount() {
+    return this.directBuffers.get();
+  }
+
+  private static class TransferBuffer {
+    private final ByteBuffer buffer;
+    private final byte[] staging;
+
+    TransferBuffer(ByteBuffer buffer) {
+      this.buffer = buffer;
+      this.staging = new byte[Math.min(buffer.capacity(), MAX_STAGING_SIZE)];
+    }
+  }
+}
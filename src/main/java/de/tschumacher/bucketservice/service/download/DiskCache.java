@@ -0,0 +1,309 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.util.BinaryUtils;
+
+import de.tschumacher.bucketservice.service.compression.CompressionCodec;
+
+class DiskCache {
+  private static final String OBJECTS_DIRECTORY = "objects";
+  private static final String KEYS_DIRECTORY = "keys";
+  private static final String TEMP_PREFIX = "download-";
+
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final Path objectsDirectory;
+  private final Path keysDirectory;
+  private final long maxSize;
+  private final ObjectWriter uncachedWriter;
+  private final Map<String, String> fileNamesByKeyHash = new HashMap<String, String>();
+  private final LinkedHashMap<String, Long> contentSizes =
+      new LinkedHashMap<String, Long>(16, 0.75f, true);
+  private final Map<String, Integer> pins = new HashMap<String, Integer>();
+  private final Map<String, CompletableFuture<Path>> downloads =
+      new ConcurrentHashMap<String, CompletableFuture<Path>>();
+  private long size;
+
+  DiskCache(AmazonS3 amazonS3, String bucket, File directory, long maxSize,
+      ObjectWriter uncachedWriter) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.objectsDirectory = directory.toPath().resolve(OBJECTS_DIRECTORY);
+    this.keysDirectory = directory.toPath().resolve(KEYS_DIRECTORY);
+    this.maxSize = maxSize;
+    this.uncachedWriter = uncachedWriter;
+    loadContents();
+  }
+
+  void download(final String key, final File file) throws IOException {
+    while (true) {
+      final Path content = fetch(key, file);
+      if (content == null) {
+        return;
+      }
+      // evicted between fetch and pin, fetch again
+      if (pin(content.getFileName().toString())) {
+        try {
+          Files.copy(content, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+          return;
+        } finally {
+          unpin(content.getFileName().toString());
+        }
+      }
+    }
+  }
+
+  private Path fetch(final String key, final File file) throws IOException {
+    final CompletableFuture<Path> download = new CompletableFuture<Path>();
+    final CompletableFuture<Path> running = this.downloads.putIfAbsent(key, download);
+    if (running != null) {
+      final Path content = join(running);
+      // null means the object was written past the cache, so it has to be fetched again
+      return content == null ? fetch(key, file) : content;
+    }
+    final Path content;
+    try {
+      content = validate(key, file);
+    } catch (final IOException | RuntimeException e) {
+      this.downloads.remove(key);
+      download.completeExceptionally(e);
+      throw e;
+    }
+    this.downloads.remove(key);
+    download.complete(content);
+    return content;
+  }
+
+  private Path validate(final String key, final File file) throws IOException {
+    final String keyHash = hash(key);
+    final String cachedFileName = getCachedFileName(keyHash);
+    final GetObjectRequest request = new GetObjectRequest(this.bucket, key);
+    if (cachedFileName != null) {
+      request.withNonmatchingETagConstraint(cachedFileName);
+    }
+    try (S3Object object = this.amazonS3.getObject(request)) {
+      if (object == null) {
+        final Path content = this.objectsDirectory.resolve(cachedFileName);
+        if (Files.exists(content)) {
+          return content;
+        }
+        forget(cachedFileName);
+        return validate(key, file);
+      }
+      final String eTag = object.getObjectMetadata().getETag();
+      if (eTag == null
+          || CompressionCodec.of(object.getObjectMetadata()) != CompressionCodec.NONE) {
+        this.uncachedWriter.write(object, file);
+        return null;
+      }
+      final String fileName = toFileName(eTag);
+      final Path content = this.objectsDirectory.resolve(fileName);
+      // contents are stored by ETag, another key may already hold the same content
+      if (!share(keyHash, fileName)) {
+        store(object, content);
+        put(keyHash, fileName, Files.size(content));
+      }
+      index(keyHash, fileName);
+      return content;
+    }
+  }
+
+  private void store(final S3Object object, final Path content) throws IOException {
+    final Path temp = Files.createTempFile(this.objectsDirectory, TEMP_PREFIX, null);
+    try {
+      Files.copy(object.getObjectContent(), temp, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(temp, content, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (final IOException | RuntimeException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+  }
+
+  private void index(final String keyHash, final String fileName) throws IOException {
+    final Path temp = Files.createTempFile(this.keysDirectory, TEMP_PREFIX, null);
+    try {
+      Files.write(temp, fileName.getBytes(StandardCharsets.UTF_8));
+      Files.move(temp, this.keysDirectory.resolve(keyHash), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (final IOException | RuntimeException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+  }
+
+  private synchronized boolean share(final String keyHash, final String fileName) {
+    final Long contentSize = this.contentSizes.get(fileName);
+    if (contentSize == null) {
+      return false;
+    }
+    put(keyHash, fileName, contentSize);
+    return true;
+  }
+
+  private synchronized String getCachedFileName(final String keyHash) {
+    final String fileName = this.fileNamesByKeyHash.get(keyHash);
+    if (fileName != null && this.contentSizes.get(fileName) == null) {
+      this.fileNamesByKeyHash.remove(keyHash);
+      return null;
+    }
+    return fileName;
+  }
+
+  private synchronized void put(final String keyHash, final String fileName,
+      final long contentSize) {
+    final String previousFileName = this.fileNamesByKeyHash.put(keyHash, fileName);
+    if (previousFileName != null && !previousFileName.equals(fileName)
+        && !this.fileNamesByKeyHash.containsValue(previousFileName)
+        && !this.pins.containsKey(previousFileName)) {
+      delete(previousFileName);
+      forget(previousFileName);
+    }
+    track(fileName, contentSize);
+  }
+
+  private synchronized boolean pin(final String fileName) {
+    if (!this.contentSizes.containsKey(fileName)) {
+      return false;
+    }
+    this.pins.merge(fileName, 1, Integer::sum);
+    return true;
+  }
+
+  private synchronized void unpin(final String fileName) {
+    this.pins.computeIfPresent(fileName, (name, count) -> count == 1 ? null : count - 1);
+    evict(null);
+  }
+
+  private synchronized void forget(final String fileName) {
+    final Long contentSize = this.contentSizes.remove(fileName);
+    if (contentSize != null) {
+      this.size -= contentSize;
+    }
+  }
+
+  private synchronized void track(final String fileName, final long contentSize) {
+    final Long previousSize = this.contentSizes.put(fileName, contentSize);
+    this.size += contentSize - (previousSize == null ? 0 : previousSize);
+    evict(fileName);
+  }
+
+  private void evict(final String keptFileName) {
+    final Iterator<Map.Entry<String, Long>> entries = this.contentSizes.entrySet().iterator();
+    while (this.size > this.maxSize && entries.hasNext()) {
+      final Map.Entry<String, Long> entry = entries.next();
+      if (entry.getKey().equals(keptFileName) || this.pins.containsKey(entry.getKey())) {
+        continue;
+      }
+      delete(entry.getKey());
+      this.size -= entry.getValue();
+      entries.remove();
+    }
+  }
+
+  private void delete(final String fileName) {
+    try {
+      Files.deleteIfExists(this.objectsDirectory.resolve(fileName));
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void loadContents() {
+    try {
+      Files.createDirectories(this.objectsDirectory);
+      Files.createDirectories(this.keysDirectory);
+      try (DirectoryStream<Path> contents = Files.newDirectoryStream(this.objectsDirectory)) {
+        for (final Path content : contents) {
+          final String fileName = content.getFileName().toString();
+          // temp files are left over by an interrupted download, dotted names by the old
+          // layout that stored contents per key
+          if (fileName.startsWith(TEMP_PREFIX) || fileName.indexOf('.') >= 0) {
+            Files.delete(content);
+            continue;
+          }
+          track(fileName, Files.size(content));
+        }
+      }
+      try (DirectoryStream<Path> keys = Files.newDirectoryStream(this.keysDirectory)) {
+        for (final Path key : keys) {
+          final String fileName = new String(Files.readAllBytes(key), StandardCharsets.UTF_8);
+          if (key.getFileName().toString().startsWith(TEMP_PREFIX)
+              || !this.contentSizes.containsKey(fileName)) {
+            Files.delete(key);
+            continue;
+          }
+          this.fileNamesByKeyHash.put(key.getFileName().toString(), fileName);
+        }
+      }
+    } catch (final IOException e) {
+      throw new AmazonClientException("failed to open disk cache " + this.objectsDirectory, e);
+    }
+  }
+
+  private String toFileName(final String eTag) {
+    return eTag.replaceAll("[^A-Za-z0-9-]", "");
+  }
+
+  private String hash(final String key) {
+    try {
+      return BinaryUtils.toHex(MessageDigest.getInstance("SHA-256")
+          .digest(key.getBytes(StandardCharsets.UTF_8)));
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  interface ObjectWriter {
+
+    void write(S3Object object, File file) throws IOException;
+  }
+
+  private Path join(final CompletableFuture<Path> download) throws IOException {
+    try {
+      return download.join();
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+import de.tschumacher.bucketservice.service.CheckpointJournal;
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3Retries;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+class RangedFileDownload {
+  private static final String RANGE_RECORD = "range";
+
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final S3ServiceConfig config;
+  private final ExecutorService executor;
+  private final DirectBufferPool bufferPool;
+
+  RangedFileDownload(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor, DirectBufferPool bufferPool) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.config = config;
+    this.executor = executor;
+    this.bufferPool = bufferPool;
+  }
+
+  void download(final String key, final ObjectMetadata metadata, final File file)
+      throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(metadata.getContentLength());
+      downloadRanges(key, metadata, randomAccessFile.getChannel(),
+          Collections.<Long>emptySet(), null);
+    } catch (final IOException | RuntimeException e) {
+      file.delete();
+      throw e;
+    }
+  }
+
+  void download(final String key, final ObjectMetadata metadata, final File file,
+      final CheckpointJournal journal) throws IOException {
+    final Set<Long> completed = resume(journal, metadata, file);
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(metadata.getContentLength());
+      downloadRanges(key, metadata, randomAccessFile.getChannel(), completed, journal);
+    }
+  }
+
+  private String createHeader(final ObjectMetadata metadata) {
+    return "download " + metadata.getETag() + " " + metadata.getContentLength() + " "
+        + this.config.getRangeSize();
+  }
+
+  private Set<Long> resume(final CheckpointJournal journal, final ObjectMetadata metadata,
+      final File file) throws IOException {
+    final String header = createHeader(metadata);
+    final List<String> records = journal.getRecords();
+    final Set<Long> completed = new HashSet<Long>();
+    // without an ETag a changed object can't be told apart from the journaled one
+    if (metadata.getETag() != null && !records.isEmpty() && records.get(0).equals(header)
+        && file.exists()) {
+      for (final String record : records.subList(1, records.size())) {
+        final String[] fields = record.split(" ");
+        if (fields.length == 2 && RANGE_RECORD.equals(fields[0])) {
+          completed.add(Long.valueOf(fields[1]));
+        }
+      }
+      return completed;
+    }
+    journal.reset();
+    journal.append(header);
+    return completed;
+  }
+
+  private void downloadRanges(final String key, final ObjectMetadata metadata,
+      final FileChannel channel, final Set<Long> completed, final CheckpointJournal journal) {
+    final long length = metadata.getContentLength();
+    final long rangeSize = this.config.getRangeSize();
+    final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    for (long start = 0; start < length; start += rangeSize) {
+      if (completed.contains(start)) {
+        continue;
+      }
+      final Range range = new Range(key, metadata.getETag(), start,
+          Math.min(start + rangeSize, length) - 1);
+      final Callable<Void> task = createRangeTask(range, channel);
+      futures.add(this.executor.submit(journal == null ? task
+          : journaled(task, RANGE_RECORD + " " + start, channel, journal)));
+    }
+    S3Executors.awaitAll(futures);
+  }
+
+  private Callable<Void> createRangeTask(final Range range, final FileChannel channel) {
+    return () -> S3Retries.call(() -> downloadRange(range, channel), this.config);
+  }
+
+  private static Callable<Void> journaled(final Callable<Void> task, final String record,
+      final FileChannel channel, final CheckpointJournal journal) {
+    return () -> {
+      task.call();
+      // the range has to be on disk before the journal claims it
+      channel.force(false);
+      journal.append(record);
+      return null;
+    };
+  }
+
+  private Void downloadRange(final Range range, final FileChannel channel) {
+    try (S3Object object = this.amazonS3.getObject(createRangeRequest(range))) {
+      if (object == null) {
+        throw new AmazonClientException("object " + range.key + " changed during download");
+      }
+      copy(object.getObjectContent(), channel, range);
+      return null;
+    } catch (final IOException e) {
+      throw S3Retries.readFailure("failed to download range of " + range.key, e);
+    }
+  }
+
+  private GetObjectRequest createRangeRequest(final Range range) {
+    final GetObjectRequest request =
+        new GetObjectRequest(this.bucket, range.key).withRange(range.position, range.end);
+    if (range.eTag != null) {
+      request.withMatchingETagConstraint(range.eTag);
+    }
+    return request;
+  }
+
+  private void copy(final InputStream in, final FileChannel channel, final Range range)
+      throws IOException {
+    this.bufferPool.copy(in, new RangeChannel(channel, range));
+    if (range.position <= range.end) {
+      throw new IOException("premature end of range for " + range.key);
+    }
+  }
+
+  private static class RangeChannel implements WritableByteChannel {
+    private final FileChannel channel;
+    private final Range range;
+
+    RangeChannel(FileChannel channel, Range range) {
+      this.channel = channel;
+      this.range = range;
+    }
+
+    @Override
+    public int write(final ByteBuffer buffer) throws IOException {
+      if (buffer.remaining() > this.range.end - this.range.position + 1) {
+        throw new IOException("range of " + this.range.key + " returned too many bytes");
+      }
+      final int written = this.channel.write(buffer, this.range.position);
+      this.range.position += written;
+      return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return this.channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+      // the file channel is shared by all ranges and closed by the download
+    }
+  }
+
+  private static class Range {
+    private final String key;
+    private final String eTag;
+    private final long end;
+    private long position;
+
+    Range(String key, String eTag, long start, long end) {
+      this.key = key;
+      this.eTag = eTag;
+      this.position = start;
+      this.end = end;
+    }
+  }
+}
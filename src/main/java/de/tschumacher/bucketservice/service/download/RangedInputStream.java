@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.download;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+
+import de.tschumacher.bucketservice.service.S3Retries;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+class RangedInputStream extends InputStream {
+  private static final int RANGE_NOT_SATISFIABLE = 416;
+  private static final long UNKNOWN_LENGTH = -1;
+
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final String key;
+  private final S3ServiceConfig config;
+  private final long rangeSize;
+  private final int maxRetries;
+  private long length = UNKNOWN_LENGTH;
+  private String eTag;
+  private ObjectMetadata metadata;
+  private long position;
+  private long rangeEnd;
+  private S3ObjectInputStream content;
+  private int failedReads;
+  private boolean closed;
+
+  RangedInputStream(AmazonS3 amazonS3, String bucket, String key, S3ServiceConfig config) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.key = key;
+    this.config = config;
+    this.rangeSize = config.getRangeSize();
+    this.maxRetries = config.getMaxPartRetries();
+  }
+
+  @Override
+  public int read() throws IOException {
+    final byte[] single = new byte[1];
+    return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+    if (this.closed) {
+      throw new IOException("stream of " + this.key + " is closed");
+    }
+    if (length == 0) {
+      return 0;
+    }
+    while (this.content != null || openNextRange()) {
+      final int read = readContent(buffer, offset,
+          (int) Math.min(length, this.rangeEnd - this.position + 1));
+      if (read > 0) {
+        this.position += read;
+        if (this.position > this.rangeEnd) {
+          closeContent();
+        }
+        return read;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public long skip(final long n) throws IOException {
+    if (n <= 0) {
+      return 0;
+    }
+    final long skipped = this.length == UNKNOWN_LENGTH ? n
+        : Math.max(0, Math.min(n, this.length - this.position));
+    if (this.content != null && this.position + skipped <= this.rangeEnd) {
+      final long read = this.content.skip(skipped);
+      this.position += read;
+      return read;
+    }
+    closeContent();
+    this.position += skipped;
+    return skipped;
+  }
+
+  ObjectMetadata getObjectMetadata() {
+    if (this.length == UNKNOWN_LENGTH) {
+      openNextRange();
+    }
+    return this.metadata;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return this.content == null ? 0 : this.content.available();
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    closeContent();
+  }
+
+  private int readContent(final byte[] buffer, final int offset, final int length)
+      throws IOException {
+    try {
+      final int read = this.content.read(buffer, offset, length);
+      if (read == -1) {
+        throw new IOException("premature end of range for " + this.key);
+      }
+      this.failedReads = 0;
+      return read;
+    } catch (final IOException e) {
+      closeContent();
+      if (++this.failedReads > this.maxRetries) {
+        throw e;
+      }
+      return 0;
+    }
+  }
+
+  private boolean openNextRange() {
+    if (this.length != UNKNOWN_LENGTH && this.position >= this.length) {
+      return false;
+    }
+    final long end = this.position + this.rangeSize - 1;
+    final S3Object object;
+    try {
+      object = S3Retries.call(() -> this.amazonS3.getObject(createRangeRequest(end)),
+          this.config);
+    } catch (final AmazonS3Exception e) {
+      if (e.getStatusCode() == RANGE_NOT_SATISFIABLE && this.length == UNKNOWN_LENGTH) {
+        this.length = this.position;
+        return false;
+      }
+      throw e;
+    }
+    if (object == null) {
+      throw new AmazonClientException("object " + this.key + " changed during download");
+    }
+    if (this.length == UNKNOWN_LENGTH) {
+      this.metadata = object.getObjectMetadata();
+      this.length = this.metadata.getInstanceLength();
+      this.eTag = this.metadata.getETag();
+    }
+    this.rangeEnd = Math.min(end, this.length - 1);
+    this.content = object.getObjectContent();
+    return true;
+  }
+
+  private GetObjectRequest createRangeRequest(final long end) {
+    final GetObjectRequest request =
+        new GetObjectRequest(this.bucket, this.key).withRange(this.position, end);
+    if (this.eTag != null) {
+      request.withMatchingETagConstraint(this.eTag);
+    }
+    return request;
+  }
+
+  private void closeContent() {
+    if (this.content == null) {
+      return;
+    }
+    if (this.position > this.rangeEnd) {
+      closeQuietly(this.content);
+    } else {
+      this.content.abort();
+    }
+    this.content = null;
+  }
+
+  private void closeQuietly(final InputStream inputStream) {
+    try {
+      inputStream.close();
+    } catch (final IOException e) {
+      // the range was read completely, a failed close only loses the connection
+    }
+  }
+}
@@ -16,7 +16,13 @@ package de.tschumacher.bucketservice.service.download;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
 
 public interface S3DownloadService {
 
@@ -24,5 +30,17 @@ public interface S3DownloadService {
 
   File downloadFile(String key) throws FileNotFoundException, IOException;
 
+  File downloadFile(String key, File file) throws FileNotFoundException, IOException;
+
+  InputStream openStream(String key);
+
+  long downloadTo(String key, OutputStream outputStream) throws IOException;
+
+  long downloadTo(String key, WritableByteChannel channel) throws IOException;
+
   URL createPresignedUrl(String key, int minutes);
+
+  URL createPresignedUrl(String key, Duration expiration);
+
+  Map<String, URL> createPresignedUrls(Collection<String> keys, Duration expiration);
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import de.tschumacher.bucketservice.domain.S3File;
+import de.tschumacher.bucketservice.domain.S3PrefixSummary;
+
+public interface AsyncS3InformationService {
+
+  CompletableFuture<Boolean> fileExists(String key);
+
+  CompletableFuture<Map<String, String>> getUserMetadata(String key);
+
+  CompletableFuture<List<String>> listFileNames(String path);
+
+  CompletableFuture<List<S3File>> listFiles(String path);
+
+  CompletableFuture<List<String>> listDirectories(String path);
+
+  CompletableFuture<S3PrefixSummary> summarize(String prefix);
+}
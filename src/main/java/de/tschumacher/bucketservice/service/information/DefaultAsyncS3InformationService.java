@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import de.tschumacher.bucketservice.domain.S3File;
+import de.tschumacher.bucketservice.domain.S3PrefixSummary;
+import de.tschumacher.bucketservice.service.S3AsyncExecutor;
+import de.tschumacher.bucketservice.service.S3OperationType;
+
+public class DefaultAsyncS3InformationService implements AsyncS3InformationService {
+  private final S3InformationService informationService;
+  private final S3AsyncExecutor executor;
+
+  public DefaultAsyncS3InformationService(S3InformationService informationService,
+      S3AsyncExecutor executor) {
+    this.informationService = informationService;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletableFuture<Boolean> fileExists(final String key) {
+    return this.executor.supply(S3OperationType.EXISTS,
+        () -> this.informationService.fileExists(key));
+  }
+
+  @Override
+  public CompletableFuture<Map<String, String>> getUserMetadata(final String key) {
+    return this.executor.supply(S3OperationType.EXISTS,
+        () -> this.informationService.getUserMetadata(key));
+  }
+
+  @Override
+  public CompletableFuture<List<String>> listFileNames(final String path) {
+    return this.executor.supply(S3OperationType.LIST,
+        () -> this.informationService.listFileNames(path));
+  }
+
+  @Override
+  public CompletableFuture<List<S3File>> listFiles(final String path) {
+    return this.executor.supply(S3OperationType.LIST,
+        () -> this.informationService.listFiles(path));
+  }
+
+  @Override
+  public CompletableFuture<List<String>> listDirectories(final String path) {
+    return this.executor.supply(S3OperationType.LIST,
+        () -> this.informationService.listDirectories(path));
+  }
+
+  @Override
+  public CompletableFuture<S3PrefixSummary> summarize(final String prefix) {
+    return this.executor.supply(S3OperationType.LIST,
+        () -> this.informationService.summarize(prefix));
+  }
+}
@@ -13,65 +13,216 @@
  */
 package de.tschumacher.bucketservice.service.information;
 
+import java.io.Closeable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.ListObjectsRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 
+import de.tschumacher.bucketservice.domain.S3CacheStatistics;
 import de.tschumacher.bucketservice.domain.S3File;
+import de.tschumacher.bucketservice.domain.S3PrefixSummary;
+import de.tschumacher.bucketservice.domain.S3Sharding;
+import de.tschumacher.bucketservice.service.S3ChangeListener;
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
 
-public class DefaultS3InformationService implements S3InformationService {
+public class DefaultS3InformationService
+    implements S3InformationService, S3ChangeListener, Closeable {
 
   public static final String DELIMITER = "/";
   private final AmazonS3 amazonS3;
   private final String bucket;
+  private final ExecutorService ownedExecutor;
+  private final ExecutorService executor;
+  private final ExistenceCache existenceCache;
+  private final ListingCache listingCache;
+  private final SummaryCache summaryCache;
+  private final PrefixSummarizer summarizer;
+  private final int listingParallelism;
 
   public DefaultS3InformationService(AmazonS3 amazonS3, String bucket) {
+    this(amazonS3, bucket, S3ServiceConfig.defaults());
+  }
+
+  public DefaultS3InformationService(AmazonS3 amazonS3, String bucket, S3ServiceConfig config) {
+    this(amazonS3, bucket, config, S3Executors.newTransferExecutor(config.getParallelism()),
+        true);
+  }
+
+  public DefaultS3InformationService(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor) {
+    this(amazonS3, bucket, config, executor, false);
+  }
+
+  private DefaultS3InformationService(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor, boolean ownsExecutor) {
+    this.ownedExecutor = ownsExecutor ? executor : null;
     this.amazonS3 = amazonS3;
     this.bucket = bucket;
+    this.executor = executor;
+    this.existenceCache = createExistenceCache(config);
+    this.listingCache = createListingCache(config);
+    this.summaryCache = createSummaryCache(config);
+    this.listingParallelism = config.getListingParallelism();
+    this.summarizer =
+        new PrefixSummarizer(amazonS3, bucket, this.listingParallelism, this.summaryCache);
   }
 
 
+  @Override
+  public void close() {
+    if (this.ownedExecutor != null) {
+      this.ownedExecutor.shutdown();
+    }
+  }
+
   @Override
   public boolean fileExists(final String key) {
-    return this.amazonS3.listObjects(this.bucket, key).getObjectSummaries().size() > 0;
+    if (this.existenceCache == null) {
+      return this.amazonS3.doesObjectExist(this.bucket, key);
+    }
+    final Boolean cached = this.existenceCache.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    final long generation = this.existenceCache.beginLoad(key);
+    try {
+      final boolean exists = this.amazonS3.doesObjectExist(this.bucket, key);
+      this.existenceCache.put(key, exists, generation);
+      return exists;
+    } finally {
+      this.existenceCache.endLoad(key);
+    }
+  }
+
+
+  @Override
+  public Map<String, String> getUserMetadata(final String key) {
+    return this.amazonS3.getObjectMetadata(this.bucket, key).getUserMetadata();
+  }
+
+
+  @Override
+  public void objectChanged(final String key) {
+    if (this.existenceCache != null) {
+      this.existenceCache.invalidate(key);
+    }
+    if (this.listingCache != null) {
+      this.listingCache.invalidate(key);
+    }
+    if (this.summaryCache != null) {
+      this.summaryCache.invalidate(key);
+    }
+  }
+
+
+  @Override
+  public S3CacheStatistics listingCacheStatistics() {
+    if (this.listingCache == null) {
+      return S3CacheStatistics.newBuilder().build();
+    }
+    return this.listingCache.statistics();
   }
 
 
   @Override
   public List<String> listDirectories(final String path) {
-    final ListObjectsRequest listObjectsRequest = createDirectoriesListRequest(path);
-    final ObjectListing objects = this.amazonS3.listObjects(listObjectsRequest);
-    return objects.getCommonPrefixes();
+    try (Stream<ListObjectsV2Result> pages = streamListing(createDirectoriesListRequest(path))) {
+      return pages.flatMap(page -> page.getCommonPrefixes().stream())
+          .collect(Collectors.toList());
+    }
   }
 
 
 
   @Override
   public List<String> listFileNames(final String path) {
-    final ObjectListing objects = listS3Files(path);
-    return createFileNameList(objects.getObjectSummaries());
+    try (Stream<ListObjectsV2Result> pages = streamListing(createListObjectsRequest(path))) {
+      return pages.flatMap(page -> page.getObjectSummaries().stream())
+          .map(S3ObjectSummary::getKey).collect(Collectors.toList());
+    }
   }
 
 
   @Override
   public List<S3File> listFiles(String path) {
-    final ObjectListing objects = listS3Files(path);
-    return createFileList(objects.getObjectSummaries());
+    try (Stream<ListObjectsV2Result> pages = streamListing(createListObjectsRequest(path))) {
+      return pages.flatMap(page -> page.getObjectSummaries().stream()).map(this::createS3File)
+          .collect(Collectors.toList());
+    }
+  }
+
+
+  @Override
+  public Stream<S3File> streamFiles(final String path) {
+    return streamSummaries(path).map(this::createS3File);
+  }
+
+
+  @Override
+  public Stream<String> streamDirectories(final String path) {
+    return streamPages(createDirectoriesListRequest(path))
+        .flatMap(page -> page.getCommonPrefixes().stream());
+  }
+
+
+  @Override
+  public Stream<S3File> streamFilesRecursively(final String prefix) {
+    return streamPages(createRecursiveListRequest(prefix))
+        .flatMap(page -> page.getObjectSummaries().stream()).map(this::createS3File);
+  }
+
+
+  @Override
+  public Stream<S3File> streamFilesSharded(final String prefix, final S3Sharding sharding) {
+    final ShardedListing listing = new ShardedListing(this.amazonS3, this.bucket, prefix,
+        sharding, this.listingParallelism);
+    return StreamSupport
+        .stream(Spliterators.spliteratorUnknownSize(listing,
+            Spliterator.NONNULL | (sharding.isOrdered() ? Spliterator.ORDERED : 0)), false)
+        .onClose(listing::close).flatMap(List::stream).map(this::createS3File);
+  }
+
+
+  @Override
+  public S3PrefixSummary summarize(final String prefix) {
+    return this.summarizer.summarize(prefix);
+  }
+
+
+  private ExistenceCache createExistenceCache(final S3ServiceConfig config) {
+    if (!config.isExistenceCache()) {
+      return null;
+    }
+    return new ExistenceCache(config.getExistenceCacheSize(), config.getExistenceCacheTtl());
   }
 
-  private List<S3File> createFileList(List<S3ObjectSummary> objectSummaries) {
-    final List<S3File> fileList = new ArrayList<S3File>();
-    if (objectSummaries == null)
-      return fileList;
 
-    for (final S3ObjectSummary summary : objectSummaries) {
-      fileList.add(createS3File(summary));
+  private ListingCache createListingCache(final S3ServiceConfig config) {
+    if (!config.isListingCache()) {
+      return null;
     }
-    return fileList;
+    return new ListingCache(config.getListingCacheSize(), config.getListingCacheTtl());
+  }
+
+
+  private SummaryCache createSummaryCache(final S3ServiceConfig config) {
+    if (!config.isSummaryCache()) {
+      return null;
+    }
+    return new SummaryCache(config.getSummaryCacheSize(), config.getSummaryCacheTtl());
   }
 
 
@@ -82,34 +233,89 @@ public class DefaultS3InformationService implements S3InformationService {
   }
 
 
-  private ObjectListing listS3Files(final String path) {
-    final ListObjectsRequest listObjectsRequest = createListObjectsRequest(path);
-    final ObjectListing objects = this.amazonS3.listObjects(listObjectsRequest);
-    return objects;
+  private Stream<S3ObjectSummary> streamSummaries(final String path) {
+    return streamPages(createListObjectsRequest(path))
+        .flatMap(page -> page.getObjectSummaries().stream());
   }
 
 
-  private ListObjectsRequest createListObjectsRequest(final String path) {
-    return new ListObjectsRequest().withBucketName(this.bucket).withPrefix(path).withMarker(path)
-        .withDelimiter(DELIMITER);
+  private Stream<ListObjectsV2Result> streamListing(final ListObjectsV2Request request) {
+    if (this.listingCache != null) {
+      return Stream.of(getCachedPage(request));
+    }
+    return streamPages(request);
+  }
+
+
+  private Stream<ListObjectsV2Result> streamPages(final ListObjectsV2Request request) {
+    final ObjectListingPages pages = new ObjectListingPages(this.amazonS3, request, this.executor);
+    return StreamSupport
+        .stream(Spliterators.spliteratorUnknownSize(pages,
+            Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(pages::close);
   }
 
 
+  private ListObjectsV2Result getCachedPage(final ListObjectsV2Request request) {
+    ListingCache.Listing listing =
+        this.listingCache.get(request.getPrefix(), request.getDelimiter());
+    if (listing == null) {
+      listing = fetchListing(request.getPrefix(), request.getDelimiter());
+    }
+    return createPage(listing, request.getStartAfter());
+  }
 
-  private List<String> createFileNameList(List<S3ObjectSummary> objectSummaries) {
-    final List<String> fileList = new ArrayList<String>();
-    if (objectSummaries == null)
-      return fileList;
 
-    for (final S3ObjectSummary summary : objectSummaries) {
-      fileList.add(summary.getKey());
+  private ListingCache.Listing fetchListing(final String prefix, final String delimiter) {
+    final long generation = this.listingCache.beginLoad(prefix);
+    final List<S3ObjectSummary> summaries = new ArrayList<S3ObjectSummary>();
+    final List<String> commonPrefixes = new ArrayList<String>();
+    final ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(this.bucket)
+        .withPrefix(prefix).withDelimiter(delimiter);
+    try (ObjectListingPages pages = new ObjectListingPages(this.amazonS3, request, this.executor)) {
+      while (pages.hasNext()) {
+        final ListObjectsV2Result page = pages.next();
+        summaries.addAll(page.getObjectSummaries());
+        commonPrefixes.addAll(page.getCommonPrefixes());
+      }
+      return this.listingCache.put(prefix, delimiter, Collections.unmodifiableList(summaries),
+          Collections.unmodifiableList(commonPrefixes), generation);
+    } finally {
+      this.listingCache.endLoad(prefix);
     }
-    return fileList;
   }
 
 
-  private ListObjectsRequest createDirectoriesListRequest(final String path) {
-    return new ListObjectsRequest().withBucketName(this.bucket).withPrefix(path)
+  private ListObjectsV2Result createPage(final ListingCache.Listing listing,
+      final String startAfter) {
+    final ListObjectsV2Result page = new ListObjectsV2Result();
+    for (final S3ObjectSummary summary : listing.getSummaries()) {
+      if (startAfter == null || summary.getKey().compareTo(startAfter) > 0) {
+        page.getObjectSummaries().add(summary);
+      }
+    }
+    for (final String commonPrefix : listing.getCommonPrefixes()) {
+      if (startAfter == null || commonPrefix.compareTo(startAfter) > 0) {
+        page.getCommonPrefixes().add(commonPrefix);
+      }
+    }
+    return page;
+  }
+
+
+  private ListObjectsV2Request createListObjectsRequest(final String path) {
+    return new ListObjectsV2Request().withBucketName(this.bucket).withPrefix(path)
+        .withStartAfter(path).withDelimiter(DELIMITER);
+  }
+
+
+  private ListObjectsV2Request createRecursiveListRequest(final String prefix) {
+    return new ListObjectsV2Request().withBucketName(this.bucket).withPrefix(prefix);
+  }
+
+
+  private ListObjectsV2Request createDirectoriesListRequest(final String path) {
+    return new ListObjectsV2Request().withBucketName(this.bucket).withPrefix(path)
         .withDelimiter(DELIMITER);
   }
 
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class ExistenceCache {
+  private final Map<String, CacheEntry> entries;
+  private final LoadGenerations generations = new LoadGenerations();
+  private final long ttlNanos;
+
+  ExistenceCache(final int maxEntries, final Duration ttl) {
+    this.ttlNanos = ttl.toNanos();
+    this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  synchronized Boolean get(final String key) {
+    final CacheEntry entry = this.entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (System.nanoTime() - entry.created > this.ttlNanos) {
+      this.entries.remove(key);
+      return null;
+    }
+    return entry.exists;
+  }
+
+  synchronized long beginLoad(final String key) {
+    return this.generations.begin(key);
+  }
+
+  synchronized void endLoad(final String key) {
+    this.generations.end(key);
+  }
+
+  synchronized void put(final String key, final boolean exists, final long generation) {
+    if (this.generations.isCurrent(key, generation)) {
+      this.entries.put(key, new CacheEntry(exists, System.nanoTime()));
+    }
+  }
+
+  synchronized void invalidate(final String key) {
+    this.generations.invalidate(key::equals);
+    this.entries.remove(key);
+  }
+
+  private static class CacheEntry {
+    private final boolean exists;
+    private final long created;
+
+    CacheEntry(boolean exists, long created) {
+      this.exists = exists;
+      this.created = created;
+    }
+  }
+}
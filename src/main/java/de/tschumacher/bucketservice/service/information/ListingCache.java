@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import de.tschumacher.bucketservice.domain.S3CacheStatistics;
+
+class ListingCache {
+  static final int MAX_LISTING_SIZE = 10000;
+
+  private final Map<ListingKey, Listing> entries;
+  private final LoadGenerations generations = new LoadGenerations();
+  private final long ttlNanos;
+  private long hits;
+  private long misses;
+
+  ListingCache(final int maxEntries, final Duration ttl) {
+    this.ttlNanos = ttl.toNanos();
+    this.entries = new LinkedHashMap<ListingKey, Listing>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ListingKey, Listing> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  synchronized Listing get(final String prefix, final String delimiter) {
+    final ListingKey key = new ListingKey(prefix, delimiter);
+    final Listing listing = this.entries.get(key);
+    if (listing == null || System.nanoTime() - listing.created > this.ttlNanos) {
+      this.entries.remove(key);
+      this.misses++;
+      return null;
+    }
+    this.hits++;
+    return listing;
+  }
+
+  synchronized long beginLoad(final String prefix) {
+    return this.generations.begin(normalize(prefix));
+  }
+
+  synchronized void endLoad(final String prefix) {
+    this.generations.end(normalize(prefix));
+  }
+
+  synchronized Listing put(final String prefix, final String delimiter,
+      final List<S3ObjectSummary> summaries, final List<String> commonPrefixes,
+      final long generation) {
+    final Listing listing = new Listing(summaries, commonPrefixes, System.nanoTime());
+    if (this.generations.isCurrent(normalize(prefix), generation)
+        && summaries.size() + commonPrefixes.size() <= MAX_LISTING_SIZE) {
+      this.entries.put(new ListingKey(prefix, delimiter), listing);
+    }
+    return listing;
+  }
+
+  synchronized void invalidate(final String key) {
+    this.generations.invalidate(key::startsWith);
+    this.entries.keySet().removeIf(listingKey -> key.startsWith(listingKey.prefix));
+  }
+
+  synchronized S3CacheStatistics statistics() {
+    return S3CacheStatistics.newBuilder().withHits(this.hits).withMisses(this.misses)
+        .withEntries(this.entries.size()).build();
+  }
+
+  private static String normalize(final String prefix) {
+    return prefix == null ? "" : prefix;
+  }
+
+  static class Listing {
+    private final List<S3ObjectSummary> summaries;
+    private final List<String> commonPrefixes;
+    private final long created;
+
+    Listing(List<S3ObjectSummary> summaries, List<String> commonPrefixes, long created) {
+      this.summaries = summaries;
+      this.commonPrefixes = commonPrefixes;
+      this.created = created;
+    }
+
+    List<S3ObjectSummary> getSummaries() {
+      return this.summaries;
+    }
+
+    List<String> getCommonPrefixes() {
+      return this.commonPrefixes;
+    }
+  }
+
+  private static class ListingKey {
+    private final String prefix;
+    private final String delimiter;
+
+    ListingKey(String prefix, String delimiter) {
+      this.prefix = normalize(prefix);
+      this.delimiter = delimiter;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (!(other instanceof ListingKey)) {
+        return false;
+      }
+      final ListingKey listingKey = (ListingKey) other;
+      return this.prefix.equals(listingKey.prefix)
+          && Objects.equals(this.delimiter, listingKey.delimiter);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.prefix, this.delimiter);
+    }
+  }
+}
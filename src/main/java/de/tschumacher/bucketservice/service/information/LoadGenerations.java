@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+class LoadGenerations {
+  private final Map<String, Load> loads = new HashMap<String, Load>();
+
+  long begin(final String key) {
+    final Load load = this.loads.computeIfAbsent(key, ignored -> new Load());
+    load.running++;
+    return load.generation;
+  }
+
+  boolean isCurrent(final String key, final long generation) {
+    final Load load = this.loads.get(key);
+    return load != null && load.generation == generation;
+  }
+
+  void end(final String key) {
+    final Load load = this.loads.get(key);
+    if (load != null && --load.running == 0) {
+      this.loads.remove(key);
+    }
+  }
+
+  void invalidate(final Predicate<String> affected) {
+    for (final Map.Entry<String, Load> entry : this.loads.entrySet()) {
+      if (affected.test(entry.getKey())) {
+        entry.getValue().generation++;
+      }
+    }
+  }
+
+  private static class Load {
+    private int running;
+    private long generation;
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+
+class ObjectListingPages implements Iterator<ListObjectsV2Result>, AutoCloseable {
+  private final AmazonS3 amazonS3;
+  private final ListObjectsV2Request request;
+  private final Executor executor;
+  private CompletableFuture<ListObjectsV2Result> nextPage;
+  private boolean started;
+
+  ObjectListingPages(AmazonS3 amazonS3, ListObjectsV2Request request, Executor executor) {
+    this.amazonS3 = amazonS3;
+    this.request = request;
+    this.executor = executor;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (!this.started) {
+      this.started = true;
+      this.nextPage = CompletableFuture.completedFuture(listPage(null));
+    }
+    return this.nextPage != null;
+  }
+
+  @Override
+  public ListObjectsV2Result next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    final ListObjectsV2Result page = join(this.nextPage);
+    this.nextPage = page.isTruncated() ? prefetch(page.getNextContinuationToken()) : null;
+    return page;
+  }
+
+  @Override
+  public void close() {
+    if (this.nextPage != null) {
+      this.nextPage.cancel(true);
+      this.nextPage = null;
+    }
+  }
+
+  private CompletableFuture<ListObjectsV2Result> prefetch(final String continuationToken) {
+    return CompletableFuture.supplyAsync(() -> listPage(continuationToken), this.executor);
+  }
+
+  private ListObjectsV2Result listPage(final String continuationToken) {
+    return this.amazonS3.listObjectsV2(createPageRequest(continuationToken));
+  }
+
+  private ListObjectsV2Request createPageRequest(final String continuationToken) {
+    return new ListObjectsV2Request().withBucketName(this.request.getBucketName())
+        .withPrefix(this.request.getPrefix()).withDelimiter(this.request.getDelimiter())
+        .withStartAfter(this.request.getStartAfter()).withMaxKeys(this.request.getMaxKeys())
+        .withContinuationToken(continuationToken);
+  }
+
+  private ListObjectsV2Result join(final CompletableFuture<ListObjectsV2Result> page) {
+    try {
+      return page.join();
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new AmazonClientException(e.getCause());
+    } catch (final CancellationException e) {
+      throw new AmazonClientException("listing was closed", e);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import java.util.Date;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import de.tschumacher.bucketservice.domain.S3PrefixSummary;
+
+class PrefixAggregate {
+  private long totalSize;
+  private long objectCount;
+  private long oldestModified = Long.MAX_VALUE;
+  private long newestModified = Long.MIN_VALUE;
+
+  void add(final S3ObjectSummary summary) {
+    this.totalSize += summary.getSize();
+    this.objectCount++;
+    if (summary.getLastModified() != null) {
+      final long lastModified = summary.getLastModified().getTime();
+      this.oldestModified = Math.min(this.oldestModified, lastModified);
+      this.newestModified = Math.max(this.newestModified, lastModified);
+    }
+  }
+
+  void addAll(final PrefixAggregate other) {
+    this.totalSize += other.totalSize;
+    this.objectCount += other.objectCount;
+    this.oldestModified = Math.min(this.oldestModified, other.oldestModified);
+    this.newestModified = Math.max(this.newestModified, other.newestModified);
+  }
+
+  boolean isEmpty() {
+    return this.objectCount == 0;
+  }
+
+  S3PrefixSummary.Builder toBuilder(final String prefix) {
+    return S3PrefixSummary.newBuilder().withPrefix(prefix).withTotalSize(this.totalSize)
+        .withObjectCount(this.objectCount)
+        .withOldestModified(this.oldestModified == Long.MAX_VALUE ? null
+            : new Date(this.oldestModified))
+        .withNewestModified(this.newestModified == Long.MIN_VALUE ? null
+            : new Date(this.newestModified));
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import de.tschumacher.bucketservice.domain.S3PrefixSummary;
+import de.tschumacher.bucketservice.domain.S3Sharding;
+import de.tschumacher.bucketservice.service.S3Executors;
+
+class PrefixSummarizer {
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final int parallelism;
+  private final SummaryCache cache;
+
+  PrefixSummarizer(final AmazonS3 amazonS3, final String bucket, final int parallelism,
+      final SummaryCache cache) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.parallelism = parallelism;
+    this.cache = cache;
+  }
+
+  S3PrefixSummary summarize(final String prefix) {
+    if (this.cache == null) {
+      return computeTotals(prefix).toSummary();
+    }
+    final SummaryCache.CachedSummary cached = this.cache.get(prefix);
+    if (cached != null) {
+      refresh(cached);
+      return this.cache.toSummary(cached);
+    }
+    final long generation = this.cache.generation();
+    final PrefixTotals totals = computeTotals(prefix);
+    final S3PrefixSummary summary = totals.toSummary();
+    this.cache.put(totals, generation);
+    return summary;
+  }
+
+  private PrefixTotals computeTotals(final String prefix) {
+    final PrefixTotals totals = new PrefixTotals(prefix);
+    try (ShardedListing listing = new ShardedListing(this.amazonS3, this.bucket, prefix,
+        S3Sharding.newBuilder().withDelimiter(PrefixTotals.DELIMITER).build(),
+        this.parallelism)) {
+      while (listing.hasNext()) {
+        listing.next().forEach(totals::add);
+      }
+    }
+    return totals;
+  }
+
+  private void refresh(final SummaryCache.CachedSummary cached) {
+    final Set<String> dirtyGroups = this.cache.takeDirtyGroups(cached);
+    if (dirtyGroups.isEmpty()) {
+      return;
+    }
+    final List<String> groups = new ArrayList<String>(dirtyGroups);
+    final ExecutorService executor =
+        S3Executors.newListingExecutor(Math.min(this.parallelism, groups.size()));
+    try {
+      final List<Future<PrefixAggregate>> aggregates =
+          new ArrayList<Future<PrefixAggregate>>(groups.size());
+      for (final String group : groups) {
+        aggregates.add(executor.submit(() -> aggregate(cached.getPrefix(), group)));
+      }
+      final List<PrefixAggregate> results = S3Executors.awaitAll(aggregates);
+      for (int i = 0; i < groups.size(); i++) {
+        this.cache.update(cached, groups.get(i), results.get(i));
+      }
+    } catch (final RuntimeException e) {
+      this.cache.remove(cached.getPrefix());
+      throw e;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private PrefixAggregate aggregate(final String prefix, final String group) {
+    final PrefixAggregate aggregate = new PrefixAggregate();
+    final ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(this.bucket)
+        .withPrefix(group).withDelimiter(group.equals(prefix) ? PrefixTotals.DELIMITER : null);
+    ListObjectsV2Result page;
+    do {
+      page = this.amazonS3.listObjectsV2(request);
+      for (final S3ObjectSummary summary : page.getObjectSummaries()) {
+        aggregate.add(summary);
+      }
+      request.setContinuationToken(page.getNextContinuationToken());
+    } while (page.isTruncated());
+    return aggregate;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import de.tschumacher.bucketservice.domain.S3PrefixSummary;
+import de.tschumacher.bucketservice.domain.S3Sharding;
+
+class PrefixTotals {
+  static final String DELIMITER = S3Sharding.DEFAULT_DELIMITER;
+
+  private final String prefix;
+  private final Map<String, PrefixAggregate> children =
+      new TreeMap<String, PrefixAggregate>(ShardedListing.KEY_ORDER);
+  private PrefixAggregate direct = new PrefixAggregate();
+
+  PrefixTotals(final String prefix) {
+    this.prefix = prefix;
+  }
+
+  String getPrefix() {
+    return this.prefix;
+  }
+
+  void add(final S3ObjectSummary summary) {
+    final String group = groupOf(summary.getKey());
+    if (group.equals(this.prefix)) {
+      this.direct.add(summary);
+    } else {
+      this.children.computeIfAbsent(group, child -> new PrefixAggregate()).add(summary);
+    }
+  }
+
+  void replace(final String group, final PrefixAggregate aggregate) {
+    if (group.equals(this.prefix)) {
+      this.direct = aggregate;
+    } else if (aggregate.isEmpty()) {
+      this.children.remove(group);
+    } else {
+      this.children.put(group, aggregate);
+    }
+  }
+
+  String groupOf(final String key) {
+    final int index = key.indexOf(DELIMITER, this.prefix.length());
+    return index < 0 ? this.prefix : key.substring(0, index + DELIMITER.length());
+  }
+
+  S3PrefixSummary toSummary() {
+    final PrefixAggregate total = new PrefixAggregate();
+    total.addAll(this.direct);
+    this.children.values().forEach(total::addAll);
+    final S3PrefixSummary.Builder builder = total.toBuilder(this.prefix);
+    this.children.forEach((child, aggregate) -> builder.withChild(aggregate.toBuilder(child)
+        .build()));
+    return builder.build();
+  }
+}
@@ -14,17 +14,36 @@
 package de.tschumacher.bucketservice.service.information;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
+import de.tschumacher.bucketservice.domain.S3CacheStatistics;
 import de.tschumacher.bucketservice.domain.S3File;
+import de.tschumacher.bucketservice.domain.S3PrefixSummary;
+import de.tschumacher.bucketservice.domain.S3Sharding;
 
 public interface S3InformationService {
 
   boolean fileExists(String key);
 
+  Map<String, String> getUserMetadata(String key);
+
   List<String> listFileNames(String path);
 
   List<S3File> listFiles(String path);
 
   List<String> listDirectories(String path);
 
+  Stream<S3File> streamFiles(String path);
+
+  Stream<String> streamDirectories(String path);
+
+  Stream<S3File> streamFilesRecursively(String prefix);
+
+  Stream<S3File> streamFilesSharded(String prefix, S3Sharding sharding);
+
+  S3PrefixSummary summarize(String prefix);
+
+  S3CacheStatistics listingCacheStatistics();
+
 }
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import de.tschumacher.bucketservice.domain.S3Sharding;
+import de.tschumacher.bucketservice.service.S3Executors;
+
+class ShardedListing implements Iterator<List<S3ObjectSummary>>, AutoCloseable {
+  static final Comparator<String> KEY_ORDER = ShardedListing::compareKeys;
+  private static final int PAGES_PER_SHARD = 2;
+
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final boolean ordered;
+  private final ExecutorService executor;
+  private final List<Shard> shards;
+  private final BlockingQueue<Batch> batches;
+  private int currentShard;
+  private int runningShards;
+  private List<S3ObjectSummary> nextPage;
+
+  ShardedListing(final AmazonS3 amazonS3, final String bucket, final String prefix,
+      final S3Sharding sharding, final int parallelism) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.ordered = sharding.isOrdered();
+    this.executor = S3Executors.newListingExecutor(parallelism);
+    try {
+      this.shards = sharding.getSplitPoints().isEmpty()
+          ? discoverShards(prefix, sharding.getDelimiter(), sharding.getDepth())
+          : splitShards(prefix, sharding.getSplitPoints());
+    } catch (final RuntimeException e) {
+      this.executor.shutdownNow();
+      throw e;
+    }
+    this.batches = this.ordered ? null
+        : new ArrayBlockingQueue<Batch>(parallelism * PAGES_PER_SHARD);
+    this.runningShards = this.shards.size();
+    for (final Shard shard : this.shards) {
+      this.executor.execute(() -> produce(shard));
+    }
+    this.executor.shutdown();
+  }
+
+  int getShardCount() {
+    return this.shards.size();
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (this.nextPage == null) {
+      final Batch batch;
+      if (this.ordered) {
+        if (this.currentShard >= this.shards.size()) {
+          return false;
+        }
+        batch = take(this.shards.get(this.currentShard).batches);
+      } else {
+        if (this.runningShards == 0) {
+          return false;
+        }
+        batch = take(this.batches);
+      }
+      if (batch.error != null) {
+        close();
+        throw batch.error;
+      }
+      if (batch.summaries == null) {
+        this.currentShard++;
+        this.runningShards--;
+      } else if (!batch.summaries.isEmpty()) {
+        this.nextPage = batch.summaries;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public List<S3ObjectSummary> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    final List<S3ObjectSummary> page = this.nextPage;
+    this.nextPage = null;
+    return page;
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+
+  private List<Shard> splitShards(final String prefix, final List<String> splitPoints) {
+    final List<String> boundaries = new ArrayList<String>(new LinkedHashSet<String>(splitPoints));
+    Collections.sort(boundaries, KEY_ORDER);
+    final List<Shard> shards = new ArrayList<Shard>(boundaries.size() + 1);
+    String startAfter = null;
+    for (final String boundary : boundaries) {
+      shards.add(new Shard(prefix, null, startAfter, prefix + boundary));
+      startAfter = prefix + boundary;
+    }
+    shards.add(new Shard(prefix, null, startAfter, null));
+    return shards;
+  }
+
+  private List<Shard> discoverShards(final String prefix, final String delimiter,
+      final int depth) {
+    final Map<String, Level> levels = new HashMap<String, Level>();
+    List<String> level = Collections.singletonList(prefix);
+    for (int i = 0; i < depth && !level.isEmpty(); i++) {
+      final List<Future<Level>> listings = new ArrayList<Future<Level>>(level.size());
+      for (final String levelPrefix : level) {
+        listings.add(this.executor.submit(() -> discoverLevel(levelPrefix, delimiter)));
+      }
+      final List<String> nextLevel = new ArrayList<String>();
+      for (final Level discovered : S3Executors.awaitAll(listings)) {
+        levels.put(discovered.prefix, discovered);
+        nextLevel.addAll(discovered.prefixes);
+      }
+      level = nextLevel;
+    }
+    final List<Shard> shards = new ArrayList<Shard>();
+    addShards(prefix, delimiter, levels, shards);
+    return shards;
+  }
+
+  private void addShards(final String prefix, final String delimiter,
+      final Map<String, Level> levels, final List<Shard> shards) {
+    final Level level = levels.get(prefix);
+    if (level == null) {
+      shards.add(new Shard(prefix, null, null, null));
+      return;
+    }
+    // the objects directly below a level are listed as their own shards, one per run of
+    // objects between two prefixes, so the shards stay in key order
+    final List<String> children = level.prefixes;
+    for (int gap = 0; gap <= children.size(); gap++) {
+      if (level.objectGaps.get(gap)) {
+        shards.add(new Shard(prefix, delimiter, gap == 0 ? null : children.get(gap - 1),
+            gap == children.size() ? null : children.get(gap)));
+      }
+      if (gap < children.size()) {
+        addShards(children.get(gap), delimiter, levels, shards);
+      }
+    }
+  }
+
+  private Level discoverLevel(final String prefix, final String delimiter) {
+    final Level level = new Level(prefix);
+    final ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(this.bucket)
+        .withPrefix(prefix).withDelimiter(delimiter);
+    ListObjectsV2Result page;
+    do {
+      page = this.amazonS3.listObjectsV2(request);
+      final List<String> pagePrefixes = page.getCommonPrefixes();
+      int next = 0;
+      for (final S3ObjectSummary summary : page.getObjectSummaries()) {
+        while (next < pagePrefixes.size()
+            && compareKeys(pagePrefixes.get(next), summary.getKey()) < 0) {
+          next++;
+        }
+        level.objectGaps.set(level.prefixes.size() + next);
+      }
+      level.prefixes.addAll(pagePrefixes);
+      request.setContinuationToken(page.getNextContinuationToken());
+    } while (page.isTruncated());
+    return level;
+  }
+
+  private void produce(final Shard shard) {
+    try {
+      listShard(shard);
+      publish(shard, new Batch(null, null));
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (final RuntimeException e) {
+      try {
+        publish(shard, new Batch(null, e));
+      } catch (final InterruptedException interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void listShard(final Shard shard) throws InterruptedException {
+    final ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(this.bucket)
+        .withPrefix(shard.prefix).withDelimiter(shard.delimiter)
+        .withStartAfter(shard.startAfter);
+    ListObjectsV2Result page;
+    do {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedException();
+      }
+      page = this.amazonS3.listObjectsV2(request);
+      final List<S3ObjectSummary> summaries = page.getObjectSummaries();
+      final int end = endOfShard(summaries, shard.end);
+      publish(shard, new Batch(summaries.subList(0, end), null));
+      if (end < summaries.size() || isPastEnd(page.getCommonPrefixes(), shard.end)) {
+        return;
+      }
+      request.setContinuationToken(page.getNextContinuationToken());
+    } while (page.isTruncated());
+  }
+
+  private static int endOfShard(final List<S3ObjectSummary> summaries, final String end) {
+    if (end == null || summaries.isEmpty()
+        || compareKeys(summaries.get(summaries.size() - 1).getKey(), end) <= 0) {
+      return summaries.size();
+    }
+    int index = 0;
+    while (compareKeys(summaries.get(index).getKey(), end) <= 0) {
+      index++;
+    }
+    return index;
+  }
+
+  private static boolean isPastEnd(final List<String> prefixes, final String end) {
+    return end != null && !prefixes.isEmpty()
+        && compareKeys(prefixes.get(prefixes.size() - 1), end) > 0;
+  }
+
+  private void publish(final Shard shard, final Batch batch) throws InterruptedException {
+    (this.ordered ? shard.batches : this.batches).put(batch);
+  }
+
+  private static Batch take(final BlockingQueue<Batch> queue) {
+    try {
+      return queue.take();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmazonClientException("interrupted while listing", e);
+    }
+  }
+
+  static int compareKeys(final String left, final String right) {
+    int i = 0;
+    int j = 0;
+    while (i < left.length() && j < right.length()) {
+      final int leftCodePoint = left.codePointAt(i);
+      final int rightCodePoint = right.codePointAt(j);
+      if (leftCodePoint != rightCodePoint) {
+        return Integer.compare(leftCodePoint, rightCodePoint);
+      }
+      i += Character.charCount(leftCodePoint);
+      j += Character.charCount(rightCodePoint);
+    }
+    return Integer.compare(left.length() - i, right.length() - j);
+  }
+
+  private class Shard {
+    private final String prefix;
+    private final String delimiter;
+    private final String startAfter;
+    private final String end;
+    private final BlockingQueue<Batch> batches;
+
+    Shard(final String prefix, final String delimiter, final String startAfter,
+        final String end) {
+      this.prefix = prefix;
+      this.delimiter = delimiter;
+      this.startAfter = startAfter;
+      this.end = end;
+      this.batches = ShardedListing.this.ordered
+          ? new ArrayBlockingQueue<Batch>(PAGES_PER_SHARD) : null;
+    }
+  }
+
+  private static class Level {
+    private final String prefix;
+    private final List<String> prefixes = new ArrayList<String>();
+    private final BitSet objectGaps = new BitSet();
+
+    Level(final String prefix) {
+      this.prefix = prefix;
+    }
+  }
+
+  private static class Batch {
+    private final List<S3ObjectSummary> summaries;
+    private final RuntimeException error;
+
+    Batch(final List<S3ObjectSummary> summaries, final RuntimeException error) {
+      this.summaries = summaries;
+      this.error = error;
+    }
+  }
+}
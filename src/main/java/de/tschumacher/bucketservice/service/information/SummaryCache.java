@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import de.tschumacher.bucketservice.domain.S3PrefixSummary;
+
+class SummaryCache {
+  private final Map<String, CachedSummary> summaries;
+  private final long ttlNanos;
+  private long generation;
+
+  SummaryCache(final int maxEntries, final Duration ttl) {
+    this.ttlNanos = ttl.toNanos();
+    this.summaries = new LinkedHashMap<String, CachedSummary>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedSummary> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  synchronized CachedSummary get(final String prefix) {
+    final CachedSummary summary = this.summaries.get(prefix);
+    if (summary == null || System.nanoTime() - summary.created > this.ttlNanos) {
+      this.summaries.remove(prefix);
+      return null;
+    }
+    return summary;
+  }
+
+  synchronized long generation() {
+    return this.generation;
+  }
+
+  synchronized void put(final PrefixTotals totals, final long generation) {
+    if (generation == this.generation) {
+      this.summaries.put(totals.getPrefix(), new CachedSummary(totals, System.nanoTime()));
+    }
+  }
+
+  synchronized void remove(final String prefix) {
+    this.summaries.remove(prefix);
+  }
+
+  synchronized void invalidate(final String key) {
+    this.generation++;
+    for (final CachedSummary summary : this.summaries.values()) {
+      if (key.startsWith(summary.totals.getPrefix())) {
+        summary.dirtyGroups.add(summary.totals.groupOf(key));
+      }
+    }
+  }
+
+  synchronized Set<String> takeDirtyGroups(final CachedSummary summary) {
+    final Set<String> dirtyGroups = new HashSet<String>(summary.dirtyGroups);
+    summary.dirtyGroups.clear();
+    return dirtyGroups;
+  }
+
+  synchronized void update(final CachedSummary summary, final String group,
+      final PrefixAggregate aggregate) {
+    summary.totals.replace(group, aggregate);
+  }
+
+  synchronized S3PrefixSummary toSummary(final CachedSummary summary) {
+    return summary.totals.toSummary();
+  }
+
+  static class CachedSummary {
+    private final PrefixTotals totals;
+    private final Set<String> dirtyGroups = new HashSet<String>();
+    private final long created;
+
+    CachedSummary(PrefixTotals totals, long created) {
+      this.totals = totals;
+      this.created = created;
+    }
+
+    String getPrefix() {
+      return this.totals.getPrefix();
+    }
+  }
+}
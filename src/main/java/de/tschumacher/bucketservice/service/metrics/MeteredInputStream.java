@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.tschumacher.bucketservice.service.S3OperationType;
+
+class MeteredInputStream extends CountingInputStream {
+  private final S3Metrics metrics;
+  private final S3OperationType type;
+  private final long start;
+  private Throwable error;
+  private boolean closed;
+
+  MeteredInputStream(final InputStream in, final S3Metrics metrics,
+      final S3OperationType type) {
+    super(in);
+    this.metrics = metrics;
+    this.type = type;
+    this.start = System.nanoTime();
+  }
+
+  @Override
+  public int read() throws IOException {
+    try {
+      return super.read();
+    } catch (final IOException | RuntimeException e) {
+      this.error = e;
+      throw e;
+    }
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    try {
+      return super.read(b, off, len);
+    } catch (final IOException | RuntimeException e) {
+      this.error = e;
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    try {
+      super.close();
+    } finally {
+      this.metrics.operationCompleted(this.type, System.nanoTime() - this.start, getCount(),
+          this.error);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.metrics;
+
+import java.util.Iterator;
+
+import de.tschumacher.bucketservice.service.S3OperationType;
+
+class MeteredIterator<T> implements Iterator<T> {
+  private final Iterator<T> delegate;
+  private final S3Metrics metrics;
+  private final S3OperationType type;
+  private final long start;
+  private boolean completed;
+
+  MeteredIterator(final Iterator<T> delegate, final S3Metrics metrics,
+      final S3OperationType type) {
+    super();
+    this.delegate = delegate;
+    this.metrics = metrics;
+    this.type = type;
+    this.start = System.nanoTime();
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (this.completed) {
+      return false;
+    }
+    try {
+      final boolean hasNext = this.delegate.hasNext();
+      if (!hasNext) {
+        complete(null);
+      }
+      return hasNext;
+    } catch (final RuntimeException e) {
+      complete(e);
+      throw e;
+    }
+  }
+
+  @Override
+  public T next() {
+    try {
+      return this.delegate.next();
+    } catch (final RuntimeException e) {
+      complete(e);
+      throw e;
+    }
+  }
+
+  void complete(final Throwable error) {
+    if (this.completed) {
+      return;
+    }
+    this.completed = true;
+    this.metrics.operationCompleted(this.type, System.nanoTime() - this.start, 0, error);
+  }
+}
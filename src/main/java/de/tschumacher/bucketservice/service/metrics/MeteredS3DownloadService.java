@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.metrics;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+import de.tschumacher.bucketservice.service.S3OperationType;
+import de.tschumacher.bucketservice.service.download.S3DownloadService;
+
+public class MeteredS3DownloadService implements S3DownloadService {
+  private final S3DownloadService delegate;
+  private final S3Metrics metrics;
+
+  public MeteredS3DownloadService(final S3DownloadService delegate, final S3Metrics metrics) {
+    super();
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public File downloadFile(final String key, final String localPath)
+      throws FileNotFoundException, IOException {
+    return this.metrics.measureIo(S3OperationType.DOWNLOAD,
+        () -> this.delegate.downloadFile(key, localPath), File::length);
+  }
+
+  @Override
+  public File downloadFile(final String key) throws FileNotFoundException, IOException {
+    return this.metrics.measureIo(S3OperationType.DOWNLOAD, () -> this.delegate.downloadFile(key),
+        File::length);
+  }
+
+  @Override
+  public File downloadFile(final String key, final File file)
+      throws FileNotFoundException, IOException {
+    return this.metrics.measureIo(S3OperationType.DOWNLOAD,
+        () -> this.delegate.downloadFile(key, file), File::length);
+  }
+
+  @Override
+  public InputStream openStream(final String key) {
+    return new MeteredInputStream(this.delegate.openStream(key), this.metrics,
+        S3OperationType.DOWNLOAD);
+  }
+
+  @Override
+  public long downloadTo(final String key, final OutputStream outputStream) throws IOException {
+    return this.metrics.measureIo(S3OperationType.DOWNLOAD,
+        () -> this.delegate.downloadTo(key, outputStream), Long::longValue);
+  }
+
+  @Override
+  public long downloadTo(final String key, final WritableByteChannel channel)
+      throws IOException {
+    return this.metrics.measureIo(S3OperationType.DOWNLOAD,
+        () -> this.delegate.downloadTo(key, channel), Long::longValue);
+  }
+
+  @Override
+  public URL createPresignedUrl(final String key, final int minutes) {
+    return this.metrics.measure(S3OperationType.PRESIGN,
+        () -> this.delegate.createPresignedUrl(key, minutes), S3Metrics.noBytes());
+  }
+
+  @Override
+  public URL createPresignedUrl(final String key, final Duration expiration) {
+    return this.metrics.measure(S3OperationType.PRESIGN,
+        () -> this.delegate.createPresignedUrl(key, expiration), S3Metrics.noBytes());
+  }
+
+  @Override
+  public Map<String, URL> createPresignedUrls(final Collection<String> keys,
+      final Duration expiration) {
+    return this.metrics.measure(S3OperationType.PRESIGN,
+        () -> this.delegate.createPresignedUrls(keys, expiration), S3Metrics.noBytes());
+  }
+}
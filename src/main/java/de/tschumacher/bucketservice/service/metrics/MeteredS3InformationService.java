@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import de.tschumacher.bucketservice.domain.S3CacheStatistics;
+import de.tschumacher.bucketservice.domain.S3File;
+import de.tschumacher.bucketservice.domain.S3PrefixSummary;
+import de.tschumacher.bucketservice.domain.S3Sharding;
+import de.tschumacher.bucketservice.service.S3OperationType;
+import de.tschumacher.bucketservice.service.information.S3InformationService;
+
+public class MeteredS3InformationService implements S3InformationService {
+  private final S3InformationService delegate;
+  private final S3Metrics metrics;
+
+  public MeteredS3InformationService(final S3InformationService delegate,
+      final S3Metrics metrics) {
+    super();
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public boolean fileExists(final String key) {
+    return this.metrics.measure(S3OperationType.EXISTS, () -> this.delegate.fileExists(key),
+        S3Metrics.noBytes());
+  }
+
+  @Override
+  public Map<String, String> getUserMetadata(final String key) {
+    return this.metrics.measure(S3OperationType.EXISTS, () -> this.delegate.getUserMetadata(key),
+        S3Metrics.noBytes());
+  }
+
+  @Override
+  public List<String> listFileNames(final String path) {
+    return this.metrics.measure(S3OperationType.LIST, () -> this.delegate.listFileNames(path),
+        S3Metrics.noBytes());
+  }
+
+  @Override
+  public List<S3File> listFiles(final String path) {
+    return this.metrics.measure(S3OperationType.LIST, () -> this.delegate.listFiles(path),
+        S3Metrics.noBytes());
+  }
+
+  @Override
+  public List<String> listDirectories(final String path) {
+    return this.metrics.measure(S3OperationType.LIST, () -> this.delegate.listDirectories(path),
+        S3Metrics.noBytes());
+  }
+
+  @Override
+  public Stream<S3File> streamFiles(final String path) {
+    return meter(this.delegate.streamFiles(path));
+  }
+
+  @Override
+  public Stream<String> streamDirectories(final String path) {
+    return meter(this.delegate.streamDirectories(path));
+  }
+
+  @Override
+  public Stream<S3File> streamFilesRecursively(final String prefix) {
+    return meter(this.delegate.streamFilesRecursively(prefix));
+  }
+
+  @Override
+  public Stream<S3File> streamFilesSharded(final String prefix, final S3Sharding sharding) {
+    return meter(this.delegate.streamFilesSharded(prefix, sharding));
+  }
+
+  @Override
+  public S3PrefixSummary summarize(final String prefix) {
+    return this.metrics.measure(S3OperationType.LIST, () -> this.delegate.summarize(prefix),
+        S3Metrics.noBytes());
+  }
+
+  @Override
+  public S3CacheStatistics listingCacheStatistics() {
+    return this.delegate.listingCacheStatistics();
+  }
+
+  private <T> Stream<T> meter(final Stream<T> stream) {
+    final MeteredIterator<T> iterator =
+        new MeteredIterator<>(stream.iterator(), this.metrics, S3OperationType.LIST);
+    return StreamSupport
+        .stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+        .onClose(() -> {
+          try {
+            stream.close();
+          } finally {
+            iterator.complete(null);
+          }
+        });
+  }
+}
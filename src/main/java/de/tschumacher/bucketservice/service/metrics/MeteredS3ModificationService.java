@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.metrics;
+
+import java.util.Collection;
+import java.util.Map;
+
+import de.tschumacher.bucketservice.domain.S3DeleteReport;
+import de.tschumacher.bucketservice.domain.S3MoveReport;
+import de.tschumacher.bucketservice.service.S3OperationType;
+import de.tschumacher.bucketservice.service.modification.S3ModificationService;
+
+public class MeteredS3ModificationService implements S3ModificationService {
+  private final S3ModificationService delegate;
+  private final S3Metrics metrics;
+
+  public MeteredS3ModificationService(final S3ModificationService delegate,
+      final S3Metrics metrics) {
+    super();
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void moveFile(final String sourceKey, final String destinationKey) {
+    this.metrics.measure(S3OperationType.MOVE, () -> {
+      this.delegate.moveFile(sourceKey, destinationKey);
+      return null;
+    }, S3Metrics.noBytes());
+  }
+
+  @Override
+  public S3MoveReport moveFiles(final Map<String, String> keys) {
+    return this.metrics.measure(S3OperationType.MOVE, () -> this.delegate.moveFiles(keys),
+        S3Metrics.noBytes());
+  }
+
+  @Override
+  public S3MoveReport movePrefix(final String sourcePrefix, final String destinationPrefix) {
+    return this.metrics.measure(S3OperationType.MOVE,
+        () -> this.delegate.movePrefix(sourcePrefix, destinationPrefix), S3Metrics.noBytes());
+  }
+
+  @Override
+  public void deleteFile(final String key) {
+    this.metrics.measure(S3OperationType.DELETE, () -> {
+      this.delegate.deleteFile(key);
+      return null;
+    }, S3Metrics.noBytes());
+  }
+
+  @Override
+  public S3DeleteReport deleteFiles(final Collection<String> keys) {
+    return this.metrics.measure(S3OperationType.DELETE, () -> this.delegate.deleteFiles(keys),
+        S3Metrics.noBytes());
+  }
+
+  @Override
+  public S3DeleteReport deletePrefix(final String prefix) {
+    return this.metrics.measure(S3OperationType.DELETE, () -> this.delegate.deletePrefix(prefix),
+        S3Metrics.noBytes());
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.metrics;
+
+import java.io.File;
+import java.io.IOException;
+
+import de.tschumacher.bucketservice.domain.S3SyncReport;
+import de.tschumacher.bucketservice.service.S3OperationType;
+import de.tschumacher.bucketservice.service.sync.S3SyncService;
+
+public class MeteredS3SyncService implements S3SyncService {
+  private final S3SyncService delegate;
+  private final S3Metrics metrics;
+
+  public MeteredS3SyncService(final S3SyncService delegate, final S3Metrics metrics) {
+    super();
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public S3SyncReport syncUp(final File localDir, final String prefix) throws IOException {
+    return this.metrics.measureIo(S3OperationType.SYNC,
+        () -> this.delegate.syncUp(localDir, prefix), S3Metrics.noBytes());
+  }
+
+  @Override
+  public S3SyncReport syncDown(final String prefix, final File localDir) throws IOException {
+    return this.metrics.measureIo(S3OperationType.SYNC,
+        () -> this.delegate.syncDown(prefix, localDir), S3Metrics.noBytes());
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Map;
+
+import de.tschumacher.bucketservice.service.S3OperationType;
+import de.tschumacher.bucketservice.service.upload.S3UploadService;
+
+public class MeteredS3UploadService implements S3UploadService {
+  private final S3UploadService delegate;
+  private final S3Metrics metrics;
+
+  public MeteredS3UploadService(final S3UploadService delegate, final S3Metrics metrics) {
+    super();
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void uploadPublicFile(final File file, final String key) {
+    this.metrics.measure(S3OperationType.UPLOAD, () -> {
+      this.delegate.uploadPublicFile(file, key);
+      return file;
+    }, File::length);
+  }
+
+  @Override
+  public void uploadPublicFiles(final Map<String, File> files) {
+    this.metrics.measure(S3OperationType.UPLOAD, () -> {
+      this.delegate.uploadPublicFiles(files);
+      return files;
+    }, uploaded -> uploaded.values().stream().mapToLong(File::length).sum());
+  }
+
+  @Override
+  public void uploadFile(final File file, final String key) {
+    this.metrics.measure(S3OperationType.UPLOAD, () -> {
+      this.delegate.uploadFile(file, key);
+      return file;
+    }, File::length);
+  }
+
+  @Override
+  public void uploadStream(final InputStream inputStream, final String key) throws IOException {
+    final CountingInputStream countingStream = new CountingInputStream(inputStream);
+    this.metrics.measureIo(S3OperationType.UPLOAD, () -> {
+      this.delegate.uploadStream(countingStream, key);
+      return countingStream;
+    }, CountingInputStream::getCount);
+  }
+
+  @Override
+  public void uploadStream(final InputStream inputStream, final String key,
+      final long contentLength) throws IOException {
+    final CountingInputStream countingStream = new CountingInputStream(inputStream);
+    this.metrics.measureIo(S3OperationType.UPLOAD, () -> {
+      this.delegate.uploadStream(countingStream, key, contentLength);
+      return countingStream;
+    }, CountingInputStream::getCount);
+  }
+
+  @Override
+  public URL createPresignedUploadUrl(final String key, final Duration expiration) {
+    return this.metrics.measure(S3OperationType.PRESIGN,
+        () -> this.delegate.createPresignedUploadUrl(key, expiration), S3Metrics.noBytes());
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.metrics;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import de.tschumacher.bucketservice.domain.S3OperationStatistics;
+import de.tschumacher.bucketservice.service.S3OperationType;
+
+public class S3Metrics implements S3MetricsListener {
+  private final Map<S3OperationType, OperationMetrics> operations =
+      new EnumMap<S3OperationType, OperationMetrics>(S3OperationType.class);
+  private final List<S3MetricsListener> listeners = new CopyOnWriteArrayList<S3MetricsListener>();
+
+  public S3Metrics() {
+    for (final S3OperationType type : S3OperationType.values()) {
+      this.operations.put(type, new OperationMetrics());
+    }
+  }
+
+  public void addListener(final S3MetricsListener listener) {
+    this.listeners.add(listener);
+  }
+
+  @Override
+  public void operationCompleted(final S3OperationType type, final long durationNanos,
+      final long bytes, final Throwable error) {
+    this.operations.get(type).record(durationNanos, bytes, error != null);
+    for (final S3MetricsListener listener : this.listeners) {
+      listener.operationCompleted(type, durationNanos, bytes, error);
+    }
+  }
+
+  public S3OperationStatistics getStatistics(final S3OperationType type) {
+    return this.operations.get(type).statistics();
+  }
+
+  <T> T measure(final S3OperationType type, final Supplier<T> call,
+      final ToLongFunction<T> bytes) {
+    final long start = System.nanoTime();
+    final T result;
+    try {
+      result = call.get();
+    } catch (final RuntimeException | Error e) {
+      operationCompleted(type, System.nanoTime() - start, 0, e);
+      throw e;
+    }
+    operationCompleted(type, System.nanoTime() - start, bytes.applyAsLong(result), null);
+    return result;
+  }
+
+  <T> T measureIo(final S3OperationType type, final IoCall<T> call,
+      final ToLongFunction<T> bytes) throws IOException {
+    final long start = System.nanoTime();
+    final T result;
+    try {
+      result = call.call();
+    } catch (final IOException | RuntimeException | Error e) {
+      operationCompleted(type, System.nanoTime() - start, 0, e);
+      throw e;
+    }
+    operationCompleted(type, System.nanoTime() - start, bytes.applyAsLong(result), null);
+    return result;
+  }
+
+  static <T> ToLongFunction<T> noBytes() {
+    return result -> 0;
+  }
+
+  interface IoCall<T> {
+    T call() throws IOException;
+  }
+
+  private static class OperationMetrics {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    void record(final long durationNanos, final long bytes, final boolean failed) {
+      this.count.increment();
+      if (failed) {
+        this.errors.increment();
+      }
+      this.bytes.add(bytes);
+      this.latencies.record(durationNanos);
+    }
+
+    S3OperationStatistics statistics() {
+      return S3OperationStatistics.newBuilder().withCount(this.count.sum())
+          .withErrors(this.errors.sum()).withBytes(this.bytes.sum())
+          .withP50(Duration.ofNanos(this.latencies.percentile(50)))
+          .withP90(Duration.ofNanos(this.latencies.percentile(90)))
+          .withP99(Duration.ofNanos(this.latencies.percentile(99)))
+          .withMax(Duration.ofNanos(this.latencies.max())).build();
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.modification;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import de.tschumacher.bucketservice.domain.S3DeleteReport;
+import de.tschumacher.bucketservice.domain.S3MoveReport;
+
+public interface AsyncS3ModificationService {
+
+  CompletableFuture<Void> moveFile(String sourceKey, String destinationKey);
+
+  CompletableFuture<S3MoveReport> moveFiles(Map<String, String> keys);
+
+  CompletableFuture<S3MoveReport> movePrefix(String sourcePrefix, String destinationPrefix);
+
+  CompletableFuture<Void> deleteFile(String key);
+
+  CompletableFuture<S3DeleteReport> deleteFiles(Collection<String> keys);
+
+  CompletableFuture<S3DeleteReport> deletePrefix(String prefix);
+}
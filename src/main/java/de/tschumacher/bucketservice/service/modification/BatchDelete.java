@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.modification;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import de.tschumacher.bucketservice.domain.S3DeleteReport;
+import de.tschumacher.bucketservice.service.S3ChangeListener;
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3Retries;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+class BatchDelete {
+  static final int MAX_BATCH_SIZE = 1000;
+
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final S3ServiceConfig config;
+  private final ExecutorService executor;
+  private final S3ChangeListener changeListener;
+
+  BatchDelete(AmazonS3 amazonS3, String bucket, S3ServiceConfig config, ExecutorService executor,
+      S3ChangeListener changeListener) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.config = config;
+    this.executor = executor;
+    this.changeListener = changeListener;
+  }
+
+  S3DeleteReport deleteKeys(final Collection<String> keys) {
+    final List<Future<S3DeleteReport>> futures = new ArrayList<Future<S3DeleteReport>>();
+    List<String> batch = new ArrayList<String>(MAX_BATCH_SIZE);
+    for (final String key : keys) {
+      batch.add(key);
+      if (batch.size() == MAX_BATCH_SIZE) {
+        futures.add(submitBatch(batch));
+        batch = new ArrayList<String>(MAX_BATCH_SIZE);
+      }
+    }
+    if (!batch.isEmpty()) {
+      futures.add(submitBatch(batch));
+    }
+    return mergeReports(futures);
+  }
+
+  S3DeleteReport deletePrefix(final String prefix) {
+    final List<Future<S3DeleteReport>> futures = new ArrayList<Future<S3DeleteReport>>();
+    final ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(this.bucket)
+        .withPrefix(prefix).withMaxKeys(MAX_BATCH_SIZE);
+    ListObjectsV2Result page;
+    do {
+      page = this.amazonS3.listObjectsV2(request);
+      final List<String> batch = new ArrayList<String>(page.getObjectSummaries().size());
+      for (final S3ObjectSummary summary : page.getObjectSummaries()) {
+        batch.add(summary.getKey());
+      }
+      if (!batch.isEmpty()) {
+        futures.add(submitBatch(batch));
+      }
+      request.setContinuationToken(page.getNextContinuationToken());
+    } while (page.isTruncated());
+    return mergeReports(futures);
+  }
+
+  private Future<S3DeleteReport> submitBatch(final List<String> keys) {
+    return this.executor.submit(() -> deleteBatch(keys));
+  }
+
+  private S3DeleteReport deleteBatch(final List<String> keys) {
+    final S3DeleteReport.Builder report = S3DeleteReport.newBuilder();
+    final Set<String> failedKeys = new HashSet<String>();
+    try {
+      S3Retries.call(() -> this.amazonS3.deleteObjects(createDeleteRequest(keys)), this.config);
+    } catch (final MultiObjectDeleteException e) {
+      for (final DeleteError error : e.getErrors()) {
+        failedKeys.add(error.getKey());
+        report.withFailedKey(error.getKey(), error.getCode() + ": " + error.getMessage());
+      }
+    } catch (final AmazonClientException e) {
+      for (final String key : keys) {
+        report.withFailedKey(key, e.getMessage());
+      }
+      return report.build();
+    }
+    for (final String key : keys) {
+      if (!failedKeys.contains(key)) {
+        report.withDeletedKey(key);
+        this.changeListener.objectChanged(key);
+      }
+    }
+    return report.build();
+  }
+
+  private DeleteObjectsRequest createDeleteRequest(final List<String> keys) {
+    final List<KeyVersion> keyVersions = new ArrayList<KeyVersion>(keys.size());
+    for (final String key : keys) {
+      keyVersions.add(new KeyVersion(key));
+    }
+    return new DeleteObjectsRequest(this.bucket).withKeys(keyVersions).withQuiet(true);
+  }
+
+  private S3DeleteReport mergeReports(final List<Future<S3DeleteReport>> futures) {
+    final S3DeleteReport.Builder report = S3DeleteReport.newBuilder();
+    for (final S3DeleteReport batchReport : S3Executors.awaitAll(futures)) {
+      report.withReport(batchReport);
+    }
+    return report.build();
+  }
+}
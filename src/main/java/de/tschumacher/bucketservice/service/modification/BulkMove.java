@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.modification;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import de.tschumacher.bucketservice.domain.S3DeleteReport;
+import de.tschumacher.bucketservice.domain.S3MoveReport;
+import de.tschumacher.bucketservice.service.S3ChangeListener;
+import de.tschumacher.bucketservice.service.S3Executors;
+
+class BulkMove {
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final ServerSideCopy serverSideCopy;
+  private final BatchDelete batchDelete;
+  private final ExecutorService executor;
+  private final S3ChangeListener changeListener;
+
+  BulkMove(AmazonS3 amazonS3, String bucket, ServerSideCopy serverSideCopy,
+      BatchDelete batchDelete, ExecutorService executor, S3ChangeListener changeListener) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.serverSideCopy = serverSideCopy;
+    this.batchDelete = batchDelete;
+    this.executor = executor;
+    this.changeListener = changeListener;
+  }
+
+  S3MoveReport moveKeys(final Map<String, String> keys) {
+    final Map<String, Future<String>> copies = new LinkedHashMap<String, Future<String>>();
+    for (final Map.Entry<String, String> entry : keys.entrySet()) {
+      copies.put(entry.getKey(),
+          this.executor.submit(() -> copy(entry.getKey(), entry.getValue())));
+    }
+    return deleteCopiedSources(copies);
+  }
+
+  S3MoveReport movePrefix(final String sourcePrefix, final String destinationPrefix) {
+    final Map<String, Future<String>> copies = new LinkedHashMap<String, Future<String>>();
+    final ListObjectsV2Request request =
+        new ListObjectsV2Request().withBucketName(this.bucket).withPrefix(sourcePrefix);
+    ListObjectsV2Result page;
+    do {
+      page = this.amazonS3.listObjectsV2(request);
+      for (final S3ObjectSummary summary : page.getObjectSummaries()) {
+        final String destinationKey =
+            destinationPrefix + summary.getKey().substring(sourcePrefix.length());
+        copies.put(summary.getKey(), this.executor
+            .submit(() -> copy(summary.getKey(), destinationKey, summary.getSize())));
+      }
+      request.setContinuationToken(page.getNextContinuationToken());
+    } while (page.isTruncated());
+    return deleteCopiedSources(copies);
+  }
+
+  private String copy(final String sourceKey, final String destinationKey) {
+    this.serverSideCopy.copyInTask(sourceKey, destinationKey);
+    this.changeListener.objectChanged(destinationKey);
+    return destinationKey;
+  }
+
+  private String copy(final String sourceKey, final String destinationKey, final long size) {
+    this.serverSideCopy.copyInTask(sourceKey, destinationKey, size);
+    this.changeListener.objectChanged(destinationKey);
+    return destinationKey;
+  }
+
+  private S3MoveReport deleteCopiedSources(final Map<String, Future<String>> copies) {
+    final S3MoveReport.Builder report = S3MoveReport.newBuilder();
+    final Map<String, String> copiedKeys = new LinkedHashMap<String, String>();
+    for (final Map.Entry<String, Future<String>> copy : copies.entrySet()) {
+      try {
+        copiedKeys.put(copy.getKey(), S3Executors.await(copy.getValue()));
+      } catch (final AmazonClientException e) {
+        report.withFailedKey(copy.getKey(), e.getMessage());
+      }
+    }
+    final S3DeleteReport deleteReport = this.batchDelete.deleteKeys(copiedKeys.keySet());
+    for (final String deletedKey : deleteReport.getDeletedKeys()) {
+      report.withMovedKey(deletedKey, copiedKeys.get(deletedKey));
+    }
+    for (final Map.Entry<String, String> failedKey : deleteReport.getFailedKeys().entrySet()) {
+      report.withFailedKey(failedKey.getKey(), failedKey.getValue());
+    }
+    return report.build();
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.modification;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import de.tschumacher.bucketservice.domain.S3DeleteReport;
+import de.tschumacher.bucketservice.domain.S3MoveReport;
+import de.tschumacher.bucketservice.service.S3AsyncExecutor;
+import de.tschumacher.bucketservice.service.S3OperationType;
+
+public class DefaultAsyncS3ModificationService implements AsyncS3ModificationService {
+  private final S3ModificationService modificationService;
+  private final S3AsyncExecutor executor;
+
+  public DefaultAsyncS3ModificationService(S3ModificationService modificationService,
+      S3AsyncExecutor executor) {
+    this.modificationService = modificationService;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletableFuture<Void> moveFile(final String sourceKey, final String destinationKey) {
+    return this.executor.run(S3OperationType.MOVE,
+        () -> this.modificationService.moveFile(sourceKey, destinationKey));
+  }
+
+  @Override
+  public CompletableFuture<S3MoveReport> moveFiles(final Map<String, String> keys) {
+    return this.executor.supply(S3OperationType.MOVE,
+        () -> this.modificationService.moveFiles(keys));
+  }
+
+  @Override
+  public CompletableFuture<S3MoveReport> movePrefix(final String sourcePrefix,
+      final String destinationPrefix) {
+    return this.executor.supply(S3OperationType.MOVE,
+        () -> this.modificationService.movePrefix(sourcePrefix, destinationPrefix));
+  }
+
+  @Override
+  public CompletableFuture<Void> deleteFile(final String key) {
+    return this.executor.run(S3OperationType.DELETE,
+        () -> this.modificationService.deleteFile(key));
+  }
+
+  @Override
+  public CompletableFuture<S3DeleteReport> deleteFiles(final Collection<String> keys) {
+    return this.executor.supply(S3OperationType.DELETE,
+        () -> this.modificationService.deleteFiles(keys));
+  }
+
+  @Override
+  public CompletableFuture<S3DeleteReport> deletePrefix(final String prefix) {
+    return this.executor.supply(S3OperationType.DELETE,
+        () -> this.modificationService.deletePrefix(prefix));
+  }
+}
@@ -13,33 +13,98 @@
  */
 package de.tschumacher.bucketservice.service.modification;
 
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.CopyObjectRequest;
 
-public class DefaultS3ModificationService implements S3ModificationService {
+import de.tschumacher.bucketservice.domain.S3DeleteReport;
+import de.tschumacher.bucketservice.domain.S3MoveReport;
+import de.tschumacher.bucketservice.service.S3ChangeListener;
+import de.tschumacher.bucketservice.service.S3ChangeListeners;
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+public class DefaultS3ModificationService implements S3ModificationService, Closeable {
 
   private final AmazonS3 amazonS3;
   private final String bucket;
+  private final ExecutorService ownedExecutor;
+  private final S3ChangeListeners changeListeners = new S3ChangeListeners();
+  private final BatchDelete batchDelete;
+  private final ServerSideCopy serverSideCopy;
+  private final BulkMove bulkMove;
 
   public DefaultS3ModificationService(AmazonS3 amazonS3, String bucket) {
+    this(amazonS3, bucket, S3ServiceConfig.defaults());
+  }
+
+  public DefaultS3ModificationService(AmazonS3 amazonS3, String bucket, S3ServiceConfig config) {
+    this(amazonS3, bucket, config, S3Executors.newTransferExecutor(config.getParallelism()),
+        true);
+  }
+
+  public DefaultS3ModificationService(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor) {
+    this(amazonS3, bucket, config, executor, false);
+  }
+
+  private DefaultS3ModificationService(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor, boolean ownsExecutor) {
+    this.ownedExecutor = ownsExecutor ? executor : null;
     this.amazonS3 = amazonS3;
     this.bucket = bucket;
+    this.batchDelete =
+        new BatchDelete(amazonS3, bucket, config, executor, this.changeListeners);
+    this.serverSideCopy = new ServerSideCopy(amazonS3, bucket, config, executor);
+    this.bulkMove = new BulkMove(amazonS3, bucket, this.serverSideCopy, this.batchDelete,
+        executor, this.changeListeners);
+  }
+
+  public void addChangeListener(S3ChangeListener listener) {
+    this.changeListeners.add(listener);
+  }
+
+  @Override
+  public void close() {
+    if (this.ownedExecutor != null) {
+      this.ownedExecutor.shutdown();
+    }
   }
 
   @Override
   public void deleteFile(final String key) {
     this.amazonS3.deleteObject(this.bucket, key);
+    this.changeListeners.objectChanged(key);
+  }
+
+  @Override
+  public S3DeleteReport deleteFiles(final Collection<String> keys) {
+    return this.batchDelete.deleteKeys(keys);
+  }
+
+  @Override
+  public S3DeleteReport deletePrefix(final String prefix) {
+    return this.batchDelete.deletePrefix(prefix);
   }
 
   @Override
   public void moveFile(final String sourceKey, final String destinationKey) {
-    final CopyObjectRequest copyObjectRequest = createCopyRequest(sourceKey, destinationKey);
-    this.amazonS3.copyObject(copyObjectRequest);
+    this.serverSideCopy.copy(sourceKey, destinationKey);
+    this.changeListeners.objectChanged(destinationKey);
     deleteFile(sourceKey);
   }
 
-  private CopyObjectRequest createCopyRequest(final String sourceKey, final String destinationKey) {
-    return new CopyObjectRequest(this.bucket, sourceKey, this.bucket, destinationKey);
+  @Override
+  public S3MoveReport moveFiles(final Map<String, String> keys) {
+    return this.bulkMove.moveKeys(keys);
+  }
+
+  @Override
+  public S3MoveReport movePrefix(final String sourcePrefix, final String destinationPrefix) {
+    return this.bulkMove.movePrefix(sourcePrefix, destinationPrefix);
   }
 
 }
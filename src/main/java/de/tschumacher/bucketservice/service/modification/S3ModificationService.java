@@ -13,9 +13,23 @@
  */
 package de.tschumacher.bucketservice.service.modification;
 
+import java.util.Collection;
+import java.util.Map;
+
+import de.tschumacher.bucketservice.domain.S3DeleteReport;
+import de.tschumacher.bucketservice.domain.S3MoveReport;
+
 public interface S3ModificationService {
 
   void moveFile(String sourceKey, String destinationKey);
 
+  S3MoveReport moveFiles(Map<String, String> keys);
+
+  S3MoveReport movePrefix(String sourcePrefix, String destinationPrefix);
+
   void deleteFile(String key);
+
+  S3DeleteReport deleteFiles(Collection<String> keys);
+
+  S3DeleteReport deletePrefix(String prefix);
 }
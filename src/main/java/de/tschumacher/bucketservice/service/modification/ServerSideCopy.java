@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.modification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.CopyPartResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3Multipart;
+import de.tschumacher.bucketservice.service.S3Retries;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+public class ServerSideCopy {
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final S3ServiceConfig config;
+  private final ExecutorService executor;
+
+  public ServerSideCopy(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.config = config;
+    this.executor = executor;
+  }
+
+  void copy(final String sourceKey, final String destinationKey) {
+    copy(sourceKey, destinationKey, true);
+  }
+
+  public void copy(final String sourceKey, final String destinationKey, final long size) {
+    copy(sourceKey, destinationKey, size, true);
+  }
+
+  // tasks already running on the executor copy their parts in place, waiting on parts queued
+  // behind them on the same pool could deadlock
+  void copyInTask(final String sourceKey, final String destinationKey) {
+    copy(sourceKey, destinationKey, false);
+  }
+
+  void copyInTask(final String sourceKey, final String destinationKey, final long size) {
+    copy(sourceKey, destinationKey, size, false);
+  }
+
+  private void copy(final String sourceKey, final String destinationKey,
+      final boolean parallelParts) {
+    final ObjectMetadata metadata = this.amazonS3.getObjectMetadata(this.bucket, sourceKey);
+    if (metadata.getContentLength() > this.config.getMultipartCopyThreshold()) {
+      multipartCopy(sourceKey, destinationKey, metadata, parallelParts);
+    } else {
+      singleCopy(sourceKey, destinationKey);
+    }
+  }
+
+  private void copy(final String sourceKey, final String destinationKey, final long size,
+      final boolean parallelParts) {
+    if (size > this.config.getMultipartCopyThreshold()) {
+      copy(sourceKey, destinationKey, parallelParts);
+    } else {
+      singleCopy(sourceKey, destinationKey);
+    }
+  }
+
+  private void singleCopy(final String sourceKey, final String destinationKey) {
+    final CopyObjectRequest copyObjectRequest = createCopyRequest(sourceKey, destinationKey);
+    S3Retries.call(() -> this.amazonS3.copyObject(copyObjectRequest), this.config);
+  }
+
+  private CopyObjectRequest createCopyRequest(final String sourceKey,
+      final String destinationKey) {
+    return new CopyObjectRequest(this.bucket, sourceKey, this.bucket, destinationKey);
+  }
+
+  private void multipartCopy(final String sourceKey, final String destinationKey,
+      final ObjectMetadata metadata, final boolean parallelParts) {
+    final String uploadId = this.amazonS3
+        .initiateMultipartUpload(new InitiateMultipartUploadRequest(this.bucket, destinationKey,
+            createDestinationMetadata(metadata)))
+        .getUploadId();
+    try {
+      final List<PartETag> partETags =
+          copyParts(sourceKey, destinationKey, uploadId, metadata, parallelParts);
+      this.amazonS3.completeMultipartUpload(
+          new CompleteMultipartUploadRequest(this.bucket, destinationKey, uploadId, partETags));
+    } catch (final RuntimeException e) {
+      abort(destinationKey, uploadId);
+      throw e;
+    }
+  }
+
+  private ObjectMetadata createDestinationMetadata(final ObjectMetadata sourceMetadata) {
+    final ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentType(sourceMetadata.getContentType());
+    metadata.setContentEncoding(sourceMetadata.getContentEncoding());
+    metadata.setCacheControl(sourceMetadata.getCacheControl());
+    metadata.setContentDisposition(sourceMetadata.getContentDisposition());
+    metadata.setUserMetadata(sourceMetadata.getUserMetadata());
+    return metadata;
+  }
+
+  private List<PartETag> copyParts(final String sourceKey, final String destinationKey,
+      final String uploadId, final ObjectMetadata metadata, final boolean parallelParts) {
+    final long length = metadata.getContentLength();
+    final long partSize = S3Multipart.partSize(length, this.config.getCopyPartSize());
+    final List<PartETag> partETags = new ArrayList<PartETag>();
+    final List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
+    int partNumber = 1;
+    for (long firstByte = 0; firstByte < length; firstByte += partSize) {
+      final CopyPartRequest request = new CopyPartRequest().withSourceBucketName(this.bucket)
+          .withSourceKey(sourceKey).withDestinationBucketName(this.bucket)
+          .withDestinationKey(destinationKey).withUploadId(uploadId)
+          .withPartNumber(partNumber++).withFirstByte(firstByte)
+          .withLastByte(Math.min(firstByte + partSize, length) - 1);
+      if (metadata.getETag() != null) {
+        request.withMatchingETagConstraint(metadata.getETag());
+      }
+      if (parallelParts) {
+        futures.add(this.executor.submit(() -> copyPartWithRetries(request)));
+      } else {
+        partETags.add(copyPartWithRetries(request));
+      }
+    }
+    partETags.addAll(S3Executors.awaitAll(futures));
+    return partETags;
+  }
+
+  private PartETag copyPartWithRetries(final CopyPartRequest request) {
+    return S3Retries.call(() -> copyPart(request), this.config);
+  }
+
+  private PartETag copyPart(final CopyPartRequest request) {
+    final CopyPartResult result = this.amazonS3.copyPart(request);
+    if (result == null) {
+      throw new AmazonClientException(
+          "object " + request.getSourceKey() + " changed during copy");
+    }
+    return result.getPartETag();
+  }
+
+  private void abort(final String key, final String uploadId) {
+    try {
+      this.amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(this.bucket, key,
+          uploadId));
+    } catch (final RuntimeException e) {
+      // the original failure is more relevant than a failed cleanup
+    }
+  }
+}
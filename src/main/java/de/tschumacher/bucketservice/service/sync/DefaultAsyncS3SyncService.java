@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.sync;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+import de.tschumacher.bucketservice.domain.S3SyncReport;
+import de.tschumacher.bucketservice.service.S3AsyncExecutor;
+import de.tschumacher.bucketservice.service.S3OperationType;
+
+public class DefaultAsyncS3SyncService implements AsyncS3SyncService {
+  private final S3SyncService syncService;
+  private final S3AsyncExecutor executor;
+
+  public DefaultAsyncS3SyncService(S3SyncService syncService, S3AsyncExecutor executor) {
+    this.syncService = syncService;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletableFuture<S3SyncReport> syncUp(final File localDir, final String prefix) {
+    return this.executor.supply(S3OperationType.SYNC,
+        () -> this.syncService.syncUp(localDir, prefix));
+  }
+
+  @Override
+  public CompletableFuture<S3SyncReport> syncDown(final String prefix, final File localDir) {
+    return this.executor.supply(S3OperationType.SYNC,
+        () -> this.syncService.syncDown(prefix, localDir));
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.sync;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+
+import de.tschumacher.bucketservice.domain.S3DeleteReport;
+import de.tschumacher.bucketservice.domain.S3File;
+import de.tschumacher.bucketservice.domain.S3SyncReport;
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+import de.tschumacher.bucketservice.service.compression.CompressionCodec;
+import de.tschumacher.bucketservice.service.download.S3DownloadService;
+import de.tschumacher.bucketservice.service.information.S3InformationService;
+import de.tschumacher.bucketservice.service.modification.S3ModificationService;
+import de.tschumacher.bucketservice.service.upload.ContentHasher;
+import de.tschumacher.bucketservice.service.upload.S3UploadService;
+
+public class DefaultS3SyncService implements S3SyncService {
+  private static final String DELIMITER = "/";
+
+  private final S3UploadService uploadService;
+  private final S3DownloadService downloadService;
+  private final S3InformationService informationService;
+  private final S3ModificationService modificationService;
+  private final S3ServiceConfig config;
+
+  public DefaultS3SyncService(S3UploadService uploadService, S3DownloadService downloadService,
+      S3InformationService informationService, S3ModificationService modificationService,
+      S3ServiceConfig config) {
+    this.uploadService = uploadService;
+    this.downloadService = downloadService;
+    this.informationService = informationService;
+    this.modificationService = modificationService;
+    this.config = config;
+  }
+
+  @Override
+  public S3SyncReport syncUp(final File localDir, final String prefix) throws IOException {
+    if (!localDir.isDirectory()) {
+      // an empty listing would make syncDelete remove everything below the prefix
+      throw new FileNotFoundException(localDir + " is not an existing directory");
+    }
+    final String keyPrefix = normalizePrefix(prefix);
+    final Map<String, S3File> remoteFiles = listRemoteFiles(keyPrefix);
+    final Map<String, File> localFiles = listLocalFiles(localDir, keyPrefix);
+    final S3SyncReport.Builder report = S3SyncReport.newBuilder();
+    final ExecutorService executor = createSyncExecutor();
+    try {
+      final Map<String, Future<Boolean>> transfers =
+          new LinkedHashMap<String, Future<Boolean>>();
+      for (final Map.Entry<String, File> localFile : localFiles.entrySet()) {
+        final String key = localFile.getKey();
+        final S3File remoteFile = remoteFiles.get(key);
+        transfers.put(key,
+            executor.submit(() -> upload(localFile.getValue(), key, remoteFile)));
+      }
+      awaitTransfers(transfers, report);
+    } finally {
+      executor.shutdown();
+    }
+    if (this.config.isSyncDelete()) {
+      deleteRemoteExtras(remoteFiles.keySet(), localFiles.keySet(), report);
+    }
+    return report.build();
+  }
+
+  @Override
+  public S3SyncReport syncDown(final String prefix, final File localDir) throws IOException {
+    if (localDir.exists() && !localDir.isDirectory()) {
+      throw new FileNotFoundException(localDir + " is not a directory");
+    }
+    final String keyPrefix = normalizePrefix(prefix);
+    final Map<String, S3File> remoteFiles = listRemoteFiles(keyPrefix);
+    final Map<String, File> localFiles = listLocalFiles(localDir, keyPrefix);
+    final String localRoot = localDir.getCanonicalPath() + File.separator;
+    final S3SyncReport.Builder report = S3SyncReport.newBuilder();
+    final ExecutorService executor = createSyncExecutor();
+    try {
+      final Map<String, Future<Boolean>> transfers =
+          new LinkedHashMap<String, Future<Boolean>>();
+      for (final S3File remoteFile : remoteFiles.values()) {
+        final File localFile =
+            new File(localDir, remoteFile.getKey().substring(keyPrefix.length()));
+        if (!localFile.getCanonicalPath().startsWith(localRoot)) {
+          report.withFailedKey(remoteFile.getKey(), "key resolves outside of " + localDir);
+          continue;
+        }
+        transfers.put(remoteFile.getKey(),
+            executor.submit(() -> download(remoteFile, localFile)));
+      }
+      awaitTransfers(transfers, report);
+    } finally {
+      executor.shutdown();
+    }
+    if (this.config.isSyncDelete()) {
+      deleteLocalExtras(localFiles, remoteFiles.keySet(), report);
+    }
+    return report.build();
+  }
+
+  private ExecutorService createSyncExecutor() {
+    // transfers wait on the shared part executor, so they need their own threads, which must
+    // not outlive the sync
+    return S3Executors.newTransferExecutor(this.config.getSyncParallelism());
+  }
+
+  private boolean upload(final File localFile, final String key, final S3File remoteFile)
+      throws IOException {
+    if (remoteFile != null && !isLocalChanged(localFile, remoteFile)) {
+      return false;
+    }
+    this.uploadService.uploadFile(localFile, key);
+    return true;
+  }
+
+  private boolean download(final S3File remoteFile, final File localFile) throws IOException {
+    if (localFile.isFile() && !isRemoteChanged(remoteFile, localFile)) {
+      return false;
+    }
+    this.downloadService.downloadFile(remoteFile.getKey(), localFile);
+    if (remoteFile.getLastModified() != null) {
+      localFile.setLastModified(remoteFile.getLastModified().getTime());
+    }
+    return true;
+  }
+
+  private boolean isLocalChanged(final File localFile, final S3File remoteFile)
+      throws IOException {
+    final Map<String, String> compressed = getCompressedMetadata(remoteFile, localFile);
+    if (localFile.length() != getContentLength(remoteFile, compressed)) {
+      return true;
+    }
+    if (remoteFile.getLastModified() != null
+        && localFile.lastModified() <= remoteFile.getLastModified().getTime()) {
+      return false;
+    }
+    return !matchesChecksum(localFile, remoteFile, compressed);
+  }
+
+  private boolean isRemoteChanged(final S3File remoteFile, final File localFile)
+      throws IOException {
+    final Map<String, String> compressed = getCompressedMetadata(remoteFile, localFile);
+    if (localFile.length() != getContentLength(remoteFile, compressed)) {
+      return true;
+    }
+    if (remoteFile.getLastModified() != null
+        && remoteFile.getLastModified().getTime() <= localFile.lastModified()) {
+      return false;
+    }
+    return !matchesChecksum(localFile, remoteFile, compressed);
+  }
+
+  private Map<String, String> getCompressedMetadata(final S3File remoteFile,
+      final File localFile) {
+    // the listing only describes the stored bytes, a compressed object is told apart by its
+    // metadata, which is only worth a HEAD when the stored size doesn't match the file anyway
+    if (localFile.length() == remoteFile.getSize()) {
+      return null;
+    }
+    final Map<String, String> metadata =
+        this.informationService.getUserMetadata(remoteFile.getKey());
+    return CompressionCodec.of(metadata) == CompressionCodec.NONE ? null : metadata;
+  }
+
+  private long getContentLength(final S3File remoteFile, final Map<String, String> compressed) {
+    if (compressed == null) {
+      return remoteFile.getSize();
+    }
+    final String length = compressed.get(CompressionCodec.LENGTH_METADATA_KEY);
+    return length == null ? -1 : Long.parseLong(length);
+  }
+
+  private boolean matchesChecksum(final File localFile, final S3File remoteFile,
+      final Map<String, String> compressed) throws IOException {
+    if (!this.config.isSyncChecksum()) {
+      return false;
+    }
+    if (compressed != null) {
+      final String hash = compressed.get(CompressionCodec.HASH_METADATA_KEY);
+      return hash != null && hash.equalsIgnoreCase(ContentHasher.sha256(localFile));
+    }
+    final String eTag = remoteFile.getETag();
+    if (eTag == null || eTag.contains("-")) {
+      return false;
+    }
+    try (InputStream inputStream = new FileInputStream(localFile)) {
+      final String md5 = BinaryUtils.toHex(Md5Utils.computeMD5Hash(inputStream));
+      return md5.equalsIgnoreCase(eTag.replace("\"", ""));
+    }
+  }
+
+  private void awaitTransfers(final Map<String, Future<Boolean>> transfers,
+      final S3SyncReport.Builder report) {
+    for (final Map.Entry<String, Future<Boolean>> transfer : transfers.entrySet()) {
+      try {
+        if (S3Executors.await(transfer.getValue())) {
+          report.withTransferredKey(transfer.getKey());
+        } else {
+          report.withSkippedKey(transfer.getKey());
+        }
+      } catch (final AmazonClientException e) {
+        report.withFailedKey(transfer.getKey(), e.getMessage());
+      }
+    }
+  }
+
+  private void deleteRemoteExtras(final Set<String> remoteKeys, final Set<String> localKeys,
+      final S3SyncReport.Builder report) {
+    final Set<String> extraKeys = new LinkedHashSet<String>(remoteKeys);
+    extraKeys.removeAll(localKeys);
+    if (extraKeys.isEmpty()) {
+      return;
+    }
+    final S3DeleteReport deleteReport = this.modificationService.deleteFiles(extraKeys);
+    for (final String deletedKey : deleteReport.getDeletedKeys()) {
+      report.withDeletedKey(deletedKey);
+    }
+    for (final Map.Entry<String, String> failedKey : deleteReport.getFailedKeys().entrySet()) {
+      report.withFailedKey(failedKey.getKey(), failedKey.getValue());
+    }
+  }
+
+  private void deleteLocalExtras(final Map<String, File> localFiles, final Set<String> remoteKeys,
+      final S3SyncReport.Builder report) {
+    for (final Map.Entry<String, File> localFile : localFiles.entrySet()) {
+      if (remoteKeys.contains(localFile.getKey())) {
+        continue;
+      }
+      if (localFile.getValue().delete()) {
+        report.withDeletedKey(localFile.getKey());
+      } else {
+        report.withFailedKey(localFile.getKey(), "could not delete " + localFile.getValue());
+      }
+    }
+  }
+
+  private Map<String, S3File> listRemoteFiles(final String keyPrefix) {
+    try (Stream<S3File> files = this.informationService.streamFilesRecursively(keyPrefix)) {
+      return files.filter(file -> !file.getKey().endsWith(DELIMITER)).collect(Collectors
+          .toMap(S3File::getKey, file -> file, (first, second) -> first, LinkedHashMap::new));
+    }
+  }
+
+  private Map<String, File> listLocalFiles(final File localDir, final String keyPrefix)
+      throws IOException {
+    final Map<String, File> localFiles = new LinkedHashMap<String, File>();
+    if (!localDir.isDirectory()) {
+      return localFiles;
+    }
+    final Path root = localDir.toPath();
+    try (Stream<Path> paths = Files.walk(root)) {
+      paths.filter(Files::isRegularFile).sorted().forEach(path -> localFiles
+          .put(keyPrefix + toKey(root.relativize(path)), path.toFile()));
+    }
+    return localFiles;
+  }
+
+  private String toKey(final Path relativePath) {
+    final StringBuilder key = new StringBuilder();
+    for (final Path element : relativePath) {
+      if (key.length() > 0) {
+        key.append(DELIMITER);
+      }
+      key.append(element.toString());
+    }
+    return key.toString();
+  }
+
+  private String normalizePrefix(final String prefix) {
+    if (prefix == null || prefix.isEmpty() || prefix.endsWith(DELIMITER)) {
+      return prefix == null ? "" : prefix;
+    }
+    return prefix + DELIMITER;
+  }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.sync;
+
+import java.io.File;
+import java.io.IOException;
+
+import de.tschumacher.bucketservice.domain.S3SyncReport;
+
+public interface S3SyncService {
+
+  S3SyncReport syncUp(File localDir, String prefix) throws IOException;
+
+  S3SyncReport syncDown(String prefix, File localDir) throws IOException;
+}
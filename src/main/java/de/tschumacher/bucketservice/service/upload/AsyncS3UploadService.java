@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.upload;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface AsyncS3UploadService {
+
+  CompletableFuture<Void> uploadPublicFile(File file, String key);
+
+  CompletableFuture<Void> uploadPublicFiles(Map<String, File> files);
+
+  CompletableFuture<Void> uploadFile(File file, String key);
+
+  CompletableFuture<Void> uploadStream(InputStream inputStream, String key);
+
+  CompletableFuture<Void> uploadStream(InputStream inputStream, String key, long contentLength);
+
+  CompletableFuture<URL> createPresignedUploadUrl(String key, Duration expiration);
+}
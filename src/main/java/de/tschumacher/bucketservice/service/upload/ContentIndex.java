@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.upload;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class ContentIndex {
+  private final Map<String, Boolean> storedHashes;
+  private final Map<String, String> hashesByKey;
+
+  ContentIndex(final int maxEntries) {
+    this.storedHashes = createLruMap(maxEntries);
+    this.hashesByKey = createLruMap(maxEntries);
+  }
+
+  private static <V> Map<String, V> createLruMap(final int maxEntries) {
+    return new LinkedHashMap<String, V>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  synchronized boolean contains(final String contentHash) {
+    return this.storedHashes.get(contentHash) != null;
+  }
+
+  synchronized void add(final String contentHash) {
+    this.storedHashes.put(contentHash, Boolean.TRUE);
+  }
+
+  synchronized void remove(final String contentHash) {
+    this.storedHashes.remove(contentHash);
+  }
+
+  synchronized String getKeyHash(final String key) {
+    return this.hashesByKey.get(key);
+  }
+
+  synchronized void putKeyHash(final String key, final String contentHash) {
+    this.hashesByKey.put(key, contentHash);
+  }
+
+  synchronized void removeKeyHash(final String key) {
+    this.hashesByKey.remove(key);
+  }
+}
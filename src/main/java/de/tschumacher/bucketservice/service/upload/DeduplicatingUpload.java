@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.upload;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+import de.tschumacher.bucketservice.service.S3ChangeListener;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+import de.tschumacher.bucketservice.service.compression.CompressionCodec;
+import de.tschumacher.bucketservice.service.modification.ServerSideCopy;
+
+class DeduplicatingUpload implements S3ChangeListener {
+  static final String CONTENT_HASH_METADATA = CompressionCodec.HASH_METADATA_KEY;
+  private static final int NOT_FOUND = 404;
+
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final S3ServiceConfig config;
+  private final ContentIndex contentIndex;
+  private final ServerSideCopy serverSideCopy;
+  private final FileUploader uploader;
+  private final S3ChangeListener changeListener;
+
+  DeduplicatingUpload(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor, FileUploader uploader, S3ChangeListener changeListener) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.config = config;
+    this.contentIndex = new ContentIndex(config.getContentIndexSize());
+    this.serverSideCopy = new ServerSideCopy(amazonS3, bucket, config, executor);
+    this.uploader = uploader;
+    this.changeListener = changeListener;
+  }
+
+  void upload(final File file, final String key) {
+    final String contentHash = ContentHasher.sha256(file);
+    if (this.config.getDeduplicationMode() == DeduplicationMode.SKIP_IDENTICAL) {
+      // a key this service uploaded or checked before needs no HEAD, changes made through
+      // this service drop the key from the index
+      if (contentHash.equals(this.contentIndex.getKeyHash(key))) {
+        return;
+      }
+      if (!contentHash.equals(storedContentHash(key))) {
+        this.uploader.upload(file, key, createMetadata(contentHash));
+      }
+      this.contentIndex.putKeyHash(key, contentHash);
+      return;
+    }
+    final String contentKey = this.config.getContentPrefix() + contentHash;
+    if (!this.contentIndex.contains(contentHash)) {
+      storeContent(file, contentKey, contentHash);
+    }
+    try {
+      this.serverSideCopy.copy(contentKey, key, file.length());
+    } catch (final AmazonS3Exception e) {
+      if (e.getStatusCode() != NOT_FOUND) {
+        throw e;
+      }
+      this.contentIndex.remove(contentHash);
+      storeContent(file, contentKey, contentHash);
+      this.serverSideCopy.copy(contentKey, key, file.length());
+    }
+    this.changeListener.objectChanged(key);
+  }
+
+  @Override
+  public void objectChanged(final String key) {
+    this.contentIndex.removeKeyHash(key);
+  }
+
+  private void storeContent(final File file, final String contentKey, final String contentHash) {
+    if (!contentHash.equals(storedContentHash(contentKey))) {
+      this.uploader.upload(file, contentKey, createMetadata(contentHash));
+    }
+    this.contentIndex.add(contentHash);
+  }
+
+  private String storedContentHash(final String key) {
+    try {
+      return this.amazonS3.getObjectMetadata(this.bucket, key)
+          .getUserMetaDataOf(CONTENT_HASH_METADATA);
+    } catch (final AmazonS3Exception e) {
+      if (e.getStatusCode() == NOT_FOUND) {
+        return null;
+      }
+      throw e;
+    }
+  }
+
+  private ObjectMetadata createMetadata(final String contentHash) {
+    final ObjectMetadata metadata = new ObjectMetadata();
+    metadata.addUserMetadata(CONTENT_HASH_METADATA, contentHash);
+    return metadata;
+  }
+
+  interface FileUploader {
+
+    void upload(File file, String key, ObjectMetadata metadata);
+  }
+}
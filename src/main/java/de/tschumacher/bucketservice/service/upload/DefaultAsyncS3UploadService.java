@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.upload;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import de.tschumacher.bucketservice.service.S3AsyncExecutor;
+import de.tschumacher.bucketservice.service.S3OperationType;
+
+public class DefaultAsyncS3UploadService implements AsyncS3UploadService {
+  private final S3UploadService uploadService;
+  private final S3AsyncExecutor executor;
+
+  public DefaultAsyncS3UploadService(S3UploadService uploadService, S3AsyncExecutor executor) {
+    this.uploadService = uploadService;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletableFuture<Void> uploadPublicFile(final File file, final String key) {
+    return this.executor.run(S3OperationType.UPLOAD,
+        () -> this.uploadService.uploadPublicFile(file, key));
+  }
+
+  @Override
+  public CompletableFuture<Void> uploadPublicFiles(final Map<String, File> files) {
+    return this.executor.run(S3OperationType.UPLOAD,
+        () -> this.uploadService.uploadPublicFiles(files));
+  }
+
+  @Override
+  public CompletableFuture<Void> uploadFile(final File file, final String key) {
+    return this.executor.run(S3OperationType.UPLOAD,
+        () -> this.uploadService.uploadFile(file, key));
+  }
+
+  @Override
+  public CompletableFuture<Void> uploadStream(final InputStream inputStream, final String key) {
+    return this.executor.supply(S3OperationType.UPLOAD, () -> {
+      this.uploadService.uploadStream(inputStream, key);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> uploadStream(final InputStream inputStream, final String key,
+      final long contentLength) {
+    return this.executor.supply(S3OperationType.UPLOAD, () -> {
+      this.uploadService.uploadStream(inputStream, key, contentLength);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<URL> createPresignedUploadUrl(final String key,
+      final Duration expiration) {
+    return this.executor.supply(S3OperationType.PRESIGN,
+        () -> this.uploadService.createPresignedUploadUrl(key, expiration));
+  }
+}
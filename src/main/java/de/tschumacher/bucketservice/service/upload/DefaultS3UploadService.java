@@ -13,46 +13,241 @@
  */
 package de.tschumacher.bucketservice.service.upload;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.AccessControlList;
-import com.amazonaws.services.s3.model.GroupGrantee;
-import com.amazonaws.services.s3.model.Permission;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 
-public class DefaultS3UploadService implements S3UploadService {
+import de.tschumacher.bucketservice.service.S3ChangeListener;
+import de.tschumacher.bucketservice.service.S3ChangeListeners;
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+import de.tschumacher.bucketservice.service.S3UrlSigner;
+import de.tschumacher.bucketservice.service.compression.CompressingInputStream;
+import de.tschumacher.bucketservice.service.compression.CompressionCodec;
+
+public class DefaultS3UploadService implements S3UploadService, S3ChangeListener, Closeable {
   private final AmazonS3 amazonS3;
   private final String bucket;
+  private final ExecutorService ownedExecutor;
+  private final S3ServiceConfig config;
+  private final MultipartFileUpload multipartFileUpload;
+  private final StreamUpload streamUpload;
+  private final PublicAccessControl publicAccessControl;
+  private final S3UrlSigner urlSigner;
+  private final DeduplicatingUpload deduplicatingUpload;
+  private final S3ChangeListeners changeListeners = new S3ChangeListeners();
 
   public DefaultS3UploadService(AmazonS3 amazonS3, String bucket) {
+    this(amazonS3, bucket, S3ServiceConfig.defaults());
+  }
+
+  public DefaultS3UploadService(AmazonS3 amazonS3, String bucket, S3ServiceConfig config) {
+    this(amazonS3, bucket, config, S3Executors.newTransferExecutor(config.getParallelism()),
+        true);
+  }
+
+  public DefaultS3UploadService(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor) {
+    this(amazonS3, bucket, config, executor, false);
+  }
+
+  private DefaultS3UploadService(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor, boolean ownsExecutor) {
+    this.ownedExecutor = ownsExecutor ? executor : null;
     this.amazonS3 = amazonS3;
     this.bucket = bucket;
+    this.config = config;
+    this.multipartFileUpload = new MultipartFileUpload(amazonS3, bucket, config, executor);
+    this.streamUpload = new StreamUpload(amazonS3, bucket, config, executor);
+    this.publicAccessControl = new PublicAccessControl(amazonS3, bucket, config);
+    this.urlSigner = new S3UrlSigner(amazonS3, bucket, config);
+    this.deduplicatingUpload = config.getDeduplicationMode() == DeduplicationMode.OFF ? null
+        : new DeduplicatingUpload(amazonS3, bucket, config, executor,
+            (file, key, metadata) -> uploadFile(file, key, null, metadata),
+            this.changeListeners);
+    if (this.deduplicatingUpload != null) {
+      this.changeListeners.add(this.deduplicatingUpload);
+    }
+  }
+
+  public void addChangeListener(S3ChangeListener listener) {
+    this.changeListeners.add(listener);
+  }
+
+  @Override
+  public void objectChanged(final String key) {
+    if (this.deduplicatingUpload != null) {
+      this.deduplicatingUpload.objectChanged(key);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (this.ownedExecutor != null) {
+      this.ownedExecutor.shutdown();
+    }
   }
 
   @Override
   public void uploadPublicFile(File file, String key) {
-    final AccessControlList access = getBucketAcl();
-    access.grantPermission(GroupGrantee.AllUsers, Permission.Read);
-    this.uploadFile(file, key, access);
+    this.uploadFile(file, key, this.publicAccessControl.get());
+  }
+
+  @Override
+  public void uploadPublicFiles(final Map<String, File> files) {
+    final UploadAccess access = this.publicAccessControl.get();
+    // batch uploads wait on the part executor, so they get their own threads for this call only
+    final ExecutorService batchExecutor =
+        S3Executors.newTransferExecutor(this.config.getParallelism());
+    try {
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>(files.size());
+      for (final Map.Entry<String, File> entry : files.entrySet()) {
+        futures.add(batchExecutor.submit(() -> {
+          uploadFile(entry.getValue(), entry.getKey(), access);
+          return null;
+        }));
+      }
+      S3Executors.awaitAll(futures);
+    } finally {
+      batchExecutor.shutdown();
+    }
   }
 
   @Override
   public void uploadFile(final File file, final String key) {
-    this.uploadFile(file, key, null);
+    if (this.deduplicatingUpload != null) {
+      this.deduplicatingUpload.upload(file, key);
+    } else {
+      this.uploadFile(file, key, null);
+    }
   }
 
+  @Override
+  public void uploadStream(final InputStream inputStream, final String key) throws IOException {
+    uploadStream(inputStream, key, StreamUpload.UNKNOWN_LENGTH);
+  }
 
-  private void uploadFile(final File file, final String key, AccessControlList access) {
-    final PutObjectRequest request = createPutRequest(file, key, access);
+  @Override
+  public void uploadStream(final InputStream inputStream, final String key,
+      final long contentLength) throws IOException {
+    if (isCompressedUpload()) {
+      this.streamUpload.upload(compress(inputStream), key, StreamUpload.UNKNOWN_LENGTH, null,
+          createCompressedMetadata(null));
+    } else {
+      this.streamUpload.upload(inputStream, key, contentLength, null);
+    }
+    this.changeListeners.objectChanged(key);
+  }
+
+  @Override
+  public URL createPresignedUploadUrl(final String key, final Duration expiration) {
+    return this.urlSigner.sign(key, HttpMethod.PUT, expiration);
+  }
+
+
+  private void uploadFile(final File file, final String key, UploadAccess access) {
+    uploadFile(file, key, access, null);
+  }
+
+  private void uploadFile(final File file, final String key, UploadAccess access,
+      ObjectMetadata metadata) {
+    if (isCompressedUpload()) {
+      uploadCompressedFile(file, key, access, metadata);
+    } else if (isMultipartUpload(file)) {
+      this.multipartFileUpload.upload(file, key, access, metadata);
+    } else if (isMappedUpload(file)) {
+      uploadMappedFile(file, key, access, metadata);
+    } else {
+      final PutObjectRequest request = createPutRequest(file, key, access);
+      if (metadata != null) {
+        request.setMetadata(metadata);
+      }
+      this.amazonS3.putObject(request);
+    }
+    this.changeListeners.objectChanged(key);
+  }
+
+  private void uploadMappedFile(final File file, final String key, UploadAccess access,
+      ObjectMetadata metadata) {
+    final ByteBuffer content = MappedFiles.map(file, 0, file.length());
+    final ObjectMetadata mappedMetadata = metadata == null ? new ObjectMetadata() : metadata;
+    mappedMetadata.setContentLength(content.remaining());
+    mappedMetadata.setContentMD5(MappedFiles.md5(content));
+    final PutObjectRequest request = new PutObjectRequest(this.bucket, key,
+        new ByteBufferInputStream(content), mappedMetadata);
+    if (access != null) {
+      access.applyTo(request);
+    }
     this.amazonS3.putObject(request);
   }
 
+  private void uploadCompressedFile(final File file, final String key, UploadAccess access,
+      ObjectMetadata metadata) {
+    try (InputStream inputStream = compress(new FileInputStream(file))) {
+      this.streamUpload.upload(inputStream, key, StreamUpload.UNKNOWN_LENGTH, access,
+          createCompressedMetadata(file, metadata));
+    } catch (final IOException e) {
+      throw new AmazonClientException("could not upload " + file, e);
+    }
+  }
+
+  private boolean isCompressedUpload() {
+    return this.config.getCompressionCodec() != CompressionCodec.NONE;
+  }
+
+  private InputStream compress(final InputStream inputStream) {
+    return new CompressingInputStream(inputStream, this.config.getCompressionFrameSize(),
+        this.config.getCompressionLevel());
+  }
+
+  private ObjectMetadata createCompressedMetadata(final File file,
+      final ObjectMetadata metadata) {
+    // lets sync compare the stored object with the uncompressed local file
+    final ObjectMetadata compressedMetadata = createCompressedMetadata(metadata);
+    compressedMetadata.addUserMetadata(CompressionCodec.LENGTH_METADATA_KEY,
+        Long.toString(file.length()));
+    if (compressedMetadata.getUserMetaDataOf(CompressionCodec.HASH_METADATA_KEY) == null) {
+      compressedMetadata.addUserMetadata(CompressionCodec.HASH_METADATA_KEY,
+          ContentHasher.sha256(file));
+    }
+    return compressedMetadata;
+  }
+
+  private ObjectMetadata createCompressedMetadata(final ObjectMetadata metadata) {
+    final ObjectMetadata compressedMetadata = metadata == null ? new ObjectMetadata() : metadata;
+    this.config.getCompressionCodec().applyTo(compressedMetadata);
+    return compressedMetadata;
+  }
+
+  private boolean isMappedUpload(final File file) {
+    return this.config.isMemoryMappedUpload() && file.length() <= MappedFiles.MAX_SEGMENT_SIZE;
+  }
+
+  private boolean isMultipartUpload(final File file) {
+    return this.config.isMultipartUpload() && file.length() > this.config.getMultipartThreshold();
+  }
+
   private PutObjectRequest createPutRequest(final File file, final String key,
-      AccessControlList access) {
+      UploadAccess access) {
     final PutObjectRequest request = createPutRequest(file, key);
     if (access != null) {
-      request.setAccessControlList(access);
+      access.applyTo(request);
     }
     return request;
   }
@@ -60,12 +255,4 @@ public class DefaultS3UploadService implements S3UploadService {
   private PutObjectRequest createPutRequest(final File file, final String key) {
     return new PutObjectRequest(this.bucket, key, file);
   }
-
-  private AccessControlList getBucketAcl() {
-    AccessControlList access = this.amazonS3.getBucketAcl(this.bucket);
-    if (access == null) {
-      access = new AccessControlList();
-    }
-    return access;
-  }
 }
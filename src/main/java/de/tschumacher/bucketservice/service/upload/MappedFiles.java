@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.upload;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.BinaryUtils;
+
+final class MappedFiles {
+  static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+  private MappedFiles() {}
+
+  static ByteBuffer map(final File file, final long offset, final long size) {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return channel.map(MapMode.READ_ONLY, offset, size);
+    } catch (final IOException e) {
+      throw new AmazonClientException("could not map " + file, e);
+    }
+  }
+
+  static String md5(final ByteBuffer segment) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("MD5");
+      digest.update(segment.duplicate());
+      return BinaryUtils.toBase64(digest.digest());
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.upload;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PartListing;
+import com.amazonaws.services.s3.model.PartSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+import de.tschumacher.bucketservice.service.CheckpointJournal;
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3Multipart;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+class MultipartFileUpload extends MultipartUpload {
+  private static final String PART_RECORD = "part";
+
+  MultipartFileUpload(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor) {
+    super(amazonS3, bucket, config, executor);
+  }
+
+  void upload(final File file, final String key, final UploadAccess access,
+      final ObjectMetadata metadata) {
+    if (this.config.getCheckpointDirectory() != null) {
+      uploadResumably(file, key, access, metadata);
+      return;
+    }
+    final String uploadId = initiate(key, access, metadata);
+    try {
+      final List<PartETag> partETags =
+          uploadParts(file, key, uploadId, Collections.<Integer, PartETag>emptyMap(), null);
+      complete(key, uploadId, partETags);
+    } catch (final RuntimeException e) {
+      abort(key, uploadId);
+      throw e;
+    } catch (final Error e) {
+      abort(key, uploadId);
+      throw e;
+    }
+  }
+
+  private void uploadResumably(final File file, final String key, final UploadAccess access,
+      final ObjectMetadata metadata) {
+    try (CheckpointJournal journal = CheckpointJournal.open(this.config.getCheckpointDirectory(),
+        "upload", this.bucket, key, file.getAbsolutePath())) {
+      final String header = createHeader(file);
+      final Map<Integer, PartETag> completed = new HashMap<Integer, PartETag>();
+      String uploadId = resume(journal, header, key, completed);
+      if (uploadId == null) {
+        uploadId = initiate(key, access, metadata);
+        journal.append(header + " " + uploadId);
+      }
+      complete(key, uploadId, uploadParts(file, key, uploadId, completed, journal));
+      journal.delete();
+    } catch (final IOException e) {
+      throw new AmazonClientException("could not write checkpoint journal for " + key, e);
+    }
+  }
+
+  private String createHeader(final File file) {
+    return "upload " + file.length() + " " + file.lastModified() + " " + getPartSize(file);
+  }
+
+  private long getPartSize(final File file) {
+    return S3Multipart.partSize(file.length(), this.config.getPartSize());
+  }
+
+  private String resume(final CheckpointJournal journal, final String header, final String key,
+      final Map<Integer, PartETag> completed) throws IOException {
+    final List<String> records = journal.getRecords();
+    if (records.isEmpty()) {
+      return null;
+    }
+    final String uploadId = records.get(0).substring(records.get(0).lastIndexOf(' ') + 1);
+    if (!records.get(0).equals(header + " " + uploadId)) {
+      abort(key, uploadId);
+      journal.reset();
+      return null;
+    }
+    final Map<Integer, String> uploaded;
+    try {
+      uploaded = listParts(key, uploadId);
+    } catch (final AmazonServiceException e) {
+      if (e.getStatusCode() != 404) {
+        throw e;
+      }
+      journal.reset();
+      return null;
+    }
+    for (final String record : records.subList(1, records.size())) {
+      final String[] fields = record.split(" ");
+      if (fields.length == 3 && PART_RECORD.equals(fields[0])) {
+        final int partNumber = Integer.parseInt(fields[1]);
+        if (fields[2].equals(uploaded.get(partNumber))) {
+          completed.put(partNumber, new PartETag(partNumber, fields[2]));
+        }
+      }
+    }
+    return uploadId;
+  }
+
+  private Map<Integer, String> listParts(final String key, final String uploadId) {
+    final Map<Integer, String> parts = new HashMap<Integer, String>();
+    final ListPartsRequest request = new ListPartsRequest(this.bucket, key, uploadId);
+    PartListing listing;
+    do {
+      listing = this.amazonS3.listParts(request);
+      for (final PartSummary part : listing.getParts()) {
+        parts.put(part.getPartNumber(), unquote(part.getETag()));
+      }
+      request.setPartNumberMarker(listing.getNextPartNumberMarker());
+    } while (listing.isTruncated());
+    return parts;
+  }
+
+  private List<PartETag> uploadParts(final File file, final String key, final String uploadId,
+      final Map<Integer, PartETag> completed, final CheckpointJournal journal) {
+    final long length = file.length();
+    final long partSize = getPartSize(file);
+    final List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
+    int partNumber = 1;
+    for (long offset = 0; offset < length; offset += partSize, partNumber++) {
+      if (completed.containsKey(partNumber)) {
+        futures.add(CompletableFuture.completedFuture(completed.get(partNumber)));
+        continue;
+      }
+      final long size = Math.min(partSize, length - offset);
+      final Callable<PartETag> task =
+          createPartTask(createPartSupplier(file, key, uploadId, partNumber, offset, size));
+      futures.add(this.executor.submit(journal == null ? task : journaled(task, journal)));
+    }
+    return S3Executors.awaitAll(futures);
+  }
+
+  private static Callable<PartETag> journaled(final Callable<PartETag> task,
+      final CheckpointJournal journal) {
+    return () -> {
+      final PartETag partETag = task.call();
+      journal.append(PART_RECORD + " " + partETag.getPartNumber() + " "
+          + unquote(partETag.getETag()));
+      return partETag;
+    };
+  }
+
+  private static String unquote(final String eTag) {
+    return eTag.replace("\"", "");
+  }
+
+  private Supplier<UploadPartRequest> createPartSupplier(final File file, final String key,
+      final String uploadId, final int partNumber, final long offset, final long size) {
+    if (this.config.isMemoryMappedUpload() && size <= MappedFiles.MAX_SEGMENT_SIZE) {
+      return () -> {
+        final ByteBuffer segment = MappedFiles.map(file, offset, size);
+        return createPartRequest(key, uploadId, partNumber, size)
+            .withInputStream(new ByteBufferInputStream(segment))
+            .withMD5Digest(MappedFiles.md5(segment));
+      };
+    }
+    final UploadPartRequest request = createPartRequest(key, uploadId, partNumber, size)
+        .withFile(file).withFileOffset(offset);
+    return () -> request;
+  }
+}
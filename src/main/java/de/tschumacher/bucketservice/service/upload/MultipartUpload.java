@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.upload;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+import de.tschumacher.bucketservice.service.S3Retries;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+abstract class MultipartUpload {
+  final AmazonS3 amazonS3;
+  final String bucket;
+  final S3ServiceConfig config;
+  final ExecutorService executor;
+
+  MultipartUpload(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.config = config;
+    this.executor = executor;
+  }
+
+  String initiate(final String key, final UploadAccess access) {
+    return initiate(key, access, null);
+  }
+
+  String initiate(final String key, final UploadAccess access, final ObjectMetadata metadata) {
+    final InitiateMultipartUploadRequest request =
+        new InitiateMultipartUploadRequest(this.bucket, key);
+    if (metadata != null) {
+      request.setObjectMetadata(metadata);
+    }
+    if (access != null) {
+      access.applyTo(request);
+    }
+    return this.amazonS3.initiateMultipartUpload(request).getUploadId();
+  }
+
+  UploadPartRequest createPartRequest(final String key, final String uploadId,
+      final int partNumber, final long size) {
+    return new UploadPartRequest().withBucketName(this.bucket).withKey(key)
+        .withUploadId(uploadId).withPartNumber(partNumber).withPartSize(size);
+  }
+
+  Callable<PartETag> createPartTask(final Supplier<UploadPartRequest> request) {
+    return () -> S3Retries.call(() -> this.amazonS3.uploadPart(request.get()).getPartETag(),
+        this.config);
+  }
+
+  void complete(final String key, final String uploadId, final List<PartETag> partETags) {
+    this.amazonS3.completeMultipartUpload(
+        new CompleteMultipartUploadRequest(this.bucket, key, uploadId, partETags));
+  }
+
+  void abort(final String key, final String uploadId) {
+    try {
+      this.amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(this.bucket, key,
+          uploadId));
+    } catch (final RuntimeException e) {
+      // the original failure is more relevant than a failed cleanup
+    }
+  }
+}
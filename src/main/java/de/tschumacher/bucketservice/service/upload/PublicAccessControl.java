@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.upload;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AccessControlList;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.GroupGrantee;
+import com.amazonaws.services.s3.model.Permission;
+
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+class PublicAccessControl {
+  private static final UploadAccess CANNED_PUBLIC_READ =
+      UploadAccess.of(CannedAccessControlList.PublicRead);
+
+  private final AmazonS3 amazonS3;
+  private final String bucket;
+  private final PublicAclMode mode;
+  private final long refreshNanos;
+  private UploadAccess cachedAccess;
+  private long cachedAt;
+
+  PublicAccessControl(AmazonS3 amazonS3, String bucket, S3ServiceConfig config) {
+    this.amazonS3 = amazonS3;
+    this.bucket = bucket;
+    this.mode = config.getPublicAclMode();
+    this.refreshNanos = config.getAclRefreshInterval().toNanos();
+  }
+
+  UploadAccess get() {
+    switch (this.mode) {
+      case CANNED_PUBLIC_READ:
+        return CANNED_PUBLIC_READ;
+      case BUCKET_ACL:
+        return fetchPublicAccess();
+      default:
+        return getCachedPublicAccess();
+    }
+  }
+
+  private synchronized UploadAccess getCachedPublicAccess() {
+    final long now = System.nanoTime();
+    if (this.cachedAccess == null || now - this.cachedAt > this.refreshNanos) {
+      this.cachedAccess = fetchPublicAccess();
+      this.cachedAt = now;
+    }
+    return this.cachedAccess;
+  }
+
+  private UploadAccess fetchPublicAccess() {
+    AccessControlList access = this.amazonS3.getBucketAcl(this.bucket);
+    if (access == null) {
+      access = new AccessControlList();
+    }
+    access.grantPermission(GroupGrantee.AllUsers, Permission.Read);
+    return UploadAccess.of(access);
+  }
+}
@@ -14,10 +14,23 @@
 package de.tschumacher.bucketservice.service.upload;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.time.Duration;
+import java.util.Map;
 
 public interface S3UploadService {
 
   void uploadPublicFile(File file, String key);
 
+  void uploadPublicFiles(Map<String, File> files);
+
   void uploadFile(File file, String key);
+
+  void uploadStream(InputStream inputStream, String key) throws IOException;
+
+  void uploadStream(InputStream inputStream, String key, long contentLength) throws IOException;
+
+  URL createPresignedUploadUrl(String key, Duration expiration);
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.upload;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3Multipart;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+class StreamUpload extends MultipartUpload {
+  static final long UNKNOWN_LENGTH = -1;
+  private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+  StreamUpload(AmazonS3 amazonS3, String bucket, S3ServiceConfig config,
+      ExecutorService executor) {
+    super(amazonS3, bucket, config, executor);
+  }
+
+  void upload(final InputStream inputStream, final String key, final long contentLength,
+      final UploadAccess access) throws IOException {
+    upload(inputStream, key, contentLength, access, null);
+  }
+
+  void upload(final InputStream inputStream, final String key, final long contentLength,
+      final UploadAccess access, final ObjectMetadata metadata) throws IOException {
+    if (contentLength != UNKNOWN_LENGTH && !isMultipartUpload(contentLength)) {
+      putObject(inputStream, key, contentLength, access, metadata);
+      return;
+    }
+    final PartBuffers buffers =
+        new PartBuffers(getPartSize(contentLength), this.config.getParallelism());
+    final byte[] firstPart = buffers.take();
+    final int firstPartLength = readFully(inputStream, firstPart);
+    if (firstPartLength < firstPart.length) {
+      putObject(new ByteArrayInputStream(firstPart, 0, firstPartLength), key, firstPartLength,
+          access, metadata);
+      return;
+    }
+    final String uploadId = initiate(key, access, metadata);
+    try {
+      final List<PartETag> partETags =
+          uploadParts(inputStream, key, uploadId, buffers, firstPart, firstPartLength);
+      complete(key, uploadId, partETags);
+    } catch (final IOException | RuntimeException e) {
+      abort(key, uploadId);
+      throw e;
+    } catch (final Error e) {
+      abort(key, uploadId);
+      throw e;
+    }
+  }
+
+  private int getPartSize(final long contentLength) {
+    // without a length the part size can't grow, so such streams are limited to
+    // MAX_PARTS times the configured part size
+    final long partSize = contentLength == UNKNOWN_LENGTH ? this.config.getPartSize()
+        : S3Multipart.partSize(contentLength, this.config.getPartSize());
+    return (int) Math.min(partSize, MAX_BUFFER_SIZE);
+  }
+
+  private boolean isMultipartUpload(final long contentLength) {
+    return this.config.isMultipartUpload() && contentLength > this.config.getMultipartThreshold();
+  }
+
+  private void putObject(final InputStream inputStream, final String key,
+      final long contentLength, final UploadAccess access, final ObjectMetadata metadata) {
+    final ObjectMetadata objectMetadata =
+        metadata == null ? new ObjectMetadata() : metadata.clone();
+    objectMetadata.setContentLength(contentLength);
+    final PutObjectRequest request =
+        new PutObjectRequest(this.bucket, key, inputStream, objectMetadata);
+    if (access != null) {
+      access.applyTo(request);
+    }
+    this.amazonS3.putObject(request);
+  }
+
+  private List<PartETag> uploadParts(final InputStream inputStream, final String key,
+      final String uploadId, final PartBuffers buffers, final byte[] firstPart,
+      final int firstPartLength) throws IOException {
+    final List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
+    final AtomicBoolean failed = new AtomicBoolean();
+    byte[] part = firstPart;
+    int partLength = firstPartLength;
+    int partNumber = 1;
+    try {
+      while (partLength > 0) {
+        if (partNumber > S3Multipart.MAX_PARTS) {
+          throw new AmazonClientException("stream for " + key + " exceeds "
+              + S3Multipart.MAX_PARTS + " parts of " + part.length
+              + " bytes, pass its content length or raise the part size");
+        }
+        futures.add(submitPart(key, uploadId, partNumber++, part, partLength, buffers, failed));
+        if (failed.get()) {
+          return S3Executors.awaitAll(futures);
+        }
+        part = buffers.take();
+        partLength = readFully(inputStream, part);
+      }
+      buffers.release(part);
+      return S3Executors.awaitAll(futures);
+    } finally {
+      for (final Future<PartETag> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private Future<PartETag> submitPart(final String key, final String uploadId,
+      final int partNumber, final byte[] part, final int partLength, final PartBuffers buffers,
+      final AtomicBoolean failed) {
+    return this.executor.submit(() -> {
+      try {
+        return createPartTask(() -> createPartRequest(key, uploadId, partNumber, partLength)
+            .withInputStream(new ByteArrayInputStream(part, 0, partLength))).call();
+      } catch (final Exception | Error e) {
+        failed.set(true);
+        throw e;
+      } finally {
+        buffers.release(part);
+      }
+    });
+  }
+
+  private int readFully(final InputStream inputStream, final byte[] buffer) throws IOException {
+    int length = 0;
+    int read;
+    while (length < buffer.length
+        && (read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+      length += read;
+    }
+    return length;
+  }
+
+  private static class PartBuffers {
+    private final int bufferSize;
+    private final BlockingQueue<byte[]> freeBuffers;
+    private int unallocated;
+
+    PartBuffers(int bufferSize, int maxBuffers) {
+      this.bufferSize = bufferSize;
+      this.freeBuffers = new ArrayBlockingQueue<byte[]>(maxBuffers);
+      this.unallocated = maxBuffers;
+    }
+
+    byte[] take() {
+      final byte[] buffer = this.freeBuffers.poll();
+      if (buffer != null) {
+        return buffer;
+      }
+      if (this.unallocated > 0) {
+        this.unallocated--;
+        return new byte[this.bufferSize];
+      }
+      try {
+        return this.freeBuffers.take();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AmazonClientException("interrupted while waiting for part buffer", e);
+      }
+    }
+
+    void release(final byte[] buffer) {
+      this.freeBuffers.offer(buffer);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.upload;
+
+import com.amazonaws.services.s3.model.AccessControlList;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+
+class UploadAccess {
+  private final AccessControlList accessControlList;
+  private final CannedAccessControlList cannedAccessControlList;
+
+  private UploadAccess(AccessControlList accessControlList,
+      CannedAccessControlList cannedAccessControlList) {
+    this.accessControlList = accessControlList;
+    this.cannedAccessControlList = cannedAccessControlList;
+  }
+
+  static UploadAccess of(final AccessControlList accessControlList) {
+    return new UploadAccess(accessControlList, null);
+  }
+
+  static UploadAccess of(final CannedAccessControlList cannedAccessControlList) {
+    return new UploadAccess(null, cannedAccessControlList);
+  }
+
+  void applyTo(final PutObjectRequest request) {
+    request.setAccessControlList(this.accessControlList);
+    request.setCannedAcl(this.cannedAccessControlList);
+  }
+
+  void applyTo(final InitiateMultipartUploadRequest request) {
+    request.setAccessControlList(this.accessControlList);
+    request.setCannedACL(this.cannedAccessControlList);
+  }
+}
@@ -16,12 +16,14 @@ package de.tschumacher.bucketservice.data;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.net.URL;
+import java.util.Arrays;
 
 import uk.co.jemos.podam.api.PodamFactory;
 import uk.co.jemos.podam.api.PodamFactoryImpl;
 
-import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
 
 public class DataCreater {
 
@@ -53,11 +55,17 @@ public class DataCreater {
     return factory.manufacturePojo(URL.class);
   }
 
-  public static ObjectListing createObjectListing() {
-    return factory.manufacturePojo(ObjectListing.class);
+  public static ListObjectsV2Result createListObjectsV2Result() {
+    return createListObjectsV2Result(null);
   }
 
-  public static ObjectListing createEmptyObjectListing() {
-    return new ObjectListing();
+  public static ListObjectsV2Result createListObjectsV2Result(String nextContinuationToken) {
+    final ListObjectsV2Result result = new ListObjectsV2Result();
+    result.getObjectSummaries()
+        .addAll(Arrays.asList(factory.manufacturePojo(S3ObjectSummary[].class)));
+    result.getCommonPrefixes().addAll(Arrays.asList(factory.manufacturePojo(String[].class)));
+    result.setTruncated(nextContinuationToken != null);
+    result.setNextContinuationToken(nextContinuationToken);
+    return result;
   }
 }
@@ -15,19 +15,22 @@ package de.tschumacher.bucketservice.data;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.List;
 
-import com.amazonaws.services.s3.model.ListObjectsRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 
 import de.tschumacher.bucketservice.domain.S3File;
 
 public class S3Assert {
 
-  public static void assertFiles(ObjectListing objects, List<S3File> files) {
+  public static void assertFiles(List<ListObjectsV2Result> pages, List<S3File> files) {
+    final List<S3ObjectSummary> summaries = collectSummaries(pages);
+    assertEquals(summaries.size(), files.size());
     for (int i = 0; i < files.size(); i++) {
-      assertFile(objects.getObjectSummaries().get(i), files.get(i));
+      assertFile(summaries.get(i), files.get(i));
     }
   }
 
@@ -39,31 +42,44 @@ public class S3Assert {
     assertEquals(s3ObjectSummary.getLastModified(), s3File.getLastModified());
   }
 
-  public static void assertFileListRequest(ListObjectsRequest listRequest, String bucketName,
+  public static void assertFileListRequest(ListObjectsV2Request listRequest, String bucketName,
       String key, String delimiter) {
     assertEquals(bucketName, listRequest.getBucketName());
     assertEquals(key, listRequest.getPrefix());
-    assertEquals(key, listRequest.getMarker());
+    assertEquals(key, listRequest.getStartAfter());
     assertEquals(delimiter, listRequest.getDelimiter());
   }
 
-  public static void assertFileNames(ObjectListing objects, List<String> fileNames) {
+  public static void assertFileNames(List<ListObjectsV2Result> pages, List<String> fileNames) {
+    final List<S3ObjectSummary> summaries = collectSummaries(pages);
+    assertEquals(summaries.size(), fileNames.size());
     for (int i = 0; i < fileNames.size(); i++) {
-      assertEquals(objects.getObjectSummaries().get(i).getKey(), fileNames.get(i));
+      assertEquals(summaries.get(i).getKey(), fileNames.get(i));
     }
   }
 
-  public static void assertDirectoryRequest(ListObjectsRequest listRequest, String bucketName,
+  public static void assertDirectoryRequest(ListObjectsV2Request listRequest, String bucketName,
       String key, String delimiter) {
     assertEquals(bucketName, listRequest.getBucketName());
     assertEquals(key, listRequest.getPrefix());
     assertEquals(delimiter, listRequest.getDelimiter());
   }
 
-  public static void assertDirectories(ObjectListing objects, List<String> directories) {
-    for (int i = 0; i < directories.size(); i++) {
-      assertEquals(objects.getCommonPrefixes().get(i), directories.get(i));
+  public static void assertDirectories(List<ListObjectsV2Result> pages,
+      List<String> directories) {
+    final List<String> commonPrefixes = new ArrayList<String>();
+    for (final ListObjectsV2Result page : pages) {
+      commonPrefixes.addAll(page.getCommonPrefixes());
     }
+    assertEquals(commonPrefixes, directories);
+  }
+
+  private static List<S3ObjectSummary> collectSummaries(List<ListObjectsV2Result> pages) {
+    final List<S3ObjectSummary> summaries = new ArrayList<S3ObjectSummary>();
+    for (final ListObjectsV2Result page : pages) {
+      summaries.addAll(page.getObjectSummaries());
+    }
+    return summaries;
   }
 
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+import de.tschumacher.bucketservice.data.DataCreater;
+
+public class AsyncS3ServiceTest extends CommonS3ServiceTest {
+  private AsyncS3Service service;
+  private String key;
+
+  @Override
+  @Before
+  public void setUp() {
+    super.setUp();
+    this.key = DataCreater.createString();
+    this.service = new DefaultAsyncS3Service(this.amazonS3, this.bucketName,
+        S3ServiceConfig.newBuilder().withVirtualThreads(true).build());
+  }
+
+  @Test
+  public void fileExistsTest() throws InterruptedException, ExecutionException {
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, this.key)).thenReturn(true);
+
+    final CompletableFuture<Boolean> fileExists =
+        this.service.informationService().fileExists(this.key);
+
+    assertTrue(fileExists.get());
+    Mockito.verify(this.amazonS3, Mockito.times(1)).doesObjectExist(this.bucketName, this.key);
+  }
+
+  @Test
+  public void getUserMetadataTest() throws InterruptedException, ExecutionException {
+    final ObjectMetadata metadata = new ObjectMetadata();
+    metadata.addUserMetadata("origin", "upload");
+    Mockito.when(this.amazonS3.getObjectMetadata(this.bucketName, this.key)).thenReturn(metadata);
+
+    final CompletableFuture<Map<String, String>> userMetadata =
+        this.service.informationService().getUserMetadata(this.key);
+
+    assertEquals(Collections.singletonMap("origin", "upload"), userMetadata.get());
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObjectMetadata(this.bucketName, this.key);
+  }
+
+  @Test
+  public void deleteFileFailureTest() throws InterruptedException {
+    final AmazonServiceException accessDenied = new AmazonServiceException("access denied");
+    Mockito.doThrow(accessDenied).when(this.amazonS3).deleteObject(this.bucketName, this.key);
+
+    final CompletableFuture<Void> deletion =
+        this.service.modificationService().deleteFile(this.key);
+
+    try {
+      deletion.get();
+      fail();
+    } catch (final ExecutionException e) {
+      assertSame(accessDenied, e.getCause());
+    }
+    Mockito.verify(this.amazonS3, Mockito.times(1)).deleteObject(this.bucketName, this.key);
+  }
+
+  @Test
+  public void concurrencyLimitTest() throws InterruptedException, ExecutionException {
+    final S3AsyncExecutor executor = new S3AsyncExecutor(
+        S3ServiceConfig.newBuilder().withConcurrencyLimit(S3OperationType.DOWNLOAD, 2).build());
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+
+    for (int i = 0; i < 6; i++) {
+      futures.add(executor.run(S3OperationType.DOWNLOAD, () -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        running.decrementAndGet();
+      }));
+    }
+    Thread.sleep(50);
+    release.countDown();
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+
+    assertEquals(2, maxRunning.get());
+    executor.shutdown();
+  }
+
+  @Test
+  public void rejectedExecutionFailsQueuedTasksTest() throws InterruptedException {
+    final ExecutorService delegate = Executors.newSingleThreadExecutor();
+    final S3AsyncExecutor executor = new S3AsyncExecutor(delegate,
+        S3ServiceConfig.newBuilder().withConcurrencyLimit(S3OperationType.DOWNLOAD, 1).build());
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CompletableFuture<Void> running = executor.run(S3OperationType.DOWNLOAD, () -> {
+      started.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    final List<CompletableFuture<Void>> queued = new ArrayList<CompletableFuture<Void>>();
+    for (int i = 0; i < 2; i++) {
+      queued.add(executor.run(S3OperationType.DOWNLOAD, () -> fail()));
+    }
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    delegate.shutdown();
+    release.countDown();
+
+    for (final CompletableFuture<Void> future : queued) {
+      try {
+        future.get(5, TimeUnit.SECONDS);
+        fail();
+      } catch (final ExecutionException | TimeoutException e) {
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+      }
+    }
+    assertTrue(running.isDone());
+    assertTrue(delegate.awaitTermination(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void shutdownKeepsInjectedExecutorTest() {
+    final ExecutorService delegate = Executors.newSingleThreadExecutor();
+    try {
+      new S3AsyncExecutor(delegate, S3ServiceConfig.defaults()).shutdown();
+      new S3AsyncExecutor(S3ServiceConfig.newBuilder().withAsyncExecutor(delegate).build())
+          .shutdown();
+
+      assertFalse(delegate.isShutdown());
+    } finally {
+      delegate.shutdown();
+    }
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.PushbackInputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.methods.HttpRequestBase;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.amazonaws.util.IOUtils;
+
+public class ResilientAmazonS3Test extends CommonS3ServiceTest {
+
+  @Test
+  public void wrapOnlyWhenEnabledTest() {
+    assertSame(this.amazonS3, ResilientAmazonS3.wrap(this.amazonS3, S3ServiceConfig.defaults()));
+  }
+
+  @Test
+  public void retryThrottledRequestsTest() {
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, "key"))
+        .thenThrow(createException(503, "SlowDown")).thenThrow(createException(500, "Internal"))
+        .thenReturn(true);
+
+    assertTrue(createClient(2).doesObjectExist(this.bucketName, "key"));
+
+    Mockito.verify(this.amazonS3, Mockito.times(3)).doesObjectExist(this.bucketName, "key");
+  }
+
+  @Test
+  public void giveUpAfterMaxRetriesTest() {
+    final AmazonServiceException exception = createException(503, "SlowDown");
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, "key")).thenThrow(exception);
+
+    try {
+      createClient(2).doesObjectExist(this.bucketName, "key");
+      fail();
+    } catch (final AmazonServiceException e) {
+      assertSame(exception, e);
+    }
+
+    Mockito.verify(this.amazonS3, Mockito.times(3)).doesObjectExist(this.bucketName, "key");
+  }
+
+  @Test
+  public void doNotRetryClientErrorsTest() {
+    Mockito.when(this.amazonS3.getObjectMetadata(this.bucketName, "key"))
+        .thenThrow(createException(403, "AccessDenied"));
+
+    try {
+      createClient(2).getObjectMetadata(this.bucketName, "key");
+      fail();
+    } catch (final AmazonServiceException e) {
+      assertEquals(403, e.getStatusCode());
+    }
+
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObjectMetadata(this.bucketName, "key");
+  }
+
+  @Test
+  public void doNotRetryUnmarkableStreamUploadsTest() {
+    Mockito.when(this.amazonS3.putObject(ArgumentMatchers.any(PutObjectRequest.class)))
+        .thenThrow(createException(503, "SlowDown"));
+    final PutObjectRequest request = new PutObjectRequest(this.bucketName, "key",
+        new PushbackInputStream(new ByteArrayInputStream(new byte[] {1})),
+        new ObjectMetadata());
+
+    try {
+      createClient(2).putObject(request);
+      fail();
+    } catch (final AmazonServiceException e) {
+      assertEquals(503, e.getStatusCode());
+    }
+
+    Mockito.verify(this.amazonS3, Mockito.times(1)).putObject(request);
+  }
+
+  @Test
+  public void retryFailedPartWithMarkableBodyTest() {
+    final byte[] content = new byte[] {1, 2, 3};
+    final UploadPartRequest request = new UploadPartRequest().withBucketName(this.bucketName)
+        .withKey("key").withUploadId("upload").withPartNumber(1).withPartSize(content.length)
+        .withInputStream(new ByteArrayInputStream(content));
+    final AtomicInteger attempts = new AtomicInteger();
+    Mockito.when(this.amazonS3.uploadPart(request)).thenAnswer(invocation -> {
+      final byte[] body = IOUtils.toByteArray(request.getInputStream());
+      assertArrayEquals(content, body);
+      if (attempts.incrementAndGet() == 1) {
+        throw createException(503, "SlowDown");
+      }
+      final UploadPartResult result = new UploadPartResult();
+      result.setPartNumber(1);
+      result.setETag("etag");
+      return result;
+    });
+
+    assertEquals("etag", createClient(2).uploadPart(request).getETag());
+
+    Mockito.verify(this.amazonS3, Mockito.times(2)).uploadPart(request);
+  }
+
+  @Test
+  public void doNotRetryNonIdempotentRequestsTest() {
+    final InitiateMultipartUploadRequest request =
+        new InitiateMultipartUploadRequest(this.bucketName, "key");
+    Mockito.when(this.amazonS3.initiateMultipartUpload(request))
+        .thenThrow(createException(503, "SlowDown"));
+
+    try {
+      createClient(2).initiateMultipartUpload(request);
+      fail();
+    } catch (final AmazonServiceException e) {
+      assertEquals(503, e.getStatusCode());
+    }
+
+    Mockito.verify(this.amazonS3, Mockito.times(1)).initiateMultipartUpload(request);
+  }
+
+  @Test
+  public void hedgeSlowReadsTest() throws InterruptedException {
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger calls = new AtomicInteger();
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, "key")).thenAnswer(invocation -> {
+      if (calls.incrementAndGet() == ResilientAmazonS3.MIN_HEDGE_SAMPLES + 1) {
+        release.await(5, TimeUnit.SECONDS);
+      }
+      return true;
+    });
+    final AmazonS3 client = ResilientAmazonS3.wrap(this.amazonS3,
+        S3ServiceConfig.newBuilder().withHedgedReads(true).build());
+    for (int i = 0; i < ResilientAmazonS3.MIN_HEDGE_SAMPLES; i++) {
+      assertTrue(client.doesObjectExist(this.bucketName, "key"));
+    }
+
+    final long start = System.nanoTime();
+    assertTrue(client.doesObjectExist(this.bucketName, "key"));
+    final long elapsed = System.nanoTime() - start;
+    release.countDown();
+
+    assertTrue(elapsed < TimeUnit.SECONDS.toNanos(2));
+    Mockito.verify(this.amazonS3, Mockito.times(ResilientAmazonS3.MIN_HEDGE_SAMPLES + 2))
+        .doesObjectExist(this.bucketName, "key");
+  }
+
+  @Test
+  public void abortHedgedResultsOnInterruptTest() throws InterruptedException {
+    final CountDownLatch started = new CountDownLatch(2);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch answered = new CountDownLatch(2);
+    final AtomicInteger calls = new AtomicInteger();
+    final List<HttpRequestBase> requests = new CopyOnWriteArrayList<HttpRequestBase>();
+    final GetObjectRequest request =
+        new GetObjectRequest(this.bucketName, "key").withRange(0, 9);
+    Mockito.when(this.amazonS3.getObject(request)).thenAnswer(invocation -> {
+      final boolean hedged = calls.incrementAndGet() > ResilientAmazonS3.MIN_HEDGE_SAMPLES;
+      if (hedged) {
+        started.countDown();
+        release.await(5, TimeUnit.SECONDS);
+      }
+      final HttpRequestBase httpRequest = Mockito.mock(HttpRequestBase.class);
+      requests.add(httpRequest);
+      if (hedged) {
+        answered.countDown();
+      }
+      final S3Object object = new S3Object();
+      object.setObjectContent(
+          new S3ObjectInputStream(new ByteArrayInputStream(new byte[10]), httpRequest));
+      return object;
+    });
+    final AmazonS3 client = ResilientAmazonS3.wrap(this.amazonS3,
+        S3ServiceConfig.newBuilder().withHedgedReads(true).build());
+    for (int i = 0; i < ResilientAmazonS3.MIN_HEDGE_SAMPLES; i++) {
+      client.getObject(request);
+    }
+    final AtomicBoolean aborted = new AtomicBoolean();
+    final Thread reader = new Thread(() -> {
+      try {
+        client.getObject(request);
+      } catch (final AbortedException e) {
+        aborted.set(true);
+      }
+    });
+
+    reader.start();
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    reader.interrupt();
+    reader.join(5000);
+    release.countDown();
+
+    assertTrue(aborted.get());
+    assertTrue(answered.await(5, TimeUnit.SECONDS));
+    Mockito.verify(this.amazonS3, Mockito.times(ResilientAmazonS3.MIN_HEDGE_SAMPLES + 2))
+        .getObject(request);
+    final List<HttpRequestBase> hedged =
+        requests.subList(ResilientAmazonS3.MIN_HEDGE_SAMPLES, requests.size());
+    for (final HttpRequestBase httpRequest : hedged) {
+      Mockito.verify(httpRequest, Mockito.timeout(5000)).abort();
+    }
+  }
+
+  @Test
+  public void backoffStaysWithinBoundsTest() {
+    final RetryBackoff backoff = new RetryBackoff(Duration.ofMillis(10), Duration.ofMillis(100));
+
+    for (int attempt = 0; attempt < 80; attempt++) {
+      final long delay = backoff.delayNanos(attempt);
+      assertTrue(delay >= 0);
+      assertTrue(delay <= Math.min(Duration.ofMillis(100).toNanos(),
+          attempt < 20 ? Duration.ofMillis(10).toNanos() << attempt : Long.MAX_VALUE));
+    }
+  }
+
+  @Test
+  public void rateLimiterBacksOffAndRecoversTest() {
+    final AtomicLong now = new AtomicLong();
+    final AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(now::get);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(0, rateLimiter.reserve());
+      now.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    assertFalse(rateLimiter.isLimited());
+
+    rateLimiter.onThrottle();
+
+    assertTrue(rateLimiter.isLimited());
+    final double throttledRate = rateLimiter.getRate();
+    assertEquals(70, throttledRate, 5);
+    rateLimiter.reserve();
+    assertEquals((long) (TimeUnit.SECONDS.toNanos(1) / throttledRate), rateLimiter.reserve());
+
+    rateLimiter.onThrottle();
+    final double reducedRate = rateLimiter.getRate();
+    assertEquals(throttledRate * 0.7, reducedRate, 0.001);
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    rateLimiter.onSuccess();
+    assertEquals(reducedRate * 2, rateLimiter.getRate(), 0.001);
+  }
+
+  private AmazonS3 createClient(final int retries) {
+    return ResilientAmazonS3.wrap(this.amazonS3, S3ServiceConfig.newBuilder()
+        .withBackoffRetries(retries).withBackoffBaseDelay(Duration.ofMillis(1)).build());
+  }
+
+  private static AmazonServiceException createException(final int statusCode,
+      final String errorCode) {
+    final AmazonS3Exception exception = new AmazonS3Exception(errorCode);
+    exception.setStatusCode(statusCode);
+    exception.setErrorCode(errorCode);
+    return exception;
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.util.IOUtils;
+
+import de.tschumacher.bucketservice.service.download.DefaultS3DownloadService;
+import de.tschumacher.bucketservice.service.upload.DefaultS3UploadService;
+import de.tschumacher.bucketservice.testing.InMemoryAmazonS3;
+
+public class ResumableTransferTest {
+  private static final String BUCKET = "bucket";
+  private static final int PART_SIZE = (int) S3ServiceConfig.MIN_PART_SIZE;
+  private static final int RANGE_SIZE = 1000;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private InMemoryAmazonS3 amazonS3;
+  private List<String> operations;
+  private String failingOperation;
+  private AtomicInteger callsBeforeFailure;
+  private File checkpointDirectory;
+
+  @Before
+  public void setUp() throws IOException {
+    this.operations = Collections.synchronizedList(new ArrayList<String>());
+    this.callsBeforeFailure = new AtomicInteger();
+    this.amazonS3 = new InMemoryAmazonS3(BUCKET).withFailureInjector((operation, key) -> {
+      this.operations.add(operation);
+      if (operation.equals(this.failingOperation)
+          && this.callsBeforeFailure.getAndDecrement() == 0) {
+        return accessDenied();
+      }
+      return null;
+    });
+    this.checkpointDirectory = this.folder.newFolder();
+  }
+
+  @Test
+  public void uploadResumesAfterCompletedPartsTest() throws IOException {
+    final byte[] content = createContent(2 * PART_SIZE + 100);
+    final File file = createFile(content);
+    failOn("UploadPart", 2);
+    uploadInterrupted(file);
+    this.operations.clear();
+
+    createUploadService().uploadFile(file, "a");
+
+    assertEquals(Arrays.asList("ListParts", "UploadPart", "CompleteMultipartUpload"),
+        this.operations);
+    assertArrayEquals(content, read("a"));
+    assertEquals(0, this.checkpointDirectory.list().length);
+  }
+
+  @Test
+  public void uploadReuploadsPartsWithMismatchingETagTest() throws IOException {
+    final byte[] content = createContent(2 * PART_SIZE + 100);
+    final File file = createFile(content);
+    failOn("UploadPart", 2);
+    uploadInterrupted(file);
+    final File journal = this.checkpointDirectory.listFiles()[0];
+    final String records = new String(Files.readAllBytes(journal.toPath()),
+        StandardCharsets.UTF_8);
+    Files.write(journal.toPath(),
+        records.replaceFirst("part 1 \\w+", "part 1 0000").getBytes(StandardCharsets.UTF_8));
+    this.operations.clear();
+
+    createUploadService().uploadFile(file, "a");
+
+    assertEquals(Arrays.asList("ListParts", "UploadPart", "UploadPart",
+        "CompleteMultipartUpload"), this.operations);
+    assertArrayEquals(content, read("a"));
+  }
+
+  @Test
+  public void uploadRestartsForChangedFileTest() throws IOException {
+    final File file = createFile(createContent(2 * PART_SIZE + 100));
+    failOn("UploadPart", 2);
+    uploadInterrupted(file);
+    final byte[] content = createContent(2 * PART_SIZE + 200);
+    Files.write(file.toPath(), content);
+    this.operations.clear();
+
+    createUploadService().uploadFile(file, "a");
+
+    assertEquals(Arrays.asList("AbortMultipartUpload", "CreateMultipartUpload", "UploadPart",
+        "UploadPart", "UploadPart", "CompleteMultipartUpload"), this.operations);
+    assertArrayEquals(content, read("a"));
+  }
+
+  @Test
+  public void downloadResumesAfterCompletedRangesTest() throws IOException {
+    this.amazonS3.putObject(BUCKET, "a", "x" + new String(new char[3 * RANGE_SIZE - 2]));
+    final File file = new File(this.folder.getRoot(), "a");
+    failOn("GetObject", 2);
+    downloadInterrupted(file);
+    this.operations.clear();
+
+    createDownloadService().downloadFile("a", file);
+
+    assertEquals(Arrays.asList("HeadObject", "GetObject"), this.operations);
+    assertArrayEquals(read("a"), Files.readAllBytes(file.toPath()));
+    assertEquals(0, this.checkpointDirectory.list().length);
+    assertFalse(new File(this.folder.getRoot(), ".a.part").exists());
+  }
+
+  @Test
+  public void downloadRestartsForChangedObjectTest() throws IOException {
+    this.amazonS3.putObject(BUCKET, "a", "x" + new String(new char[3 * RANGE_SIZE]));
+    final File file = new File(this.folder.getRoot(), "a");
+    failOn("GetObject", 2);
+    downloadInterrupted(file);
+    this.amazonS3.putObject(BUCKET, "a", "y" + new String(new char[3 * RANGE_SIZE]));
+    this.operations.clear();
+
+    createDownloadService().downloadFile("a", file);
+
+    assertEquals(Arrays.asList("HeadObject", "GetObject", "GetObject", "GetObject",
+        "GetObject"), this.operations);
+    assertArrayEquals(read("a"), Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  public void journalDropsTornRecordTest() throws IOException {
+    try (CheckpointJournal journal = CheckpointJournal.open(this.checkpointDirectory, "a")) {
+      journal.append("header");
+      journal.append("record");
+    }
+    final File file = this.checkpointDirectory.listFiles()[0];
+    Files.write(file.toPath(), "torn".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+
+    try (CheckpointJournal journal = CheckpointJournal.open(this.checkpointDirectory, "a")) {
+      assertEquals(Arrays.asList("header", "record"), journal.getRecords());
+      journal.append("next");
+    }
+
+    try (CheckpointJournal journal = CheckpointJournal.open(this.checkpointDirectory, "a")) {
+      assertEquals(Arrays.asList("header", "record", "next"), journal.getRecords());
+    }
+  }
+
+  private void failOn(final String operation, final int callsBeforeFailure) {
+    this.failingOperation = operation;
+    this.callsBeforeFailure.set(callsBeforeFailure);
+  }
+
+  private void uploadInterrupted(final File file) {
+    try {
+      createUploadService().uploadFile(file, "a");
+      fail();
+    } catch (final AmazonServiceException e) {
+      assertEquals(403, e.getStatusCode());
+    }
+    this.failingOperation = null;
+  }
+
+  private void downloadInterrupted(final File file) throws IOException {
+    try {
+      createDownloadService().downloadFile("a", file);
+      fail();
+    } catch (final AmazonServiceException e) {
+      assertEquals(403, e.getStatusCode());
+    }
+    this.failingOperation = null;
+  }
+
+  private DefaultS3UploadService createUploadService() {
+    return new DefaultS3UploadService(this.amazonS3, BUCKET, createConfig());
+  }
+
+  private DefaultS3DownloadService createDownloadService() {
+    return new DefaultS3DownloadService(this.amazonS3, BUCKET, createConfig());
+  }
+
+  private S3ServiceConfig createConfig() {
+    return S3ServiceConfig.newBuilder().withCheckpointDirectory(this.checkpointDirectory)
+        .withParallelism(1).withMultipartUpload(true).withMultipartThreshold(PART_SIZE)
+        .withPartSize(PART_SIZE).withRangedDownload(true).withRangeSize(RANGE_SIZE).build();
+  }
+
+  private File createFile(final byte[] content) throws IOException {
+    final File file = this.folder.newFile();
+    Files.write(file.toPath(), content);
+    return file;
+  }
+
+  private byte[] read(final String key) throws IOException {
+    return IOUtils.toByteArray(this.amazonS3.getObject(BUCKET, key).getObjectContent());
+  }
+
+  private static byte[] createContent(final int size) {
+    final byte[] content = new byte[size];
+    new Random(size).nextBytes(content);
+    return content;
+  }
+
+  private static AmazonServiceException accessDenied() {
+    final AmazonS3Exception exception = new AmazonS3Exception("Access Denied");
+    exception.setStatusCode(403);
+    exception.setErrorCode("AccessDenied");
+    return exception;
+  }
+}
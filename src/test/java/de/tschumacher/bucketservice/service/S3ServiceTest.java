@@ -13,11 +13,22 @@
  */
 package de.tschumacher.bucketservice.service;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+
+import de.tschumacher.bucketservice.data.DataCreater;
+
 import de.tschumacher.bucketservice.service.download.S3DownloadService;
 import de.tschumacher.bucketservice.service.information.S3InformationService;
 import de.tschumacher.bucketservice.service.modification.S3ModificationService;
@@ -63,4 +74,49 @@ public class S3ServiceTest extends CommonS3ServiceTest {
     assertNotNull(uploadService);
   }
 
+  @Test
+  public void clientConfigurationTest() {
+    final RetryPolicy retryPolicy =
+        PredefinedRetryPolicies.getDefaultRetryPolicyWithCustomMaxRetries(7);
+    final S3ServiceConfig config = S3ServiceConfig.newBuilder().withMaxConnections(256)
+        .withConnectionTtl(Duration.ofMinutes(5)).withConnectionTimeout(Duration.ofSeconds(2))
+        .withSocketTimeout(Duration.ofSeconds(30)).withRequestTimeout(Duration.ofMinutes(1))
+        .withRetryPolicy(retryPolicy).withTcpKeepAlive(true).withGzip(true).build();
+
+    final ClientConfiguration clientConfiguration =
+        DefaultS3Service.createClientConfiguration(config);
+
+    assertEquals(256, clientConfiguration.getMaxConnections());
+    assertEquals(Duration.ofMinutes(5).toMillis(), clientConfiguration.getConnectionTTL());
+    assertEquals(2000, clientConfiguration.getConnectionTimeout());
+    assertEquals(30000, clientConfiguration.getSocketTimeout());
+    assertEquals(60000, clientConfiguration.getRequestTimeout());
+    assertEquals(retryPolicy, clientConfiguration.getRetryPolicy());
+    assertTrue(clientConfiguration.useTcpKeepAlive());
+    assertTrue(clientConfiguration.useGzip());
+  }
+
+  @Test
+  public void clientRetriesDisabledWithBackoffTest() {
+    final S3ServiceConfig config =
+        S3ServiceConfig.newBuilder().withBackoffRetries(3).withMaxErrorRetry(5).build();
+
+    final ClientConfiguration clientConfiguration =
+        DefaultS3Service.createClientConfiguration(config);
+
+    assertEquals(0, clientConfiguration.getMaxErrorRetry());
+  }
+
+  @Test
+  public void customEndpointServiceTest() {
+    final S3ServiceConfig config = S3ServiceConfig.newBuilder()
+        .withEndpoint("http://localhost:9000").withPathStyleAccess(true).build();
+
+    final S3Service customService = new DefaultS3Service(this.bucketName,
+        DataCreater.createString(), DataCreater.createString(), Regions.EU_CENTRAL_1, config);
+
+    assertNotNull(customService.uploadService());
+    assertNotNull(customService.downloadService());
+  }
+
 }
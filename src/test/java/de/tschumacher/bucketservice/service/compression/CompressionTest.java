@@ -0,0 +1,275 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.compression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.util.IOUtils;
+
+import de.tschumacher.bucketservice.service.DefaultS3Service;
+import de.tschumacher.bucketservice.service.S3Service;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+import de.tschumacher.bucketservice.testing.InMemoryAmazonS3;
+
+public class CompressionTest {
+  private static final String BUCKET = "bucket";
+  private static final int FRAME_SIZE = 4096;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private InMemoryAmazonS3 amazonS3;
+  private S3Service service;
+  private byte[] content;
+
+  @Before
+  public void setUp() {
+    this.amazonS3 = new InMemoryAmazonS3(BUCKET);
+    this.service = new DefaultS3Service(this.amazonS3, BUCKET,
+        S3ServiceConfig.newBuilder().withCompressionCodec(CompressionCodec.GZIP)
+            .withCompressionFrameSize(FRAME_SIZE).withRangeSize(1024).build());
+    final StringBuilder csv = new StringBuilder();
+    for (int i = 0; csv.length() < 10 * FRAME_SIZE + 123; i++) {
+      csv.append(i).append(",name-").append(i % 17).append(",").append(i * 31 % 1000)
+          .append('\n');
+    }
+    this.content = csv.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void compressedOutputIsStandardGzipTest() throws IOException {
+    final byte[] compressed = compress(this.content);
+
+    assertTrue(compressed.length < this.content.length / 2);
+    assertArrayEquals(this.content,
+        IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    assertArrayEquals(this.content,
+        IOUtils.toByteArray(new GzipFramesInputStream(new ByteArrayInputStream(compressed))));
+  }
+
+  @Test
+  public void emptyInputRoundTripsTest() throws IOException {
+    final byte[] compressed = compress(new byte[0]);
+
+    assertEquals(0,
+        IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))).length);
+    assertEquals(0, SeekTable.parse(compressed).getFrameCount());
+  }
+
+  @Test
+  public void seekTableLocatesFramesTest() throws IOException {
+    final byte[] compressed = compress(this.content);
+
+    final SeekTable table = SeekTable.parse(Arrays.copyOfRange(compressed,
+        Math.max(0, compressed.length - SeekTable.MAX_MEMBER_LENGTH), compressed.length));
+
+    assertNotNull(table);
+    assertEquals(11, table.getFrameCount());
+    assertEquals(FRAME_SIZE, table.getFrameSize());
+    assertEquals(this.content.length, table.getUncompressedLength());
+    final int frame = 7;
+    final byte[] frames = Arrays.copyOfRange(compressed,
+        (int) table.getCompressedOffset(frame), compressed.length);
+    final byte[] expected =
+        Arrays.copyOfRange(this.content, frame * FRAME_SIZE, this.content.length);
+    assertArrayEquals(expected,
+        IOUtils.toByteArray(new GzipFramesInputStream(new ByteArrayInputStream(frames))));
+  }
+
+  @Test
+  public void plainGzipHasNoSeekTableTest() throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+      gzip.write(this.content);
+    }
+
+    assertNull(SeekTable.parse(output.toByteArray()));
+    assertArrayEquals(this.content, IOUtils.toByteArray(
+        new GzipFramesInputStream(new ByteArrayInputStream(output.toByteArray()))));
+  }
+
+  @Test(expected = ZipException.class)
+  public void corruptFrameFailsTest() throws IOException {
+    final byte[] compressed = compress(this.content);
+    compressed[compressed.length / 2] ^= 0x55;
+
+    IOUtils.toByteArray(new GzipFramesInputStream(new ByteArrayInputStream(compressed)));
+  }
+
+  @Test
+  public void uploadStoresCompressedObjectTest() throws IOException {
+    this.service.uploadService().uploadStream(new ByteArrayInputStream(this.content), "data.csv",
+        this.content.length);
+
+    final byte[] stored =
+        IOUtils.toByteArray(this.amazonS3.getObject(BUCKET, "data.csv").getObjectContent());
+    assertTrue(stored.length < this.content.length / 2);
+    assertEquals("gzip", this.amazonS3.getObjectMetadata(BUCKET, "data.csv")
+        .getUserMetaDataOf(CompressionCodec.METADATA_KEY));
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    this.service.downloadService().downloadTo("data.csv", output);
+    assertArrayEquals(this.content, output.toByteArray());
+  }
+
+  @Test
+  public void uploadFileRoundTripsTest() throws IOException {
+    final File source = this.folder.newFile();
+    Files.write(source.toPath(), this.content);
+    this.service.uploadService().uploadFile(source, "data.csv");
+
+    final File target = this.service.downloadService().downloadFile("data.csv",
+        new File(this.folder.getRoot(), "target"));
+
+    assertArrayEquals(this.content, Files.readAllBytes(target.toPath()));
+  }
+
+  @Test
+  public void openStreamSeeksThroughFramesTest() throws IOException {
+    this.service.uploadService().uploadStream(new ByteArrayInputStream(this.content), "data.csv");
+    final int offset = 8 * FRAME_SIZE + 100;
+
+    try (InputStream inputStream = this.service.downloadService().openStream("data.csv")) {
+      final byte[] head = new byte[10];
+      assertEquals(10, inputStream.read(head));
+      assertArrayEquals(Arrays.copyOf(this.content, 10), head);
+      assertEquals(offset - 10, inputStream.skip(offset - 10));
+      assertArrayEquals(Arrays.copyOfRange(this.content, offset, this.content.length),
+          IOUtils.toByteArray(inputStream));
+    }
+  }
+
+  @Test
+  public void uncompressedObjectsDownloadUnchangedTest() throws IOException {
+    this.amazonS3.putObject(BUCKET, "plain", "plain content");
+
+    try (InputStream inputStream = this.service.downloadService().openStream("plain")) {
+      assertEquals("plain content", IOUtils.toString(inputStream));
+    }
+  }
+
+  @Test
+  public void readersWithoutCompressionDecodeCompressedObjectsTest() throws IOException {
+    this.service.uploadService().uploadStream(new ByteArrayInputStream(this.content), "data.csv");
+    final S3ServiceConfig.Builder plain = S3ServiceConfig.newBuilder().withRangeSize(1024);
+    final S3Service[] readers = {new DefaultS3Service(this.amazonS3, BUCKET, plain.build()),
+        new DefaultS3Service(this.amazonS3, BUCKET, plain.withRangedDownload(true).build()),
+        new DefaultS3Service(this.amazonS3, BUCKET,
+            plain.withDiskCacheDirectory(this.folder.newFolder()).build())};
+    final int offset = 5 * FRAME_SIZE;
+
+    for (final S3Service reader : readers) {
+      final File target = new File(this.folder.getRoot(), "target");
+      reader.downloadService().downloadFile("data.csv", target);
+      assertArrayEquals(this.content, Files.readAllBytes(target.toPath()));
+      final ByteArrayOutputStream output = new ByteArrayOutputStream();
+      reader.downloadService().downloadTo("data.csv", output);
+      assertArrayEquals(this.content, output.toByteArray());
+      try (InputStream inputStream = reader.downloadService().openStream("data.csv")) {
+        assertEquals(offset, inputStream.skip(offset));
+        assertArrayEquals(Arrays.copyOfRange(this.content, offset, this.content.length),
+            IOUtils.toByteArray(inputStream));
+      }
+    }
+  }
+
+  @Test
+  public void uncompressedObjectsKeepRangedDownloadTest() throws IOException {
+    final List<String> operations = Collections.synchronizedList(new ArrayList<String>());
+    this.amazonS3.withFailureInjector((operation, key) -> {
+      operations.add(operation);
+      return null;
+    });
+    this.amazonS3.putObject(BUCKET, "plain", new String(new char[3000]));
+    final S3Service reader = new DefaultS3Service(this.amazonS3, BUCKET,
+        S3ServiceConfig.newBuilder().withCompressionCodec(CompressionCodec.GZIP)
+            .withRangedDownload(true).withRangeSize(1024).build());
+    operations.clear();
+
+    final File target =
+        reader.downloadService().downloadFile("plain", new File(this.folder.getRoot(), "plain"));
+
+    assertEquals(3000, target.length());
+    assertEquals(Arrays.asList("HeadObject", "GetObject", "GetObject", "GetObject"), operations);
+  }
+
+  @Test
+  public void syncSkipsUnchangedCompressedFilesTest() throws IOException {
+    final File source = this.folder.newFolder();
+    Files.write(new File(source, "data.csv").toPath(), this.content);
+    final File target = this.folder.newFolder();
+
+    assertEquals(Arrays.asList("tree/data.csv"),
+        this.service.syncService().syncUp(source, "tree").getTransferredKeys());
+    assertEquals(Arrays.asList("tree/data.csv"),
+        this.service.syncService().syncUp(source, "tree").getSkippedKeys());
+    assertEquals(Arrays.asList("tree/data.csv"),
+        this.service.syncService().syncDown("tree", target).getTransferredKeys());
+    assertEquals(Arrays.asList("tree/data.csv"),
+        this.service.syncService().syncDown("tree", target).getSkippedKeys());
+
+    assertArrayEquals(this.content, Files.readAllBytes(new File(target, "data.csv").toPath()));
+    assertEquals(Integer.toString(this.content.length), this.amazonS3
+        .getObjectMetadata(BUCKET, "tree/data.csv")
+        .getUserMetaDataOf(CompressionCodec.LENGTH_METADATA_KEY));
+  }
+
+  @Test
+  public void syncWithoutCodecSkipsUnchangedCompressedFilesTest() throws IOException {
+    final File source = this.folder.newFolder();
+    Files.write(new File(source, "data.csv").toPath(), this.content);
+    final File target = this.folder.newFolder();
+    final S3Service reader = new DefaultS3Service(this.amazonS3, BUCKET);
+
+    this.service.syncService().syncUp(source, "tree");
+    assertEquals(Arrays.asList("tree/data.csv"),
+        reader.syncService().syncDown("tree", target).getTransferredKeys());
+    assertEquals(Arrays.asList("tree/data.csv"),
+        reader.syncService().syncDown("tree", target).getSkippedKeys());
+    assertEquals(Arrays.asList("tree/data.csv"),
+        reader.syncService().syncUp(target, "tree").getSkippedKeys());
+
+    assertArrayEquals(this.content, Files.readAllBytes(new File(target, "data.csv").toPath()));
+  }
+
+  private byte[] compress(final byte[] data) throws IOException {
+    try (InputStream inputStream =
+        new CompressingInputStream(new ByteArrayInputStream(data), FRAME_SIZE, 6)) {
+      return IOUtils.toByteArray(inputStream);
+    }
+  }
+}
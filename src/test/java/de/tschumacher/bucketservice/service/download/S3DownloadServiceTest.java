@@ -14,39 +14,86 @@
 package de.tschumacher.bucketservice.service.download;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 
 import de.tschumacher.bucketservice.data.DataCreater;
 import de.tschumacher.bucketservice.service.CommonS3ServiceTest;
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
 
 public class S3DownloadServiceTest extends CommonS3ServiceTest {
 
   private static final String TEST_FILE = "src/test/resources/test.jpg";
+  private static final long RANGE_SIZE = 1024;
 
   private S3DownloadService service;
+  private S3DownloadService rangedService;
+  private ExecutorService executor;
 
   private String key;
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   @Override
   @Before
   public void setUp() {
     super.setUp();
     this.key = DataCreater.createString();
     this.service = new DefaultS3DownloadService(this.amazonS3, this.bucketName);
+    this.executor = S3Executors.newTransferExecutor(4);
+    this.rangedService = new DefaultS3DownloadService(this.amazonS3, this.bucketName,
+        S3ServiceConfig.newBuilder().withRangedDownload(true).withRangeSize(RANGE_SIZE).build(),
+        this.executor);
+  }
+
+  @After
+  public void shutdownExecutor() {
+    this.executor.shutdownNow();
   }
 
   @Test
@@ -80,6 +127,418 @@ public class S3DownloadServiceTest extends CommonS3ServiceTest {
     s3Object.close();
   }
 
+  @Test
+  public void rangedDownloadFileTest() throws IOException {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    mockObjectMetadata(content);
+    Mockito.when(this.amazonS3.getObject(ArgumentMatchers.any(GetObjectRequest.class)))
+        .thenAnswer(rangeAnswer(content));
+
+    final File file = this.rangedService.downloadFile(this.key);
+
+    assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObjectMetadata(this.bucketName, this.key);
+    final ArgumentCaptor<GetObjectRequest> rangeRequests =
+        ArgumentCaptor.forClass(GetObjectRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(rangeCount(content)))
+        .getObject(rangeRequests.capture());
+    for (final GetObjectRequest rangeRequest : rangeRequests.getAllValues()) {
+      assertEquals(this.key, rangeRequest.getKey());
+      assertEquals("etag", rangeRequest.getMatchingETagConstraints().get(0));
+    }
+    delete(file);
+  }
+
+  @Test
+  public void bufferPoolFallsBackToHeapWhenExhaustedTest() throws IOException {
+    final DirectBufferPool bufferPool = new DirectBufferPool(4096, 1);
+    final byte[] inner = Files.readAllBytes(new File(TEST_FILE).toPath());
+    final ByteArrayOutputStream innerOutput = new ByteArrayOutputStream();
+    final byte[] outer = DataCreater.createString().getBytes(StandardCharsets.UTF_8);
+    final ByteArrayOutputStream outerOutput = new ByteArrayOutputStream();
+    // the inner copy runs while the outer one holds the only direct buffer
+    final InputStream outerInput = new SequenceInputStream(new ByteArrayInputStream(outer),
+        new InputStream() {
+          @Override
+          public int read() throws IOException {
+            bufferPool.copy(new ByteArrayInputStream(inner), Channels.newChannel(innerOutput));
+            return -1;
+          }
+        });
+
+    bufferPool.copy(outerInput, Channels.newChannel(outerOutput));
+    bufferPool.copy(new ByteArrayInputStream(inner), Channels.newChannel(innerOutput));
+
+    assertArrayEquals(outer, outerOutput.toByteArray());
+    assertArrayEquals(inner, Arrays.copyOf(innerOutput.toByteArray(), inner.length));
+    assertEquals(2 * inner.length, innerOutput.size());
+    assertEquals(1, bufferPool.getDirectBufferCount());
+  }
+
+  @Test
+  public void rangedDownloadResumesBrokenRangeTest() throws IOException {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    mockObjectMetadata(content);
+    Mockito.when(this.amazonS3.getObject(ArgumentMatchers.any(GetObjectRequest.class)))
+        .thenAnswer(brokenRangeAnswer(content)).thenAnswer(rangeAnswer(content));
+
+    final File file = this.rangedService.downloadFile(this.key);
+
+    assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObjectMetadata(this.bucketName, this.key);
+    Mockito.verify(this.amazonS3, Mockito.times(rangeCount(content) + 1))
+        .getObject(ArgumentMatchers.any(GetObjectRequest.class));
+    delete(file);
+  }
+
+  @Test
+  public void openStreamReadsRangesLazilyTest() throws IOException {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    Mockito.when(this.amazonS3.getObject(ArgumentMatchers.any(GetObjectRequest.class)))
+        .thenAnswer(contentRangeAnswer(content));
+
+    try (InputStream inputStream = this.rangedService.openStream(this.key)) {
+      Mockito.verifyNoInteractions(this.amazonS3);
+      assertArrayEquals(content, readAll(inputStream));
+    }
+
+    final ArgumentCaptor<GetObjectRequest> rangeRequests =
+        ArgumentCaptor.forClass(GetObjectRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(rangeCount(content)))
+        .getObject(rangeRequests.capture());
+    assertTrue(rangeRequests.getAllValues().get(0).getMatchingETagConstraints().isEmpty());
+    for (int i = 1; i < rangeRequests.getAllValues().size(); i++) {
+      final GetObjectRequest rangeRequest = rangeRequests.getAllValues().get(i);
+      assertEquals(i * RANGE_SIZE, rangeRequest.getRange()[0]);
+      assertEquals("etag", rangeRequest.getMatchingETagConstraints().get(0));
+    }
+  }
+
+  @Test
+  public void openStreamSkipsWithoutReadingTest() throws IOException {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    Mockito.when(this.amazonS3.getObject(ArgumentMatchers.any(GetObjectRequest.class)))
+        .thenAnswer(contentRangeAnswer(content));
+
+    try (InputStream inputStream = this.rangedService.openStream(this.key)) {
+      assertEquals(3 * RANGE_SIZE, inputStream.skip(3 * RANGE_SIZE));
+      assertEquals(content[(int) (3 * RANGE_SIZE)] & 0xff, inputStream.read());
+    }
+
+    final ArgumentCaptor<GetObjectRequest> rangeRequest =
+        ArgumentCaptor.forClass(GetObjectRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObject(rangeRequest.capture());
+    assertEquals(3 * RANGE_SIZE, rangeRequest.getValue().getRange()[0]);
+  }
+
+  @Test
+  public void openStreamOfEmptyObjectTest() throws IOException {
+    final AmazonS3Exception invalidRange = new AmazonS3Exception("invalid range");
+    invalidRange.setStatusCode(416);
+    Mockito.when(this.amazonS3.getObject(ArgumentMatchers.any(GetObjectRequest.class)))
+        .thenThrow(invalidRange);
+
+    try (InputStream inputStream = this.rangedService.openStream(this.key)) {
+      assertEquals(-1, inputStream.read());
+    }
+
+    Mockito.verify(this.amazonS3, Mockito.times(1))
+        .getObject(ArgumentMatchers.any(GetObjectRequest.class));
+  }
+
+  @Test
+  public void downloadToOutputStreamTest() throws IOException {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    Mockito.when(this.amazonS3.getObject(this.bucketName, this.key))
+        .thenReturn(createS3Object(new ByteArrayInputStream(content)));
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    final long transferred = this.service.downloadTo(this.key, outputStream);
+
+    assertEquals(content.length, transferred);
+    assertArrayEquals(content, outputStream.toByteArray());
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObject(this.bucketName, this.key);
+  }
+
+  @Test
+  public void downloadFileReplacesExistingFileTest() throws IOException {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    final File target = this.folder.newFile();
+    Files.write(target.toPath(), new byte[] {1, 2, 3});
+    Mockito.when(this.amazonS3.getObject(this.bucketName, this.key))
+        .thenReturn(createS3Object(new ByteArrayInputStream(content)));
+
+    final File file = this.service.downloadFile(this.key, target);
+
+    assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    assertEquals(Arrays.asList(target.getName()),
+        Arrays.asList(this.folder.getRoot().list()));
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObject(this.bucketName, this.key);
+  }
+
+  @Test
+  public void downloadFileKeepsDefaultPermissionsTest() throws IOException {
+    Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+    final File reference = this.folder.newFile();
+    Mockito.when(this.amazonS3.getObject(this.bucketName, this.key))
+        .thenReturn(createS3Object(new ByteArrayInputStream(new byte[] {1})));
+
+    final File file =
+        this.service.downloadFile(this.key, new File(this.folder.getRoot(), "target"));
+
+    assertEquals(Files.getPosixFilePermissions(reference.toPath()),
+        Files.getPosixFilePermissions(file.toPath()));
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObject(this.bucketName, this.key);
+  }
+
+  @Test
+  public void failedDownloadFileKeepsExistingFileTest() throws IOException {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    final File target = this.folder.newFile();
+    Files.write(target.toPath(), new byte[] {1, 2, 3});
+    final AtomicBoolean closed = new AtomicBoolean();
+    final InputStream firstHalf =
+        new ByteArrayInputStream(Arrays.copyOf(content, content.length / 2));
+    Mockito.when(this.amazonS3.getObject(this.bucketName, this.key))
+        .thenReturn(createS3Object(new InputStream() {
+          @Override
+          public int read() throws IOException {
+            final int read = firstHalf.read();
+            if (read == -1) {
+              throw new IOException("connection reset");
+            }
+            return read;
+          }
+
+          @Override
+          public void close() {
+            closed.set(true);
+          }
+        }));
+
+    try {
+      this.service.downloadFile(this.key, target);
+      fail("expected download failure");
+    } catch (final IOException e) {
+      assertEquals("connection reset", e.getMessage());
+    }
+
+    assertTrue(closed.get());
+    assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(target.toPath()));
+    assertEquals(Arrays.asList(target.getName()),
+        Arrays.asList(this.folder.getRoot().list()));
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObject(this.bucketName, this.key);
+  }
+
+  @Test
+  public void downloadFileRevalidatesDiskCacheTest() throws IOException {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    final S3DownloadService cachedService = createCachedService(content.length);
+    Mockito.when(this.amazonS3.getObject(ArgumentMatchers.any(GetObjectRequest.class)))
+        .thenReturn(createS3Object(content, "etag")).thenReturn(null);
+
+    final File first = cachedService.downloadFile(this.key, this.folder.newFile());
+    final File second = cachedService.downloadFile(this.key, this.folder.newFile());
+
+    assertArrayEquals(content, Files.readAllBytes(first.toPath()));
+    assertArrayEquals(content, Files.readAllBytes(second.toPath()));
+    final ArgumentCaptor<GetObjectRequest> requests =
+        ArgumentCaptor.forClass(GetObjectRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(2)).getObject(requests.capture());
+    assertTrue(requests.getAllValues().get(0).getNonmatchingETagConstraints().isEmpty());
+    assertEquals(Arrays.asList("etag"),
+        requests.getAllValues().get(1).getNonmatchingETagConstraints());
+  }
+
+  @Test
+  public void diskCacheSurvivesRestartTest() throws IOException {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    final File cacheDirectory = this.folder.newFolder();
+    Mockito.when(this.amazonS3.getObject(ArgumentMatchers.any(GetObjectRequest.class)))
+        .thenReturn(createS3Object(content, "etag")).thenReturn(null);
+
+    createCachedService(cacheDirectory, content.length).downloadFile(this.key,
+        this.folder.newFile());
+    final File second = createCachedService(cacheDirectory, content.length)
+        .downloadFile(this.key, this.folder.newFile());
+
+    assertArrayEquals(content, Files.readAllBytes(second.toPath()));
+    final ArgumentCaptor<GetObjectRequest> requests =
+        ArgumentCaptor.forClass(GetObjectRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(2)).getObject(requests.capture());
+    assertEquals(Arrays.asList("etag"),
+        requests.getAllValues().get(1).getNonmatchingETagConstraints());
+  }
+
+  @Test
+  public void diskCacheSkipsObjectsWithoutETagTest() throws IOException {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    final File cacheDirectory = this.folder.newFolder();
+    Mockito.when(this.amazonS3.getObject(ArgumentMatchers.any(GetObjectRequest.class)))
+        .thenReturn(createS3Object(new ByteArrayInputStream(content)));
+
+    final File file = createCachedService(cacheDirectory, content.length).downloadFile(this.key,
+        this.folder.newFile());
+
+    assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    assertEquals(0, new File(cacheDirectory, "objects").list().length);
+    Mockito.verify(this.amazonS3, Mockito.times(1))
+        .getObject(ArgumentMatchers.any(GetObjectRequest.class));
+  }
+
+  @Test
+  public void downloadFileEvictsLeastRecentlyUsedContentTest() throws IOException {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    final S3DownloadService cachedService = createCachedService(content.length);
+    final String otherKey = DataCreater.createString();
+    Mockito.when(this.amazonS3.getObject(ArgumentMatchers.any(GetObjectRequest.class)))
+        .thenReturn(createS3Object(content, "etag1"), createS3Object(content, "etag2"),
+            createS3Object(content, "etag1"));
+
+    cachedService.downloadFile(this.key, this.folder.newFile());
+    cachedService.downloadFile(otherKey, this.folder.newFile());
+    cachedService.downloadFile(this.key, this.folder.newFile());
+
+    final ArgumentCaptor<GetObjectRequest> requests =
+        ArgumentCaptor.forClass(GetObjectRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(3)).getObject(requests.capture());
+    for (final GetObjectRequest request : requests.getAllValues()) {
+      assertTrue(request.getNonmatchingETagConstraints().isEmpty());
+    }
+  }
+
+  @Test
+  public void diskCacheSharesContentBetweenKeysTest() throws IOException {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    final File cacheDirectory = this.folder.newFolder();
+    final String otherKey = DataCreater.createString();
+    Mockito.when(this.amazonS3.getObject(ArgumentMatchers.any(GetObjectRequest.class)))
+        .thenReturn(createS3Object(content, "etag"), createS3Object(content, "etag"), null);
+
+    final S3DownloadService cachedService = createCachedService(cacheDirectory, content.length);
+    cachedService.downloadFile(this.key, this.folder.newFile());
+    cachedService.downloadFile(otherKey, this.folder.newFile());
+    final File file = createCachedService(cacheDirectory, content.length)
+        .downloadFile(otherKey, this.folder.newFile());
+
+    assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    assertEquals(Arrays.asList("etag"), Arrays.asList(new File(cacheDirectory, "objects").list()));
+    assertEquals(2, new File(cacheDirectory, "keys").list().length);
+    final ArgumentCaptor<GetObjectRequest> requests =
+        ArgumentCaptor.forClass(GetObjectRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(3)).getObject(requests.capture());
+    assertEquals(otherKey, requests.getAllValues().get(2).getKey());
+    assertEquals(Arrays.asList("etag"),
+        requests.getAllValues().get(2).getNonmatchingETagConstraints());
+  }
+
+  @Test
+  public void downloadFileMergesConcurrentDownloadsTest() throws Exception {
+    final byte[] content = Files.readAllBytes(new File(TEST_FILE).toPath());
+    final S3DownloadService cachedService = createCachedService(content.length);
+    Mockito.when(this.amazonS3.getObject(ArgumentMatchers.any(GetObjectRequest.class)))
+        .thenAnswer(invocation -> {
+          Thread.sleep(500);
+          return createS3Object(content, "etag");
+        });
+    final List<Future<File>> downloads = new ArrayList<Future<File>>();
+
+    for (int i = 0; i < 4; i++) {
+      final File file = this.folder.newFile();
+      downloads.add(this.executor.submit(() -> cachedService.downloadFile(this.key, file)));
+    }
+
+    for (final Future<File> download : downloads) {
+      assertArrayEquals(content, Files.readAllBytes(download.get().toPath()));
+    }
+    Mockito.verify(this.amazonS3, Mockito.times(1))
+        .getObject(ArgumentMatchers.any(GetObjectRequest.class));
+  }
+
+  private S3DownloadService createCachedService(final long cacheSize) throws IOException {
+    return createCachedService(this.folder.newFolder(), cacheSize);
+  }
+
+  private S3DownloadService createCachedService(final File cacheDirectory,
+      final long cacheSize) {
+    return new DefaultS3DownloadService(this.amazonS3, this.bucketName,
+        S3ServiceConfig.newBuilder().withDiskCacheDirectory(cacheDirectory)
+            .withDiskCacheSize(cacheSize).build(),
+        this.executor);
+  }
+
+  private S3Object createS3Object(final byte[] content, final String eTag) {
+    final S3Object object = createS3Object(new ByteArrayInputStream(content));
+    object.getObjectMetadata().setHeader("ETag", eTag);
+    return object;
+  }
+
+  private Answer<S3Object> contentRangeAnswer(final byte[] content) {
+    return invocation -> {
+      final long[] range = ((GetObjectRequest) invocation.getArgument(0)).getRange();
+      final int end = (int) Math.min(range[1], content.length - 1);
+      final S3Object object = createS3Object(
+          new ByteArrayInputStream(Arrays.copyOfRange(content, (int) range[0], end + 1)));
+      object.getObjectMetadata().setHeader("Content-Range",
+          "bytes " + range[0] + "-" + end + "/" + content.length);
+      object.getObjectMetadata().setHeader("ETag", "etag");
+      return object;
+    };
+  }
+
+  private byte[] readAll(final InputStream inputStream) throws IOException {
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[300];
+    int read;
+    while ((read = inputStream.read(buffer)) != -1) {
+      content.write(buffer, 0, read);
+    }
+    return content.toByteArray();
+  }
+
+  private void mockObjectMetadata(final byte[] content) {
+    final ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(content.length);
+    metadata.setHeader("ETag", "etag");
+    Mockito.when(this.amazonS3.getObjectMetadata(this.bucketName, this.key)).thenReturn(metadata);
+  }
+
+  private int rangeCount(final byte[] content) {
+    return (int) ((content.length + RANGE_SIZE - 1) / RANGE_SIZE);
+  }
+
+  private Answer<S3Object> rangeAnswer(final byte[] content) {
+    return invocation -> {
+      final long[] range = ((GetObjectRequest) invocation.getArgument(0)).getRange();
+      return createS3Object(new ByteArrayInputStream(
+          Arrays.copyOfRange(content, (int) range[0], (int) range[1] + 1)));
+    };
+  }
+
+  private Answer<S3Object> brokenRangeAnswer(final byte[] content) {
+    return invocation -> {
+      final long[] range = ((GetObjectRequest) invocation.getArgument(0)).getRange();
+      final InputStream firstHalf = new ByteArrayInputStream(
+          Arrays.copyOfRange(content, (int) range[0], (int) (range[0] + range[1] + 1) / 2));
+      return createS3Object(new InputStream() {
+        @Override
+        public int read() throws IOException {
+          final int read = firstHalf.read();
+          if (read == -1) {
+            throw new IOException("connection reset");
+          }
+          return read;
+        }
+      });
+    };
+  }
+
+  private S3Object createS3Object(final InputStream content) {
+    final S3Object s3Object = new S3Object();
+    s3Object.setObjectContent(content);
+    return s3Object;
+  }
+
   @Test
   public void createPresignedUrlTest() throws AmazonClientException, MalformedURLException {
     final int minutes = DataCreater.createInteger();
@@ -98,6 +557,63 @@ public class S3DownloadServiceTest extends CommonS3ServiceTest {
         ArgumentMatchers.any(GeneratePresignedUrlRequest.class));
   }
 
+  @Test
+  public void createPresignedUrlWithLongExpirationTest() {
+    final long minutes = Duration.ofDays(30).toMinutes();
+    final long expected = System.currentTimeMillis() + Duration.ofDays(30).toMillis();
+
+    this.service.createPresignedUrl(this.key, (int) minutes);
+
+    final GeneratePresignedUrlRequest request = verifyPresignedRequests(1).get(0);
+    assertEquals(HttpMethod.GET, request.getMethod());
+    assertTrue(Math.abs(request.getExpiration().getTime() - expected) < 60000);
+  }
+
+  @Test
+  public void createPresignedUrlsTest() {
+    final List<String> keys = Arrays.asList("a", "b", "c");
+    Mockito.when(
+        this.amazonS3.generatePresignedUrl(ArgumentMatchers.any(GeneratePresignedUrlRequest.class)))
+        .thenAnswer(invocation -> new URL("https://bucket.example/"
+            + ((GeneratePresignedUrlRequest) invocation.getArgument(0)).getKey()));
+
+    final Map<String, URL> urls = this.service.createPresignedUrls(keys, Duration.ofHours(1));
+
+    assertEquals(keys, new ArrayList<String>(urls.keySet()));
+    for (final String urlKey : keys) {
+      assertEquals("https://bucket.example/" + urlKey, urls.get(urlKey).toString());
+    }
+    verifyPresignedRequests(keys.size());
+  }
+
+  @Test
+  public void createPresignedUrlCachedTest() {
+    final S3DownloadService cachedService = new DefaultS3DownloadService(this.amazonS3,
+        this.bucketName, S3ServiceConfig.newBuilder().withPresignedUrlCache(true).build());
+    final URL url = DataCreater.createURL();
+    Mockito.when(
+        this.amazonS3.generatePresignedUrl(ArgumentMatchers.any(GeneratePresignedUrlRequest.class)))
+        .thenReturn(url);
+
+    assertSame(url, cachedService.createPresignedUrl(this.key, Duration.ofHours(1)));
+    assertSame(url, cachedService.createPresignedUrl(this.key, Duration.ofHours(1)));
+    assertSame(url, cachedService.createPresignedUrl(this.key, Duration.ofMinutes(70)));
+    cachedService.createPresignedUrl(this.key, Duration.ofMinutes(10));
+    cachedService.createPresignedUrl(this.key, Duration.ofHours(3));
+
+    verifyPresignedRequests(3);
+  }
+
+  private List<GeneratePresignedUrlRequest> verifyPresignedRequests(final int requests) {
+    final ArgumentCaptor<GeneratePresignedUrlRequest> request =
+        ArgumentCaptor.forClass(GeneratePresignedUrlRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(requests)).generatePresignedUrl(request.capture());
+    for (final GeneratePresignedUrlRequest presignedRequest : request.getAllValues()) {
+      assertEquals(this.bucketName, presignedRequest.getBucketName());
+    }
+    return request.getAllValues();
+  }
+
   private void delete(final File file) {
     file.delete();
   }
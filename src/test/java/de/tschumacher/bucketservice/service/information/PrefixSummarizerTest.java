@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tschumacher.bucketservice.domain.S3PrefixSummary;
+import de.tschumacher.bucketservice.service.DefaultS3Service;
+import de.tschumacher.bucketservice.service.S3Service;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+import de.tschumacher.bucketservice.testing.InMemoryAmazonS3;
+
+public class PrefixSummarizerTest {
+  private static final String BUCKET = "bucket";
+
+  private InMemoryAmazonS3 amazonS3;
+  private List<String> listedPrefixes;
+
+  @Before
+  public void setUp() {
+    this.listedPrefixes = Collections.synchronizedList(new ArrayList<String>());
+    this.amazonS3 = new InMemoryAmazonS3(BUCKET).withFailureInjector((operation, key) -> {
+      if ("ListObjectsV2".equals(operation)) {
+        this.listedPrefixes.add(key);
+      }
+      return null;
+    });
+    for (final String key : Arrays.asList("a", "bb", "logs/1", "logs/22", "logs/x/333",
+        "img/4444", "other/55555")) {
+      this.amazonS3.putObject(BUCKET, "root/" + key, key);
+    }
+  }
+
+  @Test
+  public void summarizeAggregatesPrefixTest() {
+    final S3PrefixSummary summary = createService(false).informationService().summarize("root/");
+
+    assertEquals("root/", summary.getPrefix());
+    assertEquals(7, summary.getObjectCount());
+    assertEquals(1 + 2 + 6 + 7 + 10 + 8 + 11, summary.getTotalSize());
+    assertNotNull(summary.getOldestModified());
+    assertTrue(!summary.getNewestModified().before(summary.getOldestModified()));
+    assertEquals(Arrays.asList("root/img/", "root/logs/", "root/other/"),
+        new ArrayList<String>(summary.getChildren().keySet()));
+    final S3PrefixSummary logs = summary.getChildren().get("root/logs/");
+    assertEquals(3, logs.getObjectCount());
+    assertEquals(6 + 7 + 10, logs.getTotalSize());
+    assertTrue(logs.getChildren().isEmpty());
+  }
+
+  @Test
+  public void summarizeEmptyPrefixTest() {
+    final S3PrefixSummary summary =
+        createService(false).informationService().summarize("missing/");
+
+    assertEquals(0, summary.getObjectCount());
+    assertEquals(0, summary.getTotalSize());
+    assertNull(summary.getOldestModified());
+    assertTrue(summary.getChildren().isEmpty());
+  }
+
+  @Test
+  public void summaryCacheRelistsOnlyChangedChildrenTest() throws IOException {
+    final S3Service service = createService(true);
+    service.informationService().summarize("root/");
+    this.listedPrefixes.clear();
+
+    service.uploadService().uploadStream(new ByteArrayInputStream(new byte[100]),
+        "root/logs/new", 100);
+    service.modificationService().deleteFile("root/other/55555");
+    service.uploadService().uploadStream(new ByteArrayInputStream(new byte[5]),
+        "root/c", 5);
+    final S3PrefixSummary summary = service.informationService().summarize("root/");
+
+    Collections.sort(this.listedPrefixes);
+    assertEquals(Arrays.asList("root/", "root/logs/", "root/other/"), this.listedPrefixes);
+    assertEquals(8, summary.getObjectCount());
+    assertEquals(1 + 2 + 5 + 6 + 7 + 10 + 100 + 8, summary.getTotalSize());
+    assertEquals(Arrays.asList("root/img/", "root/logs/"),
+        new ArrayList<String>(summary.getChildren().keySet()));
+    assertEquals(4, summary.getChildren().get("root/logs/").getObjectCount());
+  }
+
+  @Test
+  public void summaryCacheServesUnchangedPrefixTest() {
+    final S3Service service = createService(true);
+    service.informationService().summarize("root/");
+    this.listedPrefixes.clear();
+    this.amazonS3.putObject(BUCKET, "root/img/external", "x");
+
+    final S3PrefixSummary summary = service.informationService().summarize("root/");
+
+    assertTrue(this.listedPrefixes.isEmpty());
+    assertEquals(7, summary.getObjectCount());
+  }
+
+  private S3Service createService(final boolean summaryCache) {
+    return new DefaultS3Service(this.amazonS3, BUCKET,
+        S3ServiceConfig.newBuilder().withSummaryCache(summaryCache).build());
+  }
+}
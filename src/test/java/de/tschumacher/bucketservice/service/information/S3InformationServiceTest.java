@@ -21,22 +21,31 @@ import static de.tschumacher.bucketservice.data.S3Assert.assertFiles;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import org.mockito.stubbing.OngoingStubbing;
 
-import com.amazonaws.services.s3.model.ListObjectsRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
 
 import de.tschumacher.bucketservice.data.DataCreater;
+import de.tschumacher.bucketservice.domain.S3CacheStatistics;
 import de.tschumacher.bucketservice.domain.S3File;
 import de.tschumacher.bucketservice.service.CommonS3ServiceTest;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
 
 public class S3InformationServiceTest extends CommonS3ServiceTest {
 
@@ -53,95 +62,356 @@ public class S3InformationServiceTest extends CommonS3ServiceTest {
 
   @Test
   public void listFilesTest() {
-    final ObjectListing objects = DataCreater.createObjectListing();
-
-    Mockito.when(this.amazonS3.listObjects(ArgumentMatchers.any(ListObjectsRequest.class))).thenReturn(
-        objects);
+    final List<ListObjectsV2Result> pages = mockPages(DataCreater.createListObjectsV2Result());
 
     final List<S3File> files = this.service.listFiles(this.key);
 
     assertNotNull(files);
-    assertEquals(objects.getObjectSummaries().size(), files.size());
-    assertFiles(objects, files);
+    assertFiles(pages, files);
+
+    verifyFileRequests(1);
+  }
+
+  @Test
+  public void listFilesFollowsContinuationTest() {
+    final String token = DataCreater.createString();
+    final List<ListObjectsV2Result> pages =
+        mockPages(DataCreater.createListObjectsV2Result(token),
+            DataCreater.createListObjectsV2Result());
 
+    final List<S3File> files = this.service.listFiles(this.key);
+
+    assertFiles(pages, files);
 
-    verifyFileRequest();
+    final List<ListObjectsV2Request> requests = verifyFileRequests(2);
+    assertNull(requests.get(0).getContinuationToken());
+    assertEquals(token, requests.get(1).getContinuationToken());
   }
 
 
   @Test
   public void listFileNamesTest() {
-    final ObjectListing objects = DataCreater.createObjectListing();
-
-    Mockito.when(this.amazonS3.listObjects(ArgumentMatchers.any(ListObjectsRequest.class))).thenReturn(
-        objects);
+    final List<ListObjectsV2Result> pages =
+        mockPages(DataCreater.createListObjectsV2Result(DataCreater.createString()),
+            DataCreater.createListObjectsV2Result());
 
     final List<String> fileNames = this.service.listFileNames(this.key);
 
     assertNotNull(fileNames);
-    assertEquals(objects.getObjectSummaries().size(), fileNames.size());
-    assertFileNames(objects, fileNames);
+    assertFileNames(pages, fileNames);
 
 
-    verifyFileRequest();
+    verifyFileRequests(2);
   }
 
-  private void verifyFileRequest() {
-    final ArgumentCaptor<ListObjectsRequest> listRequest =
-        ArgumentCaptor.forClass(ListObjectsRequest.class);
-    Mockito.verify(this.amazonS3, Mockito.times(1)).listObjects(listRequest.capture());
-    assertFileListRequest(listRequest.getValue(), this.bucketName, this.key,
-        DefaultS3InformationService.DELIMITER);
-  }
+  @Test
+  public void streamFilesTest() {
+    final List<ListObjectsV2Result> pages =
+        mockPages(DataCreater.createListObjectsV2Result(DataCreater.createString()),
+            DataCreater.createListObjectsV2Result(DataCreater.createString()),
+            DataCreater.createListObjectsV2Result());
 
+    final List<S3File> files;
+    try (Stream<S3File> stream = this.service.streamFiles(this.key)) {
+      files = stream.collect(Collectors.toList());
+    }
+
+    assertFiles(pages, files);
+
+    verifyFileRequests(3);
+  }
 
   @Test
-  public void listDirectoriesTest() {
+  public void streamFilesIsLazyTest() {
+    final Stream<S3File> stream = this.service.streamFiles(this.key);
+
+    stream.close();
+  }
+
+  private List<ListObjectsV2Request> verifyFileRequests(int pages) {
+    final ArgumentCaptor<ListObjectsV2Request> listRequest =
+        ArgumentCaptor.forClass(ListObjectsV2Request.class);
+    Mockito.verify(this.amazonS3, Mockito.times(pages)).listObjectsV2(listRequest.capture());
+    for (final ListObjectsV2Request request : listRequest.getAllValues()) {
+      assertFileListRequest(request, this.bucketName, this.key,
+          DefaultS3InformationService.DELIMITER);
+    }
+    return listRequest.getAllValues();
+  }
 
-    final ObjectListing objects = DataCreater.createObjectListing();
 
-    Mockito.when(this.amazonS3.listObjects(ArgumentMatchers.any(ListObjectsRequest.class))).thenReturn(
-        objects);
+  @Test
+  public void listDirectoriesTest() {
+    final List<ListObjectsV2Result> pages =
+        mockPages(DataCreater.createListObjectsV2Result(DataCreater.createString()),
+            DataCreater.createListObjectsV2Result());
 
     final List<String> directories = this.service.listDirectories(this.key);
 
     assertNotNull(directories);
-    assertEquals(objects.getCommonPrefixes().size(), directories.size());
-    assertDirectories(objects, directories);
+    assertDirectories(pages, directories);
 
-    verifyDirectoryRequest();
+    verifyDirectoryRequests(2);
   }
 
-  private void verifyDirectoryRequest() {
-    final ArgumentCaptor<ListObjectsRequest> listRequest =
-        ArgumentCaptor.forClass(ListObjectsRequest.class);
-    Mockito.verify(this.amazonS3, Mockito.times(1)).listObjects(listRequest.capture());
-    assertDirectoryRequest(listRequest.getValue(), this.bucketName, this.key,
-        DefaultS3InformationService.DELIMITER);
+  private void verifyDirectoryRequests(int pages) {
+    final ArgumentCaptor<ListObjectsV2Request> listRequest =
+        ArgumentCaptor.forClass(ListObjectsV2Request.class);
+    Mockito.verify(this.amazonS3, Mockito.times(pages)).listObjectsV2(listRequest.capture());
+    for (final ListObjectsV2Request request : listRequest.getAllValues()) {
+      assertDirectoryRequest(request, this.bucketName, this.key,
+          DefaultS3InformationService.DELIMITER);
+    }
+  }
+
+  private List<ListObjectsV2Result> mockPages(ListObjectsV2Result... pages) {
+    OngoingStubbing<ListObjectsV2Result> stubbing = Mockito
+        .when(this.amazonS3.listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class)));
+    for (final ListObjectsV2Result page : pages) {
+      stubbing = stubbing.thenReturn(page);
+    }
+    return Arrays.asList(pages);
   }
 
   @Test
   public void fileExistsFalseTest() {
-    final ObjectListing listing = DataCreater.createEmptyObjectListing();
-    Mockito.when(this.amazonS3.listObjects(this.bucketName, this.key)).thenReturn(listing);
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, this.key)).thenReturn(false);
 
     final boolean fileExists = this.service.fileExists(this.key);
 
     assertFalse(fileExists);
 
-    Mockito.verify(this.amazonS3, Mockito.times(1)).listObjects(this.bucketName, this.key);
+    Mockito.verify(this.amazonS3, Mockito.times(1)).doesObjectExist(this.bucketName, this.key);
   }
 
   @Test
   public void fileExistsTest() {
-
-    final ObjectListing listing = DataCreater.createObjectListing();
-    Mockito.when(this.amazonS3.listObjects(this.bucketName, this.key)).thenReturn(listing);
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, this.key)).thenReturn(true);
 
     final boolean fileExists = this.service.fileExists(this.key);
 
     assertTrue(fileExists);
-    Mockito.verify(this.amazonS3, Mockito.times(1)).listObjects(this.bucketName, this.key);
+    Mockito.verify(this.amazonS3, Mockito.times(1)).doesObjectExist(this.bucketName, this.key);
+  }
+
+  @Test
+  public void fileExistsCachedTest() {
+    final DefaultS3InformationService cachedService = createCachedService(10, Duration.ofHours(1));
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, this.key)).thenReturn(true);
+
+    assertTrue(cachedService.fileExists(this.key));
+    assertTrue(cachedService.fileExists(this.key));
+
+    Mockito.verify(this.amazonS3, Mockito.times(1)).doesObjectExist(this.bucketName, this.key);
+  }
+
+  @Test
+  public void fileExistsCachesMissingFileTest() {
+    final DefaultS3InformationService cachedService = createCachedService(10, Duration.ofHours(1));
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, this.key)).thenReturn(false);
+
+    assertFalse(cachedService.fileExists(this.key));
+    assertFalse(cachedService.fileExists(this.key));
+
+    Mockito.verify(this.amazonS3, Mockito.times(1)).doesObjectExist(this.bucketName, this.key);
+  }
+
+  @Test
+  public void fileExistsInvalidatedByChangeTest() {
+    final DefaultS3InformationService cachedService = createCachedService(10, Duration.ofHours(1));
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, this.key)).thenReturn(false,
+        true);
+
+    assertFalse(cachedService.fileExists(this.key));
+    cachedService.objectChanged(this.key);
+    assertTrue(cachedService.fileExists(this.key));
+
+    Mockito.verify(this.amazonS3, Mockito.times(2)).doesObjectExist(this.bucketName, this.key);
+  }
+
+  @Test
+  public void fileExistsCachedDespiteUnrelatedChangeDuringLoadTest() {
+    final DefaultS3InformationService cachedService = createCachedService(10, Duration.ofHours(1));
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, this.key))
+        .thenAnswer(invocation -> {
+          cachedService.objectChanged(DataCreater.createString());
+          return true;
+        });
+
+    assertTrue(cachedService.fileExists(this.key));
+    assertTrue(cachedService.fileExists(this.key));
+
+    Mockito.verify(this.amazonS3, Mockito.times(1)).doesObjectExist(this.bucketName, this.key);
+  }
+
+  @Test
+  public void fileExistsNotCachedWhenChangedDuringLoadTest() {
+    final DefaultS3InformationService cachedService = createCachedService(10, Duration.ofHours(1));
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, this.key))
+        .thenAnswer(invocation -> {
+          cachedService.objectChanged(this.key);
+          return false;
+        });
+
+    assertFalse(cachedService.fileExists(this.key));
+    assertFalse(cachedService.fileExists(this.key));
+
+    Mockito.verify(this.amazonS3, Mockito.times(2)).doesObjectExist(this.bucketName, this.key);
+  }
+
+  @Test
+  public void fileExistsCacheExpiresTest() throws InterruptedException {
+    final DefaultS3InformationService cachedService = createCachedService(10, Duration.ofMillis(1));
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, this.key)).thenReturn(true);
+
+    assertTrue(cachedService.fileExists(this.key));
+    Thread.sleep(5);
+    assertTrue(cachedService.fileExists(this.key));
+
+    Mockito.verify(this.amazonS3, Mockito.times(2)).doesObjectExist(this.bucketName, this.key);
+  }
+
+  @Test
+  public void fileExistsCacheIsBoundedTest() {
+    final DefaultS3InformationService cachedService = createCachedService(1, Duration.ofHours(1));
+    final String otherKey = DataCreater.createString();
+    Mockito.when(this.amazonS3.doesObjectExist(ArgumentMatchers.eq(this.bucketName),
+        ArgumentMatchers.anyString())).thenReturn(true);
+
+    cachedService.fileExists(this.key);
+    cachedService.fileExists(otherKey);
+    cachedService.fileExists(this.key);
+
+    Mockito.verify(this.amazonS3, Mockito.times(2)).doesObjectExist(this.bucketName, this.key);
+    Mockito.verify(this.amazonS3, Mockito.times(1)).doesObjectExist(this.bucketName, otherKey);
+  }
+
+  @Test
+  public void listingCachedTest() {
+    final DefaultS3InformationService cachedService = createListingCachedService();
+    mockPages(createPage("next", this.key + "a", this.key + "b/"),
+        createPage(null, this.key + "c", this.key + "d/"));
+
+    final List<String> first = cachedService.listFileNames(this.key);
+    final List<String> second = cachedService.listFileNames(this.key);
+    final List<String> directories = cachedService.listDirectories(this.key);
+
+    assertEquals(Arrays.asList(this.key + "a", this.key + "c"), first);
+    assertEquals(first, second);
+    assertEquals(Arrays.asList(this.key + "b/", this.key + "d/"), directories);
+    Mockito.verify(this.amazonS3, Mockito.times(2))
+        .listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class));
+    final S3CacheStatistics statistics = cachedService.listingCacheStatistics();
+    assertEquals(2, statistics.getHits());
+    assertEquals(1, statistics.getMisses());
+    assertEquals(1, statistics.getEntries());
+  }
+
+  @Test
+  public void listingCacheSkipsStartAfterKeyTest() {
+    final DefaultS3InformationService cachedService = createListingCachedService();
+    mockPages(createPage(null, this.key, this.key + "a"));
+
+    assertEquals(Arrays.asList(this.key + "a"), cachedService.listFileNames(this.key));
+    assertEquals(2, cachedService.streamFilesRecursively(this.key).count());
+
+    Mockito.verify(this.amazonS3, Mockito.times(2))
+        .listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class));
+  }
+
+  @Test
+  public void listingCacheInvalidatedByChangeTest() {
+    final DefaultS3InformationService cachedService = createListingCachedService();
+    mockPages(createPage(null, this.key + "a"), createPage(null, this.key + "a", this.key + "b"));
+
+    cachedService.listFileNames(this.key);
+    cachedService.objectChanged(DataCreater.createString() + this.key);
+    cachedService.listFileNames(this.key);
+    cachedService.objectChanged(this.key + "b");
+    final List<String> fileNames = cachedService.listFileNames(this.key);
+
+    assertEquals(Arrays.asList(this.key + "a", this.key + "b"), fileNames);
+    verifyDirectoryRequests(2);
+  }
+
+  @Test
+  public void listingCacheKeepsListingsOfUnchangedPrefixesTest() {
+    final DefaultS3InformationService cachedService = createListingCachedService();
+    final String changedPrefix = DataCreater.createString() + "/";
+    Mockito.when(this.amazonS3.listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class)))
+        .thenAnswer(invocation -> {
+          final ListObjectsV2Request request = invocation.getArgument(0);
+          cachedService.objectChanged(changedPrefix + "a");
+          return createPage(null, request.getPrefix() + "a");
+        });
+
+    cachedService.listFileNames(this.key);
+    cachedService.listFileNames(this.key);
+    cachedService.listFileNames(changedPrefix);
+    cachedService.listFileNames(changedPrefix);
+
+    Mockito.verify(this.amazonS3, Mockito.times(3))
+        .listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class));
+    assertEquals(1, cachedService.listingCacheStatistics().getEntries());
+  }
+
+  @Test
+  public void listingCacheBypassedByStreamsTest() {
+    final DefaultS3InformationService cachedService = createListingCachedService();
+    mockPages(createPage(null, this.key + "a", this.key + "b/"));
+
+    assertEquals(1, cachedService.streamFiles(this.key).count());
+    assertEquals(1, cachedService.streamDirectories(this.key).count());
+    assertEquals(1, cachedService.streamFilesRecursively(this.key).count());
+
+    Mockito.verify(this.amazonS3, Mockito.times(3))
+        .listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class));
+    assertEquals(0, cachedService.listingCacheStatistics().getEntries());
+  }
+
+  @Test
+  public void listingCacheSkipsLargeListingsTest() {
+    final DefaultS3InformationService cachedService = createListingCachedService();
+    final String[] keys = new String[ListingCache.MAX_LISTING_SIZE + 1];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = this.key + i;
+    }
+    mockPages(createPage(null, keys));
+
+    assertEquals(keys.length, cachedService.listFileNames(this.key).size());
+    assertEquals(keys.length, cachedService.listFileNames(this.key).size());
+
+    Mockito.verify(this.amazonS3, Mockito.times(2))
+        .listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class));
+    assertEquals(0, cachedService.listingCacheStatistics().getEntries());
+  }
+
+  private DefaultS3InformationService createListingCachedService() {
+    return new DefaultS3InformationService(this.amazonS3, this.bucketName,
+        S3ServiceConfig.newBuilder().withListingCache(true).build());
+  }
+
+  private ListObjectsV2Result createPage(final String nextContinuationToken,
+      final String... keys) {
+    final ListObjectsV2Result page = new ListObjectsV2Result();
+    for (final String key : keys) {
+      if (key.endsWith(DefaultS3InformationService.DELIMITER)) {
+        page.getCommonPrefixes().add(key);
+      } else {
+        final S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setKey(key);
+        page.getObjectSummaries().add(summary);
+      }
+    }
+    page.setTruncated(nextContinuationToken != null);
+    page.setNextContinuationToken(nextContinuationToken);
+    return page;
+  }
+
+  private DefaultS3InformationService createCachedService(int size, Duration ttl) {
+    return new DefaultS3InformationService(this.amazonS3, this.bucketName,
+        S3ServiceConfig.newBuilder().withExistenceCache(true).withExistenceCacheSize(size)
+            .withExistenceCacheTtl(ttl).build());
   }
 
 
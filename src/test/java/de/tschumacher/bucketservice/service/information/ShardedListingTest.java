@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.information;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+
+import de.tschumacher.bucketservice.domain.S3File;
+import de.tschumacher.bucketservice.domain.S3Sharding;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+import de.tschumacher.bucketservice.testing.InMemoryAmazonS3;
+import de.tschumacher.bucketservice.testing.S3FailureInjector;
+
+public class ShardedListingTest {
+  private static final String BUCKET = "bucket";
+
+  private InMemoryAmazonS3 amazonS3;
+  private S3InformationService service;
+
+  @Before
+  public void setUp() {
+    this.amazonS3 = new InMemoryAmazonS3(BUCKET);
+    this.service = new DefaultS3InformationService(this.amazonS3, BUCKET,
+        S3ServiceConfig.newBuilder().withListingParallelism(4).build());
+  }
+
+  @Test
+  public void hexShardsListEveryKeyInOrderTest() {
+    final List<String> expected = putHexKeys("data/", 3000);
+    this.amazonS3.putObject(BUCKET, "other", "x");
+
+    final List<String> keys = listKeys("data/",
+        S3Sharding.newBuilder().withHexShards(2).withOrdered(true).build());
+
+    assertEquals(expected, keys);
+  }
+
+  @Test
+  public void unorderedShardsListEveryKeyOnceTest() {
+    final List<String> expected = putHexKeys("", 1500);
+
+    final List<String> keys =
+        listKeys("", S3Sharding.newBuilder().withHexShards(1).build());
+
+    Collections.sort(keys);
+    assertEquals(expected, keys);
+  }
+
+  @Test
+  public void delimiterDiscoveryListsEveryKeyInOrderTest() {
+    final List<String> expected = new ArrayList<String>();
+    for (final String key : Arrays.asList("a", "b/1", "b/2/x", "b/2/y", "b/3", "c/1", "d",
+        "e/f/g", "z")) {
+      this.amazonS3.putObject(BUCKET, "root/" + key, "x");
+      expected.add("root/" + key);
+    }
+
+    for (int depth = 1; depth <= 3; depth++) {
+      final List<String> keys = listKeys("root/",
+          S3Sharding.newBuilder().withDepth(depth).withOrdered(true).build());
+
+      assertEquals(expected, keys);
+    }
+  }
+
+  @Test
+  public void delimiterDiscoveryCoalescesTopLevelObjectsTest() {
+    for (final String key : Arrays.asList("a", "b", "c/1", "d", "e")) {
+      this.amazonS3.putObject(BUCKET, key, "x");
+    }
+
+    try (ShardedListing listing = new ShardedListing(this.amazonS3, BUCKET, "",
+        S3Sharding.newBuilder().withOrdered(true).build(), 2)) {
+      assertEquals(3, listing.getShardCount());
+    }
+  }
+
+  @Test
+  public void delimiterDiscoveryPagesThroughObjectsBetweenPrefixesTest() {
+    final List<String> expected = new ArrayList<String>(putHexKeys("root/", 2500));
+    for (final String directory : Arrays.asList("4", "8", "c")) {
+      final String key = "root/" + directory + "/x";
+      this.amazonS3.putObject(BUCKET, key, "x");
+      expected.add(key);
+    }
+    Collections.sort(expected, ShardedListing.KEY_ORDER);
+
+    final List<String> keys = listKeys("root/",
+        S3Sharding.newBuilder().withDepth(2).withOrdered(true).build());
+
+    assertEquals(expected, keys);
+    try (ShardedListing listing = new ShardedListing(this.amazonS3, BUCKET, "root/",
+        S3Sharding.newBuilder().withDepth(2).build(), 2)) {
+      assertEquals(7, listing.getShardCount());
+    }
+  }
+
+  @Test
+  public void dateShardsListEveryKeyInOrderTest() {
+    final DateTimeFormatter format = DateTimeFormatter.ISO_LOCAL_DATE;
+    final List<String> expected = new ArrayList<String>();
+    for (LocalDate day = LocalDate.of(2020, 1, 1); day.getYear() < 2021;
+        day = day.plusDays(3)) {
+      final String key = "logs/" + format.format(day) + "/part";
+      this.amazonS3.putObject(BUCKET, key, "x");
+      expected.add(key);
+    }
+
+    final List<String> keys = listKeys("logs/",
+        S3Sharding.newBuilder().withDateShards(LocalDate.of(2020, 1, 1),
+            LocalDate.of(2021, 1, 1), Period.ofMonths(1), format).withOrdered(true).build());
+
+    assertEquals(expected, keys);
+  }
+
+  @Test
+  public void listingFailurePropagatesTest() {
+    putHexKeys("", 100);
+    final AtomicInteger listings = new AtomicInteger();
+    this.amazonS3.withFailureInjector((operation, key) -> "ListObjectsV2".equals(operation)
+        && listings.incrementAndGet() == 8 ? S3FailureInjector.slowDown(operation) : null);
+
+    try (Stream<S3File> files =
+        this.service.streamFilesSharded("", S3Sharding.newBuilder().withHexShards(1).build())) {
+      files.count();
+      fail("expected listing failure");
+    } catch (final AmazonS3Exception e) {
+      assertEquals(503, e.getStatusCode());
+    }
+  }
+
+  @Test
+  public void compareKeysUsesCodePointOrderTest() {
+    assertTrue(ShardedListing.compareKeys("a", "ab") < 0);
+    assertTrue(ShardedListing.compareKeys("\uffff", "\ud83d\ude00") < 0);
+    assertEquals(0, ShardedListing.compareKeys("abc", "abc"));
+  }
+
+  private List<String> putHexKeys(final String prefix, final int count) {
+    final List<String> keys = IntStream.range(0, count)
+        .mapToObj(i -> prefix + String.format("%08x", i * 2654435761L & 0xffffffffL))
+        .sorted().collect(Collectors.toList());
+    keys.forEach(key -> this.amazonS3.putObject(BUCKET, key, "x"));
+    return keys;
+  }
+
+  private List<String> listKeys(final String prefix, final S3Sharding sharding) {
+    try (Stream<S3File> files = this.service.streamFilesSharded(prefix, sharding)) {
+      return files.map(S3File::getKey).collect(Collectors.toList());
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+
+import de.tschumacher.bucketservice.domain.S3File;
+import de.tschumacher.bucketservice.domain.S3OperationStatistics;
+import de.tschumacher.bucketservice.service.CommonS3ServiceTest;
+import de.tschumacher.bucketservice.service.DefaultS3Service;
+import de.tschumacher.bucketservice.service.S3OperationType;
+import de.tschumacher.bucketservice.service.S3Service;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+public class S3MetricsTest extends CommonS3ServiceTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void recordUploadTest() throws IOException {
+    final S3Metrics metrics = new S3Metrics();
+    final S3MetricsListener listener = Mockito.mock(S3MetricsListener.class);
+    metrics.addListener(listener);
+    final File file = this.folder.newFile();
+    Files.write(file.toPath(), new byte[] {1, 2, 3, 4, 5});
+
+    createService(metrics).uploadService().uploadFile(file, "key");
+
+    Mockito.verify(this.amazonS3).putObject(ArgumentMatchers.any(PutObjectRequest.class));
+    final S3OperationStatistics statistics = metrics.getStatistics(S3OperationType.UPLOAD);
+    assertEquals(1, statistics.getCount());
+    assertEquals(0, statistics.getErrors());
+    assertEquals(5, statistics.getBytes());
+    assertTrue(statistics.getMax().compareTo(Duration.ZERO) > 0);
+    Mockito.verify(listener).operationCompleted(ArgumentMatchers.eq(S3OperationType.UPLOAD),
+        ArgumentMatchers.anyLong(), ArgumentMatchers.eq(5L), ArgumentMatchers.isNull());
+    Mockito.verifyNoMoreInteractions(listener);
+  }
+
+  @Test
+  public void recordErrorTest() {
+    final S3Metrics metrics = new S3Metrics();
+    final AmazonServiceException exception = new AmazonServiceException("unavailable");
+    Mockito.when(this.amazonS3.doesObjectExist(this.bucketName, "key")).thenThrow(exception);
+
+    try {
+      createService(metrics).informationService().fileExists("key");
+      fail();
+    } catch (final AmazonServiceException e) {
+      assertEquals(exception, e);
+    }
+
+    Mockito.verify(this.amazonS3).doesObjectExist(this.bucketName, "key");
+    final S3OperationStatistics statistics = metrics.getStatistics(S3OperationType.EXISTS);
+    assertEquals(1, statistics.getCount());
+    assertEquals(1, statistics.getErrors());
+    assertEquals(0, metrics.getStatistics(S3OperationType.UPLOAD).getCount());
+  }
+
+  @Test
+  public void recordStreamOnCloseTest() throws IOException {
+    final S3Metrics metrics = new S3Metrics();
+    final InputStream delegate = new ByteArrayInputStream(new byte[] {1, 2, 3});
+
+    try (InputStream inputStream =
+        new MeteredInputStream(delegate, metrics, S3OperationType.DOWNLOAD)) {
+      while (inputStream.read() >= 0) {
+        // drain
+      }
+      assertEquals(0, metrics.getStatistics(S3OperationType.DOWNLOAD).getCount());
+    }
+
+    final S3OperationStatistics statistics = metrics.getStatistics(S3OperationType.DOWNLOAD);
+    assertEquals(1, statistics.getCount());
+    assertEquals(3, statistics.getBytes());
+  }
+
+  @Test
+  public void recordExhaustedListingStreamTest() {
+    final S3Metrics metrics = new S3Metrics();
+    Mockito.when(this.amazonS3.listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class)))
+        .thenReturn(new ListObjectsV2Result());
+
+    assertEquals(0, createService(metrics).informationService().streamFiles("dir/").count());
+
+    Mockito.verify(this.amazonS3).listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class));
+    final S3OperationStatistics statistics = metrics.getStatistics(S3OperationType.LIST);
+    assertEquals(1, statistics.getCount());
+    assertEquals(0, statistics.getErrors());
+  }
+
+  @Test
+  public void recordFailedListingStreamTest() {
+    final S3Metrics metrics = new S3Metrics();
+    final AmazonServiceException exception = new AmazonServiceException("unavailable");
+    Mockito.when(this.amazonS3.listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class)))
+        .thenThrow(exception);
+
+    try (Stream<S3File> files = createService(metrics).informationService().streamFiles("dir/")) {
+      files.count();
+      fail();
+    } catch (final AmazonServiceException e) {
+      assertEquals(exception, e);
+    }
+
+    Mockito.verify(this.amazonS3).listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class));
+    final S3OperationStatistics statistics = metrics.getStatistics(S3OperationType.LIST);
+    assertEquals(1, statistics.getCount());
+    assertEquals(1, statistics.getErrors());
+  }
+
+  @Test
+  public void skippedBytesAreNotCountedTest() throws IOException {
+    final S3Metrics metrics = new S3Metrics();
+    final InputStream delegate = new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5});
+
+    try (InputStream inputStream =
+        new MeteredInputStream(delegate, metrics, S3OperationType.DOWNLOAD)) {
+      assertEquals(3, inputStream.skip(3));
+      assertEquals(4, inputStream.read());
+    }
+
+    assertEquals(1, metrics.getStatistics(S3OperationType.DOWNLOAD).getBytes());
+  }
+
+  @Test
+  public void latencyPercentilesTest() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+
+    assertEquals(1000000, histogram.max());
+    assertPercentile(500000, histogram.percentile(50));
+    assertPercentile(900000, histogram.percentile(90));
+    assertPercentile(990000, histogram.percentile(99));
+    assertEquals(1000000, histogram.percentile(100));
+  }
+
+  @Test
+  public void bucketBoundariesTest() {
+    for (long value = 0; value < 100000; value += 7) {
+      final int index = LatencyHistogram.indexOf(value);
+      assertTrue(value <= LatencyHistogram.highestValueOf(index));
+      assertTrue(index == 0 || value > LatencyHistogram.highestValueOf(index - 1));
+    }
+    assertEquals(Long.MAX_VALUE,
+        LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+  }
+
+  private static void assertPercentile(final long expected, final long actual) {
+    assertTrue(actual >= expected);
+    assertTrue(actual <= expected + expected / 16);
+  }
+
+  private S3Service createService(final S3Metrics metrics) {
+    return new DefaultS3Service(this.amazonS3, this.bucketName,
+        S3ServiceConfig.newBuilder().withMetrics(metrics).build());
+  }
+}
@@ -14,23 +14,56 @@
 package de.tschumacher.bucketservice.service.modification;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.CopyPartResult;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
 
 import de.tschumacher.bucketservice.data.DataCreater;
+import de.tschumacher.bucketservice.domain.S3DeleteReport;
+import de.tschumacher.bucketservice.domain.S3MoveReport;
 import de.tschumacher.bucketservice.service.CommonS3ServiceTest;
+import de.tschumacher.bucketservice.service.S3ChangeListener;
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3Multipart;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
 
 public class S3ModificationServiceTest extends CommonS3ServiceTest {
 
-  private S3ModificationService service;
+  private DefaultS3ModificationService service;
+  private S3ChangeListener changeListener;
   private String key;
 
 
@@ -40,6 +73,8 @@ public class S3ModificationServiceTest extends CommonS3ServiceTest {
     super.setUp();
     this.key = DataCreater.createString();
     this.service = new DefaultS3ModificationService(this.amazonS3, this.bucketName);
+    this.changeListener = Mockito.mock(S3ChangeListener.class);
+    this.service.addChangeListener(this.changeListener);
   }
 
 
@@ -49,21 +84,369 @@ public class S3ModificationServiceTest extends CommonS3ServiceTest {
     this.service.deleteFile(this.key);
 
     Mockito.verify(this.amazonS3, Mockito.times(1)).deleteObject(this.bucketName, this.key);
+    Mockito.verify(this.changeListener, Mockito.times(1)).objectChanged(this.key);
   }
 
   @Test
   public void moveFileTest() throws AmazonClientException, IOException {
     final String destinationKey = DataCreater.createString();
+    mockObjectMetadata(this.key, 1024);
 
     this.service.moveFile(this.key, destinationKey);
 
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObjectMetadata(this.bucketName, this.key);
     Mockito.verify(this.amazonS3, Mockito.times(1)).deleteObject(this.bucketName, this.key);
 
 
     verifyCopyRequest(destinationKey);
+    Mockito.verify(this.changeListener, Mockito.times(1)).objectChanged(this.key);
+    Mockito.verify(this.changeListener, Mockito.times(1)).objectChanged(destinationKey);
   }
 
 
+  @Test
+  public void deleteFilesTest() {
+    final List<String> keys = createKeys(2500);
+    Mockito.when(this.amazonS3.deleteObjects(ArgumentMatchers.any(DeleteObjectsRequest.class)))
+        .thenReturn(new DeleteObjectsResult(Collections.emptyList()));
+
+    final S3DeleteReport report = this.service.deleteFiles(keys);
+
+    assertTrue(report.isSuccessful());
+    assertEquals(new HashSet<String>(keys), new HashSet<String>(report.getDeletedKeys()));
+    final List<DeleteObjectsRequest> requests = verifyDeleteRequests(3);
+    assertEquals(keys.size(), countKeys(requests));
+    Mockito.verify(this.changeListener, Mockito.times(keys.size()))
+        .objectChanged(ArgumentMatchers.anyString());
+  }
+
+  @Test
+  public void deleteFilesPartialFailureTest() {
+    final List<String> keys = createKeys(3);
+    final DeleteError error = new DeleteError();
+    error.setKey(keys.get(1));
+    error.setCode("AccessDenied");
+    error.setMessage("Access Denied");
+    Mockito.when(this.amazonS3.deleteObjects(ArgumentMatchers.any(DeleteObjectsRequest.class)))
+        .thenThrow(new MultiObjectDeleteException(Collections.singletonList(error),
+            Collections.emptyList()));
+
+    final S3DeleteReport report = this.service.deleteFiles(keys);
+
+    assertFalse(report.isSuccessful());
+    assertEquals(2, report.getDeletedKeys().size());
+    assertFalse(report.getDeletedKeys().contains(keys.get(1)));
+    assertEquals("AccessDenied: Access Denied", report.getFailedKeys().get(keys.get(1)));
+    verifyDeleteRequests(1);
+    Mockito.verify(this.changeListener, Mockito.times(2))
+        .objectChanged(ArgumentMatchers.anyString());
+  }
+
+  @Test
+  public void deleteFilesBatchFailureTest() {
+    final List<String> keys = createKeys(3);
+    final AmazonServiceException accessDenied = new AmazonServiceException("access denied");
+    accessDenied.setStatusCode(403);
+    Mockito.when(this.amazonS3.deleteObjects(ArgumentMatchers.any(DeleteObjectsRequest.class)))
+        .thenThrow(accessDenied);
+
+    final S3DeleteReport report = this.service.deleteFiles(keys);
+
+    assertTrue(report.getDeletedKeys().isEmpty());
+    assertEquals(new HashSet<String>(keys), report.getFailedKeys().keySet());
+    verifyDeleteRequests(1);
+  }
+
+  @Test
+  public void deletePrefixTest() {
+    final String token = DataCreater.createString();
+    final ListObjectsV2Result firstPage = createPage(createKeys(2), token);
+    final ListObjectsV2Result secondPage = createPage(createKeys(1), null);
+    Mockito.when(this.amazonS3.listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class)))
+        .thenReturn(firstPage, secondPage);
+    Mockito.when(this.amazonS3.deleteObjects(ArgumentMatchers.any(DeleteObjectsRequest.class)))
+        .thenReturn(new DeleteObjectsResult(Collections.emptyList()));
+
+    final S3DeleteReport report = this.service.deletePrefix(this.key);
+
+    assertTrue(report.isSuccessful());
+    assertEquals(3, report.getDeletedKeys().size());
+    final ArgumentCaptor<ListObjectsV2Request> listRequest =
+        ArgumentCaptor.forClass(ListObjectsV2Request.class);
+    Mockito.verify(this.amazonS3, Mockito.times(2)).listObjectsV2(listRequest.capture());
+    assertEquals(this.key, listRequest.getValue().getPrefix());
+    assertEquals(3, countKeys(verifyDeleteRequests(2)));
+    Mockito.verify(this.changeListener, Mockito.times(3))
+        .objectChanged(ArgumentMatchers.anyString());
+  }
+
+  @Test
+  public void moveHugeFileStaysWithinPartLimitTest() {
+    final String destinationKey = DataCreater.createString();
+    final long partSize = S3ServiceConfig.MIN_PART_SIZE;
+    final S3ModificationService multipartService =
+        new DefaultS3ModificationService(this.amazonS3, this.bucketName,
+            S3ServiceConfig.newBuilder().withMultipartCopyThreshold(partSize)
+                .withCopyPartSize(partSize).build());
+    final ObjectMetadata metadata =
+        mockObjectMetadata(this.key, S3Multipart.MAX_PARTS * partSize + 1);
+    final InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+    initiateResult.setUploadId(DataCreater.createString());
+    Mockito.when(this.amazonS3
+        .initiateMultipartUpload(ArgumentMatchers.any(InitiateMultipartUploadRequest.class)))
+        .thenReturn(initiateResult);
+    Mockito.when(this.amazonS3.copyPart(ArgumentMatchers.any(CopyPartRequest.class)))
+        .thenAnswer(invocation -> {
+          final CopyPartResult result = new CopyPartResult();
+          result.setPartNumber(((CopyPartRequest) invocation.getArgument(0)).getPartNumber());
+          result.setETag(DataCreater.createString());
+          return result;
+        });
+
+    multipartService.moveFile(this.key, destinationKey);
+
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObjectMetadata(this.bucketName, this.key);
+    Mockito.verify(this.amazonS3, Mockito.times(1))
+        .initiateMultipartUpload(ArgumentMatchers.any(InitiateMultipartUploadRequest.class));
+    final ArgumentCaptor<CopyPartRequest> partRequests =
+        ArgumentCaptor.forClass(CopyPartRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(S3Multipart.MAX_PARTS))
+        .copyPart(partRequests.capture());
+    long copiedBytes = 0;
+    for (final CopyPartRequest partRequest : partRequests.getAllValues()) {
+      copiedBytes += partRequest.getLastByte() - partRequest.getFirstByte() + 1;
+    }
+    assertEquals(metadata.getContentLength(), copiedBytes);
+    Mockito.verify(this.amazonS3, Mockito.times(1))
+        .completeMultipartUpload(ArgumentMatchers.any(CompleteMultipartUploadRequest.class));
+    Mockito.verify(this.amazonS3, Mockito.times(1)).deleteObject(this.bucketName, this.key);
+  }
+
+  @Test
+  public void moveLargeFileTest() {
+    final String destinationKey = DataCreater.createString();
+    final long partSize = S3ServiceConfig.MIN_PART_SIZE;
+    final S3ModificationService multipartService =
+        new DefaultS3ModificationService(this.amazonS3, this.bucketName,
+            S3ServiceConfig.newBuilder().withMultipartCopyThreshold(partSize)
+                .withCopyPartSize(partSize).build());
+    final ObjectMetadata metadata = mockObjectMetadata(this.key, 2 * partSize + 1);
+    metadata.setContentType("image/jpeg");
+    final InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+    initiateResult.setUploadId(DataCreater.createString());
+    Mockito.when(this.amazonS3
+        .initiateMultipartUpload(ArgumentMatchers.any(InitiateMultipartUploadRequest.class)))
+        .thenReturn(initiateResult);
+    Mockito.when(this.amazonS3.copyPart(ArgumentMatchers.any(CopyPartRequest.class)))
+        .thenAnswer(invocation -> {
+          final CopyPartResult result = new CopyPartResult();
+          result.setPartNumber(((CopyPartRequest) invocation.getArgument(0)).getPartNumber());
+          result.setETag(DataCreater.createString());
+          return result;
+        });
+
+    multipartService.moveFile(this.key, destinationKey);
+
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObjectMetadata(this.bucketName, this.key);
+    final ArgumentCaptor<InitiateMultipartUploadRequest> initiateRequest =
+        ArgumentCaptor.forClass(InitiateMultipartUploadRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(1))
+        .initiateMultipartUpload(initiateRequest.capture());
+    assertEquals(destinationKey, initiateRequest.getValue().getKey());
+    assertEquals("image/jpeg", initiateRequest.getValue().getObjectMetadata().getContentType());
+    final ArgumentCaptor<CopyPartRequest> partRequests =
+        ArgumentCaptor.forClass(CopyPartRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(3)).copyPart(partRequests.capture());
+    long copiedBytes = 0;
+    for (final CopyPartRequest partRequest : partRequests.getAllValues()) {
+      assertEquals(this.key, partRequest.getSourceKey());
+      assertEquals(initiateResult.getUploadId(), partRequest.getUploadId());
+      copiedBytes += partRequest.getLastByte() - partRequest.getFirstByte() + 1;
+    }
+    assertEquals(metadata.getContentLength(), copiedBytes);
+    final ArgumentCaptor<CompleteMultipartUploadRequest> completeRequest =
+        ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(1))
+        .completeMultipartUpload(completeRequest.capture());
+    assertEquals(3, completeRequest.getValue().getPartETags().size());
+    Mockito.verify(this.amazonS3, Mockito.times(1)).deleteObject(this.bucketName, this.key);
+  }
+
+  @Test
+  public void moveFilesTest() {
+    final Map<String, String> keys = new HashMap<String, String>();
+    final AmazonServiceException accessDenied = new AmazonServiceException("access denied");
+    accessDenied.setStatusCode(403);
+    keys.put(this.key + "a", DataCreater.createString());
+    keys.put(this.key + "b", DataCreater.createString());
+    mockObjectMetadata(this.key + "a", 1024);
+    mockObjectMetadata(this.key + "b", 1024);
+    Mockito.when(this.amazonS3.copyObject(ArgumentMatchers.any(CopyObjectRequest.class)))
+        .thenAnswer(invocation -> {
+          if (((CopyObjectRequest) invocation.getArgument(0)).getSourceKey().endsWith("b")) {
+            throw accessDenied;
+          }
+          return null;
+        });
+    Mockito.when(this.amazonS3.deleteObjects(ArgumentMatchers.any(DeleteObjectsRequest.class)))
+        .thenReturn(new DeleteObjectsResult(Collections.emptyList()));
+
+    final S3MoveReport report = this.service.moveFiles(keys);
+
+    assertEquals(Collections.singletonMap(this.key + "a", keys.get(this.key + "a")),
+        report.getMovedKeys());
+    assertEquals(Collections.singleton(this.key + "b"), report.getFailedKeys().keySet());
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObjectMetadata(this.bucketName,
+        this.key + "a");
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObjectMetadata(this.bucketName,
+        this.key + "b");
+    Mockito.verify(this.amazonS3, Mockito.times(2))
+        .copyObject(ArgumentMatchers.any(CopyObjectRequest.class));
+    assertEquals(1, countKeys(verifyDeleteRequests(1)));
+    Mockito.verify(this.changeListener, Mockito.times(1)).objectChanged(this.key + "a");
+    Mockito.verify(this.changeListener, Mockito.times(1)).objectChanged(keys.get(this.key + "a"));
+  }
+
+  @Test(timeout = 10000)
+  public void moveLargeFilesSharesTransferExecutorTest() {
+    final String destinationKey = DataCreater.createString();
+    final long partSize = S3ServiceConfig.MIN_PART_SIZE;
+    final ExecutorService executor = S3Executors.newTransferExecutor(1);
+    final S3ModificationService multipartService =
+        new DefaultS3ModificationService(this.amazonS3, this.bucketName,
+            S3ServiceConfig.newBuilder().withMultipartCopyThreshold(partSize)
+                .withCopyPartSize(partSize).build(),
+            executor);
+    mockObjectMetadata(this.key, 2 * partSize + 1);
+    final InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+    initiateResult.setUploadId(DataCreater.createString());
+    Mockito.when(this.amazonS3
+        .initiateMultipartUpload(ArgumentMatchers.any(InitiateMultipartUploadRequest.class)))
+        .thenReturn(initiateResult);
+    Mockito.when(this.amazonS3.copyPart(ArgumentMatchers.any(CopyPartRequest.class)))
+        .thenAnswer(invocation -> {
+          final CopyPartResult result = new CopyPartResult();
+          result.setPartNumber(((CopyPartRequest) invocation.getArgument(0)).getPartNumber());
+          result.setETag(DataCreater.createString());
+          return result;
+        });
+    Mockito.when(this.amazonS3.deleteObjects(ArgumentMatchers.any(DeleteObjectsRequest.class)))
+        .thenReturn(new DeleteObjectsResult(Collections.emptyList()));
+
+    final S3MoveReport report;
+    try {
+      // the move task holds the only thread, so its parts must not be queued behind it
+      report = multipartService.moveFiles(Collections.singletonMap(this.key, destinationKey));
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(Collections.singletonMap(this.key, destinationKey), report.getMovedKeys());
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObjectMetadata(this.bucketName, this.key);
+    Mockito.verify(this.amazonS3, Mockito.times(1))
+        .initiateMultipartUpload(ArgumentMatchers.any(InitiateMultipartUploadRequest.class));
+    Mockito.verify(this.amazonS3, Mockito.times(3))
+        .copyPart(ArgumentMatchers.any(CopyPartRequest.class));
+    Mockito.verify(this.amazonS3, Mockito.times(1))
+        .completeMultipartUpload(ArgumentMatchers.any(CompleteMultipartUploadRequest.class));
+    assertEquals(1, countKeys(verifyDeleteRequests(1)));
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void closeShutsDownOwnedExecutorTest() {
+    this.service.close();
+
+    this.service.deleteFiles(Collections.singletonList(this.key));
+  }
+
+  @Test
+  public void closeKeepsInjectedExecutorTest() {
+    final ExecutorService executor = S3Executors.newTransferExecutor(1);
+    try {
+      new DefaultS3ModificationService(this.amazonS3, this.bucketName,
+          S3ServiceConfig.defaults(), executor).close();
+
+      assertFalse(executor.isShutdown());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void movePrefixTest() {
+    final String destinationPrefix = DataCreater.createString();
+    final List<String> sourceKeys = createKeys(2);
+    Mockito.when(this.amazonS3.listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class)))
+        .thenReturn(createPage(sourceKeys, null));
+    Mockito.when(this.amazonS3.deleteObjects(ArgumentMatchers.any(DeleteObjectsRequest.class)))
+        .thenReturn(new DeleteObjectsResult(Collections.emptyList()));
+
+    final S3MoveReport report = this.service.movePrefix(this.key, destinationPrefix);
+
+    assertTrue(report.isSuccessful());
+    assertEquals(destinationPrefix + "0", report.getMovedKeys().get(this.key + "0"));
+    assertEquals(destinationPrefix + "1", report.getMovedKeys().get(this.key + "1"));
+    Mockito.verify(this.amazonS3, Mockito.times(1))
+        .listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class));
+    final ArgumentCaptor<CopyObjectRequest> copyRequests =
+        ArgumentCaptor.forClass(CopyObjectRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(2)).copyObject(copyRequests.capture());
+    for (final CopyObjectRequest copyRequest : copyRequests.getAllValues()) {
+      assertTrue(copyRequest.getDestinationKey().startsWith(destinationPrefix));
+    }
+    assertEquals(2, countKeys(verifyDeleteRequests(1)));
+  }
+
+  private ObjectMetadata mockObjectMetadata(String objectKey, long length) {
+    final ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(length);
+    Mockito.when(this.amazonS3.getObjectMetadata(this.bucketName, objectKey))
+        .thenReturn(metadata);
+    return metadata;
+  }
+
+  private List<String> createKeys(int count) {
+    final List<String> keys = new ArrayList<String>();
+    for (int i = 0; i < count; i++) {
+      keys.add(this.key + i);
+    }
+    return keys;
+  }
+
+  private ListObjectsV2Result createPage(List<String> keys, String nextContinuationToken) {
+    final ListObjectsV2Result page = new ListObjectsV2Result();
+    for (final String pageKey : keys) {
+      final S3ObjectSummary summary = new S3ObjectSummary();
+      summary.setKey(pageKey);
+      page.getObjectSummaries().add(summary);
+    }
+    page.setTruncated(nextContinuationToken != null);
+    page.setNextContinuationToken(nextContinuationToken);
+    return page;
+  }
+
+  private List<DeleteObjectsRequest> verifyDeleteRequests(int batches) {
+    final ArgumentCaptor<DeleteObjectsRequest> deleteRequest =
+        ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(batches)).deleteObjects(deleteRequest.capture());
+    for (final DeleteObjectsRequest request : deleteRequest.getAllValues()) {
+      assertEquals(this.bucketName, request.getBucketName());
+      assertTrue(request.getKeys().size() <= 1000);
+    }
+    return deleteRequest.getAllValues();
+  }
+
+  private int countKeys(List<DeleteObjectsRequest> requests) {
+    int count = 0;
+    for (final DeleteObjectsRequest request : requests) {
+      for (final KeyVersion keyVersion : request.getKeys()) {
+        assertTrue(keyVersion.getKey().startsWith(this.key));
+        count++;
+      }
+    }
+    return count;
+  }
+
   private void verifyCopyRequest(final String destinationKey) {
     final ArgumentCaptor<CopyObjectRequest> copyRequest =
         ArgumentCaptor.forClass(CopyObjectRequest.class);
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+
+import de.tschumacher.bucketservice.domain.S3SyncReport;
+import de.tschumacher.bucketservice.service.CommonS3ServiceTest;
+import de.tschumacher.bucketservice.service.DefaultS3Service;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+public class S3SyncServiceTest extends CommonS3ServiceTest {
+  private static final String PREFIX = "assets/";
+  private static final long NOW = 1500000000000L;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File localDir;
+
+  @Override
+  @Before
+  public void setUp() {
+    super.setUp();
+    this.localDir = this.folder.getRoot();
+  }
+
+  @Test
+  public void syncUpUploadsOnlyChangedFilesTest() throws IOException {
+    createLocalFile("new.txt", "new", NOW);
+    createLocalFile("unchanged.txt", "same", NOW - 1000);
+    createLocalFile("css/resized.css", "longer content", NOW - 1000);
+    mockRemoteFiles(createSummary("unchanged.txt", 4, "etag", NOW),
+        createSummary("css/resized.css", 3, "etag", NOW),
+        createSummary("removed.txt", 3, "etag", NOW));
+    Mockito.when(this.amazonS3.getObjectMetadata(this.bucketName, PREFIX + "css/resized.css"))
+        .thenReturn(new ObjectMetadata());
+
+    final S3SyncReport report = createService(false).syncUp(this.localDir, "assets");
+
+    verifyListing();
+    // only the resized file may be a compressed object and needs its metadata
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObjectMetadata(this.bucketName,
+        PREFIX + "css/resized.css");
+    assertEquals(set(PREFIX + "new.txt", PREFIX + "css/resized.css"),
+        new HashSet<String>(report.getTransferredKeys()));
+    assertEquals(Collections.singletonList(PREFIX + "unchanged.txt"), report.getSkippedKeys());
+    assertTrue(report.getDeletedKeys().isEmpty());
+    assertTrue(report.isSuccessful());
+    assertEquals(set(PREFIX + "new.txt", PREFIX + "css/resized.css"), verifyUploadedKeys(2));
+  }
+
+  @Test
+  public void syncUpComparesChecksumOfTouchedFilesTest() throws IOException {
+    final File touched = createLocalFile("touched.txt", "same", NOW + 1000);
+    createLocalFile("edited.txt", "edit", NOW + 1000);
+    mockRemoteFiles(createSummary("touched.txt", 4, "\"" + md5(touched) + "\"", NOW),
+        createSummary("edited.txt", 4, "\"" + md5(touched) + "\"", NOW));
+
+    final S3SyncReport report = createService(false).syncUp(this.localDir, PREFIX);
+
+    verifyListing();
+    assertEquals(Collections.singletonList(PREFIX + "edited.txt"), report.getTransferredKeys());
+    assertEquals(Collections.singletonList(PREFIX + "touched.txt"), report.getSkippedKeys());
+    assertEquals(set(PREFIX + "edited.txt"), verifyUploadedKeys(1));
+  }
+
+  @Test
+  public void syncUpDeletesRemoteExtrasTest() throws IOException {
+    createLocalFile("kept.txt", "kept", NOW - 1000);
+    mockRemoteFiles(createSummary("kept.txt", 4, "etag", NOW),
+        createSummary("removed.txt", 3, "etag", NOW));
+    Mockito.when(this.amazonS3.deleteObjects(ArgumentMatchers.any(DeleteObjectsRequest.class)))
+        .thenReturn(new DeleteObjectsResult(Collections.emptyList()));
+
+    final S3SyncReport report = createService(true).syncUp(this.localDir, PREFIX);
+
+    verifyListing();
+    final ArgumentCaptor<DeleteObjectsRequest> deleteRequest =
+        ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(1)).deleteObjects(deleteRequest.capture());
+    assertEquals(PREFIX + "removed.txt", deleteRequest.getValue().getKeys().get(0).getKey());
+    assertEquals(Collections.singletonList(PREFIX + "removed.txt"), report.getDeletedKeys());
+    assertEquals(Collections.singletonList(PREFIX + "kept.txt"), report.getSkippedKeys());
+  }
+
+  @Test
+  public void syncUpRejectsMissingLocalDirTest() throws IOException {
+    final File missing = new File(this.localDir, "missing");
+
+    try {
+      createService(true).syncUp(missing, PREFIX);
+      fail();
+    } catch (final FileNotFoundException e) {
+      assertTrue(e.getMessage().contains("missing"));
+    }
+  }
+
+  @Test
+  public void syncDownDownloadsOnlyChangedFilesTest() throws IOException {
+    createLocalFile("unchanged.txt", "same", NOW);
+    final File extra = createLocalFile("extra.txt", "extra", NOW);
+    mockRemoteFiles(createSummary("unchanged.txt", 4, "etag", NOW),
+        createSummary("css/new.css", 3, "etag", NOW));
+    final S3Object object = new S3Object();
+    object.setObjectContent(new ByteArrayInputStream("new".getBytes(StandardCharsets.UTF_8)));
+    Mockito.when(this.amazonS3.getObject(this.bucketName, PREFIX + "css/new.css"))
+        .thenReturn(object);
+
+    final S3SyncReport report = createService(true).syncDown(PREFIX, this.localDir);
+
+    verifyListing();
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getObject(this.bucketName,
+        PREFIX + "css/new.css");
+    final File downloaded = new File(this.localDir, "css/new.css");
+    assertEquals("new", new String(Files.readAllBytes(downloaded.toPath()),
+        StandardCharsets.UTF_8));
+    assertEquals(NOW, downloaded.lastModified());
+    assertEquals(Collections.singletonList(PREFIX + "css/new.css"), report.getTransferredKeys());
+    assertEquals(Collections.singletonList(PREFIX + "unchanged.txt"), report.getSkippedKeys());
+    assertEquals(Collections.singletonList(PREFIX + "extra.txt"), report.getDeletedKeys());
+    assertFalse(extra.exists());
+  }
+
+  @Test
+  public void syncDownRejectsKeysOutsideOfLocalDirTest() throws IOException {
+    mockRemoteFiles(createSummary("../escape.txt", 3, "etag", NOW));
+
+    final S3SyncReport report = createService(false).syncDown(PREFIX, this.localDir);
+
+    verifyListing();
+    assertFalse(report.isSuccessful());
+    assertTrue(report.getFailedKeys().containsKey(PREFIX + "../escape.txt"));
+  }
+
+  private S3SyncService createService(final boolean delete) {
+    return new DefaultS3Service(this.amazonS3, this.bucketName,
+        S3ServiceConfig.newBuilder().withSyncDelete(delete).withSyncParallelism(2).build())
+            .syncService();
+  }
+
+  private File createLocalFile(final String path, final String content, final long modified)
+      throws IOException {
+    final File file = new File(this.localDir, path);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    file.setLastModified(modified);
+    return file;
+  }
+
+  private S3ObjectSummary createSummary(final String path, final long size, final String eTag,
+      final long modified) {
+    final S3ObjectSummary summary = new S3ObjectSummary();
+    summary.setBucketName(this.bucketName);
+    summary.setKey(PREFIX + path);
+    summary.setSize(size);
+    summary.setETag(eTag);
+    summary.setLastModified(new Date(modified));
+    return summary;
+  }
+
+  private void mockRemoteFiles(final S3ObjectSummary... summaries) {
+    final ListObjectsV2Result result = new ListObjectsV2Result();
+    result.getObjectSummaries().addAll(Arrays.asList(summaries));
+    Mockito.when(this.amazonS3.listObjectsV2(ArgumentMatchers.any(ListObjectsV2Request.class)))
+        .thenReturn(result);
+  }
+
+  private void verifyListing() {
+    final ArgumentCaptor<ListObjectsV2Request> listRequest =
+        ArgumentCaptor.forClass(ListObjectsV2Request.class);
+    Mockito.verify(this.amazonS3, Mockito.times(1)).listObjectsV2(listRequest.capture());
+    assertEquals(PREFIX, listRequest.getValue().getPrefix());
+    assertNull(listRequest.getValue().getDelimiter());
+  }
+
+  private Set<String> verifyUploadedKeys(final int uploads) {
+    final ArgumentCaptor<PutObjectRequest> putRequest =
+        ArgumentCaptor.forClass(PutObjectRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(uploads)).putObject(putRequest.capture());
+    final Set<String> keys = new HashSet<String>();
+    for (final PutObjectRequest request : putRequest.getAllValues()) {
+      keys.add(request.getKey());
+    }
+    return keys;
+  }
+
+  private String md5(final File file) throws IOException {
+    return BinaryUtils.toHex(Md5Utils.computeMD5Hash(file));
+  }
+
+  private static Set<String> set(final String... keys) {
+    return new HashSet<String>(Arrays.asList(keys));
+  }
+}
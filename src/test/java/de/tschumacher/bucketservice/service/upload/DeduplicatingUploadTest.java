@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.upload;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.util.IOUtils;
+
+import de.tschumacher.bucketservice.service.DefaultS3Service;
+import de.tschumacher.bucketservice.service.S3Service;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+import de.tschumacher.bucketservice.testing.InMemoryAmazonS3;
+
+public class DeduplicatingUploadTest {
+  private static final String BUCKET = "bucket";
+  private static final String CONTENT_HASH =
+      "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private InMemoryAmazonS3 amazonS3;
+  private List<String> operations;
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    this.operations = Collections.synchronizedList(new ArrayList<String>());
+    this.amazonS3 = new InMemoryAmazonS3(BUCKET).withFailureInjector((operation, key) -> {
+      this.operations.add(operation + " " + key);
+      return null;
+    });
+    this.file = this.folder.newFile();
+    Files.write(this.file.toPath(), "hello".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void skipIdenticalUploadsOnlyChangedContentTest() throws IOException {
+    final S3UploadService service = createService(DeduplicationMode.SKIP_IDENTICAL);
+
+    service.uploadFile(this.file, "a");
+    service.uploadFile(this.file, "a");
+    Files.write(this.file.toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+    service.uploadFile(this.file, "a");
+
+    assertEquals(Arrays.asList("HeadObject a", "PutObject a", "HeadObject a", "PutObject a"),
+        this.operations);
+    assertEquals("changed", read("a"));
+  }
+
+  @Test
+  public void skipIdenticalChecksKeysChangedElsewhereTest() throws IOException {
+    final S3Service service = new DefaultS3Service(this.amazonS3, BUCKET,
+        S3ServiceConfig.newBuilder().withDeduplicationMode(DeduplicationMode.SKIP_IDENTICAL)
+            .build());
+    service.uploadService().uploadFile(this.file, "a");
+    service.modificationService().deleteFile("a");
+    this.operations.clear();
+
+    service.uploadService().uploadFile(this.file, "a");
+
+    assertEquals(Arrays.asList("HeadObject a", "PutObject a"), this.operations);
+    assertEquals("hello", read("a"));
+  }
+
+  @Test
+  public void contentCopyStoresContentOnceTest() throws IOException {
+    final S3UploadService service = createService(DeduplicationMode.CONTENT_COPY);
+    final String contentKey = S3ServiceConfig.DEFAULT_CONTENT_PREFIX + CONTENT_HASH;
+
+    service.uploadFile(this.file, "a");
+    service.uploadFile(this.file, "b");
+
+    assertEquals(Arrays.asList("HeadObject " + contentKey, "PutObject " + contentKey,
+        "CopyObject a", "CopyObject b"), this.operations);
+    assertEquals("hello", read("a"));
+    assertEquals("hello", read("b"));
+    assertEquals(CONTENT_HASH, this.amazonS3.getObjectMetadata(BUCKET, "b")
+        .getUserMetaDataOf(DeduplicatingUpload.CONTENT_HASH_METADATA));
+  }
+
+  @Test
+  public void contentCopyReusesStoredContentTest() throws IOException {
+    final String contentKey = S3ServiceConfig.DEFAULT_CONTENT_PREFIX + CONTENT_HASH;
+    createService(DeduplicationMode.CONTENT_COPY).uploadFile(this.file, "a");
+    this.operations.clear();
+
+    createService(DeduplicationMode.CONTENT_COPY).uploadFile(this.file, "b");
+
+    assertEquals(Arrays.asList("HeadObject " + contentKey, "CopyObject b"), this.operations);
+  }
+
+  @Test
+  public void contentCopyRestoresDeletedContentTest() throws IOException {
+    final String contentKey = S3ServiceConfig.DEFAULT_CONTENT_PREFIX + CONTENT_HASH;
+    final S3UploadService service = createService(DeduplicationMode.CONTENT_COPY);
+    service.uploadFile(this.file, "a");
+    this.amazonS3.deleteObject(BUCKET, contentKey);
+    this.operations.clear();
+
+    service.uploadFile(this.file, "b");
+
+    assertEquals(Arrays.asList("CopyObject b", "HeadObject " + contentKey,
+        "PutObject " + contentKey, "CopyObject b"), this.operations);
+    assertArrayEquals("hello".getBytes(StandardCharsets.UTF_8),
+        IOUtils.toByteArray(this.amazonS3.getObject(BUCKET, "b").getObjectContent()));
+  }
+
+  private String read(final String key) throws IOException {
+    return IOUtils.toString(this.amazonS3.getObject(BUCKET, key).getObjectContent());
+  }
+
+  private S3UploadService createService(final DeduplicationMode mode) {
+    return new DefaultS3UploadService(this.amazonS3, BUCKET,
+        S3ServiceConfig.newBuilder().withDeduplicationMode(mode).build());
+  }
+}
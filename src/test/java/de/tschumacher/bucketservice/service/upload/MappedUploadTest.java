@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.service.upload;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.IOUtils;
+
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+import de.tschumacher.bucketservice.testing.InMemoryAmazonS3;
+
+public class MappedUploadTest {
+  private static final String BUCKET = "bucket";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private InMemoryAmazonS3 amazonS3;
+  private List<String> digests;
+  private Map<Integer, String> partDigests;
+
+  @Before
+  public void setUp() {
+    this.digests = Collections.synchronizedList(new ArrayList<String>());
+    this.partDigests = Collections.synchronizedMap(new TreeMap<Integer, String>());
+    this.amazonS3 = new InMemoryAmazonS3(BUCKET) {
+      @Override
+      public PutObjectResult putObject(final PutObjectRequest request) {
+        MappedUploadTest.this.digests.add(request.getMetadata().getContentMD5());
+        return super.putObject(request);
+      }
+
+      @Override
+      public UploadPartResult uploadPart(final UploadPartRequest request) {
+        MappedUploadTest.this.partDigests.put(request.getPartNumber(), request.getMd5Digest());
+        return super.uploadPart(request);
+      }
+    };
+  }
+
+  @Test
+  public void mappedSingleUploadTest() throws Exception {
+    final byte[] content = createContent(100000);
+    final File file = createFile(content);
+
+    createService(S3ServiceConfig.newBuilder()).uploadFile(file, "a");
+
+    assertArrayEquals(content, read("a"));
+    assertEquals(Arrays.asList(md5(content, 0, content.length)), this.digests);
+  }
+
+  @Test
+  public void mappedMultipartUploadTest() throws Exception {
+    final int partSize = (int) S3ServiceConfig.MIN_PART_SIZE;
+    final byte[] content = createContent(2 * partSize + 1234);
+    final File file = createFile(content);
+
+    createService(S3ServiceConfig.newBuilder().withMultipartUpload(true)
+        .withMultipartThreshold(partSize).withPartSize(partSize)).uploadFile(file, "a");
+
+    assertArrayEquals(content, read("a"));
+    assertEquals(Arrays.asList(md5(content, 0, partSize), md5(content, partSize, partSize),
+        md5(content, 2 * partSize, 1234)), Arrays.asList(this.partDigests.values().toArray()));
+  }
+
+  @Test
+  public void byteBufferInputStreamSupportsResetTest() throws IOException {
+    final ByteBufferInputStream inputStream =
+        new ByteBufferInputStream(ByteBuffer.wrap(new byte[] {1, 2, 3, 4}));
+
+    assertEquals(1, inputStream.read());
+    inputStream.mark(Integer.MAX_VALUE);
+    assertEquals(1, inputStream.skip(1));
+    final byte[] buffer = new byte[4];
+    assertEquals(2, inputStream.read(buffer, 0, 4));
+    assertEquals(-1, inputStream.read(buffer, 0, 4));
+    inputStream.reset();
+
+    assertEquals(3, inputStream.available());
+    assertArrayEquals(new byte[] {2, 3, 4}, IOUtils.toByteArray(inputStream));
+  }
+
+  private S3UploadService createService(final S3ServiceConfig.Builder builder) {
+    return new DefaultS3UploadService(this.amazonS3, BUCKET,
+        builder.withMemoryMappedUpload(true).build());
+  }
+
+  private File createFile(final byte[] content) throws IOException {
+    final File file = this.folder.newFile();
+    Files.write(file.toPath(), content);
+    return file;
+  }
+
+  private byte[] read(final String key) throws IOException {
+    return IOUtils.toByteArray(this.amazonS3.getObject(BUCKET, key).getObjectContent());
+  }
+
+  private static byte[] createContent(final int size) {
+    final byte[] content = new byte[size];
+    new Random(42).nextBytes(content);
+    return content;
+  }
+
+  private static String md5(final byte[] content, final int offset, final int length)
+      throws NoSuchAlgorithmException {
+    final MessageDigest digest = MessageDigest.getInstance("MD5");
+    digest.update(content, offset, length);
+    return BinaryUtils.toBase64(digest.digest());
+  }
+}
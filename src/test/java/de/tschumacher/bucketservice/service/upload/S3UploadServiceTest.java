@@ -13,28 +13,64 @@
  */
 package de.tschumacher.bucketservice.service.upload;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
 import com.amazonaws.services.s3.model.GroupGrantee;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
 import com.amazonaws.services.s3.model.Permission;
 import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
 
 import de.tschumacher.bucketservice.data.DataCreater;
 import de.tschumacher.bucketservice.service.CommonS3ServiceTest;
+import de.tschumacher.bucketservice.service.S3ChangeListener;
+import de.tschumacher.bucketservice.service.S3Executors;
+import de.tschumacher.bucketservice.service.S3Multipart;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
 
 public class S3UploadServiceTest extends CommonS3ServiceTest {
 
+  private static final long PART_SIZE = S3ServiceConfig.MIN_PART_SIZE;
+
   private S3UploadService service;
+  private S3UploadService multipartService;
+  private ExecutorService executor;
   private String key;
+  private String uploadId;
 
   @Override
   @Before
@@ -42,6 +78,17 @@ public class S3UploadServiceTest extends CommonS3ServiceTest {
     super.setUp();
     this.key = DataCreater.createString();
     this.service = new DefaultS3UploadService(this.amazonS3, this.bucketName);
+    this.uploadId = DataCreater.createString();
+    this.executor = S3Executors.newTransferExecutor(2);
+    this.multipartService = new DefaultS3UploadService(this.amazonS3, this.bucketName,
+        S3ServiceConfig.newBuilder().withMultipartUpload(true).withMultipartThreshold(PART_SIZE)
+            .withPartSize(PART_SIZE).withParallelism(2).build(),
+        this.executor);
+  }
+
+  @After
+  public void shutdownExecutor() {
+    this.executor.shutdownNow();
   }
 
   @Test
@@ -56,6 +103,75 @@ public class S3UploadServiceTest extends CommonS3ServiceTest {
     Mockito.verifyNoMoreInteractions(file);
   }
 
+  @Test
+  public void uploadPublicFileCachesBucketAclTest() {
+    final File file = Mockito.mock(File.class);
+
+    this.service.uploadPublicFile(file, this.key);
+    this.service.uploadPublicFile(file, this.key);
+
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getBucketAcl(this.bucketName);
+    final ArgumentCaptor<PutObjectRequest> putRequest =
+        ArgumentCaptor.forClass(PutObjectRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(2)).putObject(putRequest.capture());
+    for (final PutObjectRequest request : putRequest.getAllValues()) {
+      assertPutRequest(request, file);
+      assertPutRequestPublicAccess(request);
+    }
+  }
+
+  @Test
+  public void uploadPublicFileFetchesBucketAclEachTimeTest() {
+    final File file = Mockito.mock(File.class);
+    final S3UploadService uncachedService = new DefaultS3UploadService(this.amazonS3,
+        this.bucketName,
+        S3ServiceConfig.newBuilder().withPublicAclMode(PublicAclMode.BUCKET_ACL).build());
+
+    uncachedService.uploadPublicFile(file, this.key);
+    uncachedService.uploadPublicFile(file, this.key);
+
+    Mockito.verify(this.amazonS3, Mockito.times(2)).getBucketAcl(this.bucketName);
+    Mockito.verify(this.amazonS3, Mockito.times(2))
+        .putObject(ArgumentMatchers.any(PutObjectRequest.class));
+  }
+
+  @Test
+  public void uploadPublicFileCannedAclTest() {
+    final File file = Mockito.mock(File.class);
+    final S3UploadService cannedService = new DefaultS3UploadService(this.amazonS3,
+        this.bucketName,
+        S3ServiceConfig.newBuilder().withPublicAclMode(PublicAclMode.CANNED_PUBLIC_READ).build());
+
+    cannedService.uploadPublicFile(file, this.key);
+
+    final ArgumentCaptor<PutObjectRequest> putRequest =
+        ArgumentCaptor.forClass(PutObjectRequest.class);
+    verifyPutRequest(file, putRequest);
+    assertNull(putRequest.getValue().getAccessControlList());
+    assertEquals(CannedAccessControlList.PublicRead, putRequest.getValue().getCannedAcl());
+  }
+
+  @Test
+  public void uploadPublicFilesTest() {
+    final S3UploadService uncachedService = new DefaultS3UploadService(this.amazonS3,
+        this.bucketName,
+        S3ServiceConfig.newBuilder().withPublicAclMode(PublicAclMode.BUCKET_ACL).build());
+    final Map<String, File> files = new HashMap<String, File>();
+    for (int i = 0; i < 5; i++) {
+      files.put(DataCreater.createString(), Mockito.mock(File.class));
+    }
+
+    uncachedService.uploadPublicFiles(files);
+
+    Mockito.verify(this.amazonS3, Mockito.times(1)).getBucketAcl(this.bucketName);
+    final ArgumentCaptor<PutObjectRequest> putRequest =
+        ArgumentCaptor.forClass(PutObjectRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(files.size())).putObject(putRequest.capture());
+    for (final PutObjectRequest request : putRequest.getAllValues()) {
+      assertEquals(files.get(request.getKey()), request.getFile());
+      assertPutRequestPublicAccess(request);
+    }
+  }
 
   @Test
   public void uploadFileTest() {
@@ -69,6 +185,293 @@ public class S3UploadServiceTest extends CommonS3ServiceTest {
 
 
 
+  @Test
+  public void uploadFileNotifiesChangeListenerTest() {
+    final File file = Mockito.mock(File.class);
+    final S3ChangeListener changeListener = Mockito.mock(S3ChangeListener.class);
+    final DefaultS3UploadService listenedService =
+        new DefaultS3UploadService(this.amazonS3, this.bucketName);
+    listenedService.addChangeListener(changeListener);
+
+    listenedService.uploadFile(file, this.key);
+
+    verifyPrivatePutRequest(file);
+    Mockito.verify(changeListener, Mockito.times(1)).objectChanged(this.key);
+  }
+
+  @Test
+  public void uploadFileBelowThresholdTest() {
+    final File file = createFile(PART_SIZE);
+
+    this.multipartService.uploadFile(file, this.key);
+
+    verifyPrivatePutRequest(file);
+  }
+
+  @Test
+  public void multipartUploadFileTest() {
+    final File file = createFile(2 * PART_SIZE + 1);
+    mockInitiate();
+    Mockito.when(this.amazonS3.uploadPart(ArgumentMatchers.any(UploadPartRequest.class)))
+        .thenAnswer(partAnswer());
+
+    this.multipartService.uploadFile(file, this.key);
+
+    verifyInitiate();
+    final ArgumentCaptor<UploadPartRequest> partRequests =
+        ArgumentCaptor.forClass(UploadPartRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(3)).uploadPart(partRequests.capture());
+    assertPartRequests(file, partRequests);
+    verifyComplete(3);
+  }
+
+  @Test
+  public void multipartUploadStaysWithinPartLimitTest() {
+    final File file = createFile(S3Multipart.MAX_PARTS * PART_SIZE + 1);
+    mockInitiate();
+    Mockito.when(this.amazonS3.uploadPart(ArgumentMatchers.any(UploadPartRequest.class)))
+        .thenAnswer(partAnswer());
+
+    this.multipartService.uploadFile(file, this.key);
+
+    verifyInitiate();
+    final ArgumentCaptor<UploadPartRequest> partRequests =
+        ArgumentCaptor.forClass(UploadPartRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(S3Multipart.MAX_PARTS))
+        .uploadPart(partRequests.capture());
+    long totalSize = 0;
+    for (final UploadPartRequest partRequest : partRequests.getAllValues()) {
+      assertEquals((partRequest.getPartNumber() - 1) * (PART_SIZE + 1),
+          partRequest.getFileOffset());
+      totalSize += partRequest.getPartSize();
+    }
+    assertEquals(file.length(), totalSize);
+    verifyComplete(S3Multipart.MAX_PARTS);
+  }
+
+  @Test
+  public void multipartUploadRetriesFailedPartTest() {
+    final File file = createFile(2 * PART_SIZE);
+    mockInitiate();
+    Mockito.when(this.amazonS3.uploadPart(ArgumentMatchers.any(UploadPartRequest.class)))
+        .thenThrow(new AmazonClientException("connection reset")).thenAnswer(partAnswer());
+
+    this.multipartService.uploadFile(file, this.key);
+
+    verifyInitiate();
+    Mockito.verify(this.amazonS3, Mockito.times(3))
+        .uploadPart(ArgumentMatchers.any(UploadPartRequest.class));
+    verifyComplete(2);
+  }
+
+  @Test
+  public void multipartUploadLeavesServerErrorsToClientRetriesTest() {
+    final File file = createFile(2 * PART_SIZE);
+    final AmazonServiceException internalError = new AmazonServiceException("internal error");
+    internalError.setStatusCode(500);
+    mockInitiate();
+    Mockito.when(this.amazonS3.uploadPart(ArgumentMatchers.any(UploadPartRequest.class)))
+        .thenThrow(internalError).thenAnswer(partAnswer());
+
+    try {
+      this.multipartService.uploadFile(file, this.key);
+      fail();
+    } catch (final AmazonServiceException e) {
+      assertSame(internalError, e);
+    }
+
+    verifyInitiate();
+    Mockito.verify(this.amazonS3, Mockito.atMost(2))
+        .uploadPart(ArgumentMatchers.any(UploadPartRequest.class));
+    Mockito.verify(this.amazonS3).abortMultipartUpload(
+        ArgumentMatchers.any(AbortMultipartUploadRequest.class));
+  }
+
+  @Test
+  public void multipartUploadAbortsOnFatalErrorTest() {
+    final File file = createFile(2 * PART_SIZE);
+    final AmazonServiceException accessDenied = new AmazonServiceException("access denied");
+    accessDenied.setStatusCode(403);
+    mockInitiate();
+    Mockito.when(this.amazonS3.uploadPart(ArgumentMatchers.any(UploadPartRequest.class)))
+        .thenThrow(accessDenied);
+
+    try {
+      this.multipartService.uploadFile(file, this.key);
+      fail();
+    } catch (final AmazonServiceException e) {
+      assertSame(accessDenied, e);
+    }
+
+    verifyInitiate();
+    Mockito.verify(this.amazonS3, Mockito.atLeastOnce())
+        .uploadPart(ArgumentMatchers.any(UploadPartRequest.class));
+    final ArgumentCaptor<AbortMultipartUploadRequest> abortRequest =
+        ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(1)).abortMultipartUpload(abortRequest.capture());
+    assertEquals(this.uploadId, abortRequest.getValue().getUploadId());
+    assertEquals(this.key, abortRequest.getValue().getKey());
+  }
+
+  @Test
+  public void uploadStreamWithKnownLengthTest() throws IOException {
+    final InputStream inputStream = new ByteArrayInputStream(new byte[100]);
+
+    this.service.uploadStream(inputStream, this.key, 100);
+
+    final PutObjectRequest request = verifyStreamPutRequest();
+    assertSame(inputStream, request.getInputStream());
+    assertEquals(100, request.getMetadata().getContentLength());
+  }
+
+  @Test
+  public void uploadStreamWithUnknownSmallLengthTest() throws IOException {
+    final byte[] content = createContent(100);
+
+    this.multipartService.uploadStream(new ByteArrayInputStream(content), this.key);
+
+    final PutObjectRequest request = verifyStreamPutRequest();
+    assertEquals(content.length, request.getMetadata().getContentLength());
+    assertArrayEquals(content, readAll(request.getInputStream()));
+  }
+
+  @Test
+  public void uploadStreamWithUnknownLengthUsesMultipartTest() throws IOException {
+    final byte[] content = createContent((int) (2 * PART_SIZE + 1));
+    final Map<Integer, byte[]> parts = new ConcurrentHashMap<Integer, byte[]>();
+    mockInitiate();
+    Mockito.when(this.amazonS3.uploadPart(ArgumentMatchers.any(UploadPartRequest.class)))
+        .thenAnswer(invocation -> {
+          final UploadPartRequest request = invocation.getArgument(0);
+          parts.put(request.getPartNumber(), readAll(request.getInputStream()));
+          return partAnswer().answer(invocation);
+        });
+
+    this.multipartService.uploadStream(new ByteArrayInputStream(content), this.key);
+
+    verifyInitiate();
+    Mockito.verify(this.amazonS3, Mockito.times(3))
+        .uploadPart(ArgumentMatchers.any(UploadPartRequest.class));
+    verifyComplete(3);
+    final ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+    for (int partNumber = 1; partNumber <= 3; partNumber++) {
+      uploaded.write(parts.get(partNumber));
+    }
+    assertArrayEquals(content, uploaded.toByteArray());
+  }
+
+  @Test
+  public void uploadStreamScalesPartSizeToKnownLengthTest() throws IOException {
+    final byte[] content = createContent((int) (PART_SIZE + 1));
+    mockInitiate();
+    Mockito.when(this.amazonS3.uploadPart(ArgumentMatchers.any(UploadPartRequest.class)))
+        .thenAnswer(partAnswer());
+
+    this.multipartService.uploadStream(new ByteArrayInputStream(content), this.key,
+        S3Multipart.MAX_PARTS * PART_SIZE + 1);
+
+    verifyInitiate();
+    final ArgumentCaptor<UploadPartRequest> partRequest =
+        ArgumentCaptor.forClass(UploadPartRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(1)).uploadPart(partRequest.capture());
+    assertEquals(PART_SIZE + 1, partRequest.getValue().getPartSize());
+    verifyComplete(1);
+  }
+
+  @Test
+  public void createPresignedUploadUrlTest() {
+    this.service.createPresignedUploadUrl(this.key, Duration.ofMinutes(15));
+
+    final ArgumentCaptor<GeneratePresignedUrlRequest> request =
+        ArgumentCaptor.forClass(GeneratePresignedUrlRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(1)).generatePresignedUrl(request.capture());
+    assertEquals(this.bucketName, request.getValue().getBucketName());
+    assertEquals(this.key, request.getValue().getKey());
+    assertEquals(HttpMethod.PUT, request.getValue().getMethod());
+  }
+
+  private byte[] createContent(final int length) {
+    final byte[] content = new byte[length];
+    new Random(length).nextBytes(content);
+    return content;
+  }
+
+  private byte[] readAll(final InputStream inputStream) throws IOException {
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[8192];
+    int read;
+    while ((read = inputStream.read(buffer)) != -1) {
+      content.write(buffer, 0, read);
+    }
+    return content.toByteArray();
+  }
+
+  private PutObjectRequest verifyStreamPutRequest() {
+    final ArgumentCaptor<PutObjectRequest> putRequest =
+        ArgumentCaptor.forClass(PutObjectRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(1)).putObject(putRequest.capture());
+    assertEquals(this.bucketName, putRequest.getValue().getBucketName());
+    assertEquals(this.key, putRequest.getValue().getKey());
+    assertNull(putRequest.getValue().getFile());
+    return putRequest.getValue();
+  }
+
+  private File createFile(final long length) {
+    final File file = Mockito.mock(File.class);
+    Mockito.when(file.length()).thenReturn(length);
+    return file;
+  }
+
+  private void mockInitiate() {
+    final InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+    result.setUploadId(this.uploadId);
+    Mockito.when(
+        this.amazonS3.initiateMultipartUpload(
+            ArgumentMatchers.any(InitiateMultipartUploadRequest.class))).thenReturn(result);
+  }
+
+  private Answer<UploadPartResult> partAnswer() {
+    return invocation -> {
+      final UploadPartRequest request = invocation.getArgument(0);
+      final UploadPartResult result = new UploadPartResult();
+      result.setPartNumber(request.getPartNumber());
+      result.setETag("etag-" + request.getPartNumber());
+      return result;
+    };
+  }
+
+  private void verifyInitiate() {
+    final ArgumentCaptor<InitiateMultipartUploadRequest> initiateRequest =
+        ArgumentCaptor.forClass(InitiateMultipartUploadRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(1)).initiateMultipartUpload(
+        initiateRequest.capture());
+    assertEquals(this.bucketName, initiateRequest.getValue().getBucketName());
+    assertEquals(this.key, initiateRequest.getValue().getKey());
+  }
+
+  private void assertPartRequests(File file, ArgumentCaptor<UploadPartRequest> partRequests) {
+    long totalSize = 0;
+    for (final UploadPartRequest partRequest : partRequests.getAllValues()) {
+      assertEquals(this.uploadId, partRequest.getUploadId());
+      assertEquals(file, partRequest.getFile());
+      assertEquals((partRequest.getPartNumber() - 1) * PART_SIZE, partRequest.getFileOffset());
+      totalSize += partRequest.getPartSize();
+    }
+    assertEquals(file.length(), totalSize);
+  }
+
+  private void verifyComplete(final int parts) {
+    final ArgumentCaptor<CompleteMultipartUploadRequest> completeRequest =
+        ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+    Mockito.verify(this.amazonS3, Mockito.times(1)).completeMultipartUpload(
+        completeRequest.capture());
+    assertEquals(this.uploadId, completeRequest.getValue().getUploadId());
+    assertEquals(parts, completeRequest.getValue().getPartETags().size());
+    for (int i = 0; i < parts; i++) {
+      assertEquals(i + 1, completeRequest.getValue().getPartETags().get(i).getPartNumber());
+    }
+  }
+
   private void verifyPrivatePutRequest(File file) {
     final ArgumentCaptor<PutObjectRequest> putRequest =
         ArgumentCaptor.forClass(PutObjectRequest.class);
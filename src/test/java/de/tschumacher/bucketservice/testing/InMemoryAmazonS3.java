@@ -0,0 +1,810 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.testing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.HttpMethod;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AccessControlList;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.Bucket;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyObjectResult;
+import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.CopyPartResult;
+import com.amazonaws.services.s3.model.CreateBucketRequest;
+import com.amazonaws.services.s3.model.DeleteObjectRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.DeleteObjectsResult.DeletedObject;
+import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PartListing;
+import com.amazonaws.services.s3.model.PartSummary;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import com.amazonaws.util.SdkHttpUtils;
+
+public class InMemoryAmazonS3 extends AbstractAmazonS3 {
+  public static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+  private static final int DEFAULT_MAX_KEYS = 1000;
+
+  private final Map<String, NavigableMap<String, StoredObject>> buckets =
+      new ConcurrentHashMap<String, NavigableMap<String, StoredObject>>();
+  private final Map<String, AccessControlList> bucketAcls =
+      new ConcurrentHashMap<String, AccessControlList>();
+  private final Map<String, PendingUpload> uploads = new ConcurrentHashMap<String, PendingUpload>();
+  private final AtomicLong uploadIds = new AtomicLong();
+  private volatile Clock clock = Clock.systemUTC();
+  private volatile long minLatencyNanos;
+  private volatile long maxLatencyNanos;
+  private volatile S3FailureInjector failureInjector;
+
+  public InMemoryAmazonS3(final String... bucketNames) {
+    super();
+    for (final String bucketName : bucketNames) {
+      createBucket(bucketName);
+    }
+  }
+
+  public InMemoryAmazonS3 withLatency(final Duration latency) {
+    return withLatency(latency, latency);
+  }
+
+  public InMemoryAmazonS3 withLatency(final Duration minLatency, final Duration maxLatency) {
+    if (minLatency.compareTo(maxLatency) > 0) {
+      throw new IllegalArgumentException("min latency must not exceed max latency");
+    }
+    this.minLatencyNanos = minLatency.toNanos();
+    this.maxLatencyNanos = maxLatency.toNanos();
+    return this;
+  }
+
+  public InMemoryAmazonS3 withFailureInjector(final S3FailureInjector failureInjector) {
+    this.failureInjector = failureInjector;
+    return this;
+  }
+
+  public InMemoryAmazonS3 withClock(final Clock clock) {
+    this.clock = clock;
+    return this;
+  }
+
+  @Override
+  public Bucket createBucket(final String bucketName) {
+    this.buckets.putIfAbsent(bucketName, new ConcurrentSkipListMap<String, StoredObject>());
+    return new Bucket(bucketName);
+  }
+
+  @Override
+  public Bucket createBucket(final CreateBucketRequest request) {
+    return createBucket(request.getBucketName());
+  }
+
+  @Override
+  public boolean doesBucketExistV2(final String bucketName) {
+    return this.buckets.containsKey(bucketName);
+  }
+
+  @Override
+  public List<Bucket> listBuckets() {
+    final List<Bucket> buckets = new ArrayList<Bucket>();
+    for (final String bucketName : this.buckets.keySet()) {
+      buckets.add(new Bucket(bucketName));
+    }
+    return buckets;
+  }
+
+  @Override
+  public void deleteBucket(final String bucketName) {
+    enter("DeleteBucket", null);
+    if (!bucket(bucketName).isEmpty()) {
+      throw error(409, "BucketNotEmpty", bucketName);
+    }
+    this.buckets.remove(bucketName);
+    this.bucketAcls.remove(bucketName);
+  }
+
+  @Override
+  public AccessControlList getBucketAcl(final String bucketName) {
+    enter("GetBucketAcl", null);
+    bucket(bucketName);
+    final AccessControlList acl = this.bucketAcls.get(bucketName);
+    return acl == null ? new AccessControlList() : acl;
+  }
+
+  @Override
+  public void setBucketAcl(final String bucketName, final AccessControlList acl) {
+    enter("PutBucketAcl", null);
+    bucket(bucketName);
+    this.bucketAcls.put(bucketName, acl);
+  }
+
+  @Override
+  public PutObjectResult putObject(final PutObjectRequest request) {
+    enter("PutObject", request.getKey());
+    final NavigableMap<String, StoredObject> objects = bucket(request.getBucketName());
+    final byte[] content = request.getFile() != null ? readFile(request.getFile())
+        : readStream(request.getInputStream(), Long.MAX_VALUE);
+    final StoredObject object =
+        new StoredObject(content, request.getMetadata(), now());
+    objects.put(request.getKey(), object);
+    final PutObjectResult result = new PutObjectResult();
+    result.setETag(object.eTag);
+    result.setMetadata(object.toMetadata());
+    return result;
+  }
+
+  @Override
+  public PutObjectResult putObject(final String bucketName, final String key, final File file) {
+    return putObject(new PutObjectRequest(bucketName, key, file));
+  }
+
+  @Override
+  public PutObjectResult putObject(final String bucketName, final String key,
+      final InputStream input, final ObjectMetadata metadata) {
+    return putObject(new PutObjectRequest(bucketName, key, input, metadata));
+  }
+
+  @Override
+  public PutObjectResult putObject(final String bucketName, final String key,
+      final String content) {
+    final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    final ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(bytes.length);
+    metadata.setContentType("text/plain");
+    return putObject(bucketName, key, new ByteArrayInputStream(bytes), metadata);
+  }
+
+  @Override
+  public S3Object getObject(final String bucketName, final String key) {
+    return getObject(new GetObjectRequest(bucketName, key));
+  }
+
+  @Override
+  public S3Object getObject(final GetObjectRequest request) {
+    enter("GetObject", request.getKey());
+    final StoredObject object = object(request.getBucketName(), request.getKey());
+    if (!object.matches(request.getMatchingETagConstraints(),
+        request.getNonmatchingETagConstraints(), request.getModifiedSinceConstraint(),
+        request.getUnmodifiedSinceConstraint())) {
+      return null;
+    }
+    final int length = object.content.length;
+    final ObjectMetadata metadata = object.toMetadata();
+    int from = 0;
+    int to = length - 1;
+    final long[] range = request.getRange();
+    if (range != null) {
+      if (range[0] >= length) {
+        throw error(416, "InvalidRange", request.getKey());
+      }
+      from = (int) range[0];
+      to = (int) Math.min(range[1], length - 1);
+      metadata.setHeader(Headers.CONTENT_RANGE, "bytes " + from + "-" + to + "/" + length);
+    }
+    final int contentLength = Math.max(0, to - from + 1);
+    metadata.setContentLength(contentLength);
+    final S3Object s3Object = new S3Object();
+    s3Object.setBucketName(request.getBucketName());
+    s3Object.setKey(request.getKey());
+    s3Object.setObjectMetadata(metadata);
+    s3Object.setObjectContent(new S3ObjectInputStream(
+        new ByteArrayInputStream(object.content, from, contentLength), null));
+    return s3Object;
+  }
+
+  @Override
+  public ObjectMetadata getObject(final GetObjectRequest request, final File destinationFile) {
+    final S3Object s3Object = getObject(request);
+    if (s3Object == null) {
+      return null;
+    }
+    try (InputStream inputStream = s3Object.getObjectContent();
+        OutputStream outputStream = Files.newOutputStream(destinationFile.toPath())) {
+      final byte[] buffer = new byte[64 * 1024];
+      int read;
+      while ((read = inputStream.read(buffer)) >= 0) {
+        outputStream.write(buffer, 0, read);
+      }
+    } catch (final IOException e) {
+      throw new AmazonClientException("unable to write " + destinationFile, e);
+    }
+    return s3Object.getObjectMetadata();
+  }
+
+  @Override
+  public ObjectMetadata getObjectMetadata(final String bucketName, final String key) {
+    return getObjectMetadata(new GetObjectMetadataRequest(bucketName, key));
+  }
+
+  @Override
+  public ObjectMetadata getObjectMetadata(final GetObjectMetadataRequest request) {
+    enter("HeadObject", request.getKey());
+    return object(request.getBucketName(), request.getKey()).toMetadata();
+  }
+
+  @Override
+  public boolean doesObjectExist(final String bucketName, final String key) {
+    enter("HeadObject", key);
+    return bucket(bucketName).containsKey(key);
+  }
+
+  @Override
+  public ListObjectsV2Result listObjectsV2(final String bucketName) {
+    return listObjectsV2(new ListObjectsV2Request().withBucketName(bucketName));
+  }
+
+  @Override
+  public ListObjectsV2Result listObjectsV2(final String bucketName, final String prefix) {
+    return listObjectsV2(new ListObjectsV2Request().withBucketName(bucketName).withPrefix(prefix));
+  }
+
+  @Override
+  public ListObjectsV2Result listObjectsV2(final ListObjectsV2Request request) {
+    enter("ListObjectsV2", request.getPrefix());
+    final NavigableMap<String, StoredObject> objects = bucket(request.getBucketName());
+    final String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+    final String delimiter = emptyToNull(request.getDelimiter());
+    final String startAfter = emptyToNull(request.getStartAfter());
+    final String continuationToken = emptyToNull(request.getContinuationToken());
+    final int maxKeys = request.getMaxKeys() == null ? DEFAULT_MAX_KEYS : request.getMaxKeys();
+
+    String after = continuationToken != null ? decodeToken(continuationToken) : startAfter;
+    final boolean inclusive = after == null || after.compareTo(prefix) < 0;
+    if (inclusive) {
+      after = prefix;
+    }
+    final ListObjectsV2Result result = new ListObjectsV2Result();
+    final Set<String> commonPrefixes = new LinkedHashSet<String>();
+    String last = null;
+    for (final Map.Entry<String, StoredObject> entry : objects.tailMap(after, inclusive)
+        .entrySet()) {
+      final String key = entry.getKey();
+      if (!key.startsWith(prefix)) {
+        break;
+      }
+      final int index = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+      final String commonPrefix =
+          index < 0 ? null : key.substring(0, index + delimiter.length());
+      if (commonPrefix != null && commonPrefixes.contains(commonPrefix)) {
+        continue;
+      }
+      if (result.getObjectSummaries().size() + commonPrefixes.size() >= maxKeys) {
+        result.setTruncated(true);
+        result.setNextContinuationToken(encodeToken(last));
+        break;
+      }
+      if (commonPrefix == null) {
+        result.getObjectSummaries().add(entry.getValue().toSummary(request.getBucketName(), key));
+        last = key;
+      } else {
+        commonPrefixes.add(commonPrefix);
+        last = commonPrefix + Character.MAX_VALUE;
+      }
+    }
+    result.setBucketName(request.getBucketName());
+    result.setPrefix(request.getPrefix());
+    result.setDelimiter(request.getDelimiter());
+    result.setStartAfter(request.getStartAfter());
+    result.setContinuationToken(request.getContinuationToken());
+    result.setMaxKeys(maxKeys);
+    result.setCommonPrefixes(new ArrayList<String>(commonPrefixes));
+    result.setKeyCount(result.getObjectSummaries().size() + commonPrefixes.size());
+    return result;
+  }
+
+  @Override
+  public CopyObjectResult copyObject(final String sourceBucketName, final String sourceKey,
+      final String destinationBucketName, final String destinationKey) {
+    return copyObject(
+        new CopyObjectRequest(sourceBucketName, sourceKey, destinationBucketName, destinationKey));
+  }
+
+  @Override
+  public CopyObjectResult copyObject(final CopyObjectRequest request) {
+    enter("CopyObject", request.getDestinationKey());
+    final StoredObject source = object(request.getSourceBucketName(), request.getSourceKey());
+    final NavigableMap<String, StoredObject> destination =
+        bucket(request.getDestinationBucketName());
+    if (!source.matches(request.getMatchingETagConstraints(),
+        request.getNonmatchingETagConstraints(), request.getModifiedSinceConstraint(),
+        request.getUnmodifiedSinceConstraint())) {
+      return null;
+    }
+    final StoredObject object = request.getNewObjectMetadata() == null
+        ? new StoredObject(source.content, source.contentType, source.userMetadata, now())
+        : new StoredObject(source.content, request.getNewObjectMetadata(), now());
+    destination.put(request.getDestinationKey(), object);
+    final CopyObjectResult result = new CopyObjectResult();
+    result.setETag(object.eTag);
+    result.setLastModifiedDate(object.lastModified);
+    return result;
+  }
+
+  @Override
+  public InitiateMultipartUploadResult initiateMultipartUpload(
+      final InitiateMultipartUploadRequest request) {
+    enter("CreateMultipartUpload", request.getKey());
+    bucket(request.getBucketName());
+    final String uploadId = Long.toString(this.uploadIds.incrementAndGet());
+    this.uploads.put(uploadId, new PendingUpload(request.getBucketName(), request.getKey(),
+        request.getObjectMetadata()));
+    final InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+    result.setBucketName(request.getBucketName());
+    result.setKey(request.getKey());
+    result.setUploadId(uploadId);
+    return result;
+  }
+
+  @Override
+  public UploadPartResult uploadPart(final UploadPartRequest request) {
+    enter("UploadPart", request.getKey());
+    final PendingUpload upload = upload(request.getUploadId());
+    final byte[] part;
+    if (request.getFile() != null) {
+      part = readFile(request.getFile(), request.getFileOffset(), request.getPartSize());
+    } else {
+      part = readStream(request.getInputStream(), request.getPartSize());
+    }
+    upload.parts.put(request.getPartNumber(), part);
+    final UploadPartResult result = new UploadPartResult();
+    result.setPartNumber(request.getPartNumber());
+    result.setETag(md5(part));
+    return result;
+  }
+
+  @Override
+  public PartListing listParts(final ListPartsRequest request) {
+    enter("ListParts", request.getKey());
+    final PendingUpload upload = upload(request.getUploadId());
+    final int marker =
+        request.getPartNumberMarker() == null ? 0 : request.getPartNumberMarker().intValue();
+    final int maxParts = request.getMaxParts() == null ? 1000 : request.getMaxParts().intValue();
+    final PartListing listing = new PartListing();
+    listing.setBucketName(upload.bucketName);
+    listing.setKey(upload.key);
+    listing.setUploadId(request.getUploadId());
+    listing.setPartNumberMarker(marker);
+    listing.setMaxParts(maxParts);
+    final List<PartSummary> parts = new ArrayList<PartSummary>();
+    for (final Map.Entry<Integer, byte[]> entry : new TreeMap<Integer, byte[]>(upload.parts)
+        .tailMap(marker, false).entrySet()) {
+      if (parts.size() == maxParts) {
+        listing.setTruncated(true);
+        break;
+      }
+      final PartSummary part = new PartSummary();
+      part.setPartNumber(entry.getKey());
+      part.setETag("\"" + md5(entry.getValue()) + "\"");
+      part.setSize(entry.getValue().length);
+      part.setLastModified(now());
+      parts.add(part);
+      listing.setNextPartNumberMarker(entry.getKey());
+    }
+    listing.setParts(parts);
+    return listing;
+  }
+
+  @Override
+  public CopyPartResult copyPart(final CopyPartRequest request) {
+    enter("UploadPartCopy", request.getDestinationKey());
+    final PendingUpload upload = upload(request.getUploadId());
+    final StoredObject source = object(request.getSourceBucketName(), request.getSourceKey());
+    if (!source.matches(request.getMatchingETagConstraints(),
+        request.getNonmatchingETagConstraints(), request.getModifiedSinceConstraint(),
+        request.getUnmodifiedSinceConstraint())) {
+      return null;
+    }
+    int from = 0;
+    int to = source.content.length - 1;
+    if (request.getFirstByte() != null) {
+      from = request.getFirstByte().intValue();
+      to = request.getLastByte().intValue();
+      if (from > to || to >= source.content.length) {
+        throw error(416, "InvalidRange", request.getSourceKey());
+      }
+    }
+    final byte[] part = new byte[to - from + 1];
+    System.arraycopy(source.content, from, part, 0, part.length);
+    upload.parts.put(request.getPartNumber(), part);
+    final CopyPartResult result = new CopyPartResult();
+    result.setPartNumber(request.getPartNumber());
+    result.setETag(md5(part));
+    result.setLastModifiedDate(now());
+    return result;
+  }
+
+  @Override
+  public CompleteMultipartUploadResult completeMultipartUpload(
+      final CompleteMultipartUploadRequest request) {
+    enter("CompleteMultipartUpload", request.getKey());
+    final PendingUpload upload = upload(request.getUploadId());
+    final List<PartETag> partETags = request.getPartETags();
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    final ByteArrayOutputStream digests = new ByteArrayOutputStream();
+    int previousPartNumber = 0;
+    for (int i = 0; i < partETags.size(); i++) {
+      final PartETag partETag = partETags.get(i);
+      final byte[] part = upload.parts.get(partETag.getPartNumber());
+      if (partETag.getPartNumber() <= previousPartNumber) {
+        throw error(400, "InvalidPartOrder", request.getKey());
+      }
+      if (part == null || !md5(part).equals(unquote(partETag.getETag()))) {
+        throw error(400, "InvalidPart", request.getKey());
+      }
+      if (part.length < MIN_PART_SIZE && i < partETags.size() - 1) {
+        throw error(400, "EntityTooSmall", request.getKey());
+      }
+      content.write(part, 0, part.length);
+      final byte[] digest = Md5Utils.computeMD5Hash(part);
+      digests.write(digest, 0, digest.length);
+      previousPartNumber = partETag.getPartNumber();
+    }
+    this.uploads.remove(request.getUploadId());
+    final String eTag = BinaryUtils.toHex(Md5Utils.computeMD5Hash(digests.toByteArray())) + "-"
+        + partETags.size();
+    final StoredObject object = new StoredObject(content.toByteArray(), eTag,
+        upload.contentType, upload.userMetadata, now());
+    bucket(upload.bucketName).put(upload.key, object);
+    final CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+    result.setBucketName(upload.bucketName);
+    result.setKey(upload.key);
+    result.setETag(eTag);
+    return result;
+  }
+
+  @Override
+  public void abortMultipartUpload(final AbortMultipartUploadRequest request) {
+    enter("AbortMultipartUpload", request.getKey());
+    if (this.uploads.remove(request.getUploadId()) == null) {
+      throw error(404, "NoSuchUpload", request.getUploadId());
+    }
+  }
+
+  @Override
+  public void deleteObject(final String bucketName, final String key) {
+    deleteObject(new DeleteObjectRequest(bucketName, key));
+  }
+
+  @Override
+  public void deleteObject(final DeleteObjectRequest request) {
+    enter("DeleteObject", request.getKey());
+    bucket(request.getBucketName()).remove(request.getKey());
+  }
+
+  @Override
+  public DeleteObjectsResult deleteObjects(final DeleteObjectsRequest request) {
+    enter("DeleteObjects", null);
+    final NavigableMap<String, StoredObject> objects = bucket(request.getBucketName());
+    final List<DeletedObject> deletedObjects = new ArrayList<DeletedObject>();
+    final List<DeleteError> errors = new ArrayList<DeleteError>();
+    for (final KeyVersion keyVersion : request.getKeys()) {
+      final S3FailureInjector injector = this.failureInjector;
+      final AmazonServiceException failure =
+          injector == null ? null : injector.failureFor("DeleteObject", keyVersion.getKey());
+      if (failure == null) {
+        objects.remove(keyVersion.getKey());
+        final DeletedObject deletedObject = new DeletedObject();
+        deletedObject.setKey(keyVersion.getKey());
+        deletedObjects.add(deletedObject);
+      } else {
+        final DeleteError error = new DeleteError();
+        error.setKey(keyVersion.getKey());
+        error.setCode(failure.getErrorCode());
+        error.setMessage(failure.getErrorMessage());
+        errors.add(error);
+      }
+    }
+    final List<DeletedObject> reported =
+        request.getQuiet() ? new ArrayList<DeletedObject>() : deletedObjects;
+    if (!errors.isEmpty()) {
+      throw new MultiObjectDeleteException(errors, reported);
+    }
+    return new DeleteObjectsResult(reported);
+  }
+
+  @Override
+  public URL generatePresignedUrl(final String bucketName, final String key,
+      final Date expiration) {
+    return generatePresignedUrl(bucketName, key, expiration, HttpMethod.GET);
+  }
+
+  @Override
+  public URL generatePresignedUrl(final String bucketName, final String key,
+      final Date expiration, final HttpMethod method) {
+    return generatePresignedUrl(
+        new GeneratePresignedUrlRequest(bucketName, key, method).withExpiration(expiration));
+  }
+
+  @Override
+  public URL generatePresignedUrl(final GeneratePresignedUrlRequest request) {
+    final long expires = request.getExpiration() == null ? 0
+        : request.getExpiration().getTime() / 1000;
+    try {
+      return new URL("https", request.getBucketName() + ".s3.amazonaws.com",
+          "/" + SdkHttpUtils.urlEncode(request.getKey(), true) + "?Method=" + request.getMethod()
+              + "&Expires=" + expires);
+    } catch (final MalformedURLException e) {
+      throw new AmazonClientException("unable to sign " + request.getKey(), e);
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    // nothing to release
+  }
+
+  private void enter(final String operation, final String key) {
+    final long minLatency = this.minLatencyNanos;
+    final long maxLatency = this.maxLatencyNanos;
+    if (maxLatency > 0) {
+      final long latency = minLatency == maxLatency ? minLatency
+          : ThreadLocalRandom.current().nextLong(minLatency, maxLatency + 1);
+      try {
+        Thread.sleep(latency / 1000000, (int) (latency % 1000000));
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AmazonClientException(operation + " interrupted", e);
+      }
+    }
+    final S3FailureInjector injector = this.failureInjector;
+    if (injector != null) {
+      final AmazonServiceException failure = injector.failureFor(operation, key);
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
+  private NavigableMap<String, StoredObject> bucket(final String bucketName) {
+    final NavigableMap<String, StoredObject> objects = this.buckets.get(bucketName);
+    if (objects == null) {
+      throw error(404, "NoSuchBucket", bucketName);
+    }
+    return objects;
+  }
+
+  private StoredObject object(final String bucketName, final String key) {
+    final StoredObject object = bucket(bucketName).get(key);
+    if (object == null) {
+      throw error(404, "NoSuchKey", key);
+    }
+    return object;
+  }
+
+  private PendingUpload upload(final String uploadId) {
+    final PendingUpload upload = this.uploads.get(uploadId);
+    if (upload == null) {
+      throw error(404, "NoSuchUpload", uploadId);
+    }
+    return upload;
+  }
+
+  private Date now() {
+    return new Date(this.clock.millis());
+  }
+
+  private static AmazonS3Exception error(final int statusCode, final String errorCode,
+      final String resource) {
+    final AmazonS3Exception exception = new AmazonS3Exception(errorCode + ": " + resource);
+    exception.setStatusCode(statusCode);
+    exception.setErrorCode(errorCode);
+    exception.setErrorType(statusCode >= 500 ? ErrorType.Service : ErrorType.Client);
+    exception.setServiceName("Amazon S3");
+    return exception;
+  }
+
+  private static byte[] readFile(final File file) {
+    try {
+      return Files.readAllBytes(file.toPath());
+    } catch (final IOException e) {
+      throw new AmazonClientException("unable to read " + file, e);
+    }
+  }
+
+  private static byte[] readFile(final File file, final long offset, final long length) {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+      final byte[] content =
+          new byte[(int) Math.min(length, Math.max(0, randomAccessFile.length() - offset))];
+      randomAccessFile.seek(offset);
+      randomAccessFile.readFully(content);
+      return content;
+    } catch (final IOException e) {
+      throw new AmazonClientException("unable to read " + file, e);
+    }
+  }
+
+  private static byte[] readStream(final InputStream inputStream, final long limit) {
+    if (inputStream == null) {
+      return new byte[0];
+    }
+    try {
+      final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[64 * 1024];
+      long remaining = limit;
+      int read;
+      while (remaining > 0
+          && (read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining))) >= 0) {
+        outputStream.write(buffer, 0, read);
+        remaining -= read;
+      }
+      return outputStream.toByteArray();
+    } catch (final IOException e) {
+      throw new AmazonClientException("unable to read request content", e);
+    }
+  }
+
+  private static String md5(final byte[] content) {
+    return BinaryUtils.toHex(Md5Utils.computeMD5Hash(content));
+  }
+
+  private static String encodeToken(final String key) {
+    return Base64.getUrlEncoder().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String decodeToken(final String token) {
+    return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+  }
+
+  private static String emptyToNull(final String value) {
+    return value == null || value.isEmpty() ? null : value;
+  }
+
+  private static String unquote(final String eTag) {
+    return eTag == null ? null : eTag.replace("\"", "");
+  }
+
+  private static class StoredObject {
+    private final byte[] content;
+    private final String eTag;
+    private final String contentType;
+    private final Map<String, String> userMetadata;
+    private final Date lastModified;
+
+    StoredObject(final byte[] content, final ObjectMetadata metadata, final Date lastModified) {
+      this(content, md5(content), metadata == null ? null : metadata.getContentType(),
+          metadata == null ? null : metadata.getUserMetadata(), lastModified);
+    }
+
+    StoredObject(final byte[] content, final String contentType,
+        final Map<String, String> userMetadata, final Date lastModified) {
+      this(content, md5(content), contentType, userMetadata, lastModified);
+    }
+
+    StoredObject(final byte[] content, final String eTag, final String contentType,
+        final Map<String, String> userMetadata, final Date lastModified) {
+      this.content = content;
+      this.eTag = eTag;
+      this.contentType = contentType == null ? "application/octet-stream" : contentType;
+      this.userMetadata = userMetadata == null ? new HashMap<String, String>()
+          : new HashMap<String, String>(userMetadata);
+      this.lastModified = lastModified;
+    }
+
+    boolean matches(final Collection<String> matchingETags,
+        final Collection<String> nonmatchingETags, final Date modifiedSince,
+        final Date unmodifiedSince) {
+      if (matchingETags != null && !matchingETags.isEmpty()
+          && !containsETag(matchingETags)) {
+        return false;
+      }
+      if (nonmatchingETags != null && containsETag(nonmatchingETags)) {
+        return false;
+      }
+      if (modifiedSince != null && !this.lastModified.after(modifiedSince)) {
+        return false;
+      }
+      return unmodifiedSince == null || !this.lastModified.after(unmodifiedSince);
+    }
+
+    private boolean containsETag(final Collection<String> eTags) {
+      for (final String eTag : eTags) {
+        if (this.eTag.equals(unquote(eTag))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    ObjectMetadata toMetadata() {
+      final ObjectMetadata metadata = new ObjectMetadata();
+      metadata.setContentLength(this.content.length);
+      metadata.setContentType(this.contentType);
+      metadata.setUserMetadata(new HashMap<String, String>(this.userMetadata));
+      metadata.setLastModified(this.lastModified);
+      metadata.setHeader(Headers.ETAG, this.eTag);
+      return metadata;
+    }
+
+    S3ObjectSummary toSummary(final String bucketName, final String key) {
+      final S3ObjectSummary summary = new S3ObjectSummary();
+      summary.setBucketName(bucketName);
+      summary.setKey(key);
+      summary.setETag(this.eTag);
+      summary.setSize(this.content.length);
+      summary.setLastModified(this.lastModified);
+      summary.setStorageClass("STANDARD");
+      return summary;
+    }
+  }
+
+  private static class PendingUpload {
+    private final String bucketName;
+    private final String key;
+    private final String contentType;
+    private final Map<String, String> userMetadata;
+    private final Map<Integer, byte[]> parts = new ConcurrentHashMap<Integer, byte[]>();
+
+    PendingUpload(final String bucketName, final String key, final ObjectMetadata metadata) {
+      this.bucketName = bucketName;
+      this.key = key;
+      this.contentType = metadata == null ? null : metadata.getContentType();
+      this.userMetadata = metadata == null ? null : metadata.getUserMetadata();
+    }
+  }
+}
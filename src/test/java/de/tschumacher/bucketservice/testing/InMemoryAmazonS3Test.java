@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.testing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+
+import de.tschumacher.bucketservice.domain.S3DeleteReport;
+import de.tschumacher.bucketservice.domain.S3File;
+import de.tschumacher.bucketservice.domain.S3MoveReport;
+import de.tschumacher.bucketservice.service.DefaultS3Service;
+import de.tschumacher.bucketservice.service.S3Service;
+import de.tschumacher.bucketservice.service.S3ServiceConfig;
+
+public class InMemoryAmazonS3Test {
+  private static final String BUCKET = "bucket";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private InMemoryAmazonS3 amazonS3;
+  private S3Service service;
+
+  @Before
+  public void setUp() {
+    this.amazonS3 = new InMemoryAmazonS3(BUCKET);
+    this.service = new DefaultS3Service(this.amazonS3, BUCKET,
+        S3ServiceConfig.newBuilder().withMultipartUpload(true)
+            .withPartSize(InMemoryAmazonS3.MIN_PART_SIZE)
+            .withMultipartThreshold(InMemoryAmazonS3.MIN_PART_SIZE)
+            .withRangeSize(InMemoryAmazonS3.MIN_PART_SIZE).build());
+  }
+
+  @Test
+  public void listPagesThroughAllKeysTest() {
+    IntStream.range(0, 2500).forEach(i -> this.amazonS3.putObject(BUCKET, "files/" + i, "x"));
+    this.amazonS3.putObject(BUCKET, "other", "x");
+
+    final List<String> keys = this.service.informationService().streamFilesRecursively("files/")
+        .map(S3File::getKey).collect(Collectors.toList());
+
+    assertEquals(2500, keys.size());
+    assertEquals(2500, new HashSet<String>(keys).size());
+  }
+
+  @Test
+  public void listCommonPrefixesAcrossPagesTest() {
+    for (final String key : Arrays.asList("a/1", "a/2", "b/1", "c", "d/1", "d/2", "e")) {
+      this.amazonS3.putObject(BUCKET, "root/" + key, "x");
+    }
+    final ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(BUCKET)
+        .withPrefix("root/").withDelimiter("/").withMaxKeys(2);
+    final List<String> entries = new ArrayList<String>();
+    ListObjectsV2Result page;
+    do {
+      page = this.amazonS3.listObjectsV2(request);
+      entries.addAll(page.getCommonPrefixes());
+      page.getObjectSummaries().forEach(summary -> entries.add(summary.getKey()));
+      request.setContinuationToken(page.getNextContinuationToken());
+    } while (page.isTruncated());
+
+    Collections.sort(entries);
+    assertEquals(Arrays.asList("root/a/", "root/b/", "root/c", "root/d/", "root/e"), entries);
+    assertEquals(Arrays.asList("root/c", "root/e"),
+        this.service.informationService().listFileNames("root/"));
+  }
+
+  @Test
+  public void multipartRoundTripTest() throws IOException {
+    final byte[] content = new byte[(int) (InMemoryAmazonS3.MIN_PART_SIZE * 2 + 1000)];
+    new Random(1).nextBytes(content);
+    final File source = this.folder.newFile();
+    Files.write(source.toPath(), content);
+
+    this.service.uploadService().uploadFile(source, "big");
+    final File downloaded =
+        this.service.downloadService().downloadFile("big", this.folder.newFile());
+
+    assertTrue(this.amazonS3.getObjectMetadata(BUCKET, "big").getETag().endsWith("-3"));
+    assertArrayEquals(content, Files.readAllBytes(downloaded.toPath()));
+  }
+
+  @Test
+  public void moveAndDeletePrefixTest() {
+    for (int i = 0; i < 5; i++) {
+      this.amazonS3.putObject(BUCKET, "source/" + i, "content " + i);
+    }
+
+    final S3MoveReport moveReport =
+        this.service.modificationService().movePrefix("source/", "target/");
+    final S3DeleteReport deleteReport =
+        this.service.modificationService().deletePrefix("target/3");
+
+    assertTrue(moveReport.isSuccessful());
+    assertEquals(5, moveReport.getMovedKeys().size());
+    assertEquals(Arrays.asList("target/3"), deleteReport.getDeletedKeys());
+    assertFalse(this.amazonS3.doesObjectExist(BUCKET, "source/1"));
+    assertEquals(Arrays.asList("target/0", "target/1", "target/2", "target/4"),
+        this.service.informationService().listFileNames("target/"));
+  }
+
+  @Test
+  public void conditionalGetTest() {
+    this.amazonS3.putObject(BUCKET, "key", "content");
+    final String eTag = this.amazonS3.getObjectMetadata(BUCKET, "key").getETag();
+
+    assertNull(this.amazonS3
+        .getObject(new GetObjectRequest(BUCKET, "key").withNonmatchingETagConstraint(eTag)));
+    assertEquals(3, this.amazonS3
+        .getObject(new GetObjectRequest(BUCKET, "key").withRange(2, 4)).getObjectMetadata()
+        .getContentLength());
+    try {
+      this.amazonS3.getObject(BUCKET, "missing");
+      fail();
+    } catch (final AmazonS3Exception e) {
+      assertEquals(404, e.getStatusCode());
+      assertEquals("NoSuchKey", e.getErrorCode());
+    }
+  }
+
+  @Test
+  public void injectFailuresTest() {
+    this.amazonS3.putObject(BUCKET, "key", "content");
+    this.amazonS3.withFailureInjector(S3FailureInjector.randomly(1));
+
+    try {
+      this.service.informationService().fileExists("key");
+      fail();
+    } catch (final AmazonServiceException e) {
+      assertEquals(503, e.getStatusCode());
+    }
+  }
+
+  @Test
+  public void injectPartialDeleteFailuresTest() {
+    final Set<String> keys = new HashSet<String>(Arrays.asList("a", "b", "c"));
+    keys.forEach(key -> this.amazonS3.putObject(BUCKET, key, "x"));
+    this.amazonS3.withFailureInjector((operation, key) -> "b".equals(key)
+        ? S3FailureInjector.slowDown(operation) : null);
+
+    final S3DeleteReport report = this.service.modificationService().deleteFiles(keys);
+
+    assertEquals(new HashSet<String>(Arrays.asList("a", "c")),
+        new HashSet<String>(report.getDeletedKeys()));
+    assertEquals(1, report.getFailedKeys().size());
+    assertTrue(report.getFailedKeys().containsKey("b"));
+  }
+
+  @Test
+  public void injectLatencyTest() {
+    this.amazonS3.withLatency(Duration.ofMillis(20));
+
+    final long start = System.nanoTime();
+    this.service.informationService().fileExists("key");
+
+    assertTrue(System.nanoTime() - start >= Duration.ofMillis(20).toNanos());
+  }
+}
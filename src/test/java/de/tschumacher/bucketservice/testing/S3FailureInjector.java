@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 Tobias Schumacher
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package de.tschumacher.bucketservice.testing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+
+public interface S3FailureInjector {
+
+  AmazonServiceException failureFor(String operation, String key);
+
+  static S3FailureInjector randomly(final double failureRate) {
+    return (operation, key) -> ThreadLocalRandom.current().nextDouble() < failureRate
+        ? slowDown(operation) : null;
+  }
+
+  static AmazonServiceException slowDown(final String operation) {
+    final AmazonS3Exception exception = new AmazonS3Exception("Please reduce your request rate.");
+    exception.setStatusCode(503);
+    exception.setErrorCode("SlowDown");
+    exception.setErrorType(ErrorType.Service);
+    exception.setServiceName("Amazon S3");
+    exception.setRequestId(operation);
+    return exception;
+  }
+}